@@ -185,7 +185,8 @@ public class CustomMemoryIndex implements Serializable {
     /**
      * fields sorted ascending by fieldName; lazily computed on demand
      */
-    private transient Map.Entry<String, Info>[] sortedFields;
+    // volatile, so the reader can be searched by several threads concurrently
+    private transient volatile Map.Entry<String, Info>[] sortedFields;
 
     /**
      * pos: positions[3*i], startOffset: positions[3*i +1], endOffset: positions[3*i +2]
@@ -598,7 +599,7 @@ public class CustomMemoryIndex implements Serializable {
         /**
          * Terms sorted ascending by term text; computed on demand
          */
-        private transient Map.Entry<String, ArrayIntList>[] sortedTerms;
+        private transient volatile Map.Entry<String, ArrayIntList>[] sortedTerms;
 
         /**
          * Number of added tokens for this field
@@ -1122,15 +1123,17 @@ public class CustomMemoryIndex implements Serializable {
         /**
          * performance hack: cache norms to avoid repeated expensive calculations
          */
-        private byte[] cachedNorms;
-        private String cachedFieldName;
-        private Similarity cachedSimilarity;
+        private volatile CachedNorms cachedNorms;
 
         @Override
         public byte[] norms(String fieldName) {
-            byte[] norms = cachedNorms;
+            // read the cached norms once, the reader might be searched by several threads concurrently
+            CachedNorms cached = cachedNorms;
             Similarity sim = getSimilarity();
-            if (fieldName != cachedFieldName || sim != cachedSimilarity) { // not cached?
+            byte[] norms;
+            if (cached != null && fieldName == cached.fieldName && sim == cached.similarity) {
+                norms = cached.norms;
+            } else { // not cached?
                 Info info = getInfo(fieldName);
                 int numTokens = info != null ? info.numTokens : 0;
                 int numOverlapTokens = info != null ? info.numOverlapTokens : 0;
@@ -1141,15 +1144,25 @@ public class CustomMemoryIndex implements Serializable {
                 norms = new byte[]{norm};
 
                 // cache it for future reuse
-                cachedNorms = norms;
-                cachedFieldName = fieldName;
-                cachedSimilarity = sim;
+                cachedNorms = new CachedNorms(fieldName, sim, norms);
                 if (DEBUG)
                     System.err.println("MemoryIndexReader.norms: " + fieldName + ":" + n + ":" + norm + ":" + numTokens);
             }
             return norms;
         }
 
+        private final class CachedNorms {
+            final String fieldName;
+            final Similarity similarity;
+            final byte[] norms;
+
+            CachedNorms(String fieldName, Similarity similarity, byte[] norms) {
+                this.fieldName = fieldName;
+                this.similarity = similarity;
+                this.norms = norms;
+            }
+        }
+
         @Override
         public void norms(String fieldName, byte[] bytes, int offset) {
             if (DEBUG) System.err.println("MemoryIndexReader.norms*: " + fieldName);
@@ -21,6 +21,7 @@ package org.apache.lucene.search;
 
 import org.apache.lucene.util.PriorityQueue;
 import org.elasticsearch.ElasticSearchIllegalStateException;
+import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.controller.ShardFieldDoc;
 
 import java.io.IOException;
@@ -110,9 +111,16 @@ public class ShardFieldDocSortedHitQueue extends PriorityQueue<ShardFieldDoc> {
      * @param b ScoreDoc
      * @return <code>true</code> if document <code>a</code> should be sorted after document <code>b</code>.
      */
-    @SuppressWarnings("unchecked")
     @Override
     protected final boolean lessThan(final ShardFieldDoc docA, final ShardFieldDoc docB) {
+        return lessThan(docA.shardTarget(), docA, docB.shardTarget(), docB);
+    }
+
+    /**
+     * Returns whether <code>docA</code> of <code>shardA</code> is less relevant than <code>docB</code> of <code>shardB</code>.
+     */
+    @SuppressWarnings("unchecked")
+    public final boolean lessThan(final SearchShardTarget shardA, final FieldDoc docA, final SearchShardTarget shardB, final FieldDoc docB) {
         final int n = fields.length;
         int c = 0;
         for (int i = 0; i < n && c == 0; ++i) {
@@ -145,7 +153,7 @@ public class ShardFieldDocSortedHitQueue extends PriorityQueue<ShardFieldDoc> {
         // avoid random sort order that could lead to duplicates (bug #31241):
         if (c == 0) {
             // CHANGE: Add shard base tie breaking
-            c = docA.shardTarget().compareTo(docB.shardTarget());
+            c = shardA.compareTo(shardB);
             if (c == 0) {
                 return docA.doc > docB.doc;
             }
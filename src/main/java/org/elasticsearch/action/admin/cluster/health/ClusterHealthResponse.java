@@ -54,6 +54,10 @@ public class ClusterHealthResponse implements ActionResponse, Iterable<ClusterIn
 
     int unassignedShards = 0;
 
+    int numberOfPendingTasks = 0;
+
+    double averageTaskBatchSize = 0;
+
     boolean timedOut = false;
 
     ClusterHealthStatus status = ClusterHealthStatus.RED;
@@ -151,6 +155,28 @@ public class ClusterHealthResponse implements ActionResponse, Iterable<ClusterIn
         return unassignedShards();
     }
 
+    /**
+     * The number of cluster state update tasks waiting to be executed on the master.
+     */
+    public int numberOfPendingTasks() {
+        return numberOfPendingTasks;
+    }
+
+    public int getNumberOfPendingTasks() {
+        return numberOfPendingTasks();
+    }
+
+    /**
+     * The average number of cluster state update tasks executed together against a single cluster state on the master.
+     */
+    public double averageTaskBatchSize() {
+        return averageTaskBatchSize;
+    }
+
+    public double getAverageTaskBatchSize() {
+        return averageTaskBatchSize();
+    }
+
     public int numberOfNodes() {
         return this.numberOfNodes;
     }
@@ -209,6 +235,8 @@ public class ClusterHealthResponse implements ActionResponse, Iterable<ClusterIn
         unassignedShards = in.readVInt();
         numberOfNodes = in.readVInt();
         numberOfDataNodes = in.readVInt();
+        numberOfPendingTasks = in.readVInt();
+        averageTaskBatchSize = in.readDouble();
         status = ClusterHealthStatus.fromValue(in.readByte());
         int size = in.readVInt();
         for (int i = 0; i < size; i++) {
@@ -236,6 +264,8 @@ public class ClusterHealthResponse implements ActionResponse, Iterable<ClusterIn
         out.writeVInt(unassignedShards);
         out.writeVInt(numberOfNodes);
         out.writeVInt(numberOfDataNodes);
+        out.writeVInt(numberOfPendingTasks);
+        out.writeDouble(averageTaskBatchSize);
         out.writeByte(status.value());
         out.writeVInt(indices.size());
         for (ClusterIndexHealth indexHealth : this) {
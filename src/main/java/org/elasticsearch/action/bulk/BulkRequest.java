@@ -89,8 +89,18 @@ public class BulkRequest implements ActionRequest {
      * Adds a framed data in binary format
      */
     public BulkRequest add(byte[] data, int from, int length, boolean contentUnsafe, @Nullable String defaultIndex, @Nullable String defaultType) throws Exception {
-        XContent xContent = XContentFactory.xContent(data, from, length);
+        add(XContentFactory.xContent(data, from, length), data, from, length, contentUnsafe, defaultIndex, defaultType);
+        return this;
+    }
+
+    /**
+     * Adds the complete actions of the framed data in binary format, returning the position right after the last
+     * complete action. The data after it belongs to an action that is not complete yet, allowing to add framed data
+     * as it is received.
+     */
+    public int add(XContent xContent, byte[] data, int from, int length, boolean contentUnsafe, @Nullable String defaultIndex, @Nullable String defaultType) throws Exception {
         byte marker = xContent.streamSeparator();
+        int consumed = from;
         while (true) {
             int nextMarker = findNextMarker(marker, from, data, length);
             if (nextMarker == -1) {
@@ -106,6 +116,7 @@ public class BulkRequest implements ActionRequest {
                 // Move to START_OBJECT
                 XContentParser.Token token = parser.nextToken();
                 if (token == null) {
+                    consumed = from;
                     continue;
                 }
                 assert token == XContentParser.Token.START_OBJECT;
@@ -194,11 +205,12 @@ public class BulkRequest implements ActionRequest {
                     // move pointers
                     from = nextMarker + 1;
                 }
+                consumed = from;
             } finally {
                 parser.close();
             }
         }
-        return this;
+        return consumed;
     }
 
     /**
@@ -68,6 +68,18 @@ public class BulkShardRequest extends ShardReplicationOperationRequest {
         }
     }
 
+    /**
+     * The whole shard bulk is executed again on retry, including the items a previous attempt executed.
+     */
+    @Override
+    public void beforeRetry() {
+        for (BulkItemRequest item : items) {
+            if (item != null) {
+                ((ShardReplicationOperationRequest) item.request()).beforeRetry();
+            }
+        }
+    }
+
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         super.writeTo(out);
@@ -21,8 +21,10 @@ package org.elasticsearch.action.bulk;
 
 import com.google.common.collect.Sets;
 import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.ElasticSearchInterruptedException;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.RoutingMissingException;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.delete.DeleteResponse;
@@ -45,6 +47,7 @@ import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.mapper.DocumentMapper;
 import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.mapper.SourceToParse;
+import org.elasticsearch.index.mapper.Uid;
 import org.elasticsearch.index.percolator.PercolatorExecutor;
 import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.index.shard.ShardId;
@@ -56,7 +59,15 @@ import org.elasticsearch.transport.TransportRequestOptions;
 import org.elasticsearch.transport.TransportService;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Performs the index operation.
@@ -65,12 +76,15 @@ public class TransportShardBulkAction extends TransportShardReplicationOperation
 
     private final MappingUpdatedAction mappingUpdatedAction;
 
+    private final int primaryConcurrency;
+
     @Inject
     public TransportShardBulkAction(Settings settings, TransportService transportService, ClusterService clusterService,
                                     IndicesService indicesService, ThreadPool threadPool, ShardStateAction shardStateAction,
                                     MappingUpdatedAction mappingUpdatedAction) {
         super(settings, transportService, clusterService, indicesService, threadPool, shardStateAction);
         this.mappingUpdatedAction = mappingUpdatedAction;
+        this.primaryConcurrency = componentSettings.getAsInt("shard.primary_concurrency", 1);
     }
 
     @Override
@@ -129,12 +143,156 @@ public class TransportShardBulkAction extends TransportShardReplicationOperation
         final BulkShardRequest request = shardRequest.request;
         IndexShard indexShard = indicesService.indexServiceSafe(shardRequest.request.index()).shardSafe(shardRequest.shardId);
 
-        Engine.IndexingOperation[] ops = null;
+        PrimaryExecution execution = new PrimaryExecution(clusterState, shardRequest, indexShard);
+        int concurrency = Math.min(primaryConcurrency, request.items().length);
+        if (concurrency > 1) {
+            execution.executeConcurrently(concurrency);
+        } else {
+            for (int i = 0; i < request.items().length; i++) {
+                execution.execute(i);
+            }
+        }
 
-        Set<Tuple<String, String>> mappingsToUpdate = null;
+        if (execution.mappingsToUpdate != null) {
+            for (Tuple<String, String> mappingToUpdate : execution.mappingsToUpdate) {
+                updateMappingOnMaster(mappingToUpdate.v1(), mappingToUpdate.v2());
+            }
+        }
 
-        BulkItemResponse[] responses = new BulkItemResponse[request.items().length];
-        for (int i = 0; i < request.items().length; i++) {
+        if (request.refresh()) {
+            try {
+                indexShard.refresh(new Engine.Refresh(false));
+            } catch (Exception e) {
+                // ignore
+            }
+        }
+        BulkShardResponse response = new BulkShardResponse(new ShardId(request.index(), request.shardId()), execution.responses);
+        return new PrimaryResponse<BulkShardResponse, BulkShardRequest>(shardRequest.request, response, execution.ops);
+    }
+
+    /**
+     * Executes the items of a bulk shard request on the primary. Items can be executed concurrently, in which case
+     * items are partitioned by uid so that items of the same doc are still executed in order, by the same thread.
+     * The calling thread executes partitions as well, so it never waits on partitions that did not start yet.
+     */
+    class PrimaryExecution {
+
+        private final ClusterState clusterState;
+
+        private final PrimaryOperationRequest shardRequest;
+
+        private final BulkShardRequest request;
+
+        private final IndexShard indexShard;
+
+        final BulkItemResponse[] responses;
+
+        volatile Engine.IndexingOperation[] ops;
+
+        volatile Set<Tuple<String, String>> mappingsToUpdate;
+
+        PrimaryExecution(ClusterState clusterState, PrimaryOperationRequest shardRequest, IndexShard indexShard) {
+            this.clusterState = clusterState;
+            this.shardRequest = shardRequest;
+            this.request = shardRequest.request;
+            this.indexShard = indexShard;
+            this.responses = new BulkItemResponse[request.items().length];
+        }
+
+        void executeConcurrently(int concurrency) {
+            List<int[]> partitions = partition(concurrency);
+            final Queue<int[]> pending = new ConcurrentLinkedQueue<int[]>(partitions);
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            final CountDownLatch latch = new CountDownLatch(partitions.size());
+            Runnable worker = new Runnable() {
+                @Override
+                public void run() {
+                    int[] partition;
+                    while ((partition = pending.poll()) != null) {
+                        try {
+                            for (int i : partition) {
+                                execute(i);
+                            }
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                }
+            };
+            Executor executor = threadPool.executor(ThreadPool.Names.BULK);
+            for (int i = 1; i < partitions.size(); i++) {
+                try {
+                    executor.execute(worker);
+                } catch (RejectedExecutionException e) {
+                    // the calling thread will execute the partitions
+                    break;
+                }
+            }
+            worker.run();
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ElasticSearchInterruptedException("interrupted while executing bulk items", e);
+            }
+            Throwable e = failure.get();
+            if (e != null) {
+                if (e instanceof ElasticSearchException) {
+                    throw (ElasticSearchException) e;
+                }
+                throw new ElasticSearchException("failed to execute bulk items", e);
+            }
+        }
+
+        /**
+         * Partitions the items by the hash of their uid, keeping the order of the items within each partition.
+         */
+        private List<int[]> partition(int concurrency) {
+            List<List<Integer>> buckets = new ArrayList<List<Integer>>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                buckets.add(new ArrayList<Integer>());
+            }
+            for (int i = 0; i < request.items().length; i++) {
+                ActionRequest itemRequest = request.items()[i].request();
+                String uid;
+                if (itemRequest instanceof IndexRequest) {
+                    uid = Uid.createUid(((IndexRequest) itemRequest).type(), ((IndexRequest) itemRequest).id());
+                } else {
+                    uid = Uid.createUid(((DeleteRequest) itemRequest).type(), ((DeleteRequest) itemRequest).id());
+                }
+                buckets.get((uid.hashCode() & 0x7fffffff) % concurrency).add(i);
+            }
+            List<int[]> partitions = new ArrayList<int[]>(concurrency);
+            for (List<Integer> bucket : buckets) {
+                if (bucket.isEmpty()) {
+                    continue;
+                }
+                int[] partition = new int[bucket.size()];
+                for (int i = 0; i < partition.length; i++) {
+                    partition[i] = bucket.get(i);
+                }
+                partitions.add(partition);
+            }
+            return partitions;
+        }
+
+        private synchronized void addOp(int i, Engine.IndexingOperation op) {
+            if (ops == null) {
+                ops = new Engine.IndexingOperation[request.items().length];
+            }
+            ops[i] = op;
+        }
+
+        private synchronized void addMappingToUpdate(String index, String type) {
+            if (mappingsToUpdate == null) {
+                mappingsToUpdate = Sets.newHashSet();
+            }
+            mappingsToUpdate.add(Tuple.create(index, type));
+        }
+
+        void execute(int i) {
             BulkItemRequest item = request.items()[i];
             if (item.request() instanceof IndexRequest) {
                 IndexRequest indexRequest = (IndexRequest) item.request();
@@ -159,7 +317,7 @@ public class TransportShardBulkAction extends TransportShardReplicationOperation
                         version = index.version();
                         op = index;
                     } else {
-                        Engine.Create create = indexShard.prepareCreate(sourceToParse).version(indexRequest.version()).versionType(indexRequest.versionType()).origin(Engine.Operation.Origin.PRIMARY);
+                        Engine.Create create = indexShard.prepareCreate(sourceToParse).version(indexRequest.version()).versionType(indexRequest.versionType()).autoGeneratedId(indexRequest.autoGeneratedId()).canHaveDuplicates(indexRequest.canHaveDuplicates()).origin(Engine.Operation.Origin.PRIMARY);
                         indexShard.create(create);
                         version = create.version();
                         op = create;
@@ -169,18 +327,12 @@ public class TransportShardBulkAction extends TransportShardReplicationOperation
 
                     // update mapping on master if needed, we won't update changes to the same type, since once its changed, it won't have mappers added
                     if (op.parsedDoc().mappersAdded()) {
-                        if (mappingsToUpdate == null) {
-                            mappingsToUpdate = Sets.newHashSet();
-                        }
-                        mappingsToUpdate.add(Tuple.create(indexRequest.index(), indexRequest.type()));
+                        addMappingToUpdate(indexRequest.index(), indexRequest.type());
                     }
 
                     // if we are going to percolate, then we need to keep this op for the postPrimary operation
                     if (Strings.hasLength(indexRequest.percolate())) {
-                        if (ops == null) {
-                            ops = new Engine.IndexingOperation[request.items().length];
-                        }
-                        ops[i] = op;
+                        addOp(i, op);
                     }
 
                     // add the response
@@ -192,9 +344,9 @@ public class TransportShardBulkAction extends TransportShardReplicationOperation
                         throw (ElasticSearchException) e;
                     }
                     if (e instanceof ElasticSearchException && ((ElasticSearchException) e).status() == RestStatus.CONFLICT) {
-                        logger.trace("[{}][{}] failed to bulk item (index) {}", e, shardRequest.request.index(), shardRequest.shardId, indexRequest);
+                        logger.trace("[{}][{}] failed to bulk item (index) {}", e, request.index(), shardRequest.shardId, indexRequest);
                     } else {
-                        logger.debug("[{}][{}] failed to bulk item (index) {}", e, shardRequest.request.index(), shardRequest.shardId, indexRequest);
+                        logger.debug("[{}][{}] failed to bulk item (index) {}", e, request.index(), shardRequest.shardId, indexRequest);
                     }
                     responses[i] = new BulkItemResponse(item.id(), indexRequest.opType().toString().toLowerCase(),
                             new BulkItemResponse.Failure(indexRequest.index(), indexRequest.type(), indexRequest.id(), ExceptionsHelper.detailedMessage(e)));
@@ -218,9 +370,9 @@ public class TransportShardBulkAction extends TransportShardReplicationOperation
                         throw (ElasticSearchException) e;
                     }
                     if (e instanceof ElasticSearchException && ((ElasticSearchException) e).status() == RestStatus.CONFLICT) {
-                        logger.trace("[{}][{}] failed to bulk item (delete) {}", e, shardRequest.request.index(), shardRequest.shardId, deleteRequest);
+                        logger.trace("[{}][{}] failed to bulk item (delete) {}", e, request.index(), shardRequest.shardId, deleteRequest);
                     } else {
-                        logger.debug("[{}][{}] failed to bulk item (delete) {}", e, shardRequest.request.index(), shardRequest.shardId, deleteRequest);
+                        logger.debug("[{}][{}] failed to bulk item (delete) {}", e, request.index(), shardRequest.shardId, deleteRequest);
                     }
                     responses[i] = new BulkItemResponse(item.id(), "delete",
                             new BulkItemResponse.Failure(deleteRequest.index(), deleteRequest.type(), deleteRequest.id(), ExceptionsHelper.detailedMessage(e)));
@@ -229,22 +381,6 @@ public class TransportShardBulkAction extends TransportShardReplicationOperation
                 }
             }
         }
-
-        if (mappingsToUpdate != null) {
-            for (Tuple<String, String> mappingToUpdate : mappingsToUpdate) {
-                updateMappingOnMaster(mappingToUpdate.v1(), mappingToUpdate.v2());
-            }
-        }
-
-        if (request.refresh()) {
-            try {
-                indexShard.refresh(new Engine.Refresh(false));
-            } catch (Exception e) {
-                // ignore
-            }
-        }
-        BulkShardResponse response = new BulkShardResponse(new ShardId(request.index(), request.shardId()), responses);
-        return new PrimaryResponse<BulkShardResponse, BulkShardRequest>(shardRequest.request, response, ops);
     }
 
     @Override
@@ -126,6 +126,8 @@ public class IndexRequest extends ShardReplicationOperationRequest {
     private boolean sourceUnsafe;
 
     private OpType opType = OpType.INDEX;
+    private boolean autoGeneratedId = false;
+    private boolean canHaveDuplicates = false;
 
     private boolean refresh = false;
     private long version = 0;
@@ -570,6 +572,27 @@ public class IndexRequest extends ShardReplicationOperationRequest {
         return this.opType;
     }
 
+    /**
+     * Has the id been generated (see {@link #process(org.elasticsearch.cluster.metadata.MetaData, String, org.elasticsearch.cluster.metadata.MappingMetaData, boolean)}),
+     * in which case the doc can't already exist.
+     */
+    public boolean autoGeneratedId() {
+        return this.autoGeneratedId;
+    }
+
+    /**
+     * Was the request retried on the primary, in which case it might have been executed already, and a doc
+     * with an auto generated id might exist.
+     */
+    public boolean canHaveDuplicates() {
+        return this.canHaveDuplicates;
+    }
+
+    @Override
+    public void beforeRetry() {
+        canHaveDuplicates = true;
+    }
+
     /**
      * Should a refresh be executed post this index operation causing the operation to
      * be searchable. Note, heavy indexing should not set this to <tt>true</tt>. Defaults
@@ -669,6 +692,7 @@ public class IndexRequest extends ShardReplicationOperationRequest {
         if (allowIdGeneration) {
             if (id == null) {
                 id(UUID.randomBase64UUID());
+                autoGeneratedId = true;
                 // since we generate the id, change it to CREATE
                 opType(IndexRequest.OpType.CREATE);
             }
@@ -710,6 +734,8 @@ public class IndexRequest extends ShardReplicationOperationRequest {
             percolate = in.readUTF();
         }
         versionType = VersionType.fromValue(in.readByte());
+        autoGeneratedId = in.readBoolean();
+        canHaveDuplicates = in.readBoolean();
     }
 
     @Override
@@ -752,6 +778,8 @@ public class IndexRequest extends ShardReplicationOperationRequest {
             out.writeUTF(percolate);
         }
         out.writeByte(versionType.getValue());
+        out.writeBoolean(autoGeneratedId);
+        out.writeBoolean(canHaveDuplicates);
     }
 
     @Override
@@ -210,6 +210,8 @@ public class TransportIndexAction extends TransportShardReplicationOperationActi
             Engine.Create create = indexShard.prepareCreate(sourceToParse)
                     .version(request.version())
                     .versionType(request.versionType())
+                    .autoGeneratedId(request.autoGeneratedId())
+                    .canHaveDuplicates(request.canHaveDuplicates())
                     .origin(Engine.Operation.Origin.PRIMARY);
             indexShard.create(create);
             version = create.version();
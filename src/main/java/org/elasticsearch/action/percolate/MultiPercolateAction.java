@@ -0,0 +1,46 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.action.percolate;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.client.Client;
+
+/**
+ */
+public class MultiPercolateAction extends Action<MultiPercolateRequest, MultiPercolateResponse, MultiPercolateRequestBuilder> {
+
+    public static final MultiPercolateAction INSTANCE = new MultiPercolateAction();
+    public static final String NAME = "mpercolate";
+
+    private MultiPercolateAction() {
+        super(NAME);
+    }
+
+    @Override
+    public MultiPercolateResponse newResponse() {
+        return new MultiPercolateResponse();
+    }
+
+    @Override
+    public MultiPercolateRequestBuilder newRequestBuilder(Client client) {
+        return new MultiPercolateRequestBuilder(client);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.action.percolate;
+
+import com.google.common.collect.Lists;
+import org.elasticsearch.ElasticSearchGenerationException;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.support.single.custom.SingleCustomOperationRequest;
+import org.elasticsearch.common.BytesHolder;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.XContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.elasticsearch.action.ValidateActions.addValidationError;
+
+/**
+ * A request to percolate several docs (of the same index and type) at once. Each doc source has the same
+ * format as the source of a {@link PercolateRequest}, the responses are returned in the order the docs
+ * were added.
+ */
+public class MultiPercolateRequest extends SingleCustomOperationRequest {
+
+    private String index;
+    private String type;
+
+    private List<BytesHolder> docs = Lists.newArrayList();
+
+    public MultiPercolateRequest() {
+
+    }
+
+    /**
+     * Constructs a new multi percolate request.
+     *
+     * @param index The index name
+     * @param type  The document type
+     */
+    public MultiPercolateRequest(String index, String type) {
+        this.index = index;
+        this.type = type;
+    }
+
+    public MultiPercolateRequest index(String index) {
+        this.index = index;
+        return this;
+    }
+
+    public MultiPercolateRequest type(String type) {
+        this.type = type;
+        return this;
+    }
+
+    public String index() {
+        return this.index;
+    }
+
+    public String type() {
+        return this.type;
+    }
+
+    public List<BytesHolder> docs() {
+        return this.docs;
+    }
+
+    /**
+     * Adds a doc to percolate, in the same format as a percolate request source.
+     */
+    public MultiPercolateRequest add(XContentBuilder sourceBuilder) {
+        try {
+            return add(sourceBuilder.underlyingBytes(), 0, sourceBuilder.underlyingBytesLength(), true);
+        } catch (IOException e) {
+            throw new ElasticSearchGenerationException("Failed to generate [" + sourceBuilder + "]", e);
+        }
+    }
+
+    /**
+     * Adds a doc to percolate, in the same format as a percolate request source.
+     */
+    public MultiPercolateRequest add(byte[] source) {
+        return add(source, 0, source.length, false);
+    }
+
+    /**
+     * Adds a doc to percolate, in the same format as a percolate request source.
+     *
+     * @param source The source of the doc
+     * @param offset The offset in the byte array
+     * @param length The length of the data
+     * @param unsafe Is the byte array safe to be used form a different thread
+     */
+    public MultiPercolateRequest add(byte[] source, int offset, int length, boolean unsafe) {
+        if (unsafe) {
+            docs.add(new BytesHolder(Arrays.copyOfRange(source, offset, offset + length)));
+        } else {
+            docs.add(new BytesHolder(source, offset, length));
+        }
+        return this;
+    }
+
+    /**
+     * Adds the docs of a new line delimited data, each line in the format of a percolate request source.
+     */
+    public MultiPercolateRequest addLines(byte[] data, int from, int length, boolean contentUnsafe) {
+        XContent xContent = XContentFactory.xContent(data, from, length);
+        byte marker = xContent.streamSeparator();
+        int end = from + length;
+        while (from < end) {
+            int nextMarker = findNextMarker(marker, from, data, end);
+            if (nextMarker == -1) {
+                nextMarker = end;
+            }
+            // skip empty lines
+            if (nextMarker > from) {
+                add(data, from, nextMarker - from, contentUnsafe);
+            }
+            from = nextMarker + 1;
+        }
+        return this;
+    }
+
+    private int findNextMarker(byte marker, int from, byte[] data, int end) {
+        for (int i = from; i < end; i++) {
+            if (data[i] == marker) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * if this operation hits a node with a local relevant shard, should it be preferred
+     * to be executed on, or just do plain round robin. Defaults to <tt>true</tt>
+     */
+    @Override
+    public MultiPercolateRequest preferLocal(boolean preferLocal) {
+        super.preferLocal(preferLocal);
+        return this;
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        ActionRequestValidationException validationException = super.validate();
+        if (index == null) {
+            validationException = addValidationError("index is missing", validationException);
+        }
+        if (type == null) {
+            validationException = addValidationError("type is missing", validationException);
+        }
+        if (docs.isEmpty()) {
+            validationException = addValidationError("no docs added", validationException);
+        }
+        return validationException;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        index = in.readUTF();
+        type = in.readUTF();
+        int size = in.readVInt();
+        docs = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+            docs.add(in.readBytesReference());
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeUTF(index);
+        out.writeUTF(type);
+        out.writeVInt(docs.size());
+        for (BytesHolder doc : docs) {
+            out.writeBytesHolder(doc);
+        }
+    }
+}
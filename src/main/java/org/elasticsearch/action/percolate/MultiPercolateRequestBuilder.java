@@ -0,0 +1,103 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.action.percolate;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.BaseRequestBuilder;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ *
+ */
+public class MultiPercolateRequestBuilder extends BaseRequestBuilder<MultiPercolateRequest, MultiPercolateResponse> {
+
+    public MultiPercolateRequestBuilder(Client client) {
+        super(client, new MultiPercolateRequest());
+    }
+
+    public MultiPercolateRequestBuilder(Client client, String index, String type) {
+        super(client, new MultiPercolateRequest(index, type));
+    }
+
+    /**
+     * Sets the index to percolate the documents against.
+     */
+    public MultiPercolateRequestBuilder setIndex(String index) {
+        request.index(index);
+        return this;
+    }
+
+    /**
+     * Sets the type of the documents to percolate.
+     */
+    public MultiPercolateRequestBuilder setType(String type) {
+        request.type(type);
+        return this;
+    }
+
+    /**
+     * Adds a document to percolate, in the same format as a percolate request source.
+     */
+    public MultiPercolateRequestBuilder add(XContentBuilder sourceBuilder) {
+        request.add(sourceBuilder);
+        return this;
+    }
+
+    /**
+     * Adds a document to percolate in bytes form, in the same format as a percolate request source.
+     */
+    public MultiPercolateRequestBuilder add(byte[] source) {
+        request.add(source);
+        return this;
+    }
+
+    /**
+     * Should the listener be called on a separate thread if needed.
+     */
+    public MultiPercolateRequestBuilder setListenerThreaded(boolean listenerThreaded) {
+        request.listenerThreaded(listenerThreaded);
+        return this;
+    }
+
+    /**
+     * if this operation hits a node with a local relevant shard, should it be preferred
+     * to be executed on, or just do plain round robin. Defaults to <tt>true</tt>
+     */
+    public MultiPercolateRequestBuilder setPreferLocal(boolean preferLocal) {
+        request.preferLocal(preferLocal);
+        return this;
+    }
+
+    /**
+     * Controls if the operation will be executed on a separate thread when executed locally. Defaults
+     * to <tt>true</tt> when running in embedded mode.
+     */
+    public MultiPercolateRequestBuilder setOperationThreaded(boolean operationThreaded) {
+        request.operationThreaded(operationThreaded);
+        return this;
+    }
+
+    @Override
+    protected void doExecute(ActionListener<MultiPercolateResponse> listener) {
+        client.multiPercolate(request, listener);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.action.percolate;
+
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The response of a multi percolate request, a percolate response per doc in the order of the request.
+ */
+public class MultiPercolateResponse implements ActionResponse, Iterable<PercolateResponse> {
+
+    private List<PercolateResponse> responses;
+
+    MultiPercolateResponse() {
+
+    }
+
+    public MultiPercolateResponse(List<PercolateResponse> responses) {
+        this.responses = responses;
+    }
+
+    public List<PercolateResponse> responses() {
+        return this.responses;
+    }
+
+    @Override
+    public Iterator<PercolateResponse> iterator() {
+        return responses.iterator();
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        int size = in.readVInt();
+        responses = new ArrayList<PercolateResponse>(size);
+        for (int i = 0; i < size; i++) {
+            PercolateResponse response = new PercolateResponse();
+            response.readFrom(in);
+            responses.add(response);
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVInt(responses.size());
+        for (PercolateResponse response : responses) {
+            response.writeTo(out);
+        }
+    }
+}
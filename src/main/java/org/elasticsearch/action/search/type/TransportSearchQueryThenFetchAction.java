@@ -83,11 +83,12 @@ public class TransportSearchQueryThenFetchAction extends TransportSearchTypeActi
         @Override
         protected void processFirstPhaseResult(ShardRouting shard, QuerySearchResult result) {
             queryResults.put(result.shardTarget(), result);
+            maybePartialReduce(result);
         }
 
         @Override
         protected void moveToSecondPhase() {
-            sortedShardList = searchPhaseController.sortDocs(queryResults.values());
+            sortedShardList = reducer.sortDocs(queryResults.values());
             final Map<SearchShardTarget, ExtTIntArrayList> docIdsToLoad = searchPhaseController.docIdsToLoad(sortedShardList);
             this.docIdsToLoad = docIdsToLoad;
 
@@ -187,7 +188,7 @@ public class TransportSearchQueryThenFetchAction extends TransportSearchTypeActi
         }
 
         void innerFinishHim() throws Exception {
-            InternalSearchResponse internalResponse = searchPhaseController.merge(sortedShardList, queryResults, fetchResults);
+            InternalSearchResponse internalResponse = reducer.merge(sortedShardList, queryResults, fetchResults);
             String scrollId = null;
             if (request.scroll() != null) {
                 scrollId = TransportSearchHelper.buildScrollId(request.searchType(), queryResults.values(), null);
@@ -96,6 +96,8 @@ public abstract class TransportSearchTypeAction extends TransportAction<SearchRe
 
         protected volatile ShardDoc[] sortedShardList;
 
+        protected final SearchPhaseController.BatchedReducer reducer = searchPhaseController.newBatchedReducer();
+
         protected final long startTime = System.currentTimeMillis();
 
         protected BaseAsyncAction(SearchRequest request, ActionListener<SearchResponse> listener) {
@@ -345,6 +347,15 @@ public abstract class TransportSearchTypeAction extends TransportAction<SearchRe
             }
         }
 
+        /**
+         * Partially reduces the query results received so far every {@link SearchPhaseController#batchedReduceSize()}
+         * results, instead of holding all of them until all the shards responded. Must be called with each result after
+         * adding it to the query results, and the final reduce must then go through {@link #reducer} as well.
+         */
+        protected final void maybePartialReduce(QuerySearchResultProvider result) {
+            reducer.maybePartialReduce(result);
+        }
+
         protected abstract void sendExecuteFirstPhase(DiscoveryNode node, InternalSearchRequest request, SearchServiceListener<FirstResult> listener);
 
         protected abstract void processFirstPhaseResult(ShardRouting shard, FirstResult result);
@@ -151,4 +151,11 @@ public abstract class ShardReplicationOperationRequest implements ActionRequest
     public void beforeLocalFork() {
 
     }
+
+    /**
+     * Called when the operation is retried on the primary, a previous attempt might have executed it already.
+     */
+    public void beforeRetry() {
+
+    }
 }
@@ -475,6 +475,8 @@ public abstract class TransportShardReplicationOperationAction<Request extends S
         }
 
         void retry(boolean fromClusterEvent, @Nullable final Throwable failure) {
+            // the primary (or another node) might have executed the operation before failing
+            request.beforeRetry();
             if (!fromClusterEvent) {
                 // make it threaded operation so we fork on the discovery listener thread
                 request.beforeLocalFork();
@@ -38,6 +38,9 @@ import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.mlt.MoreLikeThisRequest;
 import org.elasticsearch.action.mlt.MoreLikeThisRequestBuilder;
+import org.elasticsearch.action.percolate.MultiPercolateRequest;
+import org.elasticsearch.action.percolate.MultiPercolateRequestBuilder;
+import org.elasticsearch.action.percolate.MultiPercolateResponse;
 import org.elasticsearch.action.percolate.PercolateRequest;
 import org.elasticsearch.action.percolate.PercolateRequestBuilder;
 import org.elasticsearch.action.percolate.PercolateResponse;
@@ -431,4 +434,22 @@ public interface Client {
      * @param type  The type of the doc
      */
     PercolateRequestBuilder preparePercolate(String index, String type);
+
+    /**
+     * Percolates several docs at once, returning the matches of each doc.
+     */
+    ActionFuture<MultiPercolateResponse> multiPercolate(MultiPercolateRequest request);
+
+    /**
+     * Percolates several docs at once, returning the matches of each doc.
+     */
+    void multiPercolate(MultiPercolateRequest request, ActionListener<MultiPercolateResponse> listener);
+
+    /**
+     * Percolates several docs at once, returning the matches of each doc.
+     *
+     * @param index The index to percolate the docs
+     * @param type  The type of the docs
+     */
+    MultiPercolateRequestBuilder prepareMultiPercolate(String index, String type);
 }
\ No newline at end of file
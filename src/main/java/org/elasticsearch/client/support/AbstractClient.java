@@ -44,6 +44,10 @@ import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.mlt.MoreLikeThisAction;
 import org.elasticsearch.action.mlt.MoreLikeThisRequest;
 import org.elasticsearch.action.mlt.MoreLikeThisRequestBuilder;
+import org.elasticsearch.action.percolate.MultiPercolateAction;
+import org.elasticsearch.action.percolate.MultiPercolateRequest;
+import org.elasticsearch.action.percolate.MultiPercolateRequestBuilder;
+import org.elasticsearch.action.percolate.MultiPercolateResponse;
 import org.elasticsearch.action.percolate.PercolateAction;
 import org.elasticsearch.action.percolate.PercolateRequest;
 import org.elasticsearch.action.percolate.PercolateRequestBuilder;
@@ -285,4 +289,19 @@ public abstract class AbstractClient implements InternalClient {
     public PercolateRequestBuilder preparePercolate(String index, String type) {
         return new PercolateRequestBuilder(this, index, type);
     }
+
+    @Override
+    public ActionFuture<MultiPercolateResponse> multiPercolate(final MultiPercolateRequest request) {
+        return execute(MultiPercolateAction.INSTANCE, request);
+    }
+
+    @Override
+    public void multiPercolate(final MultiPercolateRequest request, final ActionListener<MultiPercolateResponse> listener) {
+        execute(MultiPercolateAction.INSTANCE, request, listener);
+    }
+
+    @Override
+    public MultiPercolateRequestBuilder prepareMultiPercolate(String index, String type) {
+        return new MultiPercolateRequestBuilder(this, index, type);
+    }
 }
@@ -0,0 +1,71 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster;
+
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.index.shard.ShardId;
+
+/**
+ * Information about the cluster gathered periodically by the {@link ClusterInfoService}, on the master node,
+ * that is not part of the cluster state: the disk usage of the nodes, and the size of the shards.
+ */
+public class ClusterInfo {
+
+    public static final ClusterInfo EMPTY = new ClusterInfo(ImmutableMap.<String, DiskUsage>of(), ImmutableMap.<ShardId, Long>of());
+
+    private final ImmutableMap<String, DiskUsage> nodesDiskUsage;
+
+    private final ImmutableMap<ShardId, Long> shardSizes;
+
+    public ClusterInfo(ImmutableMap<String, DiskUsage> nodesDiskUsage, ImmutableMap<ShardId, Long> shardSizes) {
+        this.nodesDiskUsage = nodesDiskUsage;
+        this.shardSizes = shardSizes;
+    }
+
+    public ImmutableMap<String, DiskUsage> nodesDiskUsage() {
+        return this.nodesDiskUsage;
+    }
+
+    /**
+     * The disk usage of the node, <tt>null</tt> if it is not known.
+     */
+    @Nullable
+    public DiskUsage nodeDiskUsage(String nodeId) {
+        return nodesDiskUsage.get(nodeId);
+    }
+
+    public ImmutableMap<ShardId, Long> shardSizes() {
+        return this.shardSizes;
+    }
+
+    /**
+     * The size in bytes of the shard (all its copies have roughly the same size), or the provided default
+     * value if it is not known.
+     */
+    public long shardSize(ShardRouting shardRouting, long defaultValue) {
+        Long size = shardSizes.get(shardRouting.shardId());
+        if (size == null) {
+            return defaultValue;
+        }
+        return size;
+    }
+}
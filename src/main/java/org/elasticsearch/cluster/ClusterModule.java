@@ -64,6 +64,8 @@ public class ClusterModule extends AbstractModule implements SpawnModules {
         bind(MetaDataIndexTemplateService.class).asEagerSingleton();
 
         bind(RoutingService.class).asEagerSingleton();
+        bind(InternalClusterInfoService.class).asEagerSingleton();
+        bind(ClusterInfoService.class).to(InternalClusterInfoService.class);
 
         bind(ShardStateAction.class).asEagerSingleton();
         bind(NodeIndexCreatedAction.class).asEagerSingleton();
@@ -81,4 +81,20 @@ public interface ClusterService extends LifecycleComponent<ClusterService> {
      * Submits a task that will update the cluster state.
      */
     void submitStateUpdateTask(final String source, final ClusterStateUpdateTask updateTask);
+
+    /**
+     * Submits a task that will update the cluster state, and can be executed together with other consecutive
+     * batched tasks against the same cluster state, resulting in a single cluster state update (and publish).
+     */
+    void submitBatchedStateUpdateTask(final String source, final ClusterStateUpdateTask updateTask);
+
+    /**
+     * The number of cluster state update tasks waiting to be executed.
+     */
+    int numberOfPendingTasks();
+
+    /**
+     * The average number of tasks executed together against a single cluster state.
+     */
+    double averageBatchSize();
 }
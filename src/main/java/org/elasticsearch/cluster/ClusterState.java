@@ -255,5 +255,49 @@ public class ClusterState {
             builder.allocationExplanation = AllocationExplanation.readAllocationExplanation(in);
             return builder.build();
         }
+
+        /**
+         * Writes the changes of the provided state compared to the previous state. The diff can only be applied
+         * (using {@link #readDiffFrom(StreamInput, ClusterState, DiscoveryNode)}) on top of a state with the same
+         * version as the previous state.
+         */
+        public static void writeDiffTo(ClusterState previous, ClusterState state, StreamOutput out) throws IOException {
+            out.writeLong(previous.version());
+            out.writeLong(state.version());
+            MetaData.Builder.writeDiffTo(previous.metaData(), state.metaData(), out);
+            RoutingTable.Builder.writeDiffTo(previous.routingTable(), state.routingTable(), out);
+            // nodes are only replaced when they change, no need to send them if they didn't
+            if (previous.nodes() == state.nodes()) {
+                out.writeBoolean(false);
+            } else {
+                out.writeBoolean(true);
+                DiscoveryNodes.Builder.writeTo(state.nodes(), out);
+            }
+            ClusterBlocks.Builder.writeClusterBlocks(state.blocks(), out);
+            state.allocationExplanation().writeTo(out);
+        }
+
+        /**
+         * Reads the version of the state a diff was created against, should be called before
+         * {@link #readDiffFrom(StreamInput, ClusterState, DiscoveryNode)}.
+         */
+        public static long readDiffFromVersion(StreamInput in) throws IOException {
+            return in.readLong();
+        }
+
+        public static ClusterState readDiffFrom(StreamInput in, ClusterState previous, @Nullable DiscoveryNode localNode) throws IOException {
+            Builder builder = new Builder();
+            builder.version = in.readLong();
+            builder.metaData = MetaData.Builder.readDiffFrom(in, previous.metaData());
+            builder.routingTable = RoutingTable.Builder.readDiffFrom(in, previous.routingTable());
+            if (in.readBoolean()) {
+                builder.nodes = DiscoveryNodes.Builder.readFrom(in, localNode);
+            } else {
+                builder.nodes = previous.nodes();
+            }
+            builder.blocks = ClusterBlocks.Builder.readClusterBlocks(in);
+            builder.allocationExplanation = AllocationExplanation.readAllocationExplanation(in);
+            return builder.build();
+        }
     }
 }
@@ -0,0 +1,75 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster;
+
+import org.elasticsearch.common.unit.ByteSizeValue;
+
+/**
+ * The disk usage of the data paths of a node.
+ */
+public class DiskUsage {
+
+    private final String nodeId;
+
+    private final long totalBytes;
+
+    private final long freeBytes;
+
+    public DiskUsage(String nodeId, long totalBytes, long freeBytes) {
+        this.nodeId = nodeId;
+        this.totalBytes = totalBytes;
+        this.freeBytes = freeBytes;
+    }
+
+    public String nodeId() {
+        return this.nodeId;
+    }
+
+    public long totalBytes() {
+        return this.totalBytes;
+    }
+
+    public long freeBytes() {
+        return this.freeBytes;
+    }
+
+    public long usedBytes() {
+        return totalBytes - freeBytes;
+    }
+
+    /**
+     * The ratio of the disk that would be used with the provided additional (or, if negative, fewer) bytes.
+     */
+    public double usedRatio(long deltaBytes) {
+        if (totalBytes <= 0) {
+            return 0;
+        }
+        return ((double) (usedBytes() + deltaBytes)) / totalBytes;
+    }
+
+    public double usedRatio() {
+        return usedRatio(0);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + nodeId + "] used [" + new ByteSizeValue(usedBytes()) + "], free [" + new ByteSizeValue(freeBytes) + "], total [" + new ByteSizeValue(totalBytes) + "]";
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster;
+
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.action.admin.cluster.node.stats.NodeStats;
+import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsRequest;
+import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsResponse;
+import org.elasticsearch.action.admin.cluster.node.stats.TransportNodesStatsAction;
+import org.elasticsearch.action.admin.indices.stats.IndicesStats;
+import org.elasticsearch.action.admin.indices.stats.IndicesStatsRequest;
+import org.elasticsearch.action.admin.indices.stats.ShardStats;
+import org.elasticsearch.action.admin.indices.stats.TransportIndicesStatsAction;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.monitor.fs.FsStats;
+import org.elasticsearch.node.settings.NodeSettingsService;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.elasticsearch.common.unit.TimeValue.timeValueSeconds;
+
+/**
+ * Gathers the {@link ClusterInfo} on the master node every <tt>cluster.info.update.interval</tt> (defaults
+ * to <tt>30s</tt>), using the file system stats of the nodes stats, and the store stats of the indices stats.
+ * The stats are gathered on the management thread pool, waiting at most <tt>cluster.info.update.timeout</tt>
+ * (defaults to <tt>15s</tt>) for each of them, so a slow node does not hold the scheduler thread.
+ */
+public class InternalClusterInfoService extends AbstractLifecycleComponent<InternalClusterInfoService> implements ClusterInfoService, ClusterStateListener {
+
+    static {
+        MetaData.addDynamicSettings(
+                "cluster.info.update.interval"
+        );
+    }
+
+    class ApplySettings implements NodeSettingsService.Listener {
+        @Override
+        public void onRefreshSettings(Settings settings) {
+            TimeValue updateInterval = settings.getAsTime("cluster.info.update.interval", InternalClusterInfoService.this.updateInterval);
+            if (!updateInterval.equals(InternalClusterInfoService.this.updateInterval)) {
+                logger.info("updating [cluster.info.update.interval] from [{}] to [{}]", InternalClusterInfoService.this.updateInterval, updateInterval);
+                InternalClusterInfoService.this.updateInterval = updateInterval;
+                synchronized (InternalClusterInfoService.this) {
+                    if (scheduledUpdateFuture != null) {
+                        scheduledUpdateFuture.cancel(false);
+                        scheduledUpdateFuture = threadPool.scheduleWithFixedDelay(new SubmitClusterInfoUpdater(), updateInterval);
+                    }
+                }
+            }
+        }
+    }
+
+    private final ThreadPool threadPool;
+
+    private final ClusterService clusterService;
+
+    private final TransportNodesStatsAction nodesStatsAction;
+
+    private final TransportIndicesStatsAction indicesStatsAction;
+
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    private final AtomicBoolean updating = new AtomicBoolean();
+
+    private volatile TimeValue updateInterval;
+
+    private final TimeValue updateTimeout;
+
+    private volatile ClusterInfo clusterInfo = ClusterInfo.EMPTY;
+
+    private ScheduledFuture scheduledUpdateFuture;
+
+    @Inject
+    public InternalClusterInfoService(Settings settings, ThreadPool threadPool, ClusterService clusterService, NodeSettingsService nodeSettingsService,
+                                      TransportNodesStatsAction nodesStatsAction, TransportIndicesStatsAction indicesStatsAction) {
+        super(settings);
+        this.threadPool = threadPool;
+        this.clusterService = clusterService;
+        this.nodesStatsAction = nodesStatsAction;
+        this.indicesStatsAction = indicesStatsAction;
+        this.updateInterval = settings.getAsTime("cluster.info.update.interval", timeValueSeconds(30));
+        this.updateTimeout = settings.getAsTime("cluster.info.update.timeout", timeValueSeconds(15));
+
+        nodeSettingsService.addListener(new ApplySettings());
+    }
+
+    @Override
+    protected void doStart() throws ElasticSearchException {
+        clusterService.add(this);
+    }
+
+    @Override
+    protected void doStop() throws ElasticSearchException {
+        clusterService.remove(this);
+        synchronized (this) {
+            if (scheduledUpdateFuture != null) {
+                scheduledUpdateFuture.cancel(false);
+                scheduledUpdateFuture = null;
+            }
+        }
+    }
+
+    @Override
+    protected void doClose() throws ElasticSearchException {
+    }
+
+    @Override
+    public ClusterInfo clusterInfo() {
+        return this.clusterInfo;
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        synchronized (this) {
+            if (event.state().nodes().localNodeMaster()) {
+                if (scheduledUpdateFuture == null) {
+                    // a new master (us), gather the info right away
+                    scheduledUpdateFuture = threadPool.scheduleWithFixedDelay(new SubmitClusterInfoUpdater(), updateInterval);
+                    threadPool.executor(ThreadPool.Names.MANAGEMENT).execute(new ClusterInfoUpdater());
+                }
+            } else {
+                if (scheduledUpdateFuture != null) {
+                    scheduledUpdateFuture.cancel(false);
+                    scheduledUpdateFuture = null;
+                }
+                clusterInfo = ClusterInfo.EMPTY;
+            }
+        }
+    }
+
+    /**
+     * Gathers the cluster info from the nodes, and notifies the listeners with it.
+     */
+    void updateClusterInfo() {
+        NodesStatsResponse nodesStats = nodesStatsAction.execute(new NodesStatsRequest().clear().fs(true)).actionGet(updateTimeout);
+        Map<String, DiskUsage> nodesDiskUsage = new HashMap<String, DiskUsage>();
+        for (NodeStats nodeStats : nodesStats.nodes()) {
+            if (nodeStats.fs() == null) {
+                continue;
+            }
+            long totalBytes = 0;
+            long freeBytes = 0;
+            for (FsStats.Info info : nodeStats.fs()) {
+                // not all file system probes can tell the size of the data paths
+                if (info.total().bytes() < 0 || info.available().bytes() < 0) {
+                    continue;
+                }
+                totalBytes += info.total().bytes();
+                freeBytes += info.available().bytes();
+            }
+            if (totalBytes > 0) {
+                nodesDiskUsage.put(nodeStats.node().id(), new DiskUsage(nodeStats.node().id(), totalBytes, freeBytes));
+            }
+        }
+
+        IndicesStats indicesStats = indicesStatsAction.execute(new IndicesStatsRequest().clear().store(true)).actionGet(updateTimeout);
+        Map<ShardId, Long> shardSizes = new HashMap<ShardId, Long>();
+        for (ShardStats shardStats : indicesStats.shards()) {
+            if (shardStats.stats().store() == null) {
+                continue;
+            }
+            ShardId shardId = shardStats.shardRouting().shardId();
+            long size = shardStats.stats().store().sizeInBytes();
+            Long existing = shardSizes.get(shardId);
+            if (existing == null || existing < size) {
+                shardSizes.put(shardId, size);
+            }
+        }
+
+        ClusterInfo clusterInfo = new ClusterInfo(ImmutableMap.copyOf(nodesDiskUsage), ImmutableMap.copyOf(shardSizes));
+        if (logger.isTraceEnabled()) {
+            logger.trace("gathered disk usage {} for [{}] shards", clusterInfo.nodesDiskUsage().values(), shardSizes.size());
+        }
+        this.clusterInfo = clusterInfo;
+        for (Listener listener : listeners) {
+            listener.onNewInfo(clusterInfo);
+        }
+    }
+
+    /**
+     * Runs on the scheduler thread, forks the (blocking) update to the management thread pool.
+     */
+    private class SubmitClusterInfoUpdater implements Runnable {
+
+        @Override
+        public void run() {
+            if (lifecycle.stoppedOrClosed()) {
+                return;
+            }
+            threadPool.executor(ThreadPool.Names.MANAGEMENT).execute(new ClusterInfoUpdater());
+        }
+    }
+
+    private class ClusterInfoUpdater implements Runnable {
+
+        @Override
+        public void run() {
+            if (lifecycle.stoppedOrClosed()) {
+                return;
+            }
+            if (!updating.compareAndSet(false, true)) {
+                // still gathering the previous cluster info
+                return;
+            }
+            try {
+                updateClusterInfo();
+            } catch (Exception e) {
+                logger.debug("failed to gather cluster info", e);
+            } finally {
+                updating.set(false);
+            }
+        }
+    }
+}
@@ -879,5 +879,70 @@ public class MetaData implements Iterable<IndexMetaData> {
                 IndexTemplateMetaData.Builder.writeTo(template, out);
             }
         }
+
+        /**
+         * Reads a meta data diff written by {@link #writeDiffTo(MetaData, MetaData, StreamOutput)}, applying it on
+         * top of the provided previous meta data.
+         */
+        public static MetaData readDiffFrom(StreamInput in, MetaData previous) throws IOException {
+            Builder builder = new Builder();
+            builder.version = in.readLong();
+            builder.transientSettings(readSettingsFromStream(in));
+            builder.persistentSettings(readSettingsFromStream(in));
+            Set<String> removed = newHashSet();
+            int size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                removed.add(in.readUTF());
+            }
+            for (IndexMetaData indexMetaData : previous) {
+                if (!removed.contains(indexMetaData.index())) {
+                    builder.put(indexMetaData, false);
+                }
+            }
+            size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                builder.put(IndexMetaData.Builder.readFrom(in), false);
+            }
+            size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                builder.put(IndexTemplateMetaData.Builder.readFrom(in));
+            }
+            return builder.build();
+        }
+
+        /**
+         * Writes only the index meta data that changed (or was removed) compared to the previous meta data. Settings
+         * and templates are small and always written in full.
+         */
+        public static void writeDiffTo(MetaData previous, MetaData metaData, StreamOutput out) throws IOException {
+            out.writeLong(metaData.version);
+            writeSettingsToStream(metaData.transientSettings(), out);
+            writeSettingsToStream(metaData.persistentSettings(), out);
+            List<String> removed = newArrayList();
+            for (String index : previous.indices.keySet()) {
+                if (!metaData.indices.containsKey(index)) {
+                    removed.add(index);
+                }
+            }
+            out.writeVInt(removed.size());
+            for (String index : removed) {
+                out.writeUTF(index);
+            }
+            List<IndexMetaData> changed = newArrayList();
+            for (IndexMetaData indexMetaData : metaData) {
+                // index meta data is immutable and only replaced when it changes
+                if (previous.index(indexMetaData.index()) != indexMetaData) {
+                    changed.add(indexMetaData);
+                }
+            }
+            out.writeVInt(changed.size());
+            for (IndexMetaData indexMetaData : changed) {
+                IndexMetaData.Builder.writeTo(indexMetaData, out);
+            }
+            out.writeVInt(metaData.templates.size());
+            for (IndexTemplateMetaData template : metaData.templates.values()) {
+                IndexTemplateMetaData.Builder.writeTo(template, out);
+            }
+        }
     }
 }
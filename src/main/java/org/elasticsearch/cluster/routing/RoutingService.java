@@ -24,6 +24,7 @@ import org.elasticsearch.cluster.*;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.routing.allocation.AllocationService;
 import org.elasticsearch.cluster.routing.allocation.RoutingAllocation;
+import org.elasticsearch.cluster.routing.allocation.decider.DiskThresholdAllocationDecider;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
@@ -48,6 +49,12 @@ public class RoutingService extends AbstractLifecycleComponent<RoutingService> i
 
     private final AllocationService allocationService;
 
+    private final ClusterInfoService clusterInfoService;
+
+    private final DiskThresholdAllocationDecider diskThresholdDecider;
+
+    private final ClusterInfoListener clusterInfoListener = new ClusterInfoListener();
+
     private final TimeValue schedule;
 
     private volatile boolean routingTableDirty = false;
@@ -55,13 +62,17 @@ public class RoutingService extends AbstractLifecycleComponent<RoutingService> i
     private volatile Future scheduledRoutingTableFuture;
 
     @Inject
-    public RoutingService(Settings settings, ThreadPool threadPool, ClusterService clusterService, AllocationService allocationService) {
+    public RoutingService(Settings settings, ThreadPool threadPool, ClusterService clusterService, AllocationService allocationService,
+                          ClusterInfoService clusterInfoService, DiskThresholdAllocationDecider diskThresholdDecider) {
         super(settings);
         this.threadPool = threadPool;
         this.clusterService = clusterService;
         this.allocationService = allocationService;
+        this.clusterInfoService = clusterInfoService;
+        this.diskThresholdDecider = diskThresholdDecider;
         this.schedule = componentSettings.getAsTime("schedule", timeValueSeconds(10));
         clusterService.addFirst(this);
+        clusterInfoService.addListener(clusterInfoListener);
     }
 
     @Override
@@ -79,6 +90,7 @@ public class RoutingService extends AbstractLifecycleComponent<RoutingService> i
             scheduledRoutingTableFuture = null;
         }
         clusterService.remove(this);
+        clusterInfoService.removeListener(clusterInfoListener);
     }
 
     @Override
@@ -146,6 +158,18 @@ public class RoutingService extends AbstractLifecycleComponent<RoutingService> i
         }
     }
 
+    private class ClusterInfoListener implements ClusterInfoService.Listener {
+
+        @Override
+        public void onNewInfo(ClusterInfo info) {
+            // only reroute when a node crossed a disk watermark, shards might need to move off nodes that are
+            // getting full, or can now be allocated on nodes that have been freed
+            if (diskThresholdDecider.updateWatermarks(info)) {
+                routingTableDirty = true;
+            }
+        }
+    }
+
     private class RoutingTableUpdater implements Runnable {
 
         @Override
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.cluster.routing;
 
+import com.google.common.base.Objects;
 import com.google.common.collect.*;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.metadata.MetaData;
@@ -31,9 +32,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Sets.newHashSet;
 
 /**
  *
@@ -387,6 +390,87 @@ public class RoutingTable implements Iterable<IndexRoutingTable> {
                 IndexRoutingTable.Builder.writeTo(index, out);
             }
         }
+
+        /**
+         * Reads a routing table diff written by {@link #writeDiffTo(RoutingTable, RoutingTable, StreamOutput)}, applying
+         * it on top of the provided previous routing table.
+         */
+        public static RoutingTable readDiffFrom(StreamInput in, RoutingTable previous) throws IOException {
+            Builder builder = new Builder();
+            builder.version = in.readLong();
+            Set<String> removed = newHashSet();
+            int size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                removed.add(in.readUTF());
+            }
+            for (IndexRoutingTable indexRoutingTable : previous) {
+                if (!removed.contains(indexRoutingTable.index())) {
+                    builder.indicesRouting.put(indexRoutingTable.index(), indexRoutingTable);
+                }
+            }
+            size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                builder.add(IndexRoutingTable.Builder.readFrom(in));
+            }
+            return builder.build();
+        }
+
+        /**
+         * Writes only the index routing tables that changed (or were removed) compared to the previous routing table.
+         */
+        public static void writeDiffTo(RoutingTable previous, RoutingTable table, StreamOutput out) throws IOException {
+            out.writeLong(table.version);
+            List<String> removed = newArrayList();
+            for (String index : previous.indicesRouting.keySet()) {
+                if (!table.indicesRouting.containsKey(index)) {
+                    removed.add(index);
+                }
+            }
+            out.writeVInt(removed.size());
+            for (String index : removed) {
+                out.writeUTF(index);
+            }
+            List<IndexRoutingTable> changed = newArrayList();
+            for (IndexRoutingTable index : table.indicesRouting.values()) {
+                if (!sameIndexRouting(previous.indicesRouting.get(index.index()), index)) {
+                    changed.add(index);
+                }
+            }
+            out.writeVInt(changed.size());
+            for (IndexRoutingTable index : changed) {
+                IndexRoutingTable.Builder.writeTo(index, out);
+            }
+        }
+
+        /**
+         * Routing tables are rebuilt on each reroute, so we compare the serialized content of the shard routings
+         * and not the instances.
+         */
+        private static boolean sameIndexRouting(IndexRoutingTable previous, IndexRoutingTable current) {
+            if (previous == current) {
+                return true;
+            }
+            if (previous == null || previous.shards().size() != current.shards().size()) {
+                return false;
+            }
+            for (IndexShardRoutingTable currentShard : current) {
+                IndexShardRoutingTable previousShard = previous.shards().get(currentShard.shardId().id());
+                if (previousShard == null || previousShard.allocatedPostApi() != currentShard.allocatedPostApi()
+                        || previousShard.size() != currentShard.size()) {
+                    return false;
+                }
+                for (int i = 0; i < currentShard.size(); i++) {
+                    ShardRouting a = previousShard.shards().get(i);
+                    ShardRouting b = currentShard.shards().get(i);
+                    if (a.primary() != b.primary() || a.state() != b.state() || a.version() != b.version()
+                            || !Objects.equal(a.currentNodeId(), b.currentNodeId())
+                            || !Objects.equal(a.relocatingNodeId(), b.relocatingNodeId())) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
     }
 
     public String prettyPrint() {
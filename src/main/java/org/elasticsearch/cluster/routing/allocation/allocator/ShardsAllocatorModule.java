@@ -24,9 +24,13 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.gateway.none.NoneGatewayAllocator;
 
 /**
+ * Binds the gateway allocator, and the shards allocator set with <tt>cluster.routing.allocation.type</tt>
+ * (<tt>even_shards_count</tt>, the default, or <tt>weighted_shards</tt>).
  */
 public class ShardsAllocatorModule extends AbstractModule {
 
+    public static final String TYPE_KEY = "cluster.routing.allocation.type";
+
     private Settings settings;
 
     private Class<? extends ShardsAllocator> shardsAllocator;
@@ -48,6 +52,9 @@ public class ShardsAllocatorModule extends AbstractModule {
     @Override
     protected void configure() {
         bind(GatewayAllocator.class).to(gatewayAllocator).asEagerSingleton();
-        bind(ShardsAllocator.class).to(shardsAllocator == null ? EvenShardsCountAllocator.class : shardsAllocator).asEagerSingleton();
+        if (shardsAllocator == null) {
+            shardsAllocator = settings.getAsClass(TYPE_KEY, EvenShardsCountAllocator.class, "org.elasticsearch.cluster.routing.allocation.allocator.", "Allocator");
+        }
+        bind(ShardsAllocator.class).to(shardsAllocator).asEagerSingleton();
     }
 }
@@ -0,0 +1,449 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.routing.allocation.allocator;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+import org.elasticsearch.cluster.ClusterInfo;
+import org.elasticsearch.cluster.ClusterInfoService;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.routing.MutableShardRouting;
+import org.elasticsearch.cluster.routing.RoutingNode;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.allocation.FailedRerouteAllocation;
+import org.elasticsearch.cluster.routing.allocation.RoutingAllocation;
+import org.elasticsearch.cluster.routing.allocation.StartedRerouteAllocation;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.node.settings.NodeSettingsService;
+
+import java.util.*;
+
+import static org.elasticsearch.cluster.routing.ShardRoutingState.INITIALIZING;
+import static org.elasticsearch.cluster.routing.ShardRoutingState.RELOCATING;
+
+/**
+ * A shards allocator that balances the nodes on a weight function combining, for a node and an index:
+ * <ul>
+ * <li>the number of shards on the node (<tt>cluster.routing.allocation.weighted.shard</tt>, defaults to <tt>0.3</tt>),</li>
+ * <li>the number of shards of the index on the node (<tt>cluster.routing.allocation.weighted.index</tt>, defaults to <tt>0.3</tt>),</li>
+ * <li>the store size of the shards on the node, in average shard sizes (<tt>cluster.routing.allocation.weighted.size</tt>,
+ * defaults to <tt>0.4</tt>).</li>
+ * </ul>
+ * Unassigned shards are allocated on the node with the lowest weight once they are added to it, primaries and
+ * larger shards first. Rebalancing moves shards, index by index, from the node with the highest weight to the
+ * node with the lowest weight, as long as the difference between their weights is above
+ * <tt>cluster.routing.allocation.weighted.threshold</tt> (defaults to <tt>1.0</tt>) and the move reduces it.
+ * <p/>
+ * The store size of the shards comes from the {@link ClusterInfo}, shards with an unknown size are assumed to be
+ * of the average known size. Set <tt>cluster.routing.allocation.type</tt> to <tt>weighted_shards</tt> to use it.
+ */
+public class WeightedShardsAllocator extends AbstractComponent implements ShardsAllocator {
+
+    public static final String SETTING_SHARD_WEIGHT = "cluster.routing.allocation.weighted.shard";
+    public static final String SETTING_INDEX_WEIGHT = "cluster.routing.allocation.weighted.index";
+    public static final String SETTING_SIZE_WEIGHT = "cluster.routing.allocation.weighted.size";
+    public static final String SETTING_THRESHOLD = "cluster.routing.allocation.weighted.threshold";
+
+    static {
+        MetaData.addDynamicSettings(
+                SETTING_SHARD_WEIGHT,
+                SETTING_INDEX_WEIGHT,
+                SETTING_SIZE_WEIGHT,
+                SETTING_THRESHOLD
+        );
+    }
+
+    class ApplySettings implements NodeSettingsService.Listener {
+        @Override
+        public void onRefreshSettings(Settings settings) {
+            float shardWeight = settings.getAsFloat(SETTING_SHARD_WEIGHT, WeightedShardsAllocator.this.shardWeight);
+            float indexWeight = settings.getAsFloat(SETTING_INDEX_WEIGHT, WeightedShardsAllocator.this.indexWeight);
+            float sizeWeight = settings.getAsFloat(SETTING_SIZE_WEIGHT, WeightedShardsAllocator.this.sizeWeight);
+            float threshold = settings.getAsFloat(SETTING_THRESHOLD, WeightedShardsAllocator.this.threshold);
+            if (shardWeight != WeightedShardsAllocator.this.shardWeight || indexWeight != WeightedShardsAllocator.this.indexWeight
+                    || sizeWeight != WeightedShardsAllocator.this.sizeWeight || threshold != WeightedShardsAllocator.this.threshold) {
+                logger.info("updating weights to shard [{}], index [{}], size [{}], threshold [{}]", shardWeight, indexWeight, sizeWeight, threshold);
+                WeightedShardsAllocator.this.shardWeight = shardWeight;
+                WeightedShardsAllocator.this.indexWeight = indexWeight;
+                WeightedShardsAllocator.this.sizeWeight = sizeWeight;
+                WeightedShardsAllocator.this.threshold = threshold;
+            }
+        }
+    }
+
+    private final ClusterInfoService clusterInfoService;
+
+    private volatile float shardWeight;
+    private volatile float indexWeight;
+    private volatile float sizeWeight;
+    private volatile float threshold;
+
+    @Inject
+    public WeightedShardsAllocator(Settings settings, NodeSettingsService nodeSettingsService, ClusterInfoService clusterInfoService) {
+        super(settings);
+        this.clusterInfoService = clusterInfoService;
+        this.shardWeight = settings.getAsFloat(SETTING_SHARD_WEIGHT, 0.3f);
+        this.indexWeight = settings.getAsFloat(SETTING_INDEX_WEIGHT, 0.3f);
+        this.sizeWeight = settings.getAsFloat(SETTING_SIZE_WEIGHT, 0.4f);
+        this.threshold = settings.getAsFloat(SETTING_THRESHOLD, 1.0f);
+        logger.debug("using weights shard [{}], index [{}], size [{}], threshold [{}]", shardWeight, indexWeight, sizeWeight, threshold);
+        nodeSettingsService.addListener(new ApplySettings());
+    }
+
+    @Override
+    public void applyStartedShards(StartedRerouteAllocation allocation) {
+    }
+
+    @Override
+    public void applyFailedShards(FailedRerouteAllocation allocation) {
+    }
+
+    @Override
+    public boolean allocateUnassigned(RoutingAllocation allocation) {
+        if (allocation.routingNodes().unassigned().isEmpty()) {
+            return false;
+        }
+        return new Balancer(allocation).allocateUnassigned();
+    }
+
+    @Override
+    public boolean rebalance(RoutingAllocation allocation) {
+        return new Balancer(allocation).rebalance();
+    }
+
+    @Override
+    public boolean move(MutableShardRouting shardRouting, RoutingNode node, RoutingAllocation allocation) {
+        assert shardRouting.started();
+        return new Balancer(allocation).move(shardRouting, node);
+    }
+
+    /**
+     * The shards, and their sizes, a routing node will hold once its shards are started and relocated.
+     */
+    static class ModelNode {
+
+        final RoutingNode routingNode;
+
+        int numShards;
+
+        long sizeInBytes;
+
+        final TObjectIntHashMap<String> indexShards = new TObjectIntHashMap<String>();
+
+        ModelNode(RoutingNode routingNode) {
+            this.routingNode = routingNode;
+        }
+
+        void add(String index, long shardSize) {
+            numShards++;
+            sizeInBytes += shardSize;
+            indexShards.adjustOrPutValue(index, 1, 1);
+        }
+
+        void remove(String index, long shardSize) {
+            numShards--;
+            sizeInBytes -= shardSize;
+            indexShards.adjustValue(index, -1);
+        }
+
+        int numShards(String index) {
+            return indexShards.get(index);
+        }
+    }
+
+    /**
+     * Balances a single allocation, on a model of the nodes built from it.
+     */
+    class Balancer {
+
+        private final RoutingAllocation allocation;
+
+        private final ClusterInfo clusterInfo;
+
+        private final ModelNode[] nodes;
+
+        private final float shardWeight;
+        private final float indexWeight;
+        private final float sizeWeight;
+        private final float threshold;
+
+        private final long defaultShardSize;
+
+        // the size a shard adds to the size weight of a node
+        private final double sizeUnit;
+
+        private final Map<MutableShardRouting, Boolean> canRebalanceCache = new IdentityHashMap<MutableShardRouting, Boolean>();
+
+        Balancer(RoutingAllocation allocation) {
+            this.allocation = allocation;
+            this.clusterInfo = clusterInfoService.clusterInfo();
+            float sum = WeightedShardsAllocator.this.shardWeight + WeightedShardsAllocator.this.indexWeight + WeightedShardsAllocator.this.sizeWeight;
+            if (sum <= 0) {
+                sum = 1;
+            }
+            this.shardWeight = WeightedShardsAllocator.this.shardWeight / sum;
+            this.indexWeight = WeightedShardsAllocator.this.indexWeight / sum;
+            this.sizeWeight = WeightedShardsAllocator.this.sizeWeight / sum;
+            this.threshold = WeightedShardsAllocator.this.threshold;
+
+            long knownBytes = 0;
+            int knownShards = 0;
+            for (RoutingNode routingNode : allocation.routingNodes()) {
+                List<MutableShardRouting> shards = routingNode.shards();
+                for (int i = 0; i < shards.size(); i++) {
+                    long size = clusterInfo.shardSize(shards.get(i), -1);
+                    if (size >= 0) {
+                        knownBytes += size;
+                        knownShards++;
+                    }
+                }
+            }
+            for (MutableShardRouting shard : allocation.routingNodes().unassigned()) {
+                long size = clusterInfo.shardSize(shard, -1);
+                if (size >= 0) {
+                    knownBytes += size;
+                    knownShards++;
+                }
+            }
+            this.defaultShardSize = knownShards == 0 ? 0 : knownBytes / knownShards;
+            this.sizeUnit = Math.max(1, defaultShardSize);
+
+            List<ModelNode> nodes = new ArrayList<ModelNode>();
+            for (RoutingNode routingNode : allocation.routingNodes()) {
+                ModelNode node = new ModelNode(routingNode);
+                List<MutableShardRouting> shards = routingNode.shards();
+                for (int i = 0; i < shards.size(); i++) {
+                    MutableShardRouting shard = shards.get(i);
+                    // a relocating shard is accounted on its target node, where it is initializing
+                    if (shard.state() == RELOCATING) {
+                        continue;
+                    }
+                    node.add(shard.index(), shardSize(shard));
+                }
+                nodes.add(node);
+            }
+            this.nodes = nodes.toArray(new ModelNode[nodes.size()]);
+        }
+
+        long shardSize(ShardRouting shard) {
+            return clusterInfo.shardSize(shard, defaultShardSize);
+        }
+
+        /**
+         * The weight of the node for the index, once the provided shards and bytes are added to it (or, if
+         * negative, removed from it).
+         */
+        double weight(ModelNode node, String index, int shardsDelta, long bytesDelta) {
+            return shardWeight * (node.numShards + shardsDelta)
+                    + indexWeight * (node.numShards(index) + shardsDelta)
+                    + sizeWeight * ((node.sizeInBytes + bytesDelta) / sizeUnit);
+        }
+
+        boolean allocateUnassigned() {
+            List<MutableShardRouting> unassigned = allocation.routingNodes().unassigned();
+            MutableShardRouting[] shards = unassigned.toArray(new MutableShardRouting[unassigned.size()]);
+            // primaries first, so their replicas can follow, and larger shards first, they are the hardest to balance
+            Arrays.sort(shards, new Comparator<MutableShardRouting>() {
+                @Override
+                public int compare(MutableShardRouting o1, MutableShardRouting o2) {
+                    if (o1.primary() != o2.primary()) {
+                        return o1.primary() ? -1 : 1;
+                    }
+                    long size1 = shardSize(o1);
+                    long size2 = shardSize(o2);
+                    return size1 > size2 ? -1 : (size1 == size2 ? 0 : 1);
+                }
+            });
+
+            Set<MutableShardRouting> allocated = Collections.newSetFromMap(new IdentityHashMap<MutableShardRouting, Boolean>());
+            for (MutableShardRouting shard : shards) {
+                ModelNode node = findAllocationTarget(shard, null);
+                if (node != null) {
+                    node.routingNode.add(shard);
+                    node.add(shard.index(), shardSize(shard));
+                    allocated.add(shard);
+                }
+            }
+            if (allocated.isEmpty()) {
+                return false;
+            }
+            for (Iterator<MutableShardRouting> it = unassigned.iterator(); it.hasNext(); ) {
+                if (allocated.contains(it.next())) {
+                    it.remove();
+                }
+            }
+            return true;
+        }
+
+        boolean move(MutableShardRouting shard, RoutingNode fromNode) {
+            ModelNode node = findAllocationTarget(shard, fromNode.nodeId());
+            if (node == null) {
+                return false;
+            }
+            relocate(shard, node);
+            return true;
+        }
+
+        /**
+         * Finds the node with the lowest weight once the shard is added to it, that the shard can be allocated on.
+         */
+        private ModelNode findAllocationTarget(final MutableShardRouting shard, String excludedNodeId) {
+            final String index = shard.index();
+            final long shardSize = shardSize(shard);
+            ModelNode[] candidates = nodes.clone();
+            Arrays.sort(candidates, new Comparator<ModelNode>() {
+                @Override
+                public int compare(ModelNode o1, ModelNode o2) {
+                    return Double.compare(weight(o1, index, 1, shardSize), weight(o2, index, 1, shardSize));
+                }
+            });
+            for (ModelNode candidate : candidates) {
+                if (candidate.routingNode.nodeId().equals(excludedNodeId)) {
+                    continue;
+                }
+                if (allocation.deciders().canAllocate(shard, candidate.routingNode, allocation).allocate()) {
+                    return candidate;
+                }
+            }
+            return null;
+        }
+
+        boolean rebalance() {
+            if (nodes.length < 2) {
+                return false;
+            }
+            Set<String> indices = new HashSet<String>();
+            for (ModelNode node : nodes) {
+                List<MutableShardRouting> shards = node.routingNode.shards();
+                for (int i = 0; i < shards.size(); i++) {
+                    indices.add(shards.get(i).index());
+                }
+            }
+            boolean changed = false;
+            for (String index : indices) {
+                // every move strictly reduces the difference between two nodes, bound the moves anyhow
+                int maxMoves = 0;
+                for (ModelNode node : nodes) {
+                    maxMoves += node.numShards(index);
+                }
+                for (int moves = 0; moves < maxMoves; moves++) {
+                    if (!balanceIndex(index)) {
+                        break;
+                    }
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * Moves a shard of the index from a node with a high weight to one with a low weight, returns
+         * <tt>true</tt> if one was moved.
+         */
+        private boolean balanceIndex(final String index) {
+            final ModelNode[] sorted = nodes.clone();
+            final double[] weights = new double[sorted.length];
+            Arrays.sort(sorted, new Comparator<ModelNode>() {
+                @Override
+                public int compare(ModelNode o1, ModelNode o2) {
+                    return Double.compare(weight(o1, index, 0, 0), weight(o2, index, 0, 0));
+                }
+            });
+            for (int i = 0; i < sorted.length; i++) {
+                weights[i] = weight(sorted[i], index, 0, 0);
+            }
+            for (int high = sorted.length - 1; high > 0; high--) {
+                if (weights[high] - weights[0] <= threshold) {
+                    return false;
+                }
+                if (sorted[high].numShards(index) == 0) {
+                    continue;
+                }
+                for (int low = 0; low < high; low++) {
+                    double diff = weights[high] - weights[low];
+                    if (diff <= threshold) {
+                        break;
+                    }
+                    if (tryRelocate(index, sorted[high], sorted[low], diff)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean tryRelocate(String index, ModelNode from, ModelNode to, double diff) {
+            List<MutableShardRouting> shards = from.routingNode.shards();
+            // candidates by the difference left between the two nodes once moved, lower is better
+            List<MutableShardRouting> candidates = new ArrayList<MutableShardRouting>();
+            final Map<MutableShardRouting, Double> diffAfter = new IdentityHashMap<MutableShardRouting, Double>();
+            for (int i = 0; i < shards.size(); i++) {
+                MutableShardRouting shard = shards.get(i);
+                if (!shard.started() || !shard.index().equals(index)) {
+                    continue;
+                }
+                long shardSize = shardSize(shard);
+                double after = Math.abs(weight(from, index, -1, -shardSize) - weight(to, index, 1, shardSize));
+                if (after >= diff) {
+                    continue;
+                }
+                candidates.add(shard);
+                diffAfter.put(shard, after);
+            }
+            Collections.sort(candidates, new Comparator<MutableShardRouting>() {
+                @Override
+                public int compare(MutableShardRouting o1, MutableShardRouting o2) {
+                    return Double.compare(diffAfter.get(o1), diffAfter.get(o2));
+                }
+            });
+            for (MutableShardRouting shard : candidates) {
+                if (!canRebalance(shard)) {
+                    continue;
+                }
+                if (allocation.deciders().canAllocate(shard, to.routingNode, allocation).allocate()) {
+                    relocate(shard, to);
+                    from.remove(index, shardSize(shard));
+                    // rebalancing a shard can change whether others can be rebalanced (concurrent rebalance limits)
+                    canRebalanceCache.clear();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean canRebalance(MutableShardRouting shard) {
+            Boolean canRebalance = canRebalanceCache.get(shard);
+            if (canRebalance == null) {
+                canRebalance = allocation.deciders().canRebalance(shard, allocation);
+                canRebalanceCache.put(shard, canRebalance);
+            }
+            return canRebalance;
+        }
+
+        private void relocate(MutableShardRouting shard, ModelNode to) {
+            to.routingNode.add(new MutableShardRouting(shard.index(), shard.id(),
+                    to.routingNode.nodeId(), shard.currentNodeId(),
+                    shard.primary(), INITIALIZING, shard.version() + 1));
+            shard.relocate(to.routingNode.nodeId());
+            to.add(shard.index(), shardSize(shard));
+        }
+    }
+}
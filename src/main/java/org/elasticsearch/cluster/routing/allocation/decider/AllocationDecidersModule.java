@@ -56,10 +56,13 @@ public class AllocationDecidersModule extends AbstractModule {
         allocationMultibinder.addBinding().to(DisableAllocationDecider.class);
         allocationMultibinder.addBinding().to(AwarenessAllocationDecider.class);
         allocationMultibinder.addBinding().to(ShardsLimitAllocationDecider.class);
+        allocationMultibinder.addBinding().to(DiskThresholdAllocationDecider.class);
         for (Class<? extends AllocationDecider> allocation : allocations) {
             allocationMultibinder.addBinding().to(allocation);
         }
 
+        // a single instance, also used by the routing service to tell when disk usage calls for a reroute
+        bind(DiskThresholdAllocationDecider.class).asEagerSingleton();
         bind(AllocationDeciders.class).asEagerSingleton();
     }
 }
@@ -0,0 +1,247 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.routing.allocation.decider;
+
+import org.elasticsearch.ElasticSearchParseException;
+import org.elasticsearch.cluster.ClusterInfo;
+import org.elasticsearch.cluster.ClusterInfoService;
+import org.elasticsearch.cluster.DiskUsage;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.routing.MutableShardRouting;
+import org.elasticsearch.cluster.routing.RoutingNode;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.allocation.RoutingAllocation;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.node.settings.NodeSettingsService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An allocation decider that takes the disk usage of the nodes into account, using the {@link ClusterInfo}
+ * gathered on the master node.
+ * <p/>
+ * No shard is allocated on a node whose disk usage is above the low watermark
+ * (<tt>cluster.routing.allocation.disk.watermark.low</tt>, defaults to <tt>85%</tt>), or that would get
+ * above the high watermark (<tt>cluster.routing.allocation.disk.watermark.high</tt>, defaults to <tt>90%</tt>)
+ * once the shard is allocated on it. Shards are moved off nodes whose disk usage is above the high
+ * watermark, until the usage once they are relocated gets back under it. Shards that are initializing on
+ * a node are accounted for with their full size, since they will take it once recovered.
+ * <p/>
+ * The watermarks can be set as a percentage (<tt>85%</tt>) or a ratio (<tt>0.85</tt>) of the disk, and the
+ * decider can be disabled with <tt>cluster.routing.allocation.disk.threshold_enabled</tt>.
+ * <p/>
+ * The size of a shard is charged in full to the node it is allocated on, even when the node still holds files of
+ * a previous copy of the shard that recovery will reuse, so the usage of such nodes is overestimated.
+ * <p/>
+ * New cluster info only calls for a reroute when a node crossed a watermark, or when the decider got enabled,
+ * see {@link #updateWatermarks(ClusterInfo)}.
+ */
+public class DiskThresholdAllocationDecider extends AllocationDecider {
+
+    public static final String CLUSTER_ROUTING_ALLOCATION_DISK_THRESHOLD_ENABLED = "cluster.routing.allocation.disk.threshold_enabled";
+    public static final String CLUSTER_ROUTING_ALLOCATION_LOW_DISK_WATERMARK = "cluster.routing.allocation.disk.watermark.low";
+    public static final String CLUSTER_ROUTING_ALLOCATION_HIGH_DISK_WATERMARK = "cluster.routing.allocation.disk.watermark.high";
+
+    static {
+        MetaData.addDynamicSettings(
+                CLUSTER_ROUTING_ALLOCATION_DISK_THRESHOLD_ENABLED,
+                CLUSTER_ROUTING_ALLOCATION_LOW_DISK_WATERMARK,
+                CLUSTER_ROUTING_ALLOCATION_HIGH_DISK_WATERMARK
+        );
+    }
+
+    class ApplySettings implements NodeSettingsService.Listener {
+        @Override
+        public void onRefreshSettings(Settings settings) {
+            boolean enabled = settings.getAsBoolean(CLUSTER_ROUTING_ALLOCATION_DISK_THRESHOLD_ENABLED, DiskThresholdAllocationDecider.this.enabled);
+            if (enabled != DiskThresholdAllocationDecider.this.enabled) {
+                logger.info("updating [{}] from [{}] to [{}]", CLUSTER_ROUTING_ALLOCATION_DISK_THRESHOLD_ENABLED, DiskThresholdAllocationDecider.this.enabled, enabled);
+                DiskThresholdAllocationDecider.this.enabled = enabled;
+            }
+            String lowWatermark = settings.get(CLUSTER_ROUTING_ALLOCATION_LOW_DISK_WATERMARK);
+            if (lowWatermark != null) {
+                double lowWatermarkRatio = parseWatermark(lowWatermark);
+                if (lowWatermarkRatio != DiskThresholdAllocationDecider.this.lowWatermark) {
+                    logger.info("updating [{}] from [{}] to [{}]", CLUSTER_ROUTING_ALLOCATION_LOW_DISK_WATERMARK, DiskThresholdAllocationDecider.this.lowWatermark, lowWatermarkRatio);
+                    DiskThresholdAllocationDecider.this.lowWatermark = lowWatermarkRatio;
+                }
+            }
+            String highWatermark = settings.get(CLUSTER_ROUTING_ALLOCATION_HIGH_DISK_WATERMARK);
+            if (highWatermark != null) {
+                double highWatermarkRatio = parseWatermark(highWatermark);
+                if (highWatermarkRatio != DiskThresholdAllocationDecider.this.highWatermark) {
+                    logger.info("updating [{}] from [{}] to [{}]", CLUSTER_ROUTING_ALLOCATION_HIGH_DISK_WATERMARK, DiskThresholdAllocationDecider.this.highWatermark, highWatermarkRatio);
+                    DiskThresholdAllocationDecider.this.highWatermark = highWatermarkRatio;
+                }
+            }
+        }
+    }
+
+    private static final int UNDER_WATERMARKS = 0;
+    private static final int ABOVE_LOW_WATERMARK = 1;
+    private static final int ABOVE_HIGH_WATERMARK = 2;
+
+    private final ClusterInfoService clusterInfoService;
+
+    // the watermark each node is above (only nodes above one), as of the last cluster info
+    private final Map<String, Integer> nodesAboveWatermark = new HashMap<String, Integer>();
+
+    // if the decider was enabled as of the last cluster info
+    private boolean enabledOnLastUpdate;
+
+    private volatile boolean enabled;
+
+    private volatile double lowWatermark;
+
+    private volatile double highWatermark;
+
+    @Inject
+    public DiskThresholdAllocationDecider(Settings settings, NodeSettingsService nodeSettingsService, ClusterInfoService clusterInfoService) {
+        super(settings);
+        this.clusterInfoService = clusterInfoService;
+        this.enabled = settings.getAsBoolean(CLUSTER_ROUTING_ALLOCATION_DISK_THRESHOLD_ENABLED, true);
+        this.lowWatermark = parseWatermark(settings.get(CLUSTER_ROUTING_ALLOCATION_LOW_DISK_WATERMARK, "85%"));
+        this.highWatermark = parseWatermark(settings.get(CLUSTER_ROUTING_ALLOCATION_HIGH_DISK_WATERMARK, "90%"));
+        this.enabledOnLastUpdate = enabled;
+        logger.debug("using [disk_threshold] enabled [{}], low_watermark [{}], high_watermark [{}]", enabled, lowWatermark, highWatermark);
+        nodeSettingsService.addListener(new ApplySettings());
+    }
+
+    @Override
+    public Decision canAllocate(ShardRouting shardRouting, RoutingNode node, RoutingAllocation allocation) {
+        if (!enabled) {
+            return Decision.YES;
+        }
+        ClusterInfo clusterInfo = clusterInfoService.clusterInfo();
+        DiskUsage usage = clusterInfo.nodeDiskUsage(node.nodeId());
+        if (usage == null) {
+            // no disk usage known for the node (yet)
+            return Decision.YES;
+        }
+        long initializingBytes = sizeOfInitializingShards(node, clusterInfo);
+        if (usage.usedRatio(initializingBytes) > lowWatermark) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("[{}][{}] can't be allocated on node with disk usage {}, above the low watermark [{}]", shardRouting.index(), shardRouting.id(), usage, lowWatermark);
+            }
+            return Decision.NO;
+        }
+        // charged in full, even if the node holds files of a previous copy of the shard that recovery will reuse
+        long shardBytes = clusterInfo.shardSize(shardRouting, 0);
+        if (usage.usedRatio(initializingBytes + shardBytes) > highWatermark) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("[{}][{}] of size [{}] can't be allocated on node with disk usage {}, it would get above the high watermark [{}]", shardRouting.index(), shardRouting.id(), shardBytes, usage, highWatermark);
+            }
+            return Decision.NO;
+        }
+        return Decision.YES;
+    }
+
+    @Override
+    public boolean canRemain(ShardRouting shardRouting, RoutingNode node, RoutingAllocation allocation) {
+        if (!enabled) {
+            return true;
+        }
+        ClusterInfo clusterInfo = clusterInfoService.clusterInfo();
+        DiskUsage usage = clusterInfo.nodeDiskUsage(node.nodeId());
+        if (usage == null) {
+            return true;
+        }
+        // the shards already relocating off the node will free their space
+        long relocatingBytes = 0;
+        List<MutableShardRouting> shards = node.shards();
+        for (int i = 0; i < shards.size(); i++) {
+            MutableShardRouting nodeShard = shards.get(i);
+            if (nodeShard.relocating()) {
+                relocatingBytes += clusterInfo.shardSize(nodeShard, 0);
+            }
+        }
+        if (usage.usedRatio(-relocatingBytes) > highWatermark) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("[{}][{}] can't remain on node with disk usage {}, above the high watermark [{}]", shardRouting.index(), shardRouting.id(), usage, highWatermark);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Updates the watermark each node is above with the new cluster info, returning <tt>true</tt> if a node got
+     * above or back under a watermark since the previous update, in which case shards might need to move off it,
+     * or can be allocated on it again. Also returns <tt>true</tt> on the first update after the decider got enabled,
+     * since nodes might have crossed a watermark while it was disabled.
+     */
+    public synchronized boolean updateWatermarks(ClusterInfo clusterInfo) {
+        Map<String, Integer> aboveWatermark = new HashMap<String, Integer>();
+        for (DiskUsage usage : clusterInfo.nodesDiskUsage().values()) {
+            double usedRatio = usage.usedRatio();
+            int watermark = usedRatio > highWatermark ? ABOVE_HIGH_WATERMARK : (usedRatio > lowWatermark ? ABOVE_LOW_WATERMARK : UNDER_WATERMARKS);
+            if (watermark != UNDER_WATERMARKS) {
+                aboveWatermark.put(usage.nodeId(), watermark);
+            }
+        }
+        boolean changed = !aboveWatermark.equals(nodesAboveWatermark);
+        if (changed) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("nodes above the disk watermarks changed from {} to {}", nodesAboveWatermark, aboveWatermark);
+            }
+            nodesAboveWatermark.clear();
+            nodesAboveWatermark.putAll(aboveWatermark);
+        }
+        boolean enabled = this.enabled;
+        boolean gotEnabled = enabled && !enabledOnLastUpdate;
+        enabledOnLastUpdate = enabled;
+        return (changed || gotEnabled) && enabled;
+    }
+
+    private long sizeOfInitializingShards(RoutingNode node, ClusterInfo clusterInfo) {
+        long initializingBytes = 0;
+        List<MutableShardRouting> shards = node.shards();
+        for (int i = 0; i < shards.size(); i++) {
+            MutableShardRouting nodeShard = shards.get(i);
+            if (nodeShard.initializing()) {
+                initializingBytes += clusterInfo.shardSize(nodeShard, 0);
+            }
+        }
+        return initializingBytes;
+    }
+
+    /**
+     * Parses a watermark given as a percentage (<tt>85%</tt>) or a ratio (<tt>0.85</tt>) of the disk into a ratio.
+     */
+    static double parseWatermark(String watermark) throws ElasticSearchParseException {
+        try {
+            double ratio;
+            if (watermark.endsWith("%")) {
+                ratio = Double.parseDouble(watermark.substring(0, watermark.length() - 1)) / 100;
+            } else {
+                ratio = Double.parseDouble(watermark);
+            }
+            if (ratio < 0 || ratio > 1) {
+                throw new ElasticSearchParseException("disk watermark [" + watermark + "] must be between 0% and 100%");
+            }
+            return ratio;
+        } catch (NumberFormatException e) {
+            throw new ElasticSearchParseException("failed to parse disk watermark [" + watermark + "]", e);
+        }
+    }
+}
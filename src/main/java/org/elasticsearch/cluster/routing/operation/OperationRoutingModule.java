@@ -49,5 +49,6 @@ public class OperationRoutingModule extends AbstractModule implements SpawnModul
     @Override
     protected void configure() {
         bind(HashFunction.class).to(settings.getAsClass("cluster.routing.operation.hash.type", DjbHashFunction.class, "org.elasticsearch.cluster.routing.operation.hash.", "HashFunction")).asEagerSingleton();
+        bind(ResponseCollector.class).asEagerSingleton();
     }
 }
@@ -0,0 +1,183 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.cluster.routing.operation;
+
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.metrics.ExponentiallyWeightedMovingAverage;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects, per node, the response time of the shard requests this node sent to it, the size of its search queue
+ * as reported in its responses, and the number of requests still outstanding, in order to rank the copies of a
+ * shard when routing searches (see {@link #rank(String)}). The statistics of a node are dropped once it leaves
+ * the cluster.
+ */
+public class ResponseCollector extends AbstractComponent implements ClusterStateListener {
+
+    private final ConcurrentMap<String, NodeStatistics> nodes = ConcurrentCollections.newConcurrentMap();
+
+    private final double alpha;
+
+    private final long expireInNanos;
+
+    public ResponseCollector(Settings settings) {
+        super(settings);
+        this.alpha = componentSettings.getAsDouble("alpha", 0.3);
+        // stats of a node we stopped sending requests to (since it ranked badly) expire, so it gets probed again
+        this.expireInNanos = componentSettings.getAsTime("expire", TimeValue.timeValueSeconds(30)).nanos();
+    }
+
+    @Inject
+    public ResponseCollector(Settings settings, ClusterService clusterService) {
+        this(settings);
+        clusterService.add(this);
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        if (!event.nodesRemoved()) {
+            return;
+        }
+        for (DiscoveryNode node : event.nodesDelta().removedNodes()) {
+            nodes.remove(node.id());
+        }
+    }
+
+    public void onRequestSent(String nodeId) {
+        NodeStatistics stats = nodes.get(nodeId);
+        if (stats == null) {
+            NodeStatistics newStats = new NodeStatistics();
+            stats = nodes.putIfAbsent(nodeId, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        stats.outstandingRequests.incrementAndGet();
+    }
+
+    /**
+     * @param queueSize the search queue size reported by the node, <tt>-1</tt> if the response did not include it
+     */
+    public void onResponse(String nodeId, int queueSize, long responseTimeInNanos) {
+        NodeStatistics stats = nodes.get(nodeId);
+        if (stats == null) {
+            return;
+        }
+        stats.outstandingRequests.decrementAndGet();
+        stats.addResponse(queueSize, responseTimeInNanos, alpha, expireInNanos);
+    }
+
+    public void onFailure(String nodeId) {
+        NodeStatistics stats = nodes.get(nodeId);
+        if (stats == null) {
+            return;
+        }
+        stats.outstandingRequests.decrementAndGet();
+    }
+
+    /**
+     * Ranks the node, lower is better. The rank is the average response time, penalized by the cube of the load
+     * expected on the node (outstanding requests plus the average search queue), in the spirit of the C3 replica
+     * ranking, so the fastest node is preferred until its load builds up and the other copies take over. Nodes
+     * with no (or expired) statistics are assumed to respond as fast as the fastest known node, so they get
+     * probed, while the requests still outstanding on them keep counting against them.
+     */
+    public double rank(String nodeId) {
+        return rank(nodeId, fastestResponseTime());
+    }
+
+    /**
+     * Ranks the node as {@link #rank(String)} does, with the {@link #fastestResponseTime()} computed once for all
+     * the nodes ranked in a routing pass.
+     */
+    public double rank(String nodeId, double fastestResponseTime) {
+        NodeStatistics stats = nodes.get(nodeId);
+        if (stats == null) {
+            return fastestResponseTime;
+        }
+        int outstanding = stats.outstandingRequests.get();
+        // the queue size is always set before the response time
+        ExponentiallyWeightedMovingAverage responseTime = stats.responseTime;
+        // statistics of a node with requests still in flight don't expire, a node that stopped responding is
+        // exactly the one we want to keep avoiding
+        if (responseTime == null || (outstanding == 0 && expired(stats))) {
+            double load = 1 + outstanding;
+            return fastestResponseTime * load * load * load;
+        }
+        double load = 1 + outstanding + stats.queueSize.getAverage();
+        return responseTime.getAverage() * load * load * load;
+    }
+
+    private boolean expired(NodeStatistics stats) {
+        return (System.nanoTime() - stats.lastResponseNanos) > expireInNanos;
+    }
+
+    /**
+     * The lowest average response time across nodes with fresh statistics, <tt>1</tt> if there are none, in which
+     * case nodes are ranked by their load alone. Goes over all the nodes.
+     */
+    public double fastestResponseTime() {
+        double fastest = Double.MAX_VALUE;
+        for (NodeStatistics stats : nodes.values()) {
+            ExponentiallyWeightedMovingAverage responseTime = stats.responseTime;
+            if (responseTime != null && (stats.outstandingRequests.get() > 0 || !expired(stats))) {
+                fastest = Math.min(fastest, responseTime.getAverage());
+            }
+        }
+        return fastest == Double.MAX_VALUE ? 1 : fastest;
+    }
+
+    static class NodeStatistics {
+
+        final AtomicInteger outstandingRequests = new AtomicInteger();
+
+        volatile ExponentiallyWeightedMovingAverage responseTime;
+
+        volatile ExponentiallyWeightedMovingAverage queueSize;
+
+        volatile long lastResponseNanos;
+
+        synchronized void addResponse(int queueSize, long responseTimeInNanos, double alpha, long expireInNanos) {
+            long now = System.nanoTime();
+            if (responseTime == null || (now - lastResponseNanos) > expireInNanos) {
+                // start over, the previous statistics are too old to tell anything about the node
+                this.queueSize = new ExponentiallyWeightedMovingAverage(alpha, Math.max(queueSize, 0));
+                responseTime = new ExponentiallyWeightedMovingAverage(alpha, responseTimeInNanos);
+            } else {
+                responseTime.addValue(responseTimeInNanos);
+                if (queueSize >= 0) {
+                    this.queueSize.addValue(queueSize);
+                }
+            }
+            lastResponseNanos = now;
+        }
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.cluster.routing.operation.plain;
 
+import gnu.trove.map.hash.TObjectDoubleHashMap;
 import org.elasticsearch.ElasticSearchIllegalArgumentException;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
@@ -26,9 +27,12 @@ import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
 import org.elasticsearch.cluster.routing.IndexRoutingTable;
 import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
+import org.elasticsearch.cluster.routing.PlainShardIterator;
 import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.routing.allocation.decider.AwarenessAllocationDecider;
 import org.elasticsearch.cluster.routing.operation.OperationRouting;
+import org.elasticsearch.cluster.routing.operation.ResponseCollector;
 import org.elasticsearch.cluster.routing.operation.hash.HashFunction;
 import org.elasticsearch.cluster.routing.operation.hash.djb.DjbHashFunction;
 import org.elasticsearch.common.Nullable;
@@ -40,10 +44,7 @@ import org.elasticsearch.index.IndexShardMissingException;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.IndexMissingException;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /**
  *
@@ -56,12 +57,19 @@ public class PlainOperationRouting extends AbstractComponent implements Operatio
 
     private final AwarenessAllocationDecider awarenessAllocationDecider;
 
+    private final ResponseCollector responseCollector;
+
+    private final boolean adaptiveReplicaSelection;
+
     @Inject
-    public PlainOperationRouting(Settings indexSettings, HashFunction hashFunction, AwarenessAllocationDecider awarenessAllocationDecider) {
+    public PlainOperationRouting(Settings indexSettings, HashFunction hashFunction, AwarenessAllocationDecider awarenessAllocationDecider,
+                                 ResponseCollector responseCollector) {
         super(indexSettings);
         this.hashFunction = hashFunction;
         this.useType = indexSettings.getAsBoolean("cluster.routing.operation.use_type", false);
         this.awarenessAllocationDecider = awarenessAllocationDecider;
+        this.responseCollector = responseCollector;
+        this.adaptiveReplicaSelection = indexSettings.getAsBoolean("cluster.routing.operation.adaptive_replica_selection", true);
     }
 
     @Override
@@ -148,6 +156,8 @@ public class PlainOperationRouting extends AbstractComponent implements Operatio
         if (concreteIndices == null || concreteIndices.length == 0) {
             concreteIndices = clusterState.metaData().concreteAllOpenIndices();
         }
+        // the same for all the shards, so only computed once
+        double fastestResponseTime = adaptiveReplicaSelection ? responseCollector.fastestResponseTime() : 1;
 
         if (routing != null) {
             // we use set here and not list since we might get duplicates
@@ -163,7 +173,7 @@ public class PlainOperationRouting extends AbstractComponent implements Operatio
                             throw new IndexShardMissingException(new ShardId(index, shardId));
                         }
                         // we might get duplicates, but that's ok, they will override one another
-                        set.add(preferenceActiveShardIterator(indexShard, clusterState.nodes().localNodeId(), clusterState.nodes(), preference));
+                        set.add(searchShardIterator(indexShard, clusterState.nodes().localNodeId(), clusterState.nodes(), preference, fastestResponseTime));
                     }
                 }
             }
@@ -174,13 +184,40 @@ public class PlainOperationRouting extends AbstractComponent implements Operatio
             for (String index : concreteIndices) {
                 IndexRoutingTable indexRouting = indexRoutingTable(clusterState, index);
                 for (IndexShardRoutingTable indexShard : indexRouting) {
-                    set.add(preferenceActiveShardIterator(indexShard, clusterState.nodes().localNodeId(), clusterState.nodes(), preference));
+                    set.add(searchShardIterator(indexShard, clusterState.nodes().localNodeId(), clusterState.nodes(), preference, fastestResponseTime));
                 }
             }
             return new GroupShardsIterator(set);
         }
     }
 
+    private ShardIterator searchShardIterator(IndexShardRoutingTable indexShard, String localNodeId, DiscoveryNodes nodes, @Nullable String preference,
+                                              double fastestResponseTime) {
+        if (!adaptiveReplicaSelection || preference != null || awarenessAllocationDecider.awarenessAttributes().length != 0) {
+            return preferenceActiveShardIterator(indexShard, localNodeId, nodes, preference);
+        }
+        // start from the round robin order, so copies that rank the same keep being rotated
+        ShardIterator shardIt = indexShard.activeShardsRandomIt();
+        if (shardIt.size() <= 1) {
+            return shardIt;
+        }
+        final TObjectDoubleHashMap<String> ranks = new TObjectDoubleHashMap<String>(shardIt.size());
+        List<ShardRouting> shards = new ArrayList<ShardRouting>(shardIt.size());
+        for (ShardRouting shard = shardIt.nextOrNull(); shard != null; shard = shardIt.nextOrNull()) {
+            shards.add(shard);
+            if (!ranks.containsKey(shard.currentNodeId())) {
+                ranks.put(shard.currentNodeId(), responseCollector.rank(shard.currentNodeId(), fastestResponseTime));
+            }
+        }
+        Collections.sort(shards, new Comparator<ShardRouting>() {
+            @Override
+            public int compare(ShardRouting o1, ShardRouting o2) {
+                return Double.compare(ranks.get(o1.currentNodeId()), ranks.get(o2.currentNodeId()));
+            }
+        });
+        return new PlainShardIterator(indexShard.shardId(), shards);
+    }
+
     private ShardIterator preferenceActiveShardIterator(IndexShardRoutingTable indexShard, String localNodeId, DiscoveryNodes nodes, @Nullable String preference) {
         if (preference == null) {
             String[] awarenessAttributes = awarenessAllocationDecider.awarenessAttributes();
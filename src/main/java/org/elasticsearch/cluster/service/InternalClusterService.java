@@ -32,6 +32,7 @@ import org.elasticsearch.cluster.routing.RoutingTable;
 import org.elasticsearch.cluster.routing.operation.OperationRouting;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.discovery.Discovery;
@@ -40,6 +41,7 @@ import org.elasticsearch.node.settings.NodeSettingsService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportService;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
@@ -78,6 +80,12 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
 
     private final Queue<NotifyTimeout> onGoingTimeouts = new LinkedTransferQueue<NotifyTimeout>();
 
+    private final Queue<UpdateTask> pendingTasks = new LinkedTransferQueue<UpdateTask>();
+
+    private final int maxBatchSize;
+
+    private final MeanMetric batchSizeMetric = new MeanMetric();
+
     private volatile ClusterState clusterState = newClusterStateBuilder().build();
 
     private final ClusterBlocks.Builder initialBlocks = ClusterBlocks.builder().addGlobalBlock(Discovery.NO_MASTER_BLOCK);
@@ -97,6 +105,7 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
         this.nodeSettingsService.setClusterService(this);
 
         this.reconnectInterval = componentSettings.getAsTime("reconnect_interval", TimeValue.timeValueSeconds(10));
+        this.maxBatchSize = componentSettings.getAsInt("max_batch_size", 100);
     }
 
     public NodeSettingsService settingsService() {
@@ -194,141 +203,214 @@ public class InternalClusterService extends AbstractLifecycleComponent<ClusterSe
     }
 
     public void submitStateUpdateTask(final String source, final ClusterStateUpdateTask updateTask) {
+        submitStateUpdateTask(source, updateTask, false);
+    }
+
+    public void submitBatchedStateUpdateTask(final String source, final ClusterStateUpdateTask updateTask) {
+        submitStateUpdateTask(source, updateTask, true);
+    }
+
+    private void submitStateUpdateTask(final String source, final ClusterStateUpdateTask updateTask, boolean batched) {
         if (!lifecycle.started()) {
             return;
         }
+        pendingTasks.add(new UpdateTask(source, updateTask, batched));
+        // each submitted task gets its own run, a run that finds its task already processed as part of a batch does nothing
         updateTasksExecutor.execute(new Runnable() {
             @Override
             public void run() {
-                if (!lifecycle.started()) {
-                    logger.debug("processing [{}]: ignoring, cluster_service not started", source);
+                UpdateTask task = pendingTasks.poll();
+                if (task == null) {
                     return;
                 }
-                logger.debug("processing [{}]: execute", source);
-                ClusterState previousClusterState = clusterState;
-                ClusterState newClusterState;
-                try {
-                    newClusterState = updateTask.execute(previousClusterState);
-                } catch (Exception e) {
-                    StringBuilder sb = new StringBuilder("failed to execute cluster state update, state:\nversion [").append(previousClusterState.version()).append("], source [").append(source).append("]\n");
-                    sb.append(previousClusterState.nodes().prettyPrint());
-                    sb.append(previousClusterState.routingTable().prettyPrint());
-                    sb.append(previousClusterState.readOnlyRoutingNodes().prettyPrint());
-                    logger.warn(sb.toString(), e);
-                    return;
-                }
-
-                if (previousClusterState == newClusterState) {
-                    logger.debug("processing [{}]: no change in cluster_state", source);
+                if (!lifecycle.started()) {
+                    logger.debug("processing [{}]: ignoring, cluster_service not started", task.source);
                     return;
                 }
-
-                try {
-                    if (newClusterState.nodes().localNodeMaster()) {
-                        // only the master controls the version numbers
-                        Builder builder = ClusterState.builder().state(newClusterState).version(newClusterState.version() + 1);
-                        if (previousClusterState.routingTable() != newClusterState.routingTable()) {
-                            builder.routingTable(RoutingTable.builder().routingTable(newClusterState.routingTable()).version(newClusterState.routingTable().version() + 1));
-                        }
-                        if (previousClusterState.metaData() != newClusterState.metaData()) {
-                            builder.metaData(MetaData.builder().metaData(newClusterState.metaData()).version(newClusterState.metaData().version() + 1));
-                        }
-                        newClusterState = builder.build();
-                    } else {
-                        if (previousClusterState.blocks().hasGlobalBlock(Discovery.NO_MASTER_BLOCK) && !newClusterState.blocks().hasGlobalBlock(Discovery.NO_MASTER_BLOCK)) {
-                            // force an update, its a fresh update from the master as we transition from a start of not having a master to having one
-                            // have a fresh instances of routing and metadata to remove the chance that version might be the same
-                            Builder builder = ClusterState.builder().state(newClusterState);
-                            builder.routingTable(RoutingTable.builder().routingTable(newClusterState.routingTable()));
-                            builder.metaData(MetaData.builder().metaData(newClusterState.metaData()));
-                            newClusterState = builder.build();
-                            logger.debug("got first state from fresh master [{}]", newClusterState.nodes().masterNodeId());
-                        } else if (newClusterState.version() < previousClusterState.version()) {
-                            // we got this cluster state from the master, filter out based on versions (don't call listeners)
-                            logger.debug("got old cluster state [" + newClusterState.version() + "<" + previousClusterState.version() + "] from source [" + source + "], ignoring");
-                            return;
+                List<UpdateTask> batch = new ArrayList<UpdateTask>();
+                batch.add(task);
+                if (task.batched) {
+                    // drain the consecutive batched tasks, so they will be executed against one state and published once
+                    while (batch.size() < maxBatchSize) {
+                        UpdateTask next = pendingTasks.peek();
+                        if (next == null || !next.batched) {
+                            break;
                         }
+                        batch.add(pendingTasks.poll());
                     }
+                }
+                batchSizeMetric.inc(batch.size());
+                runTasks(batch);
+            }
+        });
+    }
 
-                    if (logger.isTraceEnabled()) {
-                        StringBuilder sb = new StringBuilder("cluster state updated:\nversion [").append(newClusterState.version()).append("], source [").append(source).append("]\n");
-                        sb.append(newClusterState.nodes().prettyPrint());
-                        sb.append(newClusterState.routingTable().prettyPrint());
-                        sb.append(newClusterState.readOnlyRoutingNodes().prettyPrint());
-                        logger.trace(sb.toString());
-                    } else if (logger.isDebugEnabled()) {
-                        logger.debug("cluster state updated, version [{}], source [{}]", newClusterState.version(), source);
-                    }
+    @Override
+    public int numberOfPendingTasks() {
+        return pendingTasks.size();
+    }
 
-                    ClusterChangedEvent clusterChangedEvent = new ClusterChangedEvent(source, newClusterState, previousClusterState);
-                    // new cluster state, notify all listeners
-                    final DiscoveryNodes.Delta nodesDelta = clusterChangedEvent.nodesDelta();
-                    if (nodesDelta.hasChanges() && logger.isInfoEnabled()) {
-                        String summary = nodesDelta.shortSummary();
-                        if (summary.length() > 0) {
-                            logger.info("{}, reason: {}", summary, source);
-                        }
-                    }
+    @Override
+    public double averageBatchSize() {
+        return batchSizeMetric.mean();
+    }
 
-                    // TODO, do this in parallel (and wait)
-                    for (DiscoveryNode node : nodesDelta.addedNodes()) {
-                        if (!nodeRequiresConnection(node)) {
-                            continue;
-                        }
-                        try {
-                            transportService.connectToNode(node);
-                        } catch (Exception e) {
-                            // the fault detection will detect it as failed as well
-                            logger.warn("failed to connect to node [" + node + "]", e);
-                        }
-                    }
+    private void runTasks(List<UpdateTask> batch) {
+        String source;
+        if (batch.size() == 1) {
+            source = batch.get(0).source;
+        } else {
+            source = batch.get(0).source + " (batched with " + (batch.size() - 1) + " more tasks)";
+        }
+        logger.debug("processing [{}]: execute", source);
+        ClusterState previousClusterState = clusterState;
+        ClusterState newClusterState = previousClusterState;
+        // the tasks that changed the cluster state, only those are notified once it has been processed
+        List<ProcessedClusterStateUpdateTask> processedTasks = null;
+        for (UpdateTask task : batch) {
+            ClusterState taskClusterState;
+            try {
+                taskClusterState = task.updateTask.execute(newClusterState);
+            } catch (Exception e) {
+                StringBuilder sb = new StringBuilder("failed to execute cluster state update, state:\nversion [").append(newClusterState.version()).append("], source [").append(task.source).append("]\n");
+                sb.append(newClusterState.nodes().prettyPrint());
+                sb.append(newClusterState.routingTable().prettyPrint());
+                sb.append(newClusterState.readOnlyRoutingNodes().prettyPrint());
+                logger.warn(sb.toString(), e);
+                continue;
+            }
+            if (taskClusterState != newClusterState && task.updateTask instanceof ProcessedClusterStateUpdateTask) {
+                if (processedTasks == null) {
+                    processedTasks = new ArrayList<ProcessedClusterStateUpdateTask>();
+                }
+                processedTasks.add((ProcessedClusterStateUpdateTask) task.updateTask);
+            }
+            newClusterState = taskClusterState;
+        }
 
-                    // if we are the master, publish the new state to all nodes
-                    // we publish here before we send a notification to all the listeners, since if it fails
-                    // we don't want to notify
-                    if (newClusterState.nodes().localNodeMaster()) {
-                        discoveryService.publish(newClusterState);
-                    }
+        if (previousClusterState == newClusterState) {
+            logger.debug("processing [{}]: no change in cluster_state", source);
+            return;
+        }
 
-                    // update the current cluster state
-                    clusterState = newClusterState;
+        try {
+            if (newClusterState.nodes().localNodeMaster()) {
+                // only the master controls the version numbers
+                Builder builder = ClusterState.builder().state(newClusterState).version(newClusterState.version() + 1);
+                if (previousClusterState.routingTable() != newClusterState.routingTable()) {
+                    builder.routingTable(RoutingTable.builder().routingTable(newClusterState.routingTable()).version(newClusterState.routingTable().version() + 1));
+                }
+                if (previousClusterState.metaData() != newClusterState.metaData()) {
+                    builder.metaData(MetaData.builder().metaData(newClusterState.metaData()).version(newClusterState.metaData().version() + 1));
+                }
+                newClusterState = builder.build();
+            } else {
+                if (previousClusterState.blocks().hasGlobalBlock(Discovery.NO_MASTER_BLOCK) && !newClusterState.blocks().hasGlobalBlock(Discovery.NO_MASTER_BLOCK)) {
+                    // force an update, its a fresh update from the master as we transition from a start of not having a master to having one
+                    // have a fresh instances of routing and metadata to remove the chance that version might be the same
+                    Builder builder = ClusterState.builder().state(newClusterState);
+                    builder.routingTable(RoutingTable.builder().routingTable(newClusterState.routingTable()));
+                    builder.metaData(MetaData.builder().metaData(newClusterState.metaData()));
+                    newClusterState = builder.build();
+                    logger.debug("got first state from fresh master [{}]", newClusterState.nodes().masterNodeId());
+                } else if (newClusterState.version() < previousClusterState.version()) {
+                    // we got this cluster state from the master, filter out based on versions (don't call listeners)
+                    logger.debug("got old cluster state [" + newClusterState.version() + "<" + previousClusterState.version() + "] from source [" + source + "], ignoring");
+                    return;
+                }
+            }
 
-                    for (ClusterStateListener listener : priorityClusterStateListeners) {
-                        listener.clusterChanged(clusterChangedEvent);
-                    }
-                    for (ClusterStateListener listener : clusterStateListeners) {
-                        listener.clusterChanged(clusterChangedEvent);
-                    }
-                    for (ClusterStateListener listener : lastClusterStateListeners) {
-                        listener.clusterChanged(clusterChangedEvent);
-                    }
+            if (logger.isTraceEnabled()) {
+                StringBuilder sb = new StringBuilder("cluster state updated:\nversion [").append(newClusterState.version()).append("], source [").append(source).append("]\n");
+                sb.append(newClusterState.nodes().prettyPrint());
+                sb.append(newClusterState.routingTable().prettyPrint());
+                sb.append(newClusterState.readOnlyRoutingNodes().prettyPrint());
+                logger.trace(sb.toString());
+            } else if (logger.isDebugEnabled()) {
+                logger.debug("cluster state updated, version [{}], source [{}]", newClusterState.version(), source);
+            }
 
-                    if (!nodesDelta.removedNodes().isEmpty()) {
-                        threadPool.cached().execute(new Runnable() {
-                            @Override
-                            public void run() {
-                                for (DiscoveryNode node : nodesDelta.removedNodes()) {
-                                    transportService.disconnectFromNode(node);
-                                }
-                            }
-                        });
-                    }
+            ClusterChangedEvent clusterChangedEvent = new ClusterChangedEvent(source, newClusterState, previousClusterState);
+            // new cluster state, notify all listeners
+            final DiscoveryNodes.Delta nodesDelta = clusterChangedEvent.nodesDelta();
+            if (nodesDelta.hasChanges() && logger.isInfoEnabled()) {
+                String summary = nodesDelta.shortSummary();
+                if (summary.length() > 0) {
+                    logger.info("{}, reason: {}", summary, source);
+                }
+            }
 
+            // TODO, do this in parallel (and wait)
+            for (DiscoveryNode node : nodesDelta.addedNodes()) {
+                if (!nodeRequiresConnection(node)) {
+                    continue;
+                }
+                try {
+                    transportService.connectToNode(node);
+                } catch (Exception e) {
+                    // the fault detection will detect it as failed as well
+                    logger.warn("failed to connect to node [" + node + "]", e);
+                }
+            }
+
+            // if we are the master, publish the new state to all nodes
+            // we publish here before we send a notification to all the listeners, since if it fails
+            // we don't want to notify
+            if (newClusterState.nodes().localNodeMaster()) {
+                discoveryService.publish(newClusterState);
+            }
+
+            // update the current cluster state
+            clusterState = newClusterState;
 
-                    if (updateTask instanceof ProcessedClusterStateUpdateTask) {
-                        ((ProcessedClusterStateUpdateTask) updateTask).clusterStateProcessed(newClusterState);
+            for (ClusterStateListener listener : priorityClusterStateListeners) {
+                listener.clusterChanged(clusterChangedEvent);
+            }
+            for (ClusterStateListener listener : clusterStateListeners) {
+                listener.clusterChanged(clusterChangedEvent);
+            }
+            for (ClusterStateListener listener : lastClusterStateListeners) {
+                listener.clusterChanged(clusterChangedEvent);
+            }
+
+            if (!nodesDelta.removedNodes().isEmpty()) {
+                threadPool.cached().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (DiscoveryNode node : nodesDelta.removedNodes()) {
+                            transportService.disconnectFromNode(node);
+                        }
                     }
+                });
+            }
 
-                    logger.debug("processing [{}]: done applying updated cluster_state", source);
-                } catch (Exception e) {
-                    StringBuilder sb = new StringBuilder("failed to apply updated cluster state:\nversion [").append(newClusterState.version()).append("], source [").append(source).append("]\n");
-                    sb.append(newClusterState.nodes().prettyPrint());
-                    sb.append(newClusterState.routingTable().prettyPrint());
-                    sb.append(newClusterState.readOnlyRoutingNodes().prettyPrint());
-                    logger.warn(sb.toString(), e);
+
+            if (processedTasks != null) {
+                for (ProcessedClusterStateUpdateTask processedTask : processedTasks) {
+                    processedTask.clusterStateProcessed(newClusterState);
                 }
             }
-        });
+
+            logger.debug("processing [{}]: done applying updated cluster_state", source);
+        } catch (Exception e) {
+            StringBuilder sb = new StringBuilder("failed to apply updated cluster state:\nversion [").append(newClusterState.version()).append("], source [").append(source).append("]\n");
+            sb.append(newClusterState.nodes().prettyPrint());
+            sb.append(newClusterState.routingTable().prettyPrint());
+            sb.append(newClusterState.readOnlyRoutingNodes().prettyPrint());
+            logger.warn(sb.toString(), e);
+        }
+    }
+
+    static class UpdateTask {
+        final String source;
+        final ClusterStateUpdateTask updateTask;
+        final boolean batched;
+
+        UpdateTask(String source, ClusterStateUpdateTask updateTask, boolean batched) {
+            this.source = source;
+            this.updateTask = updateTask;
+            this.batched = batched;
+        }
     }
 
     class NotifyTimeout implements Runnable {
@@ -19,6 +19,9 @@
 
 package org.elasticsearch.common.bloom;
 
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.elasticsearch.ElasticSearchIllegalArgumentException;
 import org.elasticsearch.common.UUID;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.ESLoggerFactory;
@@ -26,6 +29,7 @@ import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.SizeValue;
 import org.elasticsearch.common.unit.TimeValue;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 
 /**
@@ -65,6 +69,20 @@ public class BloomFilterFactory {
         return new ObsBloomFilter(spec.K, bucketsFor(numElements, spec.bucketsPerElement));
     }
 
+    /**
+     * Writes a filter created by this factory, so it can be read back using {@link #readFilter(org.apache.lucene.store.IndexInput)}.
+     */
+    public static void writeFilter(BloomFilter filter, IndexOutput out) throws IOException {
+        if (!(filter instanceof ObsBloomFilter)) {
+            throw new ElasticSearchIllegalArgumentException("Can't write bloom filter of type [" + filter.getClass().getName() + "]");
+        }
+        ((ObsBloomFilter) filter).writeTo(out);
+    }
+
+    public static BloomFilter readFilter(IndexInput in) throws IOException {
+        return ObsBloomFilter.readFrom(in);
+    }
+
     private static long bucketsFor(long numElements, int bucketsPer) {
         return numElements * bucketsPer + EXCESS;
     }
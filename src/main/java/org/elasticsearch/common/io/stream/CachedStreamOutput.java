@@ -83,6 +83,13 @@ public class CachedStreamOutput {
             return handles;
         }
 
+        /**
+         * The number of bytes written through the LZF stream since it was last reset, before compression.
+         */
+        public long lzfUncompressedSize() {
+            return lzf == null ? 0 : lzf.uncompressedSize();
+        }
+
         public HandlesStreamOutput cachedHandlesBytes() throws IOException {
             handles.reset(bytes);
             return handles;
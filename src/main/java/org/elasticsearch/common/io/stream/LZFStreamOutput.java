@@ -39,6 +39,7 @@ public class LZFStreamOutput extends StreamOutput {
     protected byte[] _outputBuffer;
     protected int _position = 0;
 
+    private long _uncompressedSize = 0;
 
     /**
      * Configuration setting that governs whether basic 'flush()' should
@@ -101,6 +102,7 @@ public class LZFStreamOutput extends StreamOutput {
         // then write intermediate full block, if any, without copying:
         while (length >= BUFFER_LEN) {
             _encoder.encodeAndWriteChunk(buffer, offset, BUFFER_LEN, _outputStream);
+            _uncompressedSize += BUFFER_LEN;
             offset += BUFFER_LEN;
             length -= BUFFER_LEN;
         }
@@ -143,6 +145,7 @@ public class LZFStreamOutput extends StreamOutput {
     @Override
     public void reset() throws IOException {
         _position = 0;
+        _uncompressedSize = 0;
         _outputStream.reset();
     }
 
@@ -155,12 +158,20 @@ public class LZFStreamOutput extends StreamOutput {
         return this._outputStream;
     }
 
+    /**
+     * The number of bytes compressed into the wrapped stream since the last reset, only complete after a flush.
+     */
+    public long uncompressedSize() {
+        return _uncompressedSize;
+    }
+
     /**
      * Compress and write the current block to the OutputStream
      */
     private void writeCompressedBlock() throws IOException {
         int left = _position;
         _position = 0;
+        _uncompressedSize += left;
         int offset = 0;
 
         do {
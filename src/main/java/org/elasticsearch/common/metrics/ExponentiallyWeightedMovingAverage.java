@@ -0,0 +1,62 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An exponentially weighted moving average over samples, as opposed to {@link EWMA} which averages a rate
+ * over fixed tick intervals. Each added value moves the average by <tt>alpha</tt> of its difference with the
+ * current average.
+ */
+public class ExponentiallyWeightedMovingAverage {
+
+    private final double alpha;
+
+    private final AtomicLong averageBits;
+
+    /**
+     * @param alpha          the weight of a new value, between 0 and 1, higher values discount older values faster
+     * @param initialAverage the average before any value was added
+     */
+    public ExponentiallyWeightedMovingAverage(double alpha, double initialAverage) {
+        if (alpha < 0 || alpha > 1) {
+            throw new IllegalArgumentException("alpha must be between 0 and 1, got [" + alpha + "]");
+        }
+        this.alpha = alpha;
+        this.averageBits = new AtomicLong(Double.doubleToLongBits(initialAverage));
+    }
+
+    public double getAverage() {
+        return Double.longBitsToDouble(averageBits.get());
+    }
+
+    public void addValue(double newValue) {
+        while (true) {
+            long currentBits = averageBits.get();
+            double currentAverage = Double.longBitsToDouble(currentBits);
+            double newAverage = (alpha * newValue) + ((1 - alpha) * currentAverage);
+            if (averageBits.compareAndSet(currentBits, Double.doubleToLongBits(newAverage))) {
+                return;
+            }
+        }
+    }
+}
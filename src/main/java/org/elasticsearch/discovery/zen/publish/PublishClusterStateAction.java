@@ -25,14 +25,18 @@ import org.elasticsearch.common.BytesHolder;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.io.stream.*;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.discovery.zen.DiscoveryNodesProvider;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- *
+ * Publishes the cluster state to all the nodes. When a node has acknowledged the previously published
+ * cluster state, only the diff against it is sent, otherwise (or if the diff can't be applied on the node)
+ * the full cluster state is sent.
  */
 public class PublishClusterStateAction extends AbstractComponent {
 
@@ -46,12 +50,23 @@ public class PublishClusterStateAction extends AbstractComponent {
 
     private final NewClusterStateListener listener;
 
+    private final boolean diffEnabled;
+
+    // the last cluster state published by this node (when master), and the versions each node acknowledged
+    private volatile ClusterState lastPublishedState;
+
+    private final ConcurrentMap<String, Long> nodesAckedVersion = ConcurrentCollections.newConcurrentMap();
+
+    // the last cluster state received by this node from the master
+    private ClusterState lastReceivedState;
+
     public PublishClusterStateAction(Settings settings, TransportService transportService, DiscoveryNodesProvider nodesProvider,
                                      NewClusterStateListener listener) {
         super(settings);
         this.transportService = transportService;
         this.nodesProvider = nodesProvider;
         this.listener = listener;
+        this.diffEnabled = componentSettings.getAsBoolean("diff.enable", true);
 
         transportService.registerHandler(PublishClusterStateRequestHandler.ACTION, new PublishClusterStateRequestHandler());
     }
@@ -60,40 +75,104 @@ public class PublishClusterStateAction extends AbstractComponent {
         transportService.removeHandler(PublishClusterStateRequestHandler.ACTION);
     }
 
-    public void publish(ClusterState clusterState) {
+    public void publish(final ClusterState clusterState) {
         DiscoveryNode localNode = nodesProvider.nodes().localNode();
+        ClusterState previousState = lastPublishedState;
+        lastPublishedState = clusterState;
+        if (!diffEnabled || previousState == null || previousState.version() >= clusterState.version()) {
+            previousState = null;
+        }
 
         // serialize the cluster state here, so we won't do it several times per node
+        byte[] fullStateInBytes = null;
+        byte[] diffInBytes = null;
+
+        // drop nodes that are no longer part of the cluster
+        for (String nodeId : nodesAckedVersion.keySet()) {
+            if (!clusterState.nodes().nodeExists(nodeId)) {
+                nodesAckedVersion.remove(nodeId);
+            }
+        }
+
+        for (final DiscoveryNode node : clusterState.nodes()) {
+            if (node.equals(localNode)) {
+                // no need to send to our self
+                continue;
+            }
+            Long ackedVersion = nodesAckedVersion.get(node.id());
+            if (previousState != null && ackedVersion != null && ackedVersion == previousState.version()) {
+                if (diffInBytes == null) {
+                    diffInBytes = serialize(previousState, clusterState);
+                    if (diffInBytes == null) {
+                        // failed to serialize the diff, don't try again for the rest of the nodes
+                        previousState = null;
+                    }
+                }
+                if (diffInBytes != null) {
+                    sendClusterState(node, clusterState, diffInBytes, true);
+                    continue;
+                }
+            }
+            if (fullStateInBytes == null) {
+                fullStateInBytes = serialize(null, clusterState);
+                if (fullStateInBytes == null) {
+                    return;
+                }
+            }
+            sendClusterState(node, clusterState, fullStateInBytes, false);
+        }
+    }
+
+    private byte[] serialize(ClusterState previousState, ClusterState clusterState) {
         CachedStreamOutput.Entry cachedEntry = CachedStreamOutput.popEntry();
-        byte[] clusterStateInBytes;
         try {
             HandlesStreamOutput stream = cachedEntry.cachedHandlesLzfBytes();
-            ClusterState.Builder.writeTo(clusterState, stream);
+            if (previousState == null) {
+                stream.writeBoolean(false);
+                ClusterState.Builder.writeTo(clusterState, stream);
+            } else {
+                stream.writeBoolean(true);
+                stream.writeUTF(nodesProvider.nodes().localNodeId());
+                ClusterState.Builder.writeDiffTo(previousState, clusterState, stream);
+            }
             stream.flush();
-            clusterStateInBytes = cachedEntry.bytes().copiedByteArray();
+            return cachedEntry.bytes().copiedByteArray();
         } catch (Exception e) {
-            logger.warn("failed to serialize cluster_state before publishing it to nodes", e);
-            return;
+            logger.warn("failed to serialize cluster_state {}before publishing it to nodes", e, previousState == null ? "" : "diff ");
+            return null;
         } finally {
             CachedStreamOutput.pushEntry(cachedEntry);
         }
+    }
 
-        for (final DiscoveryNode node : clusterState.nodes()) {
-            if (node.equals(localNode)) {
-                // no need to send to our self
-                continue;
-            }
-            transportService.sendRequest(node, PublishClusterStateRequestHandler.ACTION,
-                    new PublishClusterStateRequest(clusterStateInBytes),
-                    TransportRequestOptions.options().withHighType().withCompress(false), // no need to compress, we already compressed the bytes
-
-                    new VoidTransportResponseHandler(ThreadPool.Names.SAME) {
-                        @Override
-                        public void handleException(TransportException exp) {
-                            logger.debug("failed to send cluster state to [{}], should be detected as failed soon...", exp, node);
+    private void sendClusterState(final DiscoveryNode node, final ClusterState clusterState, byte[] bytes, final boolean diff) {
+        transportService.sendRequest(node, PublishClusterStateRequestHandler.ACTION,
+                new PublishClusterStateRequest(bytes),
+                TransportRequestOptions.options().withHighType().withCompress(false), // no need to compress, we already compressed the bytes
+
+                new VoidTransportResponseHandler(ThreadPool.Names.SAME) {
+                    @Override
+                    public void handleResponse(VoidStreamable response) {
+                        nodesAckedVersion.put(node.id(), clusterState.version());
+                    }
+
+                    @Override
+                    public void handleException(TransportException exp) {
+                        nodesAckedVersion.remove(node.id());
+                        if (diff && exp.unwrapCause() instanceof IncompatibleClusterStateVersionException) {
+                            // only resend if no newer state was published in the meantime, it will be sent in full anyhow
+                            if (lastPublishedState == clusterState) {
+                                logger.debug("[{}] can't apply cluster state diff for version [{}], sending full cluster state", node, clusterState.version());
+                                byte[] fullStateInBytes = serialize(null, clusterState);
+                                if (fullStateInBytes != null) {
+                                    sendClusterState(node, clusterState, fullStateInBytes, false);
+                                }
+                            }
+                            return;
                         }
-                    });
-        }
+                        logger.debug("failed to send cluster state to [{}], should be detected as failed soon...", exp, node);
+                    }
+                });
     }
 
     class PublishClusterStateRequest implements Streamable {
@@ -130,7 +209,22 @@ public class PublishClusterStateAction extends AbstractComponent {
         @Override
         public void messageReceived(PublishClusterStateRequest request, TransportChannel channel) throws Exception {
             StreamInput in = CachedStreamInput.cachedHandlesLzf(new BytesStreamInput(request.clusterStateInBytes.bytes(), request.clusterStateInBytes.offset(), request.clusterStateInBytes.length(), false));
-            ClusterState clusterState = ClusterState.Builder.readFrom(in, nodesProvider.nodes().localNode());
+            ClusterState clusterState;
+            synchronized (PublishClusterStateAction.this) {
+                if (in.readBoolean()) {
+                    String masterNodeId = in.readUTF();
+                    long fromVersion = ClusterState.Builder.readDiffFromVersion(in);
+                    ClusterState previousState = lastReceivedState;
+                    if (previousState == null || previousState.version() != fromVersion || !masterNodeId.equals(previousState.nodes().masterNodeId())) {
+                        throw new IncompatibleClusterStateVersionException("received cluster state diff from [" + masterNodeId + "] against version [" + fromVersion + "], but local version is ["
+                                + (previousState == null ? "none" : previousState.version()) + "]");
+                    }
+                    clusterState = ClusterState.Builder.readDiffFrom(in, previousState, nodesProvider.nodes().localNode());
+                } else {
+                    clusterState = ClusterState.Builder.readFrom(in, nodesProvider.nodes().localNode());
+                }
+                lastReceivedState = clusterState;
+            }
             listener.onNewClusterState(clusterState);
             channel.sendResponse(VoidStreamable.INSTANCE);
         }
@@ -81,6 +81,11 @@ public class HttpServer extends AbstractLifecycleComponent<HttpServer> {
         public void dispatchRequest(HttpRequest request, HttpChannel channel) {
             server.internalDispatchRequest(request, channel);
         }
+
+        @Override
+        public StreamingRestHandler.ContentConsumer startStreaming(HttpRequest request, HttpChannel channel, StreamingRestHandler.FlowControl flowControl) {
+            return server.internalStartStreaming(request, channel, flowControl);
+        }
     }
 
     @Override
@@ -120,6 +125,13 @@ public class HttpServer extends AbstractLifecycleComponent<HttpServer> {
         restController.dispatchRequest(request, channel);
     }
 
+    public StreamingRestHandler.ContentConsumer internalStartStreaming(final HttpRequest request, final HttpChannel channel, StreamingRestHandler.FlowControl flowControl) {
+        if (request.rawPath().startsWith("/_plugin/")) {
+            return null;
+        }
+        return restController.startStreaming(request, channel, flowControl);
+    }
+
 
     class PluginSiteFilter extends RestFilter {
 
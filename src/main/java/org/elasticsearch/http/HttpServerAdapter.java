@@ -19,10 +19,20 @@
 
 package org.elasticsearch.http;
 
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.rest.StreamingRestHandler;
+
 /**
  *
  */
 public interface HttpServerAdapter {
 
     void dispatchRequest(HttpRequest request, HttpChannel channel);
+
+    /**
+     * Starts streaming the content of a request whose content is received in parts, returns <tt>null</tt> if
+     * the request should be aggregated and dispatched using {@link #dispatchRequest(HttpRequest, HttpChannel)}.
+     */
+    @Nullable
+    StreamingRestHandler.ContentConsumer startStreaming(HttpRequest request, HttpChannel channel, StreamingRestHandler.FlowControl flowControl);
 }
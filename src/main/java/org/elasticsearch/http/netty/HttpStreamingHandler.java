@@ -0,0 +1,106 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty;
+
+import org.elasticsearch.rest.StreamingRestHandler;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.*;
+import org.jboss.netty.handler.codec.http.*;
+
+/**
+ * Streams the content of chunked requests to rest handlers that support it (see {@link StreamingRestHandler}),
+ * instead of aggregating the whole content in memory. Requests that are not streamed are passed on to be
+ * aggregated. One instance is created per channel.
+ */
+public class HttpStreamingHandler extends SimpleChannelUpstreamHandler {
+
+    private final NettyHttpServerTransport serverTransport;
+
+    private StreamingRestHandler.ContentConsumer consumer;
+
+    public HttpStreamingHandler(NettyHttpServerTransport serverTransport) {
+        this.serverTransport = serverTransport;
+    }
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        Object message = e.getMessage();
+        if (consumer == null) {
+            if (message instanceof HttpRequest && ((HttpRequest) message).isChunked()) {
+                HttpRequest request = (HttpRequest) message;
+                consumer = serverTransport.startStreaming(new NettyHttpRequest(request), new NettyHttpChannel(serverTransport, e.getChannel(), request), new ChannelFlowControl(e.getChannel()));
+                if (consumer != null) {
+                    if (HttpHeaders.is100ContinueExpected(request)) {
+                        e.getChannel().write(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE));
+                    }
+                    return;
+                }
+            }
+            ctx.sendUpstream(e);
+            return;
+        }
+
+        HttpChunk chunk = (HttpChunk) message;
+        ChannelBuffer content = chunk.getContent();
+        if (content.readable()) {
+            if (content.hasArray()) {
+                consumer.onContent(content.array(), content.arrayOffset() + content.readerIndex(), content.readableBytes());
+            } else {
+                byte[] data = new byte[content.readableBytes()];
+                content.getBytes(content.readerIndex(), data);
+                consumer.onContent(data, 0, data.length);
+            }
+        }
+        if (chunk.isLast()) {
+            StreamingRestHandler.ContentConsumer consumer = this.consumer;
+            this.consumer = null;
+            consumer.onEnd();
+        }
+    }
+
+    @Override
+    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        if (consumer != null) {
+            StreamingRestHandler.ContentConsumer consumer = this.consumer;
+            this.consumer = null;
+            consumer.onClose();
+        }
+        super.channelClosed(ctx, e);
+    }
+
+    static class ChannelFlowControl implements StreamingRestHandler.FlowControl {
+
+        private final Channel channel;
+
+        ChannelFlowControl(Channel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void pause() {
+            channel.setReadable(false);
+        }
+
+        @Override
+        public void resume() {
+            channel.setReadable(true);
+        }
+    }
+}
@@ -34,6 +34,7 @@ import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.http.*;
 import org.elasticsearch.http.HttpRequest;
+import org.elasticsearch.rest.StreamingRestHandler;
 import org.elasticsearch.transport.BindTransportException;
 import org.elasticsearch.transport.netty.NettyInternalESLoggerFactory;
 import org.jboss.netty.bootstrap.ServerBootstrap;
@@ -71,6 +72,8 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
     private final NetworkService networkService;
 
     final ByteSizeValue maxContentLength;
+
+    final boolean streaming;
     final ByteSizeValue maxInitialLineLength;
     final ByteSizeValue maxHeaderSize;
     final ByteSizeValue maxChunkSize;
@@ -133,6 +136,8 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
         this.tcpSendBufferSize = componentSettings.getAsBytesSize("tcp_send_buffer_size", settings.getAsBytesSize(TCP_SEND_BUFFER_SIZE, TCP_DEFAULT_SEND_BUFFER_SIZE));
         this.tcpReceiveBufferSize = componentSettings.getAsBytesSize("tcp_receive_buffer_size", settings.getAsBytesSize(TCP_RECEIVE_BUFFER_SIZE, TCP_DEFAULT_RECEIVE_BUFFER_SIZE));
 
+        this.streaming = componentSettings.getAsBoolean("streaming", settings.getAsBoolean("http.streaming", true));
+
         this.compression = settings.getAsBoolean("http.compression", false);
         this.compressionLevel = settings.getAsInt("http.compression_level", 6);
 
@@ -259,6 +264,10 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
         httpServerAdapter.dispatchRequest(request, channel);
     }
 
+    StreamingRestHandler.ContentConsumer startStreaming(HttpRequest request, HttpChannel channel, StreamingRestHandler.FlowControl flowControl) {
+        return httpServerAdapter.startStreaming(request, channel, flowControl);
+    }
+
     void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
         if (e.getCause() instanceof ReadTimeoutException) {
             if (logger.isTraceEnabled()) {
@@ -303,6 +312,10 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
             if (transport.compression) {
                 pipeline.addLast("decoder_compress", new HttpContentDecompressor());
             }
+            if (transport.streaming) {
+                // streams the content of chunked requests to handlers that support it, before it gets aggregated
+                pipeline.addLast("streaming", new HttpStreamingHandler(transport));
+            }
             pipeline.addLast("aggregator", new HttpChunkAggregator((int) transport.maxContentLength.bytes()));
             pipeline.addLast("encoder", new HttpResponseEncoder());
             if (transport.compression) {
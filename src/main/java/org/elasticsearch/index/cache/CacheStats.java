@@ -23,6 +23,7 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentBuilderString;
@@ -35,19 +36,25 @@ import java.io.IOException;
 public class CacheStats implements Streamable, ToXContent {
 
     long fieldEvictions;
+    long fieldRejections;
     long filterEvictions;
     long filterCount;
     long fieldSize = 0;
+    long fieldOffHeapSize = 0;
+    long fieldLoadTime = 0;
     long filterSize = 0;
     long bloomSize = 0;
 
     public CacheStats() {
     }
 
-    public CacheStats(long fieldEvictions, long filterEvictions, long fieldSize, long filterSize, long filterCount, long bloomSize) {
+    public CacheStats(long fieldEvictions, long fieldRejections, long filterEvictions, long fieldSize, long fieldOffHeapSize, long fieldLoadTime, long filterSize, long filterCount, long bloomSize) {
         this.fieldEvictions = fieldEvictions;
+        this.fieldRejections = fieldRejections;
         this.filterEvictions = filterEvictions;
         this.fieldSize = fieldSize;
+        this.fieldOffHeapSize = fieldOffHeapSize;
+        this.fieldLoadTime = fieldLoadTime;
         this.filterSize = filterSize;
         this.filterCount = filterCount;
         this.bloomSize = bloomSize;
@@ -55,8 +62,11 @@ public class CacheStats implements Streamable, ToXContent {
 
     public void add(CacheStats stats) {
         this.fieldEvictions += stats.fieldEvictions;
+        this.fieldRejections += stats.fieldRejections;
         this.filterEvictions += stats.filterEvictions;
         this.fieldSize += stats.fieldSize;
+        this.fieldOffHeapSize += stats.fieldOffHeapSize;
+        this.fieldLoadTime += stats.fieldLoadTime;
         this.filterSize += stats.filterSize;
         this.filterCount += stats.filterCount;
         this.bloomSize += stats.bloomSize;
@@ -70,6 +80,17 @@ public class CacheStats implements Streamable, ToXContent {
         return this.fieldEvictions();
     }
 
+    /**
+     * The number of field data loads rejected because the field data would not fit the cache.
+     */
+    public long fieldRejections() {
+        return this.fieldRejections;
+    }
+
+    public long getFieldRejections() {
+        return this.fieldRejections();
+    }
+
     public long filterEvictions() {
         return this.filterEvictions;
     }
@@ -110,6 +131,44 @@ public class CacheStats implements Streamable, ToXContent {
         return this.fieldSize();
     }
 
+    /**
+     * The native memory held by the <tt>off_heap</tt> field data cache. Only the per document
+     * ordinals of single valued field data are kept off heap, the values and string terms are
+     * still on the heap and counted in {@link #fieldSizeInBytes()}. Evicted ordinals are included
+     * until the segment they were loaded for is closed, which is when their memory is released.
+     */
+    public long fieldOffHeapSizeInBytes() {
+        return this.fieldOffHeapSize;
+    }
+
+    public long getFieldOffHeapSizeInBytes() {
+        return fieldOffHeapSizeInBytes();
+    }
+
+    public ByteSizeValue fieldOffHeapSize() {
+        return new ByteSizeValue(fieldOffHeapSize);
+    }
+
+    public ByteSizeValue getFieldOffHeapSize() {
+        return this.fieldOffHeapSize();
+    }
+
+    public long fieldLoadTimeInMillis() {
+        return this.fieldLoadTime;
+    }
+
+    public long getFieldLoadTimeInMillis() {
+        return fieldLoadTimeInMillis();
+    }
+
+    public TimeValue fieldLoadTime() {
+        return new TimeValue(fieldLoadTime);
+    }
+
+    public TimeValue getFieldLoadTime() {
+        return fieldLoadTime();
+    }
+
     public long filterSizeInBytes() {
         return this.filterSize;
     }
@@ -146,8 +205,13 @@ public class CacheStats implements Streamable, ToXContent {
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject(Fields.CACHE);
         builder.field(Fields.FIELD_EVICTIONS, fieldEvictions);
+        builder.field(Fields.FIELD_REJECTIONS, fieldRejections);
         builder.field(Fields.FIELD_SIZE, fieldSize().toString());
         builder.field(Fields.FIELD_SIZE_IN_BYTES, fieldSize);
+        builder.field(Fields.FIELD_OFF_HEAP_SIZE, fieldOffHeapSize().toString());
+        builder.field(Fields.FIELD_OFF_HEAP_SIZE_IN_BYTES, fieldOffHeapSize);
+        builder.field(Fields.FIELD_LOAD_TIME, fieldLoadTime().toString());
+        builder.field(Fields.FIELD_LOAD_TIME_IN_MILLIS, fieldLoadTime);
         builder.field(Fields.FILTER_COUNT, filterCount);
         builder.field(Fields.FILTER_EVICTIONS, filterEvictions);
         builder.field(Fields.FILTER_SIZE, filterSize().toString());
@@ -160,7 +224,12 @@ public class CacheStats implements Streamable, ToXContent {
         static final XContentBuilderString CACHE = new XContentBuilderString("cache");
         static final XContentBuilderString FIELD_SIZE = new XContentBuilderString("field_size");
         static final XContentBuilderString FIELD_SIZE_IN_BYTES = new XContentBuilderString("field_size_in_bytes");
+        static final XContentBuilderString FIELD_OFF_HEAP_SIZE = new XContentBuilderString("field_off_heap_size");
+        static final XContentBuilderString FIELD_OFF_HEAP_SIZE_IN_BYTES = new XContentBuilderString("field_off_heap_size_in_bytes");
+        static final XContentBuilderString FIELD_LOAD_TIME = new XContentBuilderString("field_load_time");
+        static final XContentBuilderString FIELD_LOAD_TIME_IN_MILLIS = new XContentBuilderString("field_load_time_in_millis");
         static final XContentBuilderString FIELD_EVICTIONS = new XContentBuilderString("field_evictions");
+        static final XContentBuilderString FIELD_REJECTIONS = new XContentBuilderString("field_rejections");
         static final XContentBuilderString FILTER_EVICTIONS = new XContentBuilderString("filter_evictions");
         static final XContentBuilderString FILTER_COUNT = new XContentBuilderString("filter_count");
         static final XContentBuilderString FILTER_SIZE = new XContentBuilderString("filter_size");
@@ -176,8 +245,11 @@ public class CacheStats implements Streamable, ToXContent {
     @Override
     public void readFrom(StreamInput in) throws IOException {
         fieldEvictions = in.readVLong();
+        fieldRejections = in.readVLong();
         filterEvictions = in.readVLong();
         fieldSize = in.readVLong();
+        fieldOffHeapSize = in.readVLong();
+        fieldLoadTime = in.readVLong();
         filterSize = in.readVLong();
         filterCount = in.readVLong();
         bloomSize = in.readVLong();
@@ -186,8 +258,11 @@ public class CacheStats implements Streamable, ToXContent {
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         out.writeVLong(fieldEvictions);
+        out.writeVLong(fieldRejections);
         out.writeVLong(filterEvictions);
         out.writeVLong(fieldSize);
+        out.writeVLong(fieldOffHeapSize);
+        out.writeVLong(fieldLoadTime);
         out.writeVLong(filterSize);
         out.writeVLong(filterCount);
         out.writeVLong(bloomSize);
@@ -0,0 +1,177 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.cache.bloom;
+
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bloom.BloomFilter;
+import org.elasticsearch.common.bloom.BloomFilterFactory;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Persists the bloom filter of a field of a segment next to the segment files, so it does not have to be
+ * rebuilt from the segment terms each time the segment is opened.
+ * <p/>
+ * Segment names might get reused after a failure (for segments that were never committed), so the filter
+ * file records the number of docs and the size of the segment it was built for, and {@link #deleteUnused(org.apache.lucene.store.Directory)}
+ * should be called once the index writer is opened, before the filters are used.
+ * <p/>
+ * A persisted filter is read fully into a heap bit set (lookups need random access to its bits), reading it
+ * only saves going over the segment terms.
+ */
+public class SegmentBloomFilters {
+
+    public static final String EXTENSION = "bloom";
+
+    private static final int MAGIC = 0x424c4f4f; // BLOO
+
+    private static final int VERSION = 0;
+
+    public static String fileName(String segment, String field) {
+        return segment + "_" + field + "." + EXTENSION;
+    }
+
+    public static boolean isBloomFilterFile(String fileName) {
+        return fileName.startsWith("_") && fileName.endsWith("." + EXTENSION);
+    }
+
+    /**
+     * Reads the persisted bloom filter of the segment field, returning <tt>null</tt> if there is none, or
+     * if it was built for a different segment with the same name.
+     */
+    @Nullable
+    public static BloomFilter read(SegmentInfo info, String field) throws IOException {
+        String fileName = fileName(info.name, field);
+        if (!info.dir.fileExists(fileName)) {
+            return null;
+        }
+        IndexInput in = info.dir.openInput(fileName);
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            if (in.readInt() != info.docCount || in.readLong() != segmentSize(info)) {
+                return null;
+            }
+            BloomFilter filter = BloomFilterFactory.readFilter(in);
+            if (in.getFilePointer() != in.length()) {
+                return null;
+            }
+            return filter;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Persists the bloom filter of the segment field. Note, the filter must hold all the docs of the
+     * segment, including deleted ones, since it is reused across deletions.
+     */
+    public static void write(SegmentInfo info, String field, BloomFilter filter) throws IOException {
+        String fileName = fileName(info.name, field);
+        if (info.dir.fileExists(fileName)) {
+            info.dir.deleteFile(fileName);
+        }
+        IndexOutput out = info.dir.createOutput(fileName);
+        boolean success = false;
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(info.docCount);
+            out.writeLong(segmentSize(info));
+            BloomFilterFactory.writeFilter(filter, out);
+            out.close();
+            success = true;
+        } finally {
+            if (!success) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+                try {
+                    info.dir.deleteFile(fileName);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the persisted bloom filters of segments that no longer exist in the directory. Lucene only
+     * deletes the files of merged away segments once they are no longer referenced by a commit point, so
+     * this should be called after each commit as well.
+     */
+    public static void deleteUnused(Directory directory) throws IOException {
+        String[] files = directory.listAll();
+        Set<String> segments = new HashSet<String>();
+        for (String file : files) {
+            if (!isBloomFilterFile(file) && file.startsWith("_")) {
+                segments.add(segmentName(file));
+            }
+        }
+        for (String file : files) {
+            if (isBloomFilterFile(file) && !segments.contains(segmentName(file))) {
+                try {
+                    directory.deleteFile(file);
+                } catch (IOException e) {
+                    // ignore, will be deleted next time
+                }
+            }
+        }
+    }
+
+    /**
+     * Segment files are named <tt>_[segment].[ext]</tt> or <tt>_[segment]_[gen].[ext]</tt>.
+     */
+    private static String segmentName(String fileName) {
+        int index = 1;
+        while (index < fileName.length()) {
+            char c = fileName.charAt(index);
+            if (c == '.' || c == '_') {
+                break;
+            }
+            index++;
+        }
+        return fileName.substring(0, index);
+    }
+
+    /**
+     * The size of the segment files that never change for a segment, excluding deletions and separate norms.
+     */
+    private static long segmentSize(SegmentInfo info) throws IOException {
+        long size = 0;
+        for (String file : info.files()) {
+            String extension = file.substring(file.lastIndexOf('.') + 1);
+            if (extension.equals("del") || extension.matches("s\\d+")) {
+                continue;
+            }
+            size += info.dir.fileLength(file);
+        }
+        return size;
+    }
+}
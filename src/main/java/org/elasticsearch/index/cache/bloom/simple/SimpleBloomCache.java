@@ -20,6 +20,8 @@
 package org.elasticsearch.index.cache.bloom.simple;
 
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.index.SegmentReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermDocs;
 import org.apache.lucene.index.TermEnum;
@@ -31,6 +33,7 @@ import org.elasticsearch.common.Unicode;
 import org.elasticsearch.common.bloom.BloomFilter;
 import org.elasticsearch.common.bloom.BloomFilterFactory;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.SizeUnit;
 import org.elasticsearch.common.unit.SizeValue;
@@ -38,6 +41,7 @@ import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.AbstractIndexComponent;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.cache.bloom.BloomCache;
+import org.elasticsearch.index.cache.bloom.SegmentBloomFilters;
 import org.elasticsearch.index.settings.IndexSettings;
 import org.elasticsearch.threadpool.ThreadPool;
 
@@ -54,6 +58,8 @@ public class SimpleBloomCache extends AbstractIndexComponent implements BloomCac
 
     private final long maxSize;
 
+    private final boolean persist;
+
     private final ConcurrentMap<Object, ConcurrentMap<String, BloomFilterEntry>> cache;
 
     private final Object creationMutex = new Object();
@@ -64,6 +70,7 @@ public class SimpleBloomCache extends AbstractIndexComponent implements BloomCac
         this.threadPool = threadPool;
 
         this.maxSize = indexSettings.getAsSize("index.cache.bloom.max_size", new SizeValue(500, SizeUnit.MEGA)).singles();
+        this.persist = indexSettings.getAsBoolean("index.cache.bloom.persist", true);
         this.cache = ConcurrentCollections.newConcurrentMap();
     }
 
@@ -137,12 +144,19 @@ public class SimpleBloomCache extends AbstractIndexComponent implements BloomCac
             synchronized (fieldCache) {
                 filter = fieldCache.get(fieldName);
                 if (filter == null) {
+                    // if the filter was persisted for the segment, we can use it right away
+                    BloomFilter persisted = readPersisted(reader, fieldName);
+                    if (persisted != null) {
+                        filter = new BloomFilterEntry(currentNumDocs, persisted);
+                        fieldCache.put(fieldName, filter);
+                        return filter.filter;
+                    }
                     filter = new BloomFilterEntry(currentNumDocs, BloomFilter.NONE);
                     fieldCache.put(fieldName, filter);
                     // now, do the async load of it...
                     if (currentNumDocs < maxSize) {
                         filter.loading.set(true);
-                        BloomFilterLoader loader = new BloomFilterLoader(reader, fieldName);
+                        BloomFilterLoader loader = new BloomFilterLoader(reader, fieldName, persist);
                         if (asyncLoad) {
                             threadPool.cached().execute(loader);
                         } else {
@@ -156,8 +170,8 @@ public class SimpleBloomCache extends AbstractIndexComponent implements BloomCac
         // if we too many deletes, we need to reload the bloom filter so it will be more effective
         if (filter.numDocs > 1000 && filter.numDocs < maxSize && (currentNumDocs / filter.numDocs) < 0.6) {
             if (filter.loading.compareAndSet(false, true)) {
-                // do the async loading
-                BloomFilterLoader loader = new BloomFilterLoader(reader, fieldName);
+                // do the async loading, without persisting the filter since it only applies to the current deletions
+                BloomFilterLoader loader = new BloomFilterLoader(reader, fieldName, false);
                 if (asyncLoad) {
                     threadPool.cached().execute(loader);
                 } else {
@@ -169,13 +183,32 @@ public class SimpleBloomCache extends AbstractIndexComponent implements BloomCac
         return filter.filter;
     }
 
+    private BloomFilter readPersisted(IndexReader reader, String fieldName) {
+        if (!persist || !(reader instanceof SegmentReader)) {
+            return null;
+        }
+        SegmentInfo info = Lucene.getSegmentInfo((SegmentReader) reader);
+        if (info == null) {
+            return null;
+        }
+        try {
+            return SegmentBloomFilters.read(info, fieldName);
+        } catch (Exception e) {
+            // we will rebuild it
+            logger.debug("failed to read persisted bloom filter for [{}] on segment [{}]", e, fieldName, info.name);
+            return null;
+        }
+    }
+
     class BloomFilterLoader implements Runnable {
         private final IndexReader reader;
         private final String field;
+        private final SegmentInfo persistInfo;
 
-        BloomFilterLoader(IndexReader reader, String field) {
+        BloomFilterLoader(IndexReader reader, String field, boolean persist) {
             this.reader = reader;
             this.field = StringHelper.intern(field);
+            this.persistInfo = (persist && reader instanceof SegmentReader) ? Lucene.getSegmentInfo((SegmentReader) reader) : null;
         }
 
         @SuppressWarnings({"StringEquality"})
@@ -184,7 +217,7 @@ public class SimpleBloomCache extends AbstractIndexComponent implements BloomCac
             TermDocs termDocs = null;
             TermEnum termEnum = null;
             try {
-                BloomFilter filter = BloomFilterFactory.getFilter(reader.numDocs(), 15);
+                BloomFilter filter = BloomFilterFactory.getFilter(persistInfo != null ? reader.maxDoc() : reader.numDocs(), 15);
                 termDocs = reader.termDocs();
                 termEnum = reader.terms(new Term(field));
                 do {
@@ -193,6 +226,11 @@ public class SimpleBloomCache extends AbstractIndexComponent implements BloomCac
 
                     // LUCENE MONITOR: 4.0, move to use bytes!
                     UnicodeUtil.UTF8Result utf8Result = Unicode.fromStringAsUtf8(term.text());
+                    if (persistInfo != null) {
+                        // a persisted filter is reused across deletions, so it includes deleted docs as well
+                        filter.add(utf8Result.result, 0, utf8Result.length);
+                        continue;
+                    }
                     termDocs.seek(termEnum);
                     while (termDocs.next()) {
                         // when traversing, make sure to ignore deleted docs, so the key->docId will be correct
@@ -201,6 +239,13 @@ public class SimpleBloomCache extends AbstractIndexComponent implements BloomCac
                         }
                     }
                 } while (termEnum.next());
+                if (persistInfo != null) {
+                    try {
+                        SegmentBloomFilters.write(persistInfo, field, filter);
+                    } catch (Exception e) {
+                        logger.debug("failed to persist bloom filter for [{}] on segment [{}]", e, field, persistInfo.name);
+                    }
+                }
                 ConcurrentMap<String, BloomFilterEntry> fieldCache = cache.get(reader.getCoreCacheKey());
                 if (fieldCache != null) {
                     if (fieldCache.containsKey(field)) {
@@ -26,6 +26,7 @@ import org.elasticsearch.index.field.data.FieldData;
 import org.elasticsearch.index.field.data.FieldDataType;
 
 import java.io.IOException;
+import java.util.Map;
 
 /**
  *
@@ -44,7 +45,27 @@ public interface FieldDataCache extends IndexComponent, CloseableComponent {
 
     long evictions();
 
+    /**
+     * The number of field data loads rejected because the field data would not fit the cache.
+     */
+    long rejections();
+
+    /**
+     * The total time (in milliseconds) spent loading field data into the cache.
+     */
+    long loadTimeInMillis();
+
     long sizeInBytes();
 
     long sizeInBytes(String fieldName);
+
+    /**
+     * The size of the cached field data stored outside of the java heap.
+     */
+    long offHeapSizeInBytes();
+
+    /**
+     * The fields (index names) field data was loaded for since the cache was last cleared, with their type.
+     */
+    Map<String, FieldDataType> loadedFields();
 }
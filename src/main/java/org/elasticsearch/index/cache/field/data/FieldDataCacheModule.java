@@ -44,5 +44,6 @@ public class FieldDataCacheModule extends AbstractModule {
         bind(FieldDataCache.class)
                 .to(settings.getAsClass(FieldDataCacheSettings.FIELD_DATA_CACHE_TYPE, ResidentFieldDataCache.class, "org.elasticsearch.index.cache.field.data.", "FieldDataCache"))
                 .in(Scopes.SINGLETON);
+        bind(FieldDataWarmer.class).in(Scopes.SINGLETON);
     }
 }
@@ -0,0 +1,45 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.index.cache.field.data;
+
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexException;
+import org.elasticsearch.rest.RestStatus;
+
+/**
+ * Thrown when loading field data would exceed the memory the field data cache is allowed to use.
+ */
+public class FieldDataLoadingRejectedException extends IndexException {
+
+    public FieldDataLoadingRejectedException(Index index, String fieldName, long sizeInBytes, long limitInBytes) {
+        super(index, "loading field data for [" + fieldName + "] requires [" + new ByteSizeValue(sizeInBytes) + "], which is larger than the limit of [" + new ByteSizeValue(limitInBytes) + "]");
+    }
+
+    public FieldDataLoadingRejectedException(Index index, String fieldName, long estimatedSizeInBytes, long remainingInBytes, long budgetInBytes) {
+        super(index, "loading field data for [" + fieldName + "] is estimated to require at least [" + new ByteSizeValue(estimatedSizeInBytes) + "], which is more than the [" + new ByteSizeValue(remainingInBytes) + "] left of the node field data budget of [" + new ByteSizeValue(budgetInBytes) + "] (indices.cache.field.size) by other loads in progress");
+    }
+
+    @Override
+    public RestStatus status() {
+        return RestStatus.SERVICE_UNAVAILABLE;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.index.cache.field.data;
+
+import com.google.common.collect.Maps;
+import org.apache.lucene.index.IndexReader;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.AbstractIndexComponent;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.field.data.FieldDataType;
+import org.elasticsearch.index.mapper.FieldMapper;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.settings.IndexSettings;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads field data for the new segments of a reader before it is exposed to searches, so the first
+ * searches (sorting, facets) after a refresh don't pay for loading it. Only segments that were not
+ * part of the previous reader are warmed, each (segment, field) pair is loaded in parallel on the
+ * {@link ThreadPool.Names#WARMER} thread pool.
+ * <p/>
+ * The fields warmed are the ones configured using <tt>index.cache.field.warmer.fields</tt>, and the
+ * ones field data was already loaded for by searches.
+ * <p/>
+ * The refresh waits for the warm up up to <tt>index.cache.field.warmer.timeout</tt> (defaults to <tt>1s</tt>),
+ * after which the reader is exposed anyhow, and the field data keeps loading in the background.
+ */
+public class FieldDataWarmer extends AbstractIndexComponent {
+
+    private final ThreadPool threadPool;
+
+    private final FieldDataCache fieldDataCache;
+
+    private final MapperService mapperService;
+
+    private final boolean enabled;
+
+    private final String[] fields;
+
+    private final TimeValue timeout;
+
+    private final CounterMetric timeouts = new CounterMetric();
+
+    @Inject
+    public FieldDataWarmer(Index index, @IndexSettings Settings indexSettings, ThreadPool threadPool, FieldDataCache fieldDataCache, MapperService mapperService) {
+        super(index, indexSettings);
+        this.threadPool = threadPool;
+        this.fieldDataCache = fieldDataCache;
+        this.mapperService = mapperService;
+        this.enabled = indexSettings.getAsBoolean("index.cache.field.warmer.enabled", true);
+        this.fields = indexSettings.getAsArray("index.cache.field.warmer.fields");
+        this.timeout = indexSettings.getAsTime("index.cache.field.warmer.timeout", TimeValue.timeValueSeconds(1));
+    }
+
+    /**
+     * Warms the field data of the segments of the new reader which are not part of the previous one, blocking
+     * until done, or until the warm up times out, in which case the loading goes on in the background.
+     */
+    public void warm(IndexReader newReader, @Nullable IndexReader previousReader) {
+        if (!enabled) {
+            return;
+        }
+        final Map<String, FieldDataType> warmFields = fieldsToWarm();
+        if (warmFields.isEmpty()) {
+            return;
+        }
+        List<IndexReader> newSegments = newSegments(newReader, previousReader);
+        if (newSegments.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        final CountDownLatch latch = new CountDownLatch(newSegments.size() * warmFields.size());
+        for (final IndexReader segment : newSegments) {
+            for (final Map.Entry<String, FieldDataType> field : warmFields.entrySet()) {
+                threadPool.executor(ThreadPool.Names.WARMER).execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            fieldDataCache.cache(field.getValue(), segment, field.getKey());
+                        } catch (Exception e) {
+                            logger.warn("failed to warm field data for [{}]", e, field.getKey());
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                });
+            }
+        }
+        try {
+            if (!latch.await(timeout.millis(), TimeUnit.MILLISECONDS)) {
+                timeouts.inc();
+                logger.info("timed out warming field data for {} in [{}] segments after [{}], exposing the reader while loading in the background", warmFields.keySet(), newSegments.size(), timeout);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace("warmed field data for {} in [{}] segments, took [{}]", warmFields.keySet(), newSegments.size(), TimeValue.timeValueNanos(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * The number of warm ups that timed out, and exposed the reader before its field data was loaded.
+     */
+    public long timeouts() {
+        return timeouts.count();
+    }
+
+    private Map<String, FieldDataType> fieldsToWarm() {
+        Map<String, FieldDataType> warmFields = Maps.newHashMap(fieldDataCache.loadedFields());
+        for (String field : fields) {
+            FieldMapper mapper = mapperService.smartNameFieldMapper(field);
+            if (mapper == null) {
+                continue;
+            }
+            warmFields.put(mapper.names().indexName(), mapper.fieldDataType());
+        }
+        return warmFields;
+    }
+
+    private static List<IndexReader> newSegments(IndexReader newReader, @Nullable IndexReader previousReader) {
+        Set<Object> previousKeys = new HashSet<Object>();
+        if (previousReader != null) {
+            for (IndexReader segment : segments(previousReader)) {
+                previousKeys.add(segment.getCoreCacheKey());
+            }
+        }
+        List<IndexReader> newSegments = new ArrayList<IndexReader>();
+        for (IndexReader segment : segments(newReader)) {
+            if (!previousKeys.contains(segment.getCoreCacheKey())) {
+                newSegments.add(segment);
+            }
+        }
+        return newSegments;
+    }
+
+    private static IndexReader[] segments(IndexReader reader) {
+        IndexReader[] segments = reader.getSequentialSubReaders();
+        if (segments == null) {
+            return new IndexReader[]{reader};
+        }
+        return segments;
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.cache.field.data.none;
 
+import com.google.common.collect.ImmutableMap;
 import org.apache.lucene.index.IndexReader;
 import org.elasticsearch.ElasticSearchException;
 import org.elasticsearch.common.inject.Inject;
@@ -31,6 +32,7 @@ import org.elasticsearch.index.field.data.FieldDataType;
 import org.elasticsearch.index.settings.IndexSettings;
 
 import java.io.IOException;
+import java.util.Map;
 
 /**
  *
@@ -80,6 +82,26 @@ public class NoneFieldDataCache extends AbstractIndexComponent implements FieldD
         return 0;
     }
 
+    @Override
+    public long offHeapSizeInBytes() {
+        return 0;
+    }
+
+    @Override
+    public Map<String, FieldDataType> loadedFields() {
+        return ImmutableMap.of();
+    }
+
+    @Override
+    public long rejections() {
+        return 0;
+    }
+
+    @Override
+    public long loadTimeInMillis() {
+        return 0;
+    }
+
     @Override
     public long evictions() {
         return 0;
@@ -0,0 +1,183 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.cache.field.data.offheap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import org.apache.lucene.index.IndexReader;
+import org.elasticsearch.common.cache.CacheBuilderHelper;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.cache.field.data.support.AbstractConcurrentMapFieldDataCache;
+import org.elasticsearch.index.field.data.FieldData;
+import org.elasticsearch.index.field.data.FieldDataType;
+import org.elasticsearch.index.field.data.bytes.OffHeapSingleValueByteFieldData;
+import org.elasticsearch.index.field.data.bytes.SingleValueByteFieldData;
+import org.elasticsearch.index.field.data.doubles.OffHeapSingleValueDoubleFieldData;
+import org.elasticsearch.index.field.data.doubles.SingleValueDoubleFieldData;
+import org.elasticsearch.index.field.data.floats.OffHeapSingleValueFloatFieldData;
+import org.elasticsearch.index.field.data.floats.SingleValueFloatFieldData;
+import org.elasticsearch.index.field.data.ints.OffHeapSingleValueIntFieldData;
+import org.elasticsearch.index.field.data.ints.SingleValueIntFieldData;
+import org.elasticsearch.index.field.data.longs.OffHeapSingleValueLongFieldData;
+import org.elasticsearch.index.field.data.longs.SingleValueLongFieldData;
+import org.elasticsearch.index.field.data.shorts.OffHeapSingleValueShortFieldData;
+import org.elasticsearch.index.field.data.shorts.SingleValueShortFieldData;
+import org.elasticsearch.index.field.data.strings.OffHeapSingleValueStringFieldData;
+import org.elasticsearch.index.field.data.strings.SingleValueStringFieldData;
+import org.elasticsearch.index.field.data.support.OffHeapFieldData;
+import org.elasticsearch.index.field.data.support.OffHeapIntArray;
+import org.elasticsearch.index.settings.IndexSettings;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A field data cache that keeps the per document part of single valued field data (the ordinals,
+ * which grow with the number of docs in the segment) in direct buffers outside of the java heap.
+ * Multi valued field data, and field data of types without an off heap representation, are cached
+ * on the heap as the resident cache would. The values (and string terms) stay on the heap as well.
+ * <p/>
+ * The off heap ordinals are released once the segment reader they were loaded for is closed,
+ * whether they are still cached, evicted or cleared by then. Releasing them on eviction would
+ * free memory that searches already holding the field data might still read.
+ */
+public class OffHeapFieldDataCache extends AbstractConcurrentMapFieldDataCache implements RemovalListener<String, FieldData> {
+
+    private final int maxSize;
+    private final TimeValue expire;
+
+    private final CounterMetric evictions = new CounterMetric();
+
+    // the off heap ordinals loaded per reader core, released when the reader is closed
+    private final ConcurrentMap<Object, Set<OffHeapIntArray>> offHeapOrdinals = ConcurrentCollections.newConcurrentMap();
+
+    @Inject
+    public OffHeapFieldDataCache(Index index, @IndexSettings Settings indexSettings) {
+        super(index, indexSettings);
+        this.maxSize = indexSettings.getAsInt("index.cache.field.max_size", componentSettings.getAsInt("max_size", -1));
+        this.expire = indexSettings.getAsTime("index.cache.field.expire", componentSettings.getAsTime("expire", null));
+        logger.debug("using [off_heap] field cache with max_size [{}], expire [{}]", maxSize, expire);
+    }
+
+    @Override
+    protected FieldData loadFieldData(FieldDataType type, IndexReader reader, String fieldName) throws IOException {
+        FieldData fieldData = offHeap(super.loadFieldData(type, reader, fieldName), reader);
+        if (fieldData instanceof OffHeapFieldData) {
+            Set<OffHeapIntArray> readerOrdinals = offHeapOrdinals.get(reader.getCoreCacheKey());
+            if (readerOrdinals == null) {
+                readerOrdinals = ConcurrentCollections.newConcurrentSet();
+                Set<OffHeapIntArray> existing = offHeapOrdinals.putIfAbsent(reader.getCoreCacheKey(), readerOrdinals);
+                if (existing != null) {
+                    readerOrdinals = existing;
+                }
+            }
+            readerOrdinals.add(((OffHeapFieldData) fieldData).offHeapOrdinals());
+        }
+        return fieldData;
+    }
+
+    private FieldData offHeap(FieldData fieldData, IndexReader reader) {
+        if (reader.maxDoc() > OffHeapIntArray.MAX_LENGTH) {
+            return fieldData;
+        }
+        if (fieldData instanceof SingleValueLongFieldData) {
+            return new OffHeapSingleValueLongFieldData((SingleValueLongFieldData) fieldData);
+        } else if (fieldData instanceof SingleValueIntFieldData) {
+            return new OffHeapSingleValueIntFieldData((SingleValueIntFieldData) fieldData);
+        } else if (fieldData instanceof SingleValueShortFieldData) {
+            return new OffHeapSingleValueShortFieldData((SingleValueShortFieldData) fieldData);
+        } else if (fieldData instanceof SingleValueByteFieldData) {
+            return new OffHeapSingleValueByteFieldData((SingleValueByteFieldData) fieldData);
+        } else if (fieldData instanceof SingleValueDoubleFieldData) {
+            return new OffHeapSingleValueDoubleFieldData((SingleValueDoubleFieldData) fieldData);
+        } else if (fieldData instanceof SingleValueFloatFieldData) {
+            return new OffHeapSingleValueFloatFieldData((SingleValueFloatFieldData) fieldData);
+        } else if (fieldData instanceof SingleValueStringFieldData) {
+            return new OffHeapSingleValueStringFieldData((SingleValueStringFieldData) fieldData);
+        }
+        return fieldData;
+    }
+
+    /**
+     * Called when the reader is closed (or, for the percolator, done with), so no search can
+     * read its off heap ordinals anymore and they can be released right away.
+     */
+    @Override
+    public void clear(IndexReader reader) {
+        super.clear(reader);
+        Set<OffHeapIntArray> readerOrdinals = offHeapOrdinals.remove(reader.getCoreCacheKey());
+        if (readerOrdinals != null) {
+            for (OffHeapIntArray ordinals : readerOrdinals) {
+                ordinals.close();
+            }
+        }
+    }
+
+    @Override
+    public long offHeapSizeInBytes() {
+        // include evicted ordinals, they are only released once their reader is closed
+        long sizeInBytes = 0;
+        for (Set<OffHeapIntArray> readerOrdinals : offHeapOrdinals.values()) {
+            for (OffHeapIntArray ordinals : readerOrdinals) {
+                sizeInBytes += ordinals.sizeInBytes();
+            }
+        }
+        return sizeInBytes;
+    }
+
+    @Override
+    protected Cache<String, FieldData> buildFieldDataMap() {
+        CacheBuilder<String, FieldData> cacheBuilder = CacheBuilder.newBuilder().removalListener(this);
+        if (maxSize != -1) {
+            cacheBuilder.maximumSize(maxSize);
+        }
+        if (expire != null) {
+            cacheBuilder.expireAfterAccess(expire.nanos(), TimeUnit.NANOSECONDS);
+        }
+        CacheBuilderHelper.disableStats(cacheBuilder);
+        return cacheBuilder.build();
+    }
+
+    @Override
+    public String type() {
+        return "off_heap";
+    }
+
+    @Override
+    public long evictions() {
+        return evictions.count();
+    }
+
+    @Override
+    public void onRemoval(RemovalNotification<String, FieldData> removalNotification) {
+        if (removalNotification.wasEvicted()) {
+            evictions.inc();
+        }
+    }
+}
@@ -22,6 +22,7 @@ package org.elasticsearch.index.cache.field.data.support;
 import com.google.common.cache.Cache;
 import org.apache.lucene.index.IndexReader;
 import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.AbstractIndexComponent;
@@ -34,6 +35,7 @@ import org.elasticsearch.index.settings.IndexSettings;
 import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -42,11 +44,16 @@ public abstract class AbstractConcurrentMapFieldDataCache extends AbstractIndexC
 
     private final ConcurrentMap<Object, Cache<String, FieldData>> cache;
 
+    private final ConcurrentMap<String, FieldDataType> loadedFields;
+
+    private final CounterMetric loadTimeMetric = new CounterMetric();
+
     private final Object creationMutex = new Object();
 
     protected AbstractConcurrentMapFieldDataCache(Index index, @IndexSettings Settings indexSettings) {
         super(index, indexSettings);
         this.cache = ConcurrentCollections.newConcurrentMap();
+        this.loadedFields = ConcurrentCollections.newConcurrentMap();
     }
 
     @Override
@@ -56,6 +63,7 @@ public abstract class AbstractConcurrentMapFieldDataCache extends AbstractIndexC
 
     @Override
     public void clear(String fieldName) {
+        loadedFields.remove(fieldName);
         for (Map.Entry<Object, Cache<String, FieldData>> entry : cache.entrySet()) {
             entry.getValue().invalidate(fieldName);
         }
@@ -63,6 +71,7 @@ public abstract class AbstractConcurrentMapFieldDataCache extends AbstractIndexC
 
     @Override
     public void clear() {
+        loadedFields.clear();
         cache.clear();
     }
 
@@ -100,6 +109,32 @@ public abstract class AbstractConcurrentMapFieldDataCache extends AbstractIndexC
         return sizeInBytes;
     }
 
+    @Override
+    public long offHeapSizeInBytes() {
+        long sizeInBytes = 0;
+        for (Cache<String, FieldData> map : cache.values()) {
+            for (FieldData fieldData : map.asMap().values()) {
+                sizeInBytes += fieldData.offHeapSizeInBytes();
+            }
+        }
+        return sizeInBytes;
+    }
+
+    @Override
+    public long rejections() {
+        return 0;
+    }
+
+    @Override
+    public long loadTimeInMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(loadTimeMetric.count());
+    }
+
+    @Override
+    public Map<String, FieldDataType> loadedFields() {
+        return loadedFields;
+    }
+
     @Override
     public FieldData cache(FieldDataType type, IndexReader reader, String fieldName) throws IOException {
         Cache<String, FieldData> fieldDataCache = cache.get(reader.getCoreCacheKey());
@@ -119,8 +154,11 @@ public abstract class AbstractConcurrentMapFieldDataCache extends AbstractIndexC
                 fieldData = fieldDataCache.getIfPresent(fieldName);
                 if (fieldData == null) {
                     try {
-                        fieldData = FieldData.load(type, reader, fieldName);
+                        long start = System.nanoTime();
+                        fieldData = loadFieldData(type, reader, fieldName);
+                        loadTimeMetric.inc(System.nanoTime() - start);
                         fieldDataCache.put(fieldName, fieldData);
+                        loadedFields.put(fieldName, type);
                     } catch (OutOfMemoryError e) {
                         logger.warn("loading field [" + fieldName + "] caused out of memory failure", e);
                         final OutOfMemoryError outOfMemoryError = new OutOfMemoryError("loading field [" + fieldName + "] caused out of memory failure");
@@ -133,5 +171,9 @@ public abstract class AbstractConcurrentMapFieldDataCache extends AbstractIndexC
         return fieldData;
     }
 
+    protected FieldData loadFieldData(FieldDataType type, IndexReader reader, String fieldName) throws IOException {
+        return FieldData.load(type, reader, fieldName);
+    }
+
     protected abstract Cache<String, FieldData> buildFieldDataMap();
 }
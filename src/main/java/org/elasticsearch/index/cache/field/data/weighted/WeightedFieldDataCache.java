@@ -0,0 +1,284 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.index.cache.field.data.weighted;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import org.apache.lucene.index.IndexReader;
+import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.common.RamUsage;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.AbstractIndexComponent;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.cache.field.data.FieldDataCache;
+import org.elasticsearch.index.cache.field.data.FieldDataLoadingRejectedException;
+import org.elasticsearch.index.field.data.FieldData;
+import org.elasticsearch.index.field.data.FieldDataType;
+import org.elasticsearch.index.settings.IndexSettings;
+import org.elasticsearch.indices.cache.field.data.IndicesFieldDataCache;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A field data cache that stores its field data in the node level {@link IndicesFieldDataCache}, weighted by
+ * the size in bytes of each field data. The least recently used field data (of any index) is evicted when
+ * the node level size is exceeded. Before loading, a lower bound estimate of the field data size (its per doc
+ * ordinals) is checked against the largest entry the cache can hold and reserved against what other loads in
+ * progress left of the node budget, and the load is rejected with a {@link FieldDataLoadingRejectedException}
+ * instead of risking running out of memory if it doesn't fit.
+ */
+public class WeightedFieldDataCache extends AbstractIndexComponent implements FieldDataCache, IndexReader.ReaderFinishedListener, RemovalListener<WeightedFieldDataCache.FieldDataCacheKey, FieldData> {
+
+    final IndicesFieldDataCache indicesFieldDataCache;
+
+    // reader key -> the mutex field data loading for the reader is done under
+    final ConcurrentMap<Object, Object> seenReaders = ConcurrentCollections.newConcurrentMap();
+
+    final ConcurrentMap<String, FieldDataType> loadedFields = ConcurrentCollections.newConcurrentMap();
+
+    final CounterMetric evictionsMetric = new CounterMetric();
+    final CounterMetric sizeMetric = new CounterMetric();
+    final CounterMetric loadTimeMetric = new CounterMetric();
+    final CounterMetric rejectionsMetric = new CounterMetric();
+
+    @Inject
+    public WeightedFieldDataCache(Index index, @IndexSettings Settings indexSettings, IndicesFieldDataCache indicesFieldDataCache) {
+        super(index, indexSettings);
+        this.indicesFieldDataCache = indicesFieldDataCache;
+        indicesFieldDataCache.addRemovalListener(index.name(), this);
+    }
+
+    @Override
+    public String type() {
+        return "weighted";
+    }
+
+    @Override
+    public void close() throws ElasticSearchException {
+        clear();
+        indicesFieldDataCache.removeRemovalListener(index.name());
+    }
+
+    @Override
+    public FieldData cache(FieldDataType type, IndexReader reader, String fieldName) throws IOException {
+        FieldDataCacheKey cacheKey = new FieldDataCacheKey(index.name(), reader.getCoreCacheKey(), fieldName);
+        Cache<FieldDataCacheKey, FieldData> cache = indicesFieldDataCache.cache();
+        FieldData fieldData = cache.getIfPresent(cacheKey);
+        if (fieldData != null) {
+            return fieldData;
+        }
+        Object readerMutex = seenReaders.get(reader.getCoreCacheKey());
+        if (readerMutex == null) {
+            Object newMutex = new Object();
+            readerMutex = seenReaders.putIfAbsent(reader.getCoreCacheKey(), newMutex);
+            if (readerMutex == null) {
+                readerMutex = newMutex;
+                reader.addReaderFinishedListener(this);
+            }
+        }
+        synchronized (readerMutex) {
+            fieldData = cache.getIfPresent(cacheKey);
+            if (fieldData != null) {
+                return fieldData;
+            }
+            long limit = indicesFieldDataCache.maxEntrySizeInBytes();
+            // the per doc ordinals are the least field data will take, check before actually loading it
+            long estimatedSize = ((long) reader.maxDoc()) * RamUsage.NUM_BYTES_INT;
+            if (estimatedSize > limit) {
+                rejectionsMetric.inc();
+                throw new FieldDataLoadingRejectedException(index, fieldName, estimatedSize, limit);
+            }
+            if (!indicesFieldDataCache.reserve(estimatedSize)) {
+                rejectionsMetric.inc();
+                throw new FieldDataLoadingRejectedException(index, fieldName, estimatedSize, indicesFieldDataCache.remainingInBytes(), indicesFieldDataCache.sizeInBytes());
+            }
+            try {
+                long start = System.nanoTime();
+                fieldData = FieldData.load(type, reader, fieldName);
+                loadTimeMetric.inc(System.nanoTime() - start);
+            } finally {
+                indicesFieldDataCache.release(estimatedSize);
+            }
+            if (fieldData.sizeInBytes() > limit) {
+                rejectionsMetric.inc();
+                throw new FieldDataLoadingRejectedException(index, fieldName, fieldData.sizeInBytes(), limit);
+            }
+            sizeMetric.inc(fieldData.sizeInBytes());
+            cache.put(cacheKey, fieldData);
+            loadedFields.put(fieldName, type);
+        }
+        return fieldData;
+    }
+
+    @Override
+    public void clear(String fieldName) {
+        loadedFields.remove(fieldName);
+        Cache<FieldDataCacheKey, FieldData> cache = indicesFieldDataCache.cache();
+        for (FieldDataCacheKey key : cache.asMap().keySet()) {
+            if (key.index().equals(index.name()) && key.fieldName().equals(fieldName)) {
+                // invalidate will cause a removal and will be notified
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        loadedFields.clear();
+        Cache<FieldDataCacheKey, FieldData> cache = indicesFieldDataCache.cache();
+        for (Object readerKey : seenReaders.keySet()) {
+            if (seenReaders.remove(readerKey) == null) {
+                continue;
+            }
+            for (FieldDataCacheKey key : cache.asMap().keySet()) {
+                if (key.readerKey() == readerKey) {
+                    cache.invalidate(key);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void finished(IndexReader reader) {
+        clear(reader);
+    }
+
+    @Override
+    public void clear(IndexReader reader) {
+        // we add the seen reader before we add the first cache entry for this reader
+        // so, if we don't see it here, its won't be in the cache
+        if (seenReaders.remove(reader.getCoreCacheKey()) == null) {
+            return;
+        }
+        Cache<FieldDataCacheKey, FieldData> cache = indicesFieldDataCache.cache();
+        for (FieldDataCacheKey key : cache.asMap().keySet()) {
+            if (key.readerKey() == reader.getCoreCacheKey()) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    @Override
+    public long evictions() {
+        return evictionsMetric.count();
+    }
+
+    @Override
+    public long rejections() {
+        return rejectionsMetric.count();
+    }
+
+    @Override
+    public long loadTimeInMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(loadTimeMetric.count());
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return sizeMetric.count();
+    }
+
+    @Override
+    public long sizeInBytes(String fieldName) {
+        long sizeInBytes = 0;
+        for (Map.Entry<FieldDataCacheKey, FieldData> entry : indicesFieldDataCache.cache().asMap().entrySet()) {
+            if (entry.getKey().index().equals(index.name()) && entry.getKey().fieldName().equals(fieldName)) {
+                sizeInBytes += entry.getValue().sizeInBytes();
+            }
+        }
+        return sizeInBytes;
+    }
+
+    @Override
+    public long offHeapSizeInBytes() {
+        return 0;
+    }
+
+    @Override
+    public Map<String, FieldDataType> loadedFields() {
+        return loadedFields;
+    }
+
+    // this will only be called for our index / data, IndicesFieldDataCache makes sure it works like this based on the
+    // index we register the listener with
+    @Override
+    public void onRemoval(RemovalNotification<FieldDataCacheKey, FieldData> removalNotification) {
+        if (removalNotification.wasEvicted()) {
+            evictionsMetric.inc();
+        }
+        if (removalNotification.getValue() != null) {
+            sizeMetric.dec(removalNotification.getValue().sizeInBytes());
+        }
+    }
+
+    public static class FieldDataWeigher implements Weigher<FieldDataCacheKey, FieldData> {
+
+        @Override
+        public int weigh(FieldDataCacheKey key, FieldData value) {
+            int weight = (int) Math.min(value.sizeInBytes(), Integer.MAX_VALUE);
+            return weight == 0 ? 1 : weight;
+        }
+    }
+
+    public static class FieldDataCacheKey {
+        private final String index;
+        private final Object readerKey;
+        private final String fieldName;
+
+        public FieldDataCacheKey(String index, Object readerKey, String fieldName) {
+            this.index = index;
+            this.readerKey = readerKey;
+            this.fieldName = fieldName;
+        }
+
+        public String index() {
+            return index;
+        }
+
+        public Object readerKey() {
+            return readerKey;
+        }
+
+        public String fieldName() {
+            return fieldName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            FieldDataCacheKey that = (FieldDataCacheKey) o;
+            return (readerKey == that.readerKey && fieldName.equals(that.fieldName));
+        }
+
+        @Override
+        public int hashCode() {
+            return readerKey.hashCode() + 31 * fieldName.hashCode();
+        }
+    }
+}
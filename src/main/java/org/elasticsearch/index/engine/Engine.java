@@ -85,6 +85,11 @@ public interface Engine extends IndexShardComponent, CloseableComponent {
 
     List<Segment> segments();
 
+    /**
+     * The memory used by the realtime version map, holding the docs changed since the last refresh.
+     */
+    long versionMapSizeInBytes();
+
     /**
      * Returns <tt>true</tt> if a refresh is really needed.
      */
@@ -329,6 +334,8 @@ public interface Engine extends IndexShardComponent, CloseableComponent {
         private long version;
         private VersionType versionType = VersionType.INTERNAL;
         private Origin origin = Origin.PRIMARY;
+        private boolean autoGeneratedId;
+        private boolean canHaveDuplicates;
 
         private long startTime;
         private long endTime;
@@ -404,6 +411,31 @@ public interface Engine extends IndexShardComponent, CloseableComponent {
             return this;
         }
 
+        /**
+         * Marks the doc as having an auto generated id, which means it can't exist in the index yet.
+         */
+        public Create autoGeneratedId(boolean autoGeneratedId) {
+            this.autoGeneratedId = autoGeneratedId;
+            return this;
+        }
+
+        public boolean autoGeneratedId() {
+            return this.autoGeneratedId;
+        }
+
+        /**
+         * Marks the operation as possibly executed already (for example, a retried primary operation), in which
+         * case a doc with an auto generated id might exist and has to go through the version checks.
+         */
+        public Create canHaveDuplicates(boolean canHaveDuplicates) {
+            this.canHaveDuplicates = canHaveDuplicates;
+            return this;
+        }
+
+        public boolean canHaveDuplicates() {
+            return this.canHaveDuplicates;
+        }
+
         public String parent() {
             return this.doc.parent();
         }
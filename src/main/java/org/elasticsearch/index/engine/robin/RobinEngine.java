@@ -26,6 +26,7 @@ import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.util.UnicodeUtil;
 import org.elasticsearch.ElasticSearchException;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Preconditions;
 import org.elasticsearch.common.Unicode;
 import org.elasticsearch.common.bloom.BloomFilter;
@@ -42,6 +43,8 @@ import org.elasticsearch.common.util.concurrent.resource.AcquirableResource;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.analysis.AnalysisService;
 import org.elasticsearch.index.cache.bloom.BloomCache;
+import org.elasticsearch.index.cache.bloom.SegmentBloomFilters;
+import org.elasticsearch.index.cache.field.data.FieldDataWarmer;
 import org.elasticsearch.index.deletionpolicy.SnapshotDeletionPolicy;
 import org.elasticsearch.index.deletionpolicy.SnapshotIndexCommit;
 import org.elasticsearch.index.engine.*;
@@ -61,8 +64,6 @@ import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -116,6 +117,8 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
 
     private final boolean asyncLoadBloomFilter;
 
+    private final boolean optimizeAutoGeneratedId;
+
     private volatile IndexWriter indexWriter;
 
     private volatile AcquirableResource<ReaderSearcherHolder> nrtResource;
@@ -136,9 +139,7 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
     // indexing searcher is initialized
     private final AtomicBoolean flushing = new AtomicBoolean();
 
-    private final ConcurrentMap<String, VersionValue> versionMap;
-
-    private final Object[] dirtyLocks;
+    private final VersionMap versionMap;
 
     private final Object refreshMutex = new Object();
 
@@ -152,6 +153,8 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
 
     private SegmentInfos lastCommittedSegmentInfos;
 
+    private volatile FieldDataWarmer fieldDataWarmer;
+
     @Inject
     public RobinEngine(ShardId shardId, @IndexSettings Settings indexSettings, ThreadPool threadPool,
                        IndexSettingsService indexSettingsService,
@@ -169,6 +172,7 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
         this.termIndexInterval = indexSettings.getAsInt("index.term_index_interval", IndexWriterConfig.DEFAULT_TERM_INDEX_INTERVAL);
         this.termIndexDivisor = indexSettings.getAsInt("index.term_index_divisor", 1); // IndexReader#DEFAULT_TERMS_INDEX_DIVISOR
         this.asyncLoadBloomFilter = componentSettings.getAsBoolean("async_load_bloom", true); // Here for testing, should always be true
+        this.optimizeAutoGeneratedId = componentSettings.getAsBoolean("optimize_auto_generated_id", true);
 
         this.threadPool = threadPool;
         this.indexSettingsService = indexSettingsService;
@@ -182,15 +186,16 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
         this.bloomCache = bloomCache;
 
         this.indexConcurrency = indexSettings.getAsInt("index.index_concurrency", IndexWriterConfig.DEFAULT_MAX_THREAD_STATES);
-        this.versionMap = new ConcurrentHashMap<String, VersionValue>();
-        this.dirtyLocks = new Object[indexConcurrency * 10]; // we multiply it by 10 to have enough...
-        for (int i = 0; i < dirtyLocks.length; i++) {
-            dirtyLocks[i] = new Object();
-        }
+        this.versionMap = new VersionMap(indexConcurrency * 10); // we multiply it by 10 to have enough...
 
         this.indexSettingsService.addListener(applySettings);
     }
 
+    @Inject(optional = true)
+    public void setFieldDataWarmer(FieldDataWarmer fieldDataWarmer) {
+        this.fieldDataWarmer = fieldDataWarmer;
+    }
+
     @Override
     public void updateIndexingBufferSize(ByteSizeValue indexingBufferSize) {
         ByteSizeValue preValue = this.indexingBufferSize;
@@ -243,6 +248,12 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
             } catch (IOException e) {
                 throw new EngineCreationFailureException(shardId, "Failed to create engine", e);
             }
+            try {
+                // the writer removed segments that were not committed, remove their bloom filters before their names get reused
+                SegmentBloomFilters.deleteUnused(store.directory());
+            } catch (IOException e) {
+                logger.debug("failed to clean unused bloom filters", e);
+            }
 
             try {
                 // commit on a just opened writer will commit even if there are no changes done to it
@@ -297,19 +308,20 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
         rwl.readLock().lock();
         try {
             if (get.realtime()) {
-                VersionValue versionValue = versionMap.get(get.uid().text());
+                // don't take the segment lock, it is held by the in flight operations on the segment
+                VersionMap.Value versionValue = versionMap.segment(get.uid()).read(get.uid());
                 if (versionValue != null) {
-                    if (versionValue.delete()) {
+                    if (versionValue.delete) {
                         return GetResult.NOT_EXISTS;
                     }
                     if (!get.loadSource()) {
-                        return new GetResult(true, versionValue.version(), null);
+                        return new GetResult(true, versionValue.version, null);
                     }
-                    byte[] data = translog.read(versionValue.translogLocation());
+                    byte[] data = translog.read(versionValue.translogLocation);
                     if (data != null) {
                         try {
                             Translog.Source source = TranslogStreams.readSource(data);
-                            return new GetResult(true, versionValue.version(), source);
+                            return new GetResult(true, versionValue.version, source);
                         } catch (IOException e) {
                             // switched on us, read it from the reader
                         }
@@ -372,17 +384,23 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
     }
 
     private void innerCreate(Create create, IndexWriter writer) throws IOException {
-        synchronized (dirtyLock(create.uid())) {
+        if (optimizeAutoGeneratedId && create.autoGeneratedId() && !create.canHaveDuplicates() && create.origin() == Operation.Origin.PRIMARY
+                && create.versionType() == VersionType.INTERNAL && create.version() == 0) {
+            innerCreateAppendOnly(create, writer);
+            return;
+        }
+        VersionMap.Segment segment = versionMap.segment(create.uid());
+        synchronized (segment) {
             UidField uidField = create.uidField();
             final long currentVersion;
-            VersionValue versionValue = versionMap.get(create.uid().text());
-            if (versionValue == null) {
+            int entry = segment.find(create.uid());
+            if (entry == -1) {
                 currentVersion = loadCurrentVersionFromIndex(create.uid());
             } else {
-                if (enableGcDeletes && versionValue.delete() && (threadPool.estimatedTimeInMillis() - versionValue.time()) > gcDeletesInMillis) {
+                if (enableGcDeletes && segment.delete(entry) && (threadPool.estimatedTimeInMillis() - segment.time(entry)) > gcDeletesInMillis) {
                     currentVersion = -1; // deleted, and GC
                 } else {
-                    currentVersion = versionValue.version();
+                    currentVersion = segment.version(entry);
                 }
             }
 
@@ -434,10 +452,13 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
             }
 
             // if the doc does not exists or it exists but not delete
-            if (versionValue != null) {
-                if (!versionValue.delete()) {
+            if (entry != -1) {
+                if (!segment.delete(entry)) {
                     if (create.origin() == Operation.Origin.RECOVERY) {
                         return;
+                    } else if (isRetriedAutoGeneratedIdCreate(create)) {
+                        create.version(currentVersion);
+                        return;
                     } else {
                         throw new DocumentAlreadyExistsException(shardId, create.type(), create.id());
                     }
@@ -446,6 +467,9 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
                 // its not deleted, its already there
                 if (create.origin() == Operation.Origin.RECOVERY) {
                     return;
+                } else if (isRetriedAutoGeneratedIdCreate(create)) {
+                    create.version(currentVersion);
+                    return;
                 } else {
                     throw new DocumentAlreadyExistsException(shardId, create.type(), create.id());
                 }
@@ -454,17 +478,51 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
             uidField.version(updatedVersion);
             create.version(updatedVersion);
 
-            if (create.docs().size() > 1) {
+            if (isRetriedAutoGeneratedIdCreate(create)) {
+                // a previous attempt might have added the doc without tracking it in the version map, and it is
+                // not visible until refreshed, so replace it instead of adding a duplicate
+                if (create.docs().size() > 1) {
+                    writer.updateDocuments(create.uid(), create.docs(), create.analyzer());
+                } else {
+                    writer.updateDocument(create.uid(), create.docs().get(0), create.analyzer());
+                }
+            } else if (create.docs().size() > 1) {
                 writer.addDocuments(create.docs(), create.analyzer());
             } else {
                 writer.addDocument(create.docs().get(0), create.analyzer());
             }
             Translog.Location translogLocation = translog.add(new Translog.Create(create));
 
-            versionMap.put(create.uid().text(), new VersionValue(updatedVersion, false, threadPool.estimatedTimeInMillis(), translogLocation));
+            segment.put(create.uid(), updatedVersion, false, threadPool.estimatedTimeInMillis(), translogLocation);
         }
     }
 
+    /**
+     * A retried primary create with an auto generated id, which doc might have been created by a previous attempt.
+     * The existing doc is kept instead of failing, or replaced if it can't be seen yet.
+     */
+    private boolean isRetriedAutoGeneratedIdCreate(Create create) {
+        return create.origin() == Operation.Origin.PRIMARY && create.autoGeneratedId() && create.canHaveDuplicates();
+    }
+
+    /**
+     * A doc with an auto generated id can't exist yet, so there is no need to resolve its current version,
+     * or to track it in the version map. Replicas, recovery and retried primary operations (which might have
+     * been executed already) still go through the version checks. Note, a realtime get only finds such docs
+     * once refreshed.
+     */
+    private void innerCreateAppendOnly(Create create, IndexWriter writer) throws IOException {
+        create.uidField().version(1);
+        create.version(1);
+
+        if (create.docs().size() > 1) {
+            writer.addDocuments(create.docs(), create.analyzer());
+        } else {
+            writer.addDocument(create.docs().get(0), create.analyzer());
+        }
+        translog.add(new Translog.Create(create));
+    }
+
     @Override
     public void index(Index index) throws EngineException {
         rwl.readLock().lock();
@@ -494,17 +552,18 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
     }
 
     private void innerIndex(Index index, IndexWriter writer) throws IOException {
-        synchronized (dirtyLock(index.uid())) {
+        VersionMap.Segment segment = versionMap.segment(index.uid());
+        synchronized (segment) {
             UidField uidField = index.uidField();
             final long currentVersion;
-            VersionValue versionValue = versionMap.get(index.uid().text());
-            if (versionValue == null) {
+            int entry = segment.find(index.uid());
+            if (entry == -1) {
                 currentVersion = loadCurrentVersionFromIndex(index.uid());
             } else {
-                if (enableGcDeletes && versionValue.delete() && (threadPool.estimatedTimeInMillis() - versionValue.time()) > gcDeletesInMillis) {
+                if (enableGcDeletes && segment.delete(entry) && (threadPool.estimatedTimeInMillis() - segment.time(entry)) > gcDeletesInMillis) {
                     currentVersion = -1; // deleted, and GC
                 } else {
-                    currentVersion = versionValue.version();
+                    currentVersion = segment.version(entry);
                 }
             }
 
@@ -573,7 +632,7 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
             }
             Translog.Location translogLocation = translog.add(new Translog.Index(index));
 
-            versionMap.put(index.uid().text(), new VersionValue(updatedVersion, false, threadPool.estimatedTimeInMillis(), translogLocation));
+            segment.put(index.uid(), updatedVersion, false, threadPool.estimatedTimeInMillis(), translogLocation);
         }
     }
 
@@ -605,16 +664,17 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
     }
 
     private void innerDelete(Delete delete, IndexWriter writer) throws IOException {
-        synchronized (dirtyLock(delete.uid())) {
+        VersionMap.Segment segment = versionMap.segment(delete.uid());
+        synchronized (segment) {
             final long currentVersion;
-            VersionValue versionValue = versionMap.get(delete.uid().text());
-            if (versionValue == null) {
+            int entry = segment.find(delete.uid());
+            if (entry == -1) {
                 currentVersion = loadCurrentVersionFromIndex(delete.uid());
             } else {
-                if (enableGcDeletes && versionValue.delete() && (threadPool.estimatedTimeInMillis() - versionValue.time()) > gcDeletesInMillis) {
+                if (enableGcDeletes && segment.delete(entry) && (threadPool.estimatedTimeInMillis() - segment.time(entry)) > gcDeletesInMillis) {
                     currentVersion = -1; // deleted, and GC
                 } else {
-                    currentVersion = versionValue.version();
+                    currentVersion = segment.version(entry);
                 }
             }
 
@@ -664,17 +724,17 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
                 // doc does not exists and no prior deletes
                 delete.version(updatedVersion).notFound(true);
                 Translog.Location translogLocation = translog.add(new Translog.Delete(delete));
-                versionMap.put(delete.uid().text(), new VersionValue(updatedVersion, true, threadPool.estimatedTimeInMillis(), translogLocation));
-            } else if (versionValue != null && versionValue.delete()) {
+                segment.put(delete.uid(), updatedVersion, true, threadPool.estimatedTimeInMillis(), translogLocation);
+            } else if (entry != -1 && segment.delete(entry)) {
                 // a "delete on delete", in this case, we still increment the version, log it, and return that version
                 delete.version(updatedVersion).notFound(true);
                 Translog.Location translogLocation = translog.add(new Translog.Delete(delete));
-                versionMap.put(delete.uid().text(), new VersionValue(updatedVersion, true, threadPool.estimatedTimeInMillis(), translogLocation));
+                segment.put(delete.uid(), updatedVersion, true, threadPool.estimatedTimeInMillis(), translogLocation);
             } else {
                 delete.version(updatedVersion);
                 writer.deleteDocuments(delete.uid());
                 Translog.Location translogLocation = translog.add(new Translog.Delete(delete));
-                versionMap.put(delete.uid().text(), new VersionValue(updatedVersion, true, threadPool.estimatedTimeInMillis(), translogLocation));
+                segment.put(delete.uid(), updatedVersion, true, threadPool.estimatedTimeInMillis(), translogLocation);
             }
         }
     }
@@ -754,6 +814,8 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
                         AcquirableResource<ReaderSearcherHolder> current = nrtResource;
                         IndexReader newReader = IndexReader.openIfChanged(current.resource().reader(), true);
                         if (newReader != null) {
+                            warmFieldData(newReader, current.resource().reader());
+                            warmBloomFilters(newReader);
                             ExtendedIndexSearcher indexSearcher = new ExtendedIndexSearcher(newReader);
                             indexSearcher.setSimilarity(similarityService.defaultSearchSimilarity());
                             nrtResource = newAcquirableResource(new ReaderSearcherHolder(indexSearcher));
@@ -910,6 +972,14 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
                     logger.warn("failed to read latest segment infos on flush", e);
                 }
             }
+            try {
+                // the commit deleted the files of segments that were merged away, remove their bloom filters as well
+                SegmentBloomFilters.deleteUnused(store.directory());
+            } catch (Exception e) {
+                if (!closed) {
+                    logger.debug("failed to clean unused bloom filters", e);
+                }
+            }
         } finally {
             flushing.set(false);
         }
@@ -918,25 +988,7 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
     private void refreshVersioningTable(long time) {
         // we need to refresh in order to clear older version values
         refresh(new Refresh(true).force(true));
-        for (Map.Entry<String, VersionValue> entry : versionMap.entrySet()) {
-            String id = entry.getKey();
-            synchronized (dirtyLock(id)) { // can we do it without this lock on each value? maybe batch to a set and get the lock once per set?
-                VersionValue versionValue = versionMap.get(id);
-                if (versionValue == null) {
-                    continue;
-                }
-                if (time - versionValue.time() <= 0) {
-                    continue; // its a newer value, from after/during we refreshed, don't clear it
-                }
-                if (versionValue.delete()) {
-                    if (enableGcDeletes && (time - versionValue.time()) > gcDeletesInMillis) {
-                        versionMap.remove(id);
-                    }
-                } else {
-                    versionMap.remove(id);
-                }
-            }
-        }
+        versionMap.prune(time, enableGcDeletes, gcDeletesInMillis);
     }
 
     @Override
@@ -1119,6 +1171,11 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
         }
     }
 
+    @Override
+    public long versionMapSizeInBytes() {
+        return versionMap.sizeInBytes();
+    }
+
     @Override
     public List<Segment> segments() {
         rwl.readLock().lock();
@@ -1244,19 +1301,6 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
         }
     }
 
-    private Object dirtyLock(String id) {
-        int hash = id.hashCode();
-        // abs returns Integer.MIN_VALUE, so we need to protect against it...
-        if (hash == Integer.MIN_VALUE) {
-            hash = 0;
-        }
-        return dirtyLocks[Math.abs(hash) % dirtyLocks.length];
-    }
-
-    private Object dirtyLock(Term uid) {
-        return dirtyLock(uid.text());
-    }
-
     private long loadCurrentVersionFromIndex(Term uid) {
         UnicodeUtil.UTF8Result utf8 = Unicode.fromStringAsUtf8(uid.text());
         Searcher searcher = searcher();
@@ -1298,6 +1342,13 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
             config.setTermIndexInterval(termIndexInterval);
             config.setReaderTermsIndexDivisor(termIndexDivisor);
             config.setMaxThreadStates(indexConcurrency);
+            config.setMergedSegmentWarmer(new IndexWriter.IndexReaderWarmer() {
+                @Override
+                public void warm(IndexReader reader) throws IOException {
+                    // build (and persist) the bloom filter of merged segments as part of the merge
+                    bloomCache.filter(reader, UidFieldMapper.NAME, false);
+                }
+            });
 
             indexWriter = new IndexWriter(store.directory(), config);
         } catch (IOException e) {
@@ -1363,11 +1414,42 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
 
     private AcquirableResource<ReaderSearcherHolder> buildNrtResource(IndexWriter indexWriter) throws IOException {
         IndexReader indexReader = IndexReader.open(indexWriter, true);
+        warmFieldData(indexReader, null);
+        warmBloomFilters(indexReader);
         ExtendedIndexSearcher indexSearcher = new ExtendedIndexSearcher(indexReader);
         indexSearcher.setSimilarity(similarityService.defaultSearchSimilarity());
         return newAcquirableResource(new ReaderSearcherHolder(indexSearcher));
     }
 
+    /**
+     * Starts loading the bloom filters of new segments, persisting them if they were not persisted yet.
+     */
+    private void warmBloomFilters(IndexReader reader) {
+        IndexReader[] subReaders = reader.getSequentialSubReaders();
+        if (subReaders == null) {
+            return;
+        }
+        for (IndexReader subReader : subReaders) {
+            try {
+                bloomCache.filter(subReader, UidFieldMapper.NAME, asyncLoadBloomFilter);
+            } catch (Exception e) {
+                logger.warn("failed to warm bloom filter", e);
+            }
+        }
+    }
+
+    private void warmFieldData(IndexReader newReader, @Nullable IndexReader previousReader) {
+        FieldDataWarmer fieldDataWarmer = this.fieldDataWarmer;
+        if (fieldDataWarmer == null) {
+            return;
+        }
+        try {
+            fieldDataWarmer.warm(newReader, previousReader);
+        } catch (Exception e) {
+            logger.warn("failed to warm field data", e);
+        }
+    }
+
     private static class RobinSearchResult implements Searcher {
 
         private final AcquirableResource<ReaderSearcherHolder> nrtHolder;
@@ -1392,34 +1474,4 @@ public class RobinEngine extends AbstractIndexShardComponent implements Engine {
             return true;
         }
     }
-
-    static class VersionValue {
-        private final long version;
-        private final boolean delete;
-        private final long time;
-        private final Translog.Location translogLocation;
-
-        VersionValue(long version, boolean delete, long time, Translog.Location translogLocation) {
-            this.version = version;
-            this.delete = delete;
-            this.time = time;
-            this.translogLocation = translogLocation;
-        }
-
-        public long time() {
-            return this.time;
-        }
-
-        public long version() {
-            return version;
-        }
-
-        public boolean delete() {
-            return delete;
-        }
-
-        public Translog.Location translogLocation() {
-            return this.translogLocation;
-        }
-    }
 }
@@ -0,0 +1,390 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.index.engine.robin;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.UnicodeUtil;
+import org.elasticsearch.common.RamUsage;
+import org.elasticsearch.common.Unicode;
+import org.elasticsearch.index.translog.Translog;
+
+/**
+ * Keeps the latest version (along with the delete marker, time and translog location) of the docs changed
+ * since the last refresh, keyed by the UTF-8 bytes of their uid.
+ * <p/>
+ * The map is striped into segments, each an open addressing hash table storing its keys in a single byte
+ * block and its values in parallel primitive arrays, so adding or updating a uid does not allocate. The
+ * segments also serve as the per uid locks of the engine, all access to a segment must be done while
+ * holding its monitor, except for {@link Segment#read(Term)} which realtime gets use to not wait on the
+ * in flight operations of the segment, and {@link #sizeInBytes()}.
+ */
+class VersionMap {
+
+    private final Segment[] segments;
+
+    VersionMap(int numberOfSegments) {
+        this.segments = new Segment[numberOfSegments];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * The segment the uid belongs to, which must be locked when accessing the uid.
+     */
+    Segment segment(Term uid) {
+        UnicodeUtil.UTF8Result utf8 = Unicode.unsafeFromStringAsUtf8(uid.text());
+        return segments[(hash(utf8.result, utf8.length) & Integer.MAX_VALUE) % segments.length];
+    }
+
+    /**
+     * Removes the values older than the provided time, keeping deletes unless they can be garbage collected.
+     */
+    void prune(long time, boolean gcDeletes, long gcDeletesInMillis) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.prune(time, gcDeletes, gcDeletesInMillis);
+            }
+        }
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    long sizeInBytes() {
+        long sizeInBytes = 0;
+        for (Segment segment : segments) {
+            // doesn't take the segment lock, so stats don't wait on the in flight operations of the segment
+            sizeInBytes += segment.sizeInBytes();
+        }
+        return sizeInBytes;
+    }
+
+    /**
+     * A point in time copy of the value of a uid.
+     */
+    static final class Value {
+
+        final long version;
+
+        final boolean delete;
+
+        final Translog.Location translogLocation;
+
+        Value(long version, boolean delete, Translog.Location translogLocation) {
+            this.version = version;
+            this.delete = delete;
+            this.translogLocation = translogLocation;
+        }
+    }
+
+    private static int hash(byte[] bytes, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash;
+    }
+
+    static final class Segment {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        // guards changes of the tables against read(Term), only held while changing them
+        private final Object readMutex = new Object();
+
+        // slot -> entry + 1, 0 marks an empty slot
+        private int[] table;
+        private int tableShift;
+
+        private int size;
+
+        private int[] hashes;
+        private byte[] keys;
+        private int keysLength;
+        private int[] keyOffsets;
+        private int[] keyLengths;
+
+        private long[] versions;
+        private long[] times;
+        private boolean[] deletes;
+        private long[] translogIds;
+        private long[] translogPositions;
+        // -1 when there is no translog location
+        private int[] translogSizes;
+
+        Segment() {
+            clear();
+        }
+
+        /**
+         * Returns the entry of the uid, or <tt>-1</tt> if the uid is not in the map.
+         */
+        int find(Term uid) {
+            UnicodeUtil.UTF8Result utf8 = Unicode.unsafeFromStringAsUtf8(uid.text());
+            return find(utf8.result, utf8.length, hash(utf8.result, utf8.length));
+        }
+
+        /**
+         * Reads the value of the uid without holding the segment monitor, which writers hold for their whole
+         * operation, only waiting for an in memory change of the segment. Returns <tt>null</tt> if the uid is
+         * not in the map.
+         */
+        Value read(Term uid) {
+            synchronized (readMutex) {
+                int entry = find(uid);
+                if (entry == -1) {
+                    return null;
+                }
+                return new Value(versions[entry], deletes[entry], translogLocation(entry));
+            }
+        }
+
+        long version(int entry) {
+            return versions[entry];
+        }
+
+        long time(int entry) {
+            return times[entry];
+        }
+
+        boolean delete(int entry) {
+            return deletes[entry];
+        }
+
+        Translog.Location translogLocation(int entry) {
+            if (translogSizes[entry] == -1) {
+                return null;
+            }
+            return new Translog.Location(translogIds[entry], translogPositions[entry], translogSizes[entry]);
+        }
+
+        void put(Term uid, long version, boolean delete, long time, Translog.Location translogLocation) {
+            UnicodeUtil.UTF8Result utf8 = Unicode.unsafeFromStringAsUtf8(uid.text());
+            int hash = hash(utf8.result, utf8.length);
+            synchronized (readMutex) {
+                int entry = find(utf8.result, utf8.length, hash);
+                if (entry == -1) {
+                    entry = addKey(utf8.result, utf8.length, hash);
+                }
+                versions[entry] = version;
+                deletes[entry] = delete;
+                times[entry] = time;
+                if (translogLocation == null) {
+                    translogSizes[entry] = -1;
+                } else {
+                    translogIds[entry] = translogLocation.translogId;
+                    translogPositions[entry] = translogLocation.translogLocation;
+                    translogSizes[entry] = translogLocation.size;
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        private int find(byte[] key, int length, int hash) {
+            int mask = table.length - 1;
+            for (int slot = slot(hash); ; slot = (slot + 1) & mask) {
+                int entry = table[slot] - 1;
+                if (entry == -1) {
+                    return -1;
+                }
+                if (hashes[entry] == hash && keyEquals(entry, key, length)) {
+                    return entry;
+                }
+            }
+        }
+
+        private boolean keyEquals(int entry, byte[] key, int length) {
+            if (keyLengths[entry] != length) {
+                return false;
+            }
+            int offset = keyOffsets[entry];
+            for (int i = 0; i < length; i++) {
+                if (keys[offset + i] != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int slot(int hash) {
+            // the low bits of the hash select the segment, spread all of its bits for the slot
+            return (hash * 0x9E3779B9) >>> tableShift;
+        }
+
+        private int addKey(byte[] key, int length, int hash) {
+            int entry = size;
+            if (entry == versions.length) {
+                grow(ArrayUtil.oversize(entry + 1, RamUsage.NUM_BYTES_LONG));
+            }
+            if (keysLength + length > keys.length) {
+                byte[] newKeys = new byte[ArrayUtil.oversize(keysLength + length, 1)];
+                System.arraycopy(keys, 0, newKeys, 0, keysLength);
+                keys = newKeys;
+            }
+            System.arraycopy(key, 0, keys, keysLength, length);
+            keyOffsets[entry] = keysLength;
+            keyLengths[entry] = length;
+            keysLength += length;
+            hashes[entry] = hash;
+            size++;
+            // keep the table at most half full
+            if (size * 2 > table.length) {
+                rehash(table.length * 2);
+            } else {
+                insert(entry);
+            }
+            return entry;
+        }
+
+        private void insert(int entry) {
+            int mask = table.length - 1;
+            int slot = slot(hashes[entry]);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entry + 1;
+        }
+
+        private void rehash(int tableSize) {
+            table = new int[tableSize];
+            tableShift = 32 - Integer.numberOfTrailingZeros(tableSize);
+            for (int entry = 0; entry < size; entry++) {
+                insert(entry);
+            }
+        }
+
+        private void grow(int capacity) {
+            hashes = copyOf(hashes, capacity);
+            keyOffsets = copyOf(keyOffsets, capacity);
+            keyLengths = copyOf(keyLengths, capacity);
+            translogSizes = copyOf(translogSizes, capacity);
+            versions = copyOf(versions, capacity);
+            times = copyOf(times, capacity);
+            translogIds = copyOf(translogIds, capacity);
+            translogPositions = copyOf(translogPositions, capacity);
+            boolean[] newDeletes = new boolean[capacity];
+            System.arraycopy(deletes, 0, newDeletes, 0, Math.min(deletes.length, capacity));
+            deletes = newDeletes;
+        }
+
+        void prune(long time, boolean gcDeletes, long gcDeletesInMillis) {
+            synchronized (readMutex) {
+                int newSize = 0;
+                int newKeysLength = 0;
+                for (int entry = 0; entry < size; entry++) {
+                    boolean keep;
+                    if (time - times[entry] <= 0) {
+                        keep = true; // its a newer value, from after/during we refreshed, don't clear it
+                    } else if (deletes[entry]) {
+                        keep = !(gcDeletes && (time - times[entry]) > gcDeletesInMillis);
+                    } else {
+                        keep = false;
+                    }
+                    if (!keep) {
+                        continue;
+                    }
+                    // compact in place, entries only move backwards
+                    System.arraycopy(keys, keyOffsets[entry], keys, newKeysLength, keyLengths[entry]);
+                    keyOffsets[newSize] = newKeysLength;
+                    keyLengths[newSize] = keyLengths[entry];
+                    newKeysLength += keyLengths[entry];
+                    hashes[newSize] = hashes[entry];
+                    versions[newSize] = versions[entry];
+                    times[newSize] = times[entry];
+                    deletes[newSize] = deletes[entry];
+                    translogIds[newSize] = translogIds[entry];
+                    translogPositions[newSize] = translogPositions[entry];
+                    translogSizes[newSize] = translogSizes[entry];
+                    newSize++;
+                }
+                if (newSize == size) {
+                    return;
+                }
+                if (newSize == 0) {
+                    // release the memory used by a burst of changes
+                    clear();
+                    return;
+                }
+                size = newSize;
+                keysLength = newKeysLength;
+                int tableSize = INITIAL_CAPACITY;
+                while (size * 2 > tableSize) {
+                    tableSize *= 2;
+                }
+                rehash(tableSize);
+            }
+        }
+
+        void clear() {
+            synchronized (readMutex) {
+                size = 0;
+                keysLength = 0;
+                keys = new byte[INITIAL_CAPACITY * 8];
+                hashes = new int[INITIAL_CAPACITY];
+                keyOffsets = new int[INITIAL_CAPACITY];
+                keyLengths = new int[INITIAL_CAPACITY];
+                translogSizes = new int[INITIAL_CAPACITY];
+                versions = new long[INITIAL_CAPACITY];
+                times = new long[INITIAL_CAPACITY];
+                translogIds = new long[INITIAL_CAPACITY];
+                translogPositions = new long[INITIAL_CAPACITY];
+                deletes = new boolean[INITIAL_CAPACITY];
+                rehash(INITIAL_CAPACITY);
+            }
+        }
+
+        long sizeInBytes() {
+            synchronized (readMutex) {
+                return unsafeSizeInBytes();
+            }
+        }
+
+        private long unsafeSizeInBytes() {
+            long sizeInBytes = keys.length;
+            sizeInBytes += ((long) table.length + hashes.length + keyOffsets.length + keyLengths.length + translogSizes.length) * RamUsage.NUM_BYTES_INT;
+            sizeInBytes += ((long) versions.length + times.length + translogIds.length + translogPositions.length) * RamUsage.NUM_BYTES_LONG;
+            sizeInBytes += deletes.length;
+            return sizeInBytes + 11 * RamUsage.NUM_BYTES_ARRAY_HEADER;
+        }
+
+        private static int[] copyOf(int[] array, int length) {
+            int[] copy = new int[length];
+            System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+            return copy;
+        }
+
+        private static long[] copyOf(long[] array, int length) {
+            long[] copy = new long[length];
+            System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+            return copy;
+        }
+    }
+}
@@ -68,6 +68,13 @@ public abstract class FieldData<Doc extends DocFieldData> {
 
     protected abstract long computeSizeInBytes();
 
+    /**
+     * The size of the field data held outside of the java heap (not included in {@link #sizeInBytes()}).
+     */
+    public long offHeapSizeInBytes() {
+        return 0;
+    }
+
     protected abstract Doc createFieldData();
 
     /**
@@ -26,6 +26,7 @@ import org.elasticsearch.common.RamUsage;
 import org.elasticsearch.index.field.data.FieldDataType;
 import org.elasticsearch.index.field.data.NumericFieldData;
 import org.elasticsearch.index.field.data.support.FieldDataLoader;
+import org.elasticsearch.index.field.data.support.MultiValueOrdinals;
 
 import java.io.IOException;
 
@@ -156,7 +157,7 @@ public abstract class ByteFieldData extends NumericFieldData<ByteDocFieldData> {
         }
 
         @Override
-        public ByteFieldData buildMultiValue(String field, int[][] ordinals) {
+        public ByteFieldData buildMultiValue(String field, MultiValueOrdinals ordinals) {
             return new MultiValueByteFieldData(field, ordinals, terms.toArray());
         }
     }
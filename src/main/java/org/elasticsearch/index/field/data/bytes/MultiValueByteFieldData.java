@@ -19,9 +19,9 @@
 
 package org.elasticsearch.index.field.data.bytes;
 
-import org.elasticsearch.common.RamUsage;
 import org.elasticsearch.common.thread.ThreadLocals;
 import org.elasticsearch.index.field.data.doubles.DoubleFieldData;
+import org.elasticsearch.index.field.data.support.MultiValueOrdinals;
 
 /**
  *
@@ -52,10 +52,9 @@ public class MultiValueByteFieldData extends ByteFieldData {
         }
     };
 
-    // order with value 0 indicates no value
-    private final int[][] ordinals;
+    private final MultiValueOrdinals ordinals;
 
-    public MultiValueByteFieldData(String fieldName, int[][] ordinals, byte[] values) {
+    public MultiValueByteFieldData(String fieldName, MultiValueOrdinals ordinals, byte[] values) {
         super(fieldName, values);
         this.ordinals = ordinals;
     }
@@ -63,10 +62,7 @@ public class MultiValueByteFieldData extends ByteFieldData {
     @Override
     protected long computeSizeInBytes() {
         long size = super.computeSizeInBytes();
-        size += RamUsage.NUM_BYTES_ARRAY_HEADER; // for the top level array
-        for (int[] ordinal : ordinals) {
-            size += RamUsage.NUM_BYTES_INT * ordinal.length + RamUsage.NUM_BYTES_ARRAY_HEADER;
-        }
+        size += ordinals.computeSizeInBytes();
         return size;
     }
 
@@ -77,23 +73,16 @@ public class MultiValueByteFieldData extends ByteFieldData {
 
     @Override
     public boolean hasValue(int docId) {
-        for (int[] ordinal : ordinals) {
-            if (ordinal[docId] != 0) {
-                return true;
-            }
-        }
-        return false;
+        return ordinals.hasValue(docId);
     }
 
     @Override
     public void forEachValueInDoc(int docId, StringValueInDocProc proc) {
         boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onValue(docId, Byte.toString(values[loc]));
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            found = true;
+            proc.onValue(docId, Byte.toString(values[loc]));
         }
         if (!found) {
             proc.onMissing(docId);
@@ -102,33 +91,27 @@ public class MultiValueByteFieldData extends ByteFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, DoubleValueInDocProc proc) {
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                proc.onValue(docId, values[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            proc.onValue(docId, values[loc]);
         }
     }
 
     @Override
     public void forEachValueInDoc(int docId, LongValueInDocProc proc) {
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                proc.onValue(docId, values[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            proc.onValue(docId, values[loc]);
         }
     }
 
     @Override
     public void forEachValueInDoc(int docId, MissingDoubleValueInDocProc proc) {
         boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onValue(docId, values[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            found = true;
+            proc.onValue(docId, values[loc]);
         }
         if (!found) {
             proc.onMissing(docId);
@@ -138,12 +121,10 @@ public class MultiValueByteFieldData extends ByteFieldData {
     @Override
     public void forEachValueInDoc(int docId, MissingLongValueInDocProc proc) {
         boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onValue(docId, values[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            found = true;
+            proc.onValue(docId, values[loc]);
         }
         if (!found) {
             proc.onMissing(docId);
@@ -153,12 +134,10 @@ public class MultiValueByteFieldData extends ByteFieldData {
     @Override
     public void forEachValueInDoc(int docId, ValueInDocProc proc) {
         boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onValue(docId, values[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            found = true;
+            proc.onValue(docId, values[loc]);
         }
         if (!found) {
             proc.onMissing(docId);
@@ -167,27 +146,12 @@ public class MultiValueByteFieldData extends ByteFieldData {
 
     @Override
     public void forEachOrdinalInDoc(int docId, OrdinalInDocProc proc) {
-        boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onOrdinal(docId, loc);
-            }
-        }
-        if (!found) {
-            proc.onOrdinal(docId, 0);
-        }
+        ordinals.forEachOrdinalInDoc(docId, proc);
     }
 
     @Override
     public double[] doubleValues(int docId) {
-        int length = 0;
-        for (int[] ordinal : ordinals) {
-            if (ordinal[docId] != 0) {
-                length++;
-            }
-        }
+        int length = ordinals.numOrdinals(docId);
         if (length == 0) {
             return DoubleFieldData.EMPTY_DOUBLE_ARRAY;
         }
@@ -197,35 +161,25 @@ public class MultiValueByteFieldData extends ByteFieldData {
         } else {
             doubles = new double[length];
         }
-        int i = 0;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                doubles[i++] = values[loc];
-            }
+        for (int i = 0; i < length; i++) {
+            int loc = ordinals.ordinal(docId, i);
+            doubles[i] = values[loc];
         }
         return doubles;
     }
 
     @Override
     public byte value(int docId) {
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                return values[loc];
-            }
+        int loc = ordinals.firstOrdinal(docId);
+        if (loc != 0) {
+            return values[loc];
         }
         return 0;
     }
 
     @Override
     public byte[] values(int docId) {
-        int length = 0;
-        for (int[] ordinal : ordinals) {
-            if (ordinal[docId] != 0) {
-                length++;
-            }
-        }
+        int length = ordinals.numOrdinals(docId);
         if (length == 0) {
             return EMPTY_BYTE_ARRAY;
         }
@@ -235,12 +189,9 @@ public class MultiValueByteFieldData extends ByteFieldData {
         } else {
             bytes = new byte[length];
         }
-        int i = 0;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                bytes[i++] = values[loc];
-            }
+        for (int i = 0; i < length; i++) {
+            int loc = ordinals.ordinal(docId, i);
+            bytes[i] = values[loc];
         }
         return bytes;
     }
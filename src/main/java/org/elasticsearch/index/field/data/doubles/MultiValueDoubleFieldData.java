@@ -19,8 +19,8 @@
 
 package org.elasticsearch.index.field.data.doubles;
 
-import org.elasticsearch.common.RamUsage;
 import org.elasticsearch.common.thread.ThreadLocals;
+import org.elasticsearch.index.field.data.support.MultiValueOrdinals;
 
 /**
  *
@@ -40,10 +40,9 @@ public class MultiValueDoubleFieldData extends DoubleFieldData {
         }
     };
 
-    // order with value 0 indicates no value
-    private final int[][] ordinals;
+    private final MultiValueOrdinals ordinals;
 
-    public MultiValueDoubleFieldData(String fieldName, int[][] ordinals, double[] values) {
+    public MultiValueDoubleFieldData(String fieldName, MultiValueOrdinals ordinals, double[] values) {
         super(fieldName, values);
         this.ordinals = ordinals;
     }
@@ -51,10 +50,7 @@ public class MultiValueDoubleFieldData extends DoubleFieldData {
     @Override
     protected long computeSizeInBytes() {
         long size = super.computeSizeInBytes();
-        size += RamUsage.NUM_BYTES_ARRAY_HEADER; // for the top level array
-        for (int[] ordinal : ordinals) {
-            size += RamUsage.NUM_BYTES_INT * ordinal.length + RamUsage.NUM_BYTES_ARRAY_HEADER;
-        }
+        size += ordinals.computeSizeInBytes();
         return size;
     }
 
@@ -65,23 +61,16 @@ public class MultiValueDoubleFieldData extends DoubleFieldData {
 
     @Override
     public boolean hasValue(int docId) {
-        for (int[] ordinal : ordinals) {
-            if (ordinal[docId] != 0) {
-                return true;
-            }
-        }
-        return false;
+        return ordinals.hasValue(docId);
     }
 
     @Override
     public void forEachValueInDoc(int docId, StringValueInDocProc proc) {
         boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onValue(docId, Double.toString(values[loc]));
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            found = true;
+            proc.onValue(docId, Double.toString(values[loc]));
         }
         if (!found) {
             proc.onMissing(docId);
@@ -90,33 +79,27 @@ public class MultiValueDoubleFieldData extends DoubleFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, DoubleValueInDocProc proc) {
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                proc.onValue(docId, values[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            proc.onValue(docId, values[loc]);
         }
     }
 
     @Override
     public void forEachValueInDoc(int docId, LongValueInDocProc proc) {
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                proc.onValue(docId, (long) values[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            proc.onValue(docId, (long) values[loc]);
         }
     }
 
     @Override
     public void forEachValueInDoc(int docId, MissingDoubleValueInDocProc proc) {
         boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onValue(docId, values[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            found = true;
+            proc.onValue(docId, values[loc]);
         }
         if (!found) {
             proc.onMissing(docId);
@@ -126,12 +109,10 @@ public class MultiValueDoubleFieldData extends DoubleFieldData {
     @Override
     public void forEachValueInDoc(int docId, MissingLongValueInDocProc proc) {
         boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onValue(docId, (long) values[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            found = true;
+            proc.onValue(docId, (long) values[loc]);
         }
         if (!found) {
             proc.onMissing(docId);
@@ -141,12 +122,10 @@ public class MultiValueDoubleFieldData extends DoubleFieldData {
     @Override
     public void forEachValueInDoc(int docId, ValueInDocProc proc) {
         boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onValue(docId, values[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            found = true;
+            proc.onValue(docId, values[loc]);
         }
         if (!found) {
             proc.onMissing(docId);
@@ -155,17 +134,7 @@ public class MultiValueDoubleFieldData extends DoubleFieldData {
 
     @Override
     public void forEachOrdinalInDoc(int docId, OrdinalInDocProc proc) {
-        boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onOrdinal(docId, loc);
-            }
-        }
-        if (!found) {
-            proc.onOrdinal(docId, 0);
-        }
+        ordinals.forEachOrdinalInDoc(docId, proc);
     }
 
     @Override
@@ -175,23 +144,16 @@ public class MultiValueDoubleFieldData extends DoubleFieldData {
 
     @Override
     public double value(int docId) {
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                return values[loc];
-            }
+        int loc = ordinals.firstOrdinal(docId);
+        if (loc != 0) {
+            return values[loc];
         }
         return 0;
     }
 
     @Override
     public double[] values(int docId) {
-        int length = 0;
-        for (int[] ordinal : ordinals) {
-            if (ordinal[docId] != 0) {
-                length++;
-            }
-        }
+        int length = ordinals.numOrdinals(docId);
         if (length == 0) {
             return EMPTY_DOUBLE_ARRAY;
         }
@@ -201,12 +163,9 @@ public class MultiValueDoubleFieldData extends DoubleFieldData {
         } else {
             doubles = new double[length];
         }
-        int i = 0;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                doubles[i++] = values[loc];
-            }
+        for (int i = 0; i < length; i++) {
+            int loc = ordinals.ordinal(docId, i);
+            doubles[i] = values[loc];
         }
         return doubles;
     }
@@ -44,8 +44,28 @@ public class SingleValueDoubleFieldData extends DoubleFieldData {
 
     @Override
     protected long computeSizeInBytes() {
-        return super.computeSizeInBytes() +
-                RamUsage.NUM_BYTES_INT * ordinals.length + RamUsage.NUM_BYTES_ARRAY_HEADER;
+        return super.computeSizeInBytes() + ordinalsSizeInBytes();
+    }
+
+    /**
+     * The heap size of the per document ordinals.
+     */
+    protected long ordinalsSizeInBytes() {
+        return RamUsage.NUM_BYTES_INT * ordinals.length + RamUsage.NUM_BYTES_ARRAY_HEADER;
+    }
+
+    /**
+     * The ordinal of the doc value, <tt>0</tt> if the doc has no value.
+     */
+    protected int ordinal(int docId) {
+        return ordinals[docId];
+    }
+
+    /**
+     * The per document ordinals, <tt>null</tt> if they are not kept on the heap.
+     */
+    int[] ordinals() {
+        return ordinals;
     }
 
     @Override
@@ -55,12 +75,12 @@ public class SingleValueDoubleFieldData extends DoubleFieldData {
 
     @Override
     public boolean hasValue(int docId) {
-        return ordinals[docId] != 0;
+        return ordinal(docId) != 0;
     }
 
     @Override
     public void forEachValueInDoc(int docId, StringValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             proc.onMissing(docId);
             return;
@@ -70,7 +90,7 @@ public class SingleValueDoubleFieldData extends DoubleFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, DoubleValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             return;
         }
@@ -79,7 +99,7 @@ public class SingleValueDoubleFieldData extends DoubleFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, LongValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             return;
         }
@@ -88,7 +108,7 @@ public class SingleValueDoubleFieldData extends DoubleFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, MissingDoubleValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             proc.onMissing(docId);
             return;
@@ -98,7 +118,7 @@ public class SingleValueDoubleFieldData extends DoubleFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, MissingLongValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             proc.onMissing(docId);
             return;
@@ -108,7 +128,7 @@ public class SingleValueDoubleFieldData extends DoubleFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, ValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             proc.onMissing(docId);
             return;
@@ -118,7 +138,7 @@ public class SingleValueDoubleFieldData extends DoubleFieldData {
 
     @Override
     public void forEachOrdinalInDoc(int docId, OrdinalInDocProc proc) {
-        proc.onOrdinal(docId, ordinals[docId]);
+        proc.onOrdinal(docId, ordinal(docId));
     }
 
     @Override
@@ -128,12 +148,12 @@ public class SingleValueDoubleFieldData extends DoubleFieldData {
 
     @Override
     public double value(int docId) {
-        return values[ordinals[docId]];
+        return values[ordinal(docId)];
     }
 
     @Override
     public double[] values(int docId) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             return EMPTY_DOUBLE_ARRAY;
         }
@@ -52,8 +52,28 @@ public class SingleValueFloatFieldData extends FloatFieldData {
 
     @Override
     protected long computeSizeInBytes() {
-        return super.computeSizeInBytes() +
-                RamUsage.NUM_BYTES_INT * ordinals.length + RamUsage.NUM_BYTES_ARRAY_HEADER;
+        return super.computeSizeInBytes() + ordinalsSizeInBytes();
+    }
+
+    /**
+     * The heap size of the per document ordinals.
+     */
+    protected long ordinalsSizeInBytes() {
+        return RamUsage.NUM_BYTES_INT * ordinals.length + RamUsage.NUM_BYTES_ARRAY_HEADER;
+    }
+
+    /**
+     * The ordinal of the doc value, <tt>0</tt> if the doc has no value.
+     */
+    protected int ordinal(int docId) {
+        return ordinals[docId];
+    }
+
+    /**
+     * The per document ordinals, <tt>null</tt> if they are not kept on the heap.
+     */
+    int[] ordinals() {
+        return ordinals;
     }
 
     @Override
@@ -63,12 +83,12 @@ public class SingleValueFloatFieldData extends FloatFieldData {
 
     @Override
     public boolean hasValue(int docId) {
-        return ordinals[docId] != 0;
+        return ordinal(docId) != 0;
     }
 
     @Override
     public void forEachValueInDoc(int docId, StringValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             proc.onMissing(docId);
             return;
@@ -78,7 +98,7 @@ public class SingleValueFloatFieldData extends FloatFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, DoubleValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             return;
         }
@@ -87,7 +107,7 @@ public class SingleValueFloatFieldData extends FloatFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, LongValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             return;
         }
@@ -96,7 +116,7 @@ public class SingleValueFloatFieldData extends FloatFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, MissingDoubleValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             proc.onMissing(docId);
             return;
@@ -106,7 +126,7 @@ public class SingleValueFloatFieldData extends FloatFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, MissingLongValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             proc.onMissing(docId);
             return;
@@ -116,7 +136,7 @@ public class SingleValueFloatFieldData extends FloatFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, ValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             proc.onMissing(docId);
             return;
@@ -126,12 +146,12 @@ public class SingleValueFloatFieldData extends FloatFieldData {
 
     @Override
     public void forEachOrdinalInDoc(int docId, OrdinalInDocProc proc) {
-        proc.onOrdinal(docId, ordinals[docId]);
+        proc.onOrdinal(docId, ordinal(docId));
     }
 
     @Override
     public double[] doubleValues(int docId) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             return DoubleFieldData.EMPTY_DOUBLE_ARRAY;
         }
@@ -142,12 +162,12 @@ public class SingleValueFloatFieldData extends FloatFieldData {
 
     @Override
     public float value(int docId) {
-        return values[ordinals[docId]];
+        return values[ordinal(docId)];
     }
 
     @Override
     public float[] values(int docId) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             return EMPTY_FLOAT_ARRAY;
         }
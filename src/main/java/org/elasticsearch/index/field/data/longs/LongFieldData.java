@@ -27,6 +27,7 @@ import org.elasticsearch.common.thread.ThreadLocals;
 import org.elasticsearch.index.field.data.FieldDataType;
 import org.elasticsearch.index.field.data.NumericFieldData;
 import org.elasticsearch.index.field.data.support.FieldDataLoader;
+import org.elasticsearch.index.field.data.support.MultiValueOrdinals;
 import org.joda.time.DateTimeZone;
 import org.joda.time.MutableDateTime;
 
@@ -187,7 +188,7 @@ public abstract class LongFieldData extends NumericFieldData<LongDocFieldData> {
         }
 
         @Override
-        public LongFieldData buildMultiValue(String field, int[][] ordinals) {
+        public LongFieldData buildMultiValue(String field, MultiValueOrdinals ordinals) {
             return new MultiValueLongFieldData(field, ordinals, terms.toArray());
         }
     }
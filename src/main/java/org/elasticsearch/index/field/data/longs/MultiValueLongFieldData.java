@@ -19,9 +19,9 @@
 
 package org.elasticsearch.index.field.data.longs;
 
-import org.elasticsearch.common.RamUsage;
 import org.elasticsearch.common.thread.ThreadLocals;
 import org.elasticsearch.index.field.data.doubles.DoubleFieldData;
+import org.elasticsearch.index.field.data.support.MultiValueOrdinals;
 import org.joda.time.DateTimeZone;
 import org.joda.time.MutableDateTime;
 
@@ -69,10 +69,9 @@ public class MultiValueLongFieldData extends LongFieldData {
         }
     };
 
-    // order with value 0 indicates no value
-    private final int[][] ordinals;
+    private final MultiValueOrdinals ordinals;
 
-    public MultiValueLongFieldData(String fieldName, int[][] ordinals, long[] values) {
+    public MultiValueLongFieldData(String fieldName, MultiValueOrdinals ordinals, long[] values) {
         super(fieldName, values);
         this.ordinals = ordinals;
     }
@@ -80,10 +79,7 @@ public class MultiValueLongFieldData extends LongFieldData {
     @Override
     protected long computeSizeInBytes() {
         long size = super.computeSizeInBytes();
-        size += RamUsage.NUM_BYTES_ARRAY_HEADER; // for the top level array
-        for (int[] ordinal : ordinals) {
-            size += RamUsage.NUM_BYTES_INT * ordinal.length + RamUsage.NUM_BYTES_ARRAY_HEADER;
-        }
+        size += ordinals.computeSizeInBytes();
         return size;
     }
 
@@ -94,23 +90,16 @@ public class MultiValueLongFieldData extends LongFieldData {
 
     @Override
     public boolean hasValue(int docId) {
-        for (int[] ordinal : ordinals) {
-            if (ordinal[docId] != 0) {
-                return true;
-            }
-        }
-        return false;
+        return ordinals.hasValue(docId);
     }
 
     @Override
     public void forEachValueInDoc(int docId, StringValueInDocProc proc) {
         boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onValue(docId, Long.toString(values[loc]));
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            found = true;
+            proc.onValue(docId, Long.toString(values[loc]));
         }
         if (!found) {
             proc.onMissing(docId);
@@ -119,33 +108,27 @@ public class MultiValueLongFieldData extends LongFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, DoubleValueInDocProc proc) {
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                proc.onValue(docId, values[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            proc.onValue(docId, values[loc]);
         }
     }
 
     @Override
     public void forEachValueInDoc(int docId, LongValueInDocProc proc) {
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                proc.onValue(docId, values[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            proc.onValue(docId, values[loc]);
         }
     }
 
     @Override
     public void forEachValueInDoc(int docId, MissingDoubleValueInDocProc proc) {
         boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onValue(docId, values[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            found = true;
+            proc.onValue(docId, values[loc]);
         }
         if (!found) {
             proc.onMissing(docId);
@@ -155,12 +138,10 @@ public class MultiValueLongFieldData extends LongFieldData {
     @Override
     public void forEachValueInDoc(int docId, MissingLongValueInDocProc proc) {
         boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onValue(docId, values[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            found = true;
+            proc.onValue(docId, values[loc]);
         }
         if (!found) {
             proc.onMissing(docId);
@@ -169,28 +150,16 @@ public class MultiValueLongFieldData extends LongFieldData {
 
     @Override
     public void forEachOrdinalInDoc(int docId, OrdinalInDocProc proc) {
-        boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onOrdinal(docId, loc);
-            }
-        }
-        if (!found) {
-            proc.onOrdinal(docId, 0);
-        }
+        ordinals.forEachOrdinalInDoc(docId, proc);
     }
 
     @Override
     public void forEachValueInDoc(int docId, ValueInDocProc proc) {
         boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onValue(docId, values[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            found = true;
+            proc.onValue(docId, values[loc]);
         }
         if (!found) {
             proc.onMissing(docId);
@@ -200,34 +169,25 @@ public class MultiValueLongFieldData extends LongFieldData {
     @Override
     public void forEachValueInDoc(int docId, DateValueInDocProc proc) {
         MutableDateTime dateTime = dateTimeCache.get().get();
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                dateTime.setMillis(values[loc]);
-                proc.onValue(docId, dateTime);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            dateTime.setMillis(values[loc]);
+            proc.onValue(docId, dateTime);
         }
     }
 
     @Override
     public void forEachValueInDoc(int docId, MutableDateTime dateTime, DateValueInDocProc proc) {
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                dateTime.setMillis(values[loc]);
-                proc.onValue(docId, dateTime);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            dateTime.setMillis(values[loc]);
+            proc.onValue(docId, dateTime);
         }
     }
 
     @Override
     public MutableDateTime[] dates(int docId) {
-        int length = 0;
-        for (int[] ordinal : ordinals) {
-            if (ordinal[docId] != 0) {
-                length++;
-            }
-        }
+        int length = ordinals.numOrdinals(docId);
         if (length == 0) {
             return EMPTY_DATETIME_ARRAY;
         }
@@ -240,24 +200,16 @@ public class MultiValueLongFieldData extends LongFieldData {
                 dates[i] = new MutableDateTime();
             }
         }
-        int i = 0;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                dates[i++].setMillis(values[loc]);
-            }
+        for (int i = 0; i < length; i++) {
+            int loc = ordinals.ordinal(docId, i);
+            dates[i].setMillis(values[loc]);
         }
         return dates;
     }
 
     @Override
     public double[] doubleValues(int docId) {
-        int length = 0;
-        for (int[] ordinal : ordinals) {
-            if (ordinal[docId] != 0) {
-                length++;
-            }
-        }
+        int length = ordinals.numOrdinals(docId);
         if (length == 0) {
             return DoubleFieldData.EMPTY_DOUBLE_ARRAY;
         }
@@ -267,35 +219,25 @@ public class MultiValueLongFieldData extends LongFieldData {
         } else {
             doubles = new double[length];
         }
-        int i = 0;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                doubles[i++] = values[loc];
-            }
+        for (int i = 0; i < length; i++) {
+            int loc = ordinals.ordinal(docId, i);
+            doubles[i] = values[loc];
         }
         return doubles;
     }
 
     @Override
     public long value(int docId) {
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                return values[loc];
-            }
+        int loc = ordinals.firstOrdinal(docId);
+        if (loc != 0) {
+            return values[loc];
         }
         return 0;
     }
 
     @Override
     public long[] values(int docId) {
-        int length = 0;
-        for (int[] ordinal : ordinals) {
-            if (ordinal[docId] != 0) {
-                length++;
-            }
-        }
+        int length = ordinals.numOrdinals(docId);
         if (length == 0) {
             return EMPTY_LONG_ARRAY;
         }
@@ -305,12 +247,9 @@ public class MultiValueLongFieldData extends LongFieldData {
         } else {
             longs = new long[length];
         }
-        int i = 0;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                longs[i++] = values[loc];
-            }
+        for (int i = 0; i < length; i++) {
+            int loc = ordinals.ordinal(docId, i);
+            longs[i] = values[loc];
         }
         return longs;
     }
@@ -0,0 +1,56 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.field.data.longs;
+
+import org.elasticsearch.index.field.data.support.OffHeapFieldData;
+import org.elasticsearch.index.field.data.support.OffHeapIntArray;
+
+/**
+ * A single valued long field data with its per document ordinals stored off heap.
+ */
+public class OffHeapSingleValueLongFieldData extends SingleValueLongFieldData implements OffHeapFieldData {
+
+    private final OffHeapIntArray ordinals;
+
+    public OffHeapSingleValueLongFieldData(SingleValueLongFieldData fieldData) {
+        super(fieldData.fieldName(), null, fieldData.values());
+        this.ordinals = new OffHeapIntArray(fieldData.ordinals());
+    }
+
+    @Override
+    protected int ordinal(int docId) {
+        return ordinals.get(docId);
+    }
+
+    @Override
+    protected long ordinalsSizeInBytes() {
+        return 0;
+    }
+
+    @Override
+    public long offHeapSizeInBytes() {
+        return ordinals.sizeInBytes();
+    }
+
+    @Override
+    public OffHeapIntArray offHeapOrdinals() {
+        return ordinals;
+    }
+}
@@ -63,8 +63,28 @@ public class SingleValueLongFieldData extends LongFieldData {
 
     @Override
     protected long computeSizeInBytes() {
-        return super.computeSizeInBytes() +
-                RamUsage.NUM_BYTES_INT * ordinals.length + RamUsage.NUM_BYTES_ARRAY_HEADER;
+        return super.computeSizeInBytes() + ordinalsSizeInBytes();
+    }
+
+    /**
+     * The heap size of the per document ordinals.
+     */
+    protected long ordinalsSizeInBytes() {
+        return RamUsage.NUM_BYTES_INT * ordinals.length + RamUsage.NUM_BYTES_ARRAY_HEADER;
+    }
+
+    /**
+     * The ordinal of the doc value, <tt>0</tt> if the doc has no value.
+     */
+    protected int ordinal(int docId) {
+        return ordinals[docId];
+    }
+
+    /**
+     * The per document ordinals, <tt>null</tt> if they are not kept on the heap.
+     */
+    int[] ordinals() {
+        return ordinals;
     }
 
     @Override
@@ -74,12 +94,12 @@ public class SingleValueLongFieldData extends LongFieldData {
 
     @Override
     public boolean hasValue(int docId) {
-        return ordinals[docId] != 0;
+        return ordinal(docId) != 0;
     }
 
     @Override
     public void forEachValueInDoc(int docId, StringValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             proc.onMissing(docId);
             return;
@@ -89,7 +109,7 @@ public class SingleValueLongFieldData extends LongFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, DoubleValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             return;
         }
@@ -98,7 +118,7 @@ public class SingleValueLongFieldData extends LongFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, LongValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             return;
         }
@@ -107,7 +127,7 @@ public class SingleValueLongFieldData extends LongFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, MissingDoubleValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             proc.onMissing(docId);
             return;
@@ -117,7 +137,7 @@ public class SingleValueLongFieldData extends LongFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, MissingLongValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             proc.onMissing(docId);
             return;
@@ -127,12 +147,12 @@ public class SingleValueLongFieldData extends LongFieldData {
 
     @Override
     public void forEachOrdinalInDoc(int docId, OrdinalInDocProc proc) {
-        proc.onOrdinal(docId, ordinals[docId]);
+        proc.onOrdinal(docId, ordinal(docId));
     }
 
     @Override
     public void forEachValueInDoc(int docId, ValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             proc.onMissing(docId);
             return;
@@ -142,7 +162,7 @@ public class SingleValueLongFieldData extends LongFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, DateValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             return;
         }
@@ -153,7 +173,7 @@ public class SingleValueLongFieldData extends LongFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, MutableDateTime dateTime, DateValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             return;
         }
@@ -163,7 +183,7 @@ public class SingleValueLongFieldData extends LongFieldData {
 
     @Override
     public MutableDateTime[] dates(int docId) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             return EMPTY_DATETIME_ARRAY;
         }
@@ -174,7 +194,7 @@ public class SingleValueLongFieldData extends LongFieldData {
 
     @Override
     public double[] doubleValues(int docId) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             return DoubleFieldData.EMPTY_DOUBLE_ARRAY;
         }
@@ -185,12 +205,12 @@ public class SingleValueLongFieldData extends LongFieldData {
 
     @Override
     public long value(int docId) {
-        return values[ordinals[docId]];
+        return values[ordinal(docId)];
     }
 
     @Override
     public long[] values(int docId) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             return EMPTY_LONG_ARRAY;
         }
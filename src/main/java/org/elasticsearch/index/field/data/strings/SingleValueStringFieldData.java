@@ -38,24 +38,40 @@ public class SingleValueStringFieldData extends StringFieldData {
     // order with value 0 indicates no value
     private final int[] ordinals;
 
-    public SingleValueStringFieldData(String fieldName, int[] ordinals, String[] values) {
+    public SingleValueStringFieldData(String fieldName, int[] ordinals, StringTermDictionary values) {
         super(fieldName, values);
         this.ordinals = ordinals;
     }
 
     @Override
     protected long computeSizeInBytes() {
-        return super.computeSizeInBytes() +
-                RamUsage.NUM_BYTES_INT * ordinals.length + RamUsage.NUM_BYTES_ARRAY_HEADER;
+        return super.computeSizeInBytes() + ordinalsSizeInBytes();
     }
 
+    /**
+     * The heap size of the per document ordinals.
+     */
+    protected long ordinalsSizeInBytes() {
+        return RamUsage.NUM_BYTES_INT * ordinals.length + RamUsage.NUM_BYTES_ARRAY_HEADER;
+    }
+
+    /**
+     * The ordinal of the doc value, <tt>0</tt> if the doc has no value.
+     */
+    protected int ordinal(int docId) {
+        return ordinals[docId];
+    }
+
+    /**
+     * The per document ordinals, <tt>null</tt> if they are not kept on the heap.
+     */
     int[] ordinals() {
         return ordinals;
     }
 
     @Override
     public void forEachOrdinalInDoc(int docId, OrdinalInDocProc proc) {
-        proc.onOrdinal(docId, ordinals[docId]);
+        proc.onOrdinal(docId, ordinal(docId));
     }
 
     @Override
@@ -65,32 +81,32 @@ public class SingleValueStringFieldData extends StringFieldData {
 
     @Override
     public boolean hasValue(int docId) {
-        return ordinals[docId] != 0;
+        return ordinal(docId) != 0;
     }
 
     @Override
     public void forEachValueInDoc(int docId, StringValueInDocProc proc) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             proc.onMissing(docId);
             return;
         }
-        proc.onValue(docId, values[loc]);
+        proc.onValue(docId, values.get(loc));
     }
 
     @Override
     public String value(int docId) {
-        return values[ordinals[docId]];
+        return values.get(ordinal(docId));
     }
 
     @Override
     public String[] values(int docId) {
-        int loc = ordinals[docId];
+        int loc = ordinal(docId);
         if (loc == 0) {
             return Strings.EMPTY_ARRAY;
         }
         String[] ret = valuesCache.get().get();
-        ret[0] = values[loc];
+        ret[0] = values.get(loc);
         return ret;
     }
 }
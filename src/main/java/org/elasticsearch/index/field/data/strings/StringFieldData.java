@@ -20,38 +20,31 @@
 package org.elasticsearch.index.field.data.strings;
 
 import org.apache.lucene.index.IndexReader;
-import org.elasticsearch.common.RamUsage;
 import org.elasticsearch.index.field.data.FieldData;
 import org.elasticsearch.index.field.data.FieldDataType;
 import org.elasticsearch.index.field.data.support.FieldDataLoader;
+import org.elasticsearch.index.field.data.support.MultiValueOrdinals;
 
 import java.io.IOException;
-import java.util.ArrayList;
 
 /**
  *
  */
 public abstract class StringFieldData extends FieldData<StringDocFieldData> {
 
-    protected final String[] values;
+    protected final StringTermDictionary values;
 
-    protected StringFieldData(String fieldName, String[] values) {
+    protected StringFieldData(String fieldName, StringTermDictionary values) {
         super(fieldName);
         this.values = values;
     }
 
     @Override
     protected long computeSizeInBytes() {
-        long size = RamUsage.NUM_BYTES_ARRAY_HEADER;
-        for (String value : values) {
-            if (value != null) {
-                size += RamUsage.NUM_BYTES_OBJECT_HEADER + ((value.length() * RamUsage.NUM_BYTES_CHAR) + (3 * RamUsage.NUM_BYTES_INT));
-            }
-        }
-        return size;
+        return values.computeSizeInBytes();
     }
 
-    public String[] values() {
+    public StringTermDictionary values() {
         return this.values;
     }
 
@@ -81,8 +74,8 @@ public abstract class StringFieldData extends FieldData<StringDocFieldData> {
 
     @Override
     public void forEachValue(StringValueProc proc) {
-        for (int i = 1; i < values.length; i++) {
-            proc.onValue(values[i]);
+        for (int i = 1; i < values.size(); i++) {
+            proc.onValue(values.get(i));
         }
     }
 
@@ -92,12 +85,10 @@ public abstract class StringFieldData extends FieldData<StringDocFieldData> {
 
     static class StringTypeLoader extends FieldDataLoader.FreqsTypeLoader<StringFieldData> {
 
-        private final ArrayList<String> terms = new ArrayList<String>();
+        private final StringTermDictionary.Builder terms = new StringTermDictionary.Builder();
 
         StringTypeLoader() {
             super();
-            // the first one indicates null value
-            terms.add(null);
         }
 
         @Override
@@ -107,12 +98,12 @@ public abstract class StringFieldData extends FieldData<StringDocFieldData> {
 
         @Override
         public StringFieldData buildSingleValue(String field, int[] ordinals) {
-            return new SingleValueStringFieldData(field, ordinals, terms.toArray(new String[terms.size()]));
+            return new SingleValueStringFieldData(field, ordinals, terms.build());
         }
 
         @Override
-        public StringFieldData buildMultiValue(String field, int[][] ordinals) {
-            return new MultiValueStringFieldData(field, ordinals, terms.toArray(new String[terms.size()]));
+        public StringFieldData buildMultiValue(String field, MultiValueOrdinals ordinals) {
+            return new MultiValueStringFieldData(field, ordinals, terms.build());
         }
     }
 }
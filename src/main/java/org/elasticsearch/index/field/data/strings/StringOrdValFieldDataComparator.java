@@ -21,9 +21,12 @@ package org.elasticsearch.index.field.data.strings;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.util.UnicodeUtil;
+import org.elasticsearch.common.Unicode;
 import org.elasticsearch.index.cache.field.data.FieldDataCache;
 import org.elasticsearch.index.field.data.FieldData;
 import org.elasticsearch.index.field.data.FieldDataType;
+import org.elasticsearch.index.field.data.support.OffHeapIntArray;
 
 import java.io.IOException;
 
@@ -40,14 +43,16 @@ public class StringOrdValFieldDataComparator extends FieldComparator {
     private final int[] readerGen;
 
     private int currentReaderGen = -1;
-    private String[] lookup;
+    private StringTermDictionary lookup;
     private int[] order;
+    private OffHeapIntArray offHeapOrder;
     private final String field;
 
     private int bottomSlot = -1;
     private int bottomOrd;
     private boolean bottomSameReader;
     private String bottomValue;
+    private UnicodeUtil.UTF8Result bottomValueUtf8;
 
     public StringOrdValFieldDataComparator(int numHits, String field, int sortPos, boolean reversed, FieldDataCache fieldDataCache) {
         this.fieldDataCache = fieldDataCache;
@@ -81,38 +86,37 @@ public class StringOrdValFieldDataComparator extends FieldComparator {
         assert bottomSlot != -1;
         if (bottomSameReader) {
             // ord is precisely comparable, even in the equal case
-            return bottomOrd - this.order[doc];
+            return bottomOrd - ordinal(doc);
         } else {
             // ord is only approx comparable: if they are not
             // equal, we can use that; if they are equal, we
             // must fallback to compare by value
-            final int order = this.order[doc];
+            final int order = ordinal(doc);
             final int cmp = bottomOrd - order;
             if (cmp != 0) {
                 return cmp;
             }
 
-            final String val2 = lookup[order];
             if (bottomValue == null) {
-                if (val2 == null) {
+                if (order == 0) {
                     return 0;
                 }
                 // bottom wins
                 return -1;
-            } else if (val2 == null) {
+            } else if (order == 0) {
                 // doc wins
                 return 1;
             }
-            return bottomValue.compareTo(val2);
+            return -lookup.compare(order, bottomValueUtf8.result, 0, bottomValueUtf8.length);
         }
     }
 
     @Override
     public void copy(int slot, int doc) {
-        final int ord = order[doc];
+        final int ord = ordinal(doc);
         ords[slot] = ord;
         assert ord >= 0;
-        values[slot] = lookup[ord];
+        values[slot] = lookup.get(ord);
         readerGen[slot] = currentReaderGen;
     }
 
@@ -122,16 +126,31 @@ public class StringOrdValFieldDataComparator extends FieldComparator {
         if (cleanFieldData instanceof MultiValueStringFieldData) {
             throw new IOException("Can't sort on string types with more than one value per doc, or more than one token per field");
         }
-        SingleValueStringFieldData fieldData = (SingleValueStringFieldData) cleanFieldData;
         currentReaderGen++;
-        order = fieldData.ordinals();
-        lookup = fieldData.values();
-        assert lookup.length > 0;
+        if (cleanFieldData instanceof OffHeapSingleValueStringFieldData) {
+            OffHeapSingleValueStringFieldData fieldData = (OffHeapSingleValueStringFieldData) cleanFieldData;
+            order = null;
+            offHeapOrder = fieldData.offHeapOrdinals();
+            lookup = fieldData.values();
+        } else {
+            SingleValueStringFieldData fieldData = (SingleValueStringFieldData) cleanFieldData;
+            order = fieldData.ordinals();
+            offHeapOrder = null;
+            lookup = fieldData.values();
+        }
+        assert lookup.size() > 0;
         if (bottomSlot != -1) {
             setBottom(bottomSlot);
         }
     }
 
+    private int ordinal(int doc) {
+        if (order != null) {
+            return order[doc];
+        }
+        return offHeapOrder.get(doc);
+    }
+
     @Override
     public void setBottom(final int bottom) {
         bottomSlot = bottom;
@@ -147,7 +166,8 @@ public class StringOrdValFieldDataComparator extends FieldComparator {
                 bottomSameReader = true;
                 readerGen[bottomSlot] = currentReaderGen;
             } else {
-                final int index = binarySearch(lookup, bottomValue);
+                bottomValueUtf8 = Unicode.fromStringAsUtf8(bottomValue);
+                final int index = lookup.binarySearch(bottomValueUtf8.result, 0, bottomValueUtf8.length);
                 if (index < 0) {
                     bottomOrd = -index - 2;
                     bottomSameReader = false;
@@ -0,0 +1,184 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.field.data.strings;
+
+import org.apache.lucene.util.UnicodeUtil;
+import org.elasticsearch.common.RamUsage;
+import org.elasticsearch.common.Unicode;
+
+/**
+ * The (sorted) terms of a string field, stored UTF-8 encoded in a single contiguous byte block
+ * and addressed by ordinal. Ordinal 0 is reserved for the "no value" (<tt>null</tt>) term.
+ * <p/>
+ * Terms are compared in the same order as {@link String#compareTo(String)} (UTF-16 order, the
+ * order of the terms in the index) directly on the encoded bytes, so only terms that are
+ * actually returned need to be decoded into strings.
+ */
+public class StringTermDictionary {
+
+    private final byte[] bytes;
+
+    // offsets[ord] is the start of the term, offsets[ord + 1] its end
+    private final int[] offsets;
+
+    private final int size;
+
+    StringTermDictionary(byte[] bytes, int[] offsets, int size) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.size = size;
+    }
+
+    /**
+     * The number of ordinals, including the 0 (no value) one.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Decodes the term with the provided ordinal, <tt>null</tt> for ordinal 0.
+     */
+    public String get(int ord) {
+        if (ord == 0) {
+            return null;
+        }
+        return Unicode.fromBytes(bytes, offsets[ord], offsets[ord + 1] - offsets[ord]);
+    }
+
+    /**
+     * Compares the term with the provided ordinal with the UTF-8 encoded value. The 0 ordinal
+     * sorts before any value.
+     */
+    public int compare(int ord, byte[] value, int offset, int length) {
+        if (ord == 0) {
+            return -1;
+        }
+        return compareUtf8AsUtf16(bytes, offsets[ord], offsets[ord + 1] - offsets[ord], value, offset, length);
+    }
+
+    /**
+     * Compares the term with the provided ordinal with a term of another dictionary.
+     */
+    public int compare(int ord, StringTermDictionary other, int otherOrd) {
+        if (ord == 0) {
+            return otherOrd == 0 ? 0 : -1;
+        }
+        if (otherOrd == 0) {
+            return 1;
+        }
+        return compare(ord, other.bytes, other.offsets[otherOrd], other.offsets[otherOrd + 1] - other.offsets[otherOrd]);
+    }
+
+    /**
+     * Binary searches for the UTF-8 encoded value, with the same semantics as
+     * {@link java.util.Arrays#binarySearch(Object[], Object)}.
+     */
+    public int binarySearch(byte[] value, int offset, int length) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(mid, value, offset, length);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    public long computeSizeInBytes() {
+        return RamUsage.NUM_BYTES_ARRAY_HEADER + bytes.length + RamUsage.NUM_BYTES_ARRAY_HEADER + ((long) offsets.length * RamUsage.NUM_BYTES_INT);
+    }
+
+    // LUCENE MONITOR: the same as BytesRef#getUTF8SortedAsUTF16Comparator
+    static int compareUtf8AsUtf16(byte[] a, int aOffset, int aLength, byte[] b, int bOffset, int bLength) {
+        final int aStop = aOffset + Math.min(aLength, bLength);
+        int aUpto = aOffset;
+        int bUpto = bOffset;
+        while (aUpto < aStop) {
+            int aByte = a[aUpto++] & 0xff;
+            int bByte = b[bUpto++] & 0xff;
+            if (aByte != bByte) {
+                // surrogate pairs (lead bytes 0xf0 and above) sort before 0xee-0xef prefixed
+                // chars (U+E000 - U+FFFF) in UTF-16, but after them in UTF-8
+                if (aByte >= 0xee && bByte >= 0xee) {
+                    if ((aByte & 0xfe) == 0xee) {
+                        aByte += 0xe;
+                    }
+                    if ((bByte & 0xfe) == 0xee) {
+                        bByte += 0xe;
+                    }
+                }
+                return aByte - bByte;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    /**
+     * Builds a dictionary from terms added in sorted order.
+     */
+    public static class Builder {
+
+        private byte[] bytes = new byte[1024];
+
+        private int[] offsets = new int[64];
+
+        private int size;
+
+        public Builder() {
+            // ordinal 0 is the (empty) no value term
+            offsets[0] = 0;
+            offsets[1] = 0;
+            size = 1;
+        }
+
+        public void add(String term) {
+            UnicodeUtil.UTF8Result utf8 = Unicode.unsafeFromStringAsUtf8(term);
+            int start = offsets[size];
+            if (start + utf8.length > bytes.length) {
+                byte[] newBytes = new byte[Math.max(start + utf8.length, bytes.length + (bytes.length >> 1))];
+                System.arraycopy(bytes, 0, newBytes, 0, start);
+                bytes = newBytes;
+            }
+            System.arraycopy(utf8.result, 0, bytes, start, utf8.length);
+            if (size + 2 > offsets.length) {
+                int[] newOffsets = new int[offsets.length + (offsets.length >> 1)];
+                System.arraycopy(offsets, 0, newOffsets, 0, size + 1);
+                offsets = newOffsets;
+            }
+            size++;
+            offsets[size] = start + utf8.length;
+        }
+
+        public StringTermDictionary build() {
+            byte[] finalBytes = new byte[offsets[size]];
+            System.arraycopy(bytes, 0, finalBytes, 0, finalBytes.length);
+            int[] finalOffsets = new int[size + 1];
+            System.arraycopy(offsets, 0, finalOffsets, 0, finalOffsets.length);
+            return new StringTermDictionary(finalBytes, finalOffsets, size);
+        }
+    }
+}
@@ -27,7 +27,6 @@ import org.apache.lucene.util.StringHelper;
 import org.elasticsearch.index.field.data.FieldData;
 
 import java.io.IOException;
-import java.util.ArrayList;
 
 /**
  *
@@ -40,9 +39,7 @@ public class FieldDataLoader {
         loader.init();
 
         field = StringHelper.intern(field);
-        ArrayList<int[]> ordinals = new ArrayList<int[]>();
-        int[] idx = new int[reader.maxDoc()];
-        ordinals.add(new int[reader.maxDoc()]);
+        MultiValueOrdinals.Builder ordinals = new MultiValueOrdinals.Builder(reader.maxDoc());
 
         int t = 1;  // current term number
 
@@ -55,16 +52,7 @@ public class FieldDataLoader {
                 loader.collectTerm(term.text());
                 termDocs.seek(termEnum);
                 while (termDocs.next()) {
-                    int doc = termDocs.doc();
-                    int[] ordinal;
-                    if (idx[doc] >= ordinals.size()) {
-                        ordinal = new int[reader.maxDoc()];
-                        ordinals.add(ordinal);
-                    } else {
-                        ordinal = ordinals.get(idx[doc]);
-                    }
-                    ordinal[doc] = t;
-                    idx[doc]++;
+                    ordinals.addOrdinal(termDocs.doc(), t);
                 }
                 t++;
             } while (termEnum.next());
@@ -79,14 +67,10 @@ public class FieldDataLoader {
             termEnum.close();
         }
 
-        if (ordinals.size() == 1) {
-            return loader.buildSingleValue(field, ordinals.get(0));
+        if (!ordinals.isMultiValued()) {
+            return loader.buildSingleValue(field, ordinals.singleValueOrdinals());
         } else {
-            int[][] nativeOrdinals = new int[ordinals.size()][];
-            for (int i = 0; i < nativeOrdinals.length; i++) {
-                nativeOrdinals[i] = ordinals.get(i);
-            }
-            return loader.buildMultiValue(field, nativeOrdinals);
+            return loader.buildMultiValue(field, ordinals.build());
         }
     }
 
@@ -98,7 +82,7 @@ public class FieldDataLoader {
 
         T buildSingleValue(String fieldName, int[] ordinals);
 
-        T buildMultiValue(String fieldName, int[][] ordinals);
+        T buildMultiValue(String fieldName, MultiValueOrdinals ordinals);
     }
 
     public static abstract class FreqsTypeLoader<T extends FieldData> implements TypeLoader<T> {
@@ -0,0 +1,198 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.field.data.support;
+
+import org.elasticsearch.common.RamUsage;
+import org.elasticsearch.index.field.data.FieldData;
+
+/**
+ * The ordinals of a multi valued field. A dense <tt>int[maxDoc]</tt> holds the ordinal of each doc that
+ * has at most one value (0 indicating no value). Docs with more than one value store a negative offset
+ * into a packed overflow storage instead, where their value count is followed by all of their ordinals
+ * (in ascending order), each packed using just enough bits to represent the highest ordinal.
+ */
+public class MultiValueOrdinals {
+
+    private final int[] firstOrdinals;
+
+    private final PagedPackedInts overflow;
+
+    MultiValueOrdinals(int[] firstOrdinals, PagedPackedInts overflow) {
+        this.firstOrdinals = firstOrdinals;
+        this.overflow = overflow;
+    }
+
+    public boolean hasValue(int docId) {
+        return firstOrdinals[docId] != 0;
+    }
+
+    /**
+     * The number of ordinals (values) the doc has.
+     */
+    public int numOrdinals(int docId) {
+        int ord = firstOrdinals[docId];
+        if (ord >= 0) {
+            return ord == 0 ? 0 : 1;
+        }
+        return overflow.get(-ord);
+    }
+
+    /**
+     * The ordinal at the provided index (<tt>0 <= index < numOrdinals(docId)</tt>) of the doc.
+     */
+    public int ordinal(int docId, int index) {
+        int ord = firstOrdinals[docId];
+        if (ord >= 0) {
+            return ord;
+        }
+        return overflow.get(-ord + 1 + index);
+    }
+
+    /**
+     * The first (lowest) ordinal of the doc, or 0 if it has no value.
+     */
+    public int firstOrdinal(int docId) {
+        int ord = firstOrdinals[docId];
+        if (ord >= 0) {
+            return ord;
+        }
+        return overflow.get(-ord + 1);
+    }
+
+    public void forEachOrdinalInDoc(int docId, FieldData.OrdinalInDocProc proc) {
+        int ord = firstOrdinals[docId];
+        if (ord >= 0) {
+            proc.onOrdinal(docId, ord);
+            return;
+        }
+        int offset = -ord;
+        int length = overflow.get(offset);
+        for (int i = 1; i <= length; i++) {
+            proc.onOrdinal(docId, overflow.get(offset + i));
+        }
+    }
+
+    public long computeSizeInBytes() {
+        long size = RamUsage.NUM_BYTES_ARRAY_HEADER + ((long) firstOrdinals.length * RamUsage.NUM_BYTES_INT);
+        size += overflow.computeSizeInBytes();
+        return size;
+    }
+
+    /**
+     * Collects the ordinals of docs, which must be added in ascending ordinal order (as
+     * they are when iterating over the terms of a field).
+     */
+    public static class Builder {
+
+        private final int[] firstOrdinals;
+
+        // chains of the additional ordinals of each multi valued doc, lazily allocated
+        private int[] heads;
+
+        private int[] poolOrdinals;
+
+        private int[] poolNext;
+
+        private int poolSize;
+
+        private int maxOrdinal;
+
+        public Builder(int maxDoc) {
+            this.firstOrdinals = new int[maxDoc];
+        }
+
+        public void addOrdinal(int docId, int ordinal) {
+            if (ordinal > maxOrdinal) {
+                maxOrdinal = ordinal;
+            }
+            if (firstOrdinals[docId] == 0) {
+                firstOrdinals[docId] = ordinal;
+                return;
+            }
+            if (heads == null) {
+                heads = new int[firstOrdinals.length];
+                poolOrdinals = new int[Math.max(16, firstOrdinals.length >>> 4)];
+                poolNext = new int[poolOrdinals.length];
+            }
+            if (poolSize == poolOrdinals.length) {
+                int newLength = poolOrdinals.length + (poolOrdinals.length >>> 1);
+                int[] newOrdinals = new int[newLength];
+                System.arraycopy(poolOrdinals, 0, newOrdinals, 0, poolSize);
+                poolOrdinals = newOrdinals;
+                int[] newNext = new int[newLength];
+                System.arraycopy(poolNext, 0, newNext, 0, poolSize);
+                poolNext = newNext;
+            }
+            poolOrdinals[poolSize] = ordinal;
+            poolNext[poolSize] = heads[docId];
+            heads[docId] = ++poolSize;
+        }
+
+        /**
+         * Does any doc have more than one ordinal.
+         */
+        public boolean isMultiValued() {
+            return heads != null;
+        }
+
+        /**
+         * The ordinals when no doc has more than one value, indexed by doc id.
+         */
+        public int[] singleValueOrdinals() {
+            return firstOrdinals;
+        }
+
+        public MultiValueOrdinals build() {
+            PagedPackedInts overflow = new PagedPackedInts(PagedPackedInts.bitsRequired(maxOrdinal));
+            // offset 0 is reserved, since a negative offset is what marks a multi valued doc
+            overflow.add(0);
+            if (heads == null) {
+                return new MultiValueOrdinals(firstOrdinals, overflow);
+            }
+            int[] chain = new int[16];
+            for (int docId = 0; docId < heads.length; docId++) {
+                int head = heads[docId];
+                if (head == 0) {
+                    continue;
+                }
+                int length = 0;
+                for (int pos = head; pos != 0; pos = poolNext[pos - 1]) {
+                    if (length == chain.length) {
+                        int[] newChain = new int[chain.length << 1];
+                        System.arraycopy(chain, 0, newChain, 0, length);
+                        chain = newChain;
+                    }
+                    chain[length++] = poolOrdinals[pos - 1];
+                }
+                int offset = overflow.add(length + 1);
+                overflow.add(firstOrdinals[docId]);
+                // chains are built by prepending, so they hold the ordinals in descending order
+                for (int i = length - 1; i >= 0; i--) {
+                    overflow.add(chain[i]);
+                }
+                firstOrdinals[docId] = -offset;
+            }
+            heads = null;
+            poolOrdinals = null;
+            poolNext = null;
+            return new MultiValueOrdinals(firstOrdinals, overflow);
+        }
+    }
+}
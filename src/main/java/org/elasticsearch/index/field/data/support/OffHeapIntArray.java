@@ -0,0 +1,89 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.field.data.support;
+
+import org.apache.lucene.store.bytebuffer.ByteBufferAllocator;
+import org.elasticsearch.ElasticSearchIllegalStateException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * A fixed length int array stored in a direct buffer, outside of the java heap. Only absolute
+ * reads are used, so it can be shared between threads once built. The memory is released by
+ * {@link #close()}, which the off heap field data cache calls once the segment reader the array
+ * was loaded for is closed (no search can read it anymore by then), and not when the array is
+ * evicted: searches that already got hold of the field data keep reading it.
+ */
+public class OffHeapIntArray {
+
+    /**
+     * The maximum length of an off heap int array (a single direct buffer can hold up to 2gb).
+     */
+    public static final int MAX_LENGTH = Integer.MAX_VALUE / 4;
+
+    private final ByteBuffer directBuffer;
+
+    // volatile so a closed array fails reads instead of touching released memory
+    private volatile IntBuffer buffer;
+
+    private final int length;
+
+    private final long sizeInBytes;
+
+    public OffHeapIntArray(int[] values) {
+        this.length = values.length;
+        this.directBuffer = ByteBuffer.allocateDirect(Math.max(1, values.length) * 4).order(ByteOrder.nativeOrder());
+        this.sizeInBytes = directBuffer.capacity();
+        IntBuffer buffer = directBuffer.asIntBuffer();
+        buffer.put(values);
+        buffer.clear();
+        this.buffer = buffer;
+    }
+
+    public int get(int index) {
+        IntBuffer buffer = this.buffer;
+        if (buffer == null) {
+            throw new ElasticSearchIllegalStateException("off heap array already released");
+        }
+        return buffer.get(index);
+    }
+
+    public int length() {
+        return this.length;
+    }
+
+    public long sizeInBytes() {
+        return this.sizeInBytes;
+    }
+
+    /**
+     * Releases the direct buffer backing this array right away, without waiting for a GC to
+     * run its cleaner. Must only be called once no reader can use the array anymore.
+     */
+    public synchronized void close() {
+        if (buffer == null) {
+            return;
+        }
+        buffer = null;
+        ByteBufferAllocator.Cleaner.clean(directBuffer);
+    }
+}
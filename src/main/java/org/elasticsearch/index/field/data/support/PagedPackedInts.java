@@ -0,0 +1,117 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.field.data.support;
+
+import org.elasticsearch.ElasticSearchIllegalArgumentException;
+import org.elasticsearch.common.RamUsage;
+
+import java.util.Arrays;
+
+/**
+ * An append only list of non negative ints, each stored using a fixed number of bits. Values are
+ * kept in fixed size pages of <tt>long[]</tt> so no single large contiguous array is needed.
+ */
+public class PagedPackedInts {
+
+    static final int PAGE_SHIFT = 12;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final int bitsPerValue;
+
+    private final long mask;
+
+    private final int longsPerPage;
+
+    private long[][] pages;
+
+    private int size;
+
+    public PagedPackedInts(int bitsPerValue) {
+        if (bitsPerValue < 1 || bitsPerValue > 32) {
+            throw new ElasticSearchIllegalArgumentException("bitsPerValue must be between 1 and 32, got [" + bitsPerValue + "]");
+        }
+        this.bitsPerValue = bitsPerValue;
+        this.mask = (1L << bitsPerValue) - 1;
+        this.longsPerPage = (int) (((long) PAGE_SIZE * bitsPerValue + 63) >>> 6);
+        this.pages = new long[1][];
+    }
+
+    /**
+     * The number of bits required to represent the provided (non negative) value.
+     */
+    public static int bitsRequired(long maxValue) {
+        return Math.max(1, 64 - Long.numberOfLeadingZeros(maxValue));
+    }
+
+    public int bitsPerValue() {
+        return this.bitsPerValue;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Appends the value, returning the index it can be retrieved with.
+     */
+    public int add(int value) {
+        int index = size;
+        int page = index >>> PAGE_SHIFT;
+        if (page >= pages.length) {
+            pages = Arrays.copyOf(pages, pages.length << 1);
+        }
+        if (pages[page] == null) {
+            pages[page] = new long[longsPerPage];
+        }
+        long[] blocks = pages[page];
+        long bitPos = (long) (index & PAGE_MASK) * bitsPerValue;
+        int element = (int) (bitPos >>> 6);
+        int bitIndex = (int) (bitPos & 63);
+        long v = value & mask;
+        blocks[element] |= v << bitIndex;
+        if (bitIndex + bitsPerValue > 64) {
+            blocks[element + 1] |= v >>> (64 - bitIndex);
+        }
+        size++;
+        return index;
+    }
+
+    public int get(int index) {
+        long[] blocks = pages[index >>> PAGE_SHIFT];
+        long bitPos = (long) (index & PAGE_MASK) * bitsPerValue;
+        int element = (int) (bitPos >>> 6);
+        int bitIndex = (int) (bitPos & 63);
+        if (bitIndex + bitsPerValue <= 64) {
+            return (int) ((blocks[element] >>> bitIndex) & mask);
+        }
+        return (int) (((blocks[element] >>> bitIndex) | (blocks[element + 1] << (64 - bitIndex))) & mask);
+    }
+
+    public long computeSizeInBytes() {
+        long size = RamUsage.NUM_BYTES_ARRAY_HEADER + ((long) pages.length * RamUsage.NUM_BYTES_OBJECT_REF);
+        for (long[] page : pages) {
+            if (page != null) {
+                size += RamUsage.NUM_BYTES_ARRAY_HEADER + ((long) page.length * RamUsage.NUM_BYTES_LONG);
+            }
+        }
+        return size;
+    }
+}
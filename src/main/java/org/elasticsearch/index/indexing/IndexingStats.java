@@ -23,6 +23,7 @@ import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
@@ -175,6 +176,8 @@ public class IndexingStats implements Streamable, ToXContent {
     @Nullable
     private Map<String, Stats> typeStats;
 
+    private long versionMapSizeInBytes;
+
     public IndexingStats() {
         totalStats = new Stats();
     }
@@ -184,6 +187,12 @@ public class IndexingStats implements Streamable, ToXContent {
         this.typeStats = typeStats;
     }
 
+    public IndexingStats(Stats totalStats, @Nullable Map<String, Stats> typeStats, long versionMapSizeInBytes) {
+        this.totalStats = totalStats;
+        this.typeStats = typeStats;
+        this.versionMapSizeInBytes = versionMapSizeInBytes;
+    }
+
     public void add(IndexingStats indexingStats) {
         add(indexingStats, true);
     }
@@ -193,6 +202,7 @@ public class IndexingStats implements Streamable, ToXContent {
             return;
         }
         totalStats.add(indexingStats.totalStats);
+        versionMapSizeInBytes += indexingStats.versionMapSizeInBytes;
         if (includeTypes && indexingStats.typeStats != null && !indexingStats.typeStats.isEmpty()) {
             if (typeStats == null) {
                 typeStats = new HashMap<String, Stats>(indexingStats.typeStats.size());
@@ -217,10 +227,31 @@ public class IndexingStats implements Streamable, ToXContent {
         return this.typeStats;
     }
 
+    /**
+     * The memory used by the realtime version map of the engines, holding the docs changed since the last refresh.
+     */
+    public ByteSizeValue versionMapSize() {
+        return new ByteSizeValue(versionMapSizeInBytes);
+    }
+
+    public ByteSizeValue getVersionMapSize() {
+        return versionMapSize();
+    }
+
+    public long versionMapSizeInBytes() {
+        return versionMapSizeInBytes;
+    }
+
+    public long getVersionMapSizeInBytes() {
+        return versionMapSizeInBytes;
+    }
+
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, ToXContent.Params params) throws IOException {
         builder.startObject(Fields.INDEXING);
         totalStats.toXContent(builder, params);
+        builder.field(Fields.VERSION_MAP_SIZE, versionMapSize().toString());
+        builder.field(Fields.VERSION_MAP_SIZE_IN_BYTES, versionMapSizeInBytes);
         if (typeStats != null && !typeStats.isEmpty()) {
             builder.startObject(Fields.TYPES);
             for (Map.Entry<String, Stats> entry : typeStats.entrySet()) {
@@ -245,6 +276,8 @@ public class IndexingStats implements Streamable, ToXContent {
         static final XContentBuilderString DELETE_TIME = new XContentBuilderString("delete_time");
         static final XContentBuilderString DELETE_TIME_IN_MILLIS = new XContentBuilderString("delete_time_in_millis");
         static final XContentBuilderString DELETE_CURRENT = new XContentBuilderString("delete_current");
+        static final XContentBuilderString VERSION_MAP_SIZE = new XContentBuilderString("version_map_size");
+        static final XContentBuilderString VERSION_MAP_SIZE_IN_BYTES = new XContentBuilderString("version_map_size_in_bytes");
     }
 
     public static IndexingStats readIndexingStats(StreamInput in) throws IOException {
@@ -256,6 +289,7 @@ public class IndexingStats implements Streamable, ToXContent {
     @Override
     public void readFrom(StreamInput in) throws IOException {
         totalStats = Stats.readStats(in);
+        versionMapSizeInBytes = in.readVLong();
         if (in.readBoolean()) {
             int size = in.readVInt();
             typeStats = new HashMap<String, Stats>(size);
@@ -268,6 +302,7 @@ public class IndexingStats implements Streamable, ToXContent {
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         totalStats.writeTo(out);
+        out.writeVLong(versionMapSizeInBytes);
         if (typeStats == null || typeStats.isEmpty()) {
             out.writeBoolean(false);
         } else {
@@ -233,47 +233,50 @@ public class DateFieldMapper extends NumberFieldMapper<Long> {
 
     @Override
     public Query fieldQuery(String value, @Nullable QueryParseContext context) {
-        long now = context == null ? System.currentTimeMillis() : context.nowInMillis();
-        long lValue = dateMathParser.parse(value, now);
+        long lValue = parseToMilliseconds(value, context, false);
         return NumericRangeQuery.newLongRange(names.indexName(), precisionStep,
                 lValue, lValue, true, true);
     }
 
     @Override
     public Query rangeQuery(String lowerTerm, String upperTerm, boolean includeLower, boolean includeUpper, @Nullable QueryParseContext context) {
-        long now = context == null ? System.currentTimeMillis() : context.nowInMillis();
         return NumericRangeQuery.newLongRange(names.indexName(), precisionStep,
-                lowerTerm == null ? null : dateMathParser.parse(lowerTerm, now),
-                upperTerm == null ? null : (includeUpper && parseUpperInclusive) ? dateMathParser.parseUpperInclusive(upperTerm, now) : dateMathParser.parse(upperTerm, now),
+                lowerTerm == null ? null : parseToMilliseconds(lowerTerm, context, false),
+                upperTerm == null ? null : parseToMilliseconds(upperTerm, context, includeUpper && parseUpperInclusive),
                 includeLower, includeUpper);
     }
 
     @Override
     public Filter fieldFilter(String value, @Nullable QueryParseContext context) {
-        long now = context == null ? System.currentTimeMillis() : context.nowInMillis();
-        long lValue = dateMathParser.parse(value, now);
+        long lValue = parseToMilliseconds(value, context, false);
         return NumericRangeFilter.newLongRange(names.indexName(), precisionStep,
                 lValue, lValue, true, true);
     }
 
     @Override
     public Filter rangeFilter(String lowerTerm, String upperTerm, boolean includeLower, boolean includeUpper, @Nullable QueryParseContext context) {
-        long now = context == null ? System.currentTimeMillis() : context.nowInMillis();
         return NumericRangeFilter.newLongRange(names.indexName(), precisionStep,
-                lowerTerm == null ? null : dateMathParser.parse(lowerTerm, now),
-                upperTerm == null ? null : (includeUpper && parseUpperInclusive) ? dateMathParser.parseUpperInclusive(upperTerm, now) : dateMathParser.parse(upperTerm, now),
+                lowerTerm == null ? null : parseToMilliseconds(lowerTerm, context, false),
+                upperTerm == null ? null : parseToMilliseconds(upperTerm, context, includeUpper && parseUpperInclusive),
                 includeLower, includeUpper);
     }
 
     @Override
     public Filter rangeFilter(FieldDataCache fieldDataCache, String lowerTerm, String upperTerm, boolean includeLower, boolean includeUpper, @Nullable QueryParseContext context) {
-        long now = context == null ? System.currentTimeMillis() : context.nowInMillis();
         return NumericRangeFieldDataFilter.newLongRange(fieldDataCache, names.indexName(),
-                lowerTerm == null ? null : dateMathParser.parse(lowerTerm, now),
-                upperTerm == null ? null : (includeUpper && parseUpperInclusive) ? dateMathParser.parseUpperInclusive(upperTerm, now) : dateMathParser.parse(upperTerm, now),
+                lowerTerm == null ? null : parseToMilliseconds(lowerTerm, context, false),
+                upperTerm == null ? null : parseToMilliseconds(upperTerm, context, includeUpper && parseUpperInclusive),
                 includeLower, includeUpper);
     }
 
+    /**
+     * Only values relative to <tt>now</tt> resolve the current time of the request, which makes it uncacheable.
+     */
+    private long parseToMilliseconds(String value, @Nullable QueryParseContext context, boolean upperInclusive) {
+        long now = (context == null || !value.startsWith("now")) ? System.currentTimeMillis() : context.nowInMillis();
+        return upperInclusive ? dateMathParser.parseUpperInclusive(value, now) : dateMathParser.parse(value, now);
+    }
+
     @Override
     protected boolean customBoost() {
         return true;
@@ -27,6 +27,7 @@ import org.elasticsearch.common.unit.DistanceUnit;
 import org.elasticsearch.index.field.data.FieldData;
 import org.elasticsearch.index.field.data.FieldDataType;
 import org.elasticsearch.index.field.data.support.FieldDataLoader;
+import org.elasticsearch.index.field.data.support.MultiValueOrdinals;
 import org.elasticsearch.index.search.geo.GeoDistance;
 import org.elasticsearch.index.search.geo.GeoHashUtils;
 
@@ -194,7 +195,7 @@ public abstract class GeoPointFieldData extends FieldData<GeoPointDocFieldData>
         }
 
         @Override
-        public GeoPointFieldData buildMultiValue(String field, int[][] ordinals) {
+        public GeoPointFieldData buildMultiValue(String field, MultiValueOrdinals ordinals) {
             return new MultiValueGeoPointFieldData(field, ordinals, lat.toArray(), lon.toArray());
         }
     }
@@ -19,9 +19,9 @@
 
 package org.elasticsearch.index.mapper.geo;
 
-import org.elasticsearch.common.RamUsage;
 import org.elasticsearch.common.thread.ThreadLocals;
 import org.elasticsearch.index.field.data.doubles.DoubleFieldData;
+import org.elasticsearch.index.field.data.support.MultiValueOrdinals;
 import org.elasticsearch.index.search.geo.GeoHashUtils;
 
 /**
@@ -67,10 +67,9 @@ public class MultiValueGeoPointFieldData extends GeoPointFieldData {
         }
     };
 
-    // order with value 0 indicates no value
-    private final int[][] ordinals;
+    private final MultiValueOrdinals ordinals;
 
-    public MultiValueGeoPointFieldData(String fieldName, int[][] ordinals, double[] lat, double[] lon) {
+    public MultiValueGeoPointFieldData(String fieldName, MultiValueOrdinals ordinals, double[] lat, double[] lon) {
         super(fieldName, lat, lon);
         this.ordinals = ordinals;
     }
@@ -78,10 +77,7 @@ public class MultiValueGeoPointFieldData extends GeoPointFieldData {
     @Override
     protected long computeSizeInBytes() {
         long size = super.computeSizeInBytes();
-        size += RamUsage.NUM_BYTES_ARRAY_HEADER; // for the top level array
-        for (int[] ordinal : ordinals) {
-            size += RamUsage.NUM_BYTES_INT * ordinal.length + RamUsage.NUM_BYTES_ARRAY_HEADER;
-        }
+        size += ordinals.computeSizeInBytes();
         return size;
     }
 
@@ -92,23 +88,16 @@ public class MultiValueGeoPointFieldData extends GeoPointFieldData {
 
     @Override
     public boolean hasValue(int docId) {
-        for (int[] ordinal : ordinals) {
-            if (ordinal[docId] != 0) {
-                return true;
-            }
-        }
-        return false;
+        return ordinals.hasValue(docId);
     }
 
     @Override
     public void forEachValueInDoc(int docId, StringValueInDocProc proc) {
         boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onValue(docId, GeoHashUtils.encode(lat[loc], lon[loc]));
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            found = true;
+            proc.onValue(docId, GeoHashUtils.encode(lat[loc], lon[loc]));
         }
         if (!found) {
             proc.onMissing(docId);
@@ -117,71 +106,46 @@ public class MultiValueGeoPointFieldData extends GeoPointFieldData {
 
     @Override
     public void forEachValueInDoc(int docId, ValueInDocProc proc) {
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                proc.onValue(docId, lat[loc], lon[loc]);
-            }
+        for (int j = 0, numOrdinals = ordinals.numOrdinals(docId); j < numOrdinals; j++) {
+            int loc = ordinals.ordinal(docId, j);
+            proc.onValue(docId, lat[loc], lon[loc]);
         }
     }
 
     @Override
     public void forEachOrdinalInDoc(int docId, OrdinalInDocProc proc) {
-        boolean found = false;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                found = true;
-                proc.onOrdinal(docId, loc);
-            }
-        }
-        if (!found) {
-            proc.onOrdinal(docId, 0);
-        }
+        ordinals.forEachOrdinalInDoc(docId, proc);
     }
 
     @Override
     public GeoPoint value(int docId) {
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                GeoPoint point = valuesCache.get().get();
-                point.latlon(lat[loc], lon[loc]);
-                return point;
-            }
+        int loc = ordinals.firstOrdinal(docId);
+        if (loc != 0) {
+            GeoPoint point = valuesCache.get().get();
+            point.latlon(lat[loc], lon[loc]);
+            return point;
         }
         return null;
     }
 
     @Override
     public GeoPoint[] values(int docId) {
-        int length = 0;
-        for (int[] ordinal : ordinals) {
-            if (ordinal[docId] != 0) {
-                length++;
-            }
-        }
+        int length = ordinals.numOrdinals(docId);
         if (length == 0) {
             return EMPTY_ARRAY;
         }
         GeoPoint[] points;
         if (length < VALUE_CACHE_SIZE) {
             points = valuesArrayCache.get().get()[length];
-            int i = 0;
-            for (int[] ordinal : ordinals) {
-                int loc = ordinal[docId];
-                if (loc != 0) {
-                    points[i++].latlon(lat[loc], lon[loc]);
-                }
+            for (int i = 0; i < length; i++) {
+                int loc = ordinals.ordinal(docId, i);
+                points[i].latlon(lat[loc], lon[loc]);
             }
         } else {
             points = new GeoPoint[length];
-            int i = 0;
-            for (int[] ordinal : ordinals) {
-                int loc = ordinal[docId];
-                if (loc != 0) {
-                    points[i++] = new GeoPoint(lat[loc], lon[loc]);
-                }
+            for (int i = 0; i < length; i++) {
+                int loc = ordinals.ordinal(docId, i);
+                points[i] = new GeoPoint(lat[loc], lon[loc]);
             }
         }
         return points;
@@ -189,34 +153,25 @@ public class MultiValueGeoPointFieldData extends GeoPointFieldData {
 
     @Override
     public double latValue(int docId) {
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                return lat[loc];
-            }
+        int loc = ordinals.firstOrdinal(docId);
+        if (loc != 0) {
+            return lat[loc];
         }
         return 0;
     }
 
     @Override
     public double lonValue(int docId) {
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                return lon[loc];
-            }
+        int loc = ordinals.firstOrdinal(docId);
+        if (loc != 0) {
+            return lon[loc];
         }
         return 0;
     }
 
     @Override
     public double[] latValues(int docId) {
-        int length = 0;
-        for (int[] ordinal : ordinals) {
-            if (ordinal[docId] != 0) {
-                length++;
-            }
-        }
+        int length = ordinals.numOrdinals(docId);
         if (length == 0) {
             return DoubleFieldData.EMPTY_DOUBLE_ARRAY;
         }
@@ -226,24 +181,16 @@ public class MultiValueGeoPointFieldData extends GeoPointFieldData {
         } else {
             doubles = new double[length];
         }
-        int i = 0;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                doubles[i++] = lat[loc];
-            }
+        for (int i = 0; i < length; i++) {
+            int loc = ordinals.ordinal(docId, i);
+            doubles[i] = lat[loc];
         }
         return doubles;
     }
 
     @Override
     public double[] lonValues(int docId) {
-        int length = 0;
-        for (int[] ordinal : ordinals) {
-            if (ordinal[docId] != 0) {
-                length++;
-            }
-        }
+        int length = ordinals.numOrdinals(docId);
         if (length == 0) {
             return DoubleFieldData.EMPTY_DOUBLE_ARRAY;
         }
@@ -253,12 +200,9 @@ public class MultiValueGeoPointFieldData extends GeoPointFieldData {
         } else {
             doubles = new double[length];
         }
-        int i = 0;
-        for (int[] ordinal : ordinals) {
-            int loc = ordinal[docId];
-            if (loc != 0) {
-                doubles[i++] = lon[loc];
-            }
+        for (int i = 0; i < length; i++) {
+            int loc = ordinals.ordinal(docId, i);
+            doubles[i] = lon[loc];
         }
         return doubles;
     }
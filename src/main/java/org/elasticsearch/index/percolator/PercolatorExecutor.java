@@ -23,11 +23,15 @@ import com.google.common.collect.ImmutableMap;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.document.Fieldable;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
 import org.apache.lucene.index.memory.CustomMemoryIndex;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorer;
+import org.apache.lucene.store.RAMDirectory;
 import org.elasticsearch.ElasticSearchException;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Preconditions;
@@ -58,12 +62,21 @@ import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.index.settings.IndexSettings;
 import org.elasticsearch.index.shard.service.IndexShard;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import static org.elasticsearch.index.mapper.SourceToParse.source;
 
@@ -147,6 +160,24 @@ public class PercolatorExecutor extends AbstractIndexComponent {
         }
     }
 
+    /**
+     * The registered queries along with the index of their terms, published together so a percolation always
+     * sees a terms index matching the queries.
+     */
+    static final class RegisteredQueries {
+
+        static final RegisteredQueries EMPTY = new RegisteredQueries(ImmutableMap.<String, Query>of(), QueryTermsIndex.EMPTY);
+
+        final ImmutableMap<String, Query> queries;
+
+        final QueryTermsIndex termsIndex;
+
+        RegisteredQueries(ImmutableMap<String, Query> queries, QueryTermsIndex termsIndex) {
+            this.queries = queries;
+            this.termsIndex = termsIndex;
+        }
+    }
+
     public static final class Response {
         private final List<String> matches;
         private final boolean mappersAdded;
@@ -171,7 +202,15 @@ public class PercolatorExecutor extends AbstractIndexComponent {
 
     private final IndexCache indexCache;
 
-    private volatile ImmutableMap<String, Query> queries = ImmutableMap.of();
+    private final ThreadPool threadPool;
+
+    private final int parallelism;
+
+    private final int minQueriesPerPartition;
+
+    private final int batchMaxBufferedDocs;
+
+    private volatile RegisteredQueries registeredQueries = RegisteredQueries.EMPTY;
 
 
     private IndicesService indicesService;
@@ -179,11 +218,16 @@ public class PercolatorExecutor extends AbstractIndexComponent {
     @Inject
     public PercolatorExecutor(Index index, @IndexSettings Settings indexSettings,
                               MapperService mapperService, IndexQueryParserService queryParserService,
-                              IndexCache indexCache) {
+                              IndexCache indexCache, ThreadPool threadPool) {
         super(index, indexSettings);
         this.mapperService = mapperService;
         this.queryParserService = queryParserService;
         this.indexCache = indexCache;
+        this.threadPool = threadPool;
+        this.parallelism = componentSettings.getAsInt("parallelism", Runtime.getRuntime().availableProcessors());
+        this.minQueriesPerPartition = componentSettings.getAsInt("min_queries_per_partition", 1000);
+        this.batchMaxBufferedDocs = componentSettings.getAsInt("batch_max_buffered_docs", IndexWriterConfig.DISABLE_AUTO_FLUSH);
+        logger.debug("using parallelism [{}], min_queries_per_partition [{}]", parallelism, minQueriesPerPartition);
     }
 
     public void setIndicesService(IndicesService indicesService) {
@@ -191,9 +235,7 @@ public class PercolatorExecutor extends AbstractIndexComponent {
     }
 
     public synchronized void close() {
-        ImmutableMap<String, Query> old = queries;
-        queries = ImmutableMap.of();
-        old.clear();
+        registeredQueries = RegisteredQueries.EMPTY;
     }
 
     public void addQuery(String name, QueryBuilder queryBuilder) throws ElasticSearchException {
@@ -251,18 +293,114 @@ public class PercolatorExecutor extends AbstractIndexComponent {
 
     public synchronized void addQuery(String name, Query query) {
         Preconditions.checkArgument(query != null, "query must be provided for percolate request");
-        this.queries = MapBuilder.newMapBuilder(queries).put(name, query).immutableMap();
+        RegisteredQueries current = registeredQueries;
+        this.registeredQueries = new RegisteredQueries(MapBuilder.newMapBuilder(current.queries).put(name, query).immutableMap(),
+                current.termsIndex.add(ImmutableMap.of(name, query)));
     }
 
     public synchronized void removeQuery(String name) {
-        this.queries = MapBuilder.newMapBuilder(queries).remove(name).immutableMap();
+        RegisteredQueries current = registeredQueries;
+        this.registeredQueries = new RegisteredQueries(MapBuilder.newMapBuilder(current.queries).remove(name).immutableMap(),
+                current.termsIndex.remove(name));
     }
 
     public synchronized void addQueries(Map<String, Query> queries) {
-        this.queries = MapBuilder.newMapBuilder(this.queries).putAll(queries).immutableMap();
+        RegisteredQueries current = registeredQueries;
+        this.registeredQueries = new RegisteredQueries(MapBuilder.newMapBuilder(current.queries).putAll(queries).immutableMap(),
+                current.termsIndex.add(queries));
     }
 
     public Response percolate(final SourceRequest request) throws ElasticSearchException {
+        return percolate(parseRequest(request));
+    }
+
+    /**
+     * Percolates several docs at once, indexing them into a single in memory index so each candidate query is
+     * executed once for the whole batch. Returns a response per doc, in the order of the requests. Percolating
+     * multiple docs does not support filtering the queries using a query.
+     */
+    public List<Response> percolate(final List<SourceRequest> requests) throws ElasticSearchException {
+        List<ParsedDocument> docs = new ArrayList<ParsedDocument>(requests.size());
+        for (SourceRequest request : requests) {
+            DocAndQueryRequest docAndQuery = parseRequest(request);
+            if (docAndQuery.query() != null) {
+                throw new PercolatorException(index, "query is not supported when percolating multiple docs");
+            }
+            docs.add(docAndQuery.doc());
+        }
+
+        List<List<String>> matches = new ArrayList<List<String>>(docs.size());
+        for (int i = 0; i < docs.size(); i++) {
+            matches.add(new ArrayList<String>());
+        }
+        if (!docs.isEmpty()) {
+            percolateDocs(docs, matches);
+        }
+
+        List<Response> responses = new ArrayList<Response>(docs.size());
+        for (int i = 0; i < docs.size(); i++) {
+            responses.add(new Response(matches.get(i), docs.get(i).mappersAdded()));
+        }
+        return responses;
+    }
+
+    private void percolateDocs(List<ParsedDocument> docs, final List<List<String>> matches) throws ElasticSearchException {
+        RAMDirectory directory = new RAMDirectory();
+        IndexReader reader = null;
+        try {
+            // TODO: This means percolation does not support nested docs...
+            // the matches are mapped back to the docs by doc id, so only merge adjacent segments to keep them in order
+            IndexWriterConfig indexWriterConfig = new IndexWriterConfig(Lucene.VERSION, Lucene.STANDARD_ANALYZER)
+                    .setMergePolicy(new LogByteSizeMergePolicy())
+                    .setMaxBufferedDocs(batchMaxBufferedDocs);
+            IndexWriter indexWriter = new IndexWriter(directory, indexWriterConfig);
+            try {
+                for (ParsedDocument doc : docs) {
+                    indexWriter.addDocument(doc.rootDoc(), doc.analyzer());
+                }
+            } finally {
+                indexWriter.close();
+            }
+            reader = IndexReader.open(directory, true);
+            IndexSearcher searcher = new IndexSearcher(reader);
+
+            RegisteredQueries registeredQueries = this.registeredQueries;
+            ImmutableMap<String, Query> queries = registeredQueries.queries;
+            for (final String name : registeredQueries.termsIndex.candidates(reader)) {
+                Query query = queries.get(name);
+                if (query == null) {
+                    continue;
+                }
+                try {
+                    searcher.search(query, new MatchesCollector(name, matches));
+                } catch (IOException e) {
+                    logger.warn("[" + name + "] failed to execute query", e);
+                }
+            }
+
+            IndexReader[] segments = reader.getSequentialSubReaders();
+            if (segments == null) {
+                indexCache.clear(reader);
+            } else {
+                for (IndexReader segment : segments) {
+                    indexCache.clear(segment);
+                }
+            }
+        } catch (IOException e) {
+            throw new PercolatorException(index, "failed to percolate docs", e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+            directory.close();
+        }
+    }
+
+    private DocAndQueryRequest parseRequest(SourceRequest request) throws ElasticSearchException {
         Query query = null;
         ParsedDocument doc = null;
         XContentParser parser = null;
@@ -300,7 +438,7 @@ public class PercolatorExecutor extends AbstractIndexComponent {
             throw new PercolatorException(index, "No doc to percolate in the request");
         }
 
-        return percolate(new DocAndQueryRequest(doc, query));
+        return new DocAndQueryRequest(doc, query);
     }
 
     public Response percolate(DocAndSourceQueryRequest request) throws ElasticSearchException {
@@ -350,22 +488,21 @@ public class PercolatorExecutor extends AbstractIndexComponent {
 
         final IndexSearcher searcher = memoryIndex.createSearcher();
 
-        List<String> matches = new ArrayList<String>();
-        if (request.query() == null) {
-            Lucene.ExistsCollector collector = new Lucene.ExistsCollector();
-            for (Map.Entry<String, Query> entry : queries.entrySet()) {
-                collector.reset();
-                try {
-                    searcher.search(entry.getValue(), collector);
-                } catch (IOException e) {
-                    logger.warn("[" + entry.getKey() + "] failed to execute query", e);
-                }
+        RegisteredQueries registeredQueries = this.registeredQueries;
+        ImmutableMap<String, Query> queries = registeredQueries.queries;
+        // only the queries that can possibly match the doc based on its terms need to be executed
+        Set<String> candidates;
+        try {
+            candidates = registeredQueries.termsIndex.candidates(searcher.getIndexReader());
+        } catch (IOException e) {
+            throw new PercolatorException(index, "failed to extract the terms of the doc", e);
+        }
 
-                if (collector.exists()) {
-                    matches.add(entry.getKey());
-                }
-            }
+        List<String> matches;
+        if (request.query() == null) {
+            matches = executeQueries(searcher, queries, candidates);
         } else {
+            matches = new ArrayList<String>();
             IndexService percolatorIndex = indicesService.indexService(PercolatorService.INDEX_NAME);
             if (percolatorIndex == null) {
                 throw new PercolateIndexUnavailable(new Index(PercolatorService.INDEX_NAME));
@@ -376,7 +513,7 @@ public class PercolatorExecutor extends AbstractIndexComponent {
             IndexShard percolatorShard = percolatorIndex.shard(0);
             Engine.Searcher percolatorSearcher = percolatorShard.searcher();
             try {
-                percolatorSearcher.searcher().search(request.query(), new QueryCollector(logger, queries, searcher, percolatorIndex, matches));
+                percolatorSearcher.searcher().search(request.query(), new QueryCollector(logger, queries, candidates, searcher, percolatorIndex, matches));
             } catch (IOException e) {
                 logger.warn("failed to execute", e);
             } finally {
@@ -389,18 +526,143 @@ public class PercolatorExecutor extends AbstractIndexComponent {
         return new Response(matches, request.doc().mappersAdded());
     }
 
+    /**
+     * Executes the candidate queries against the doc, partitioning them and executing the partitions concurrently
+     * on the percolate thread pool when there are enough of them. The memory index searcher is read only, and can
+     * be shared by the partitions.
+     * <p/>
+     * The calling thread (itself a percolate thread) executes partitions as well, pulling them from the same queue
+     * as the pool threads, so it never waits on partitions that did not start yet, and partitions the pool rejected
+     * or did not get to are executed inline. Partitions are consecutive ranges of the candidates, and their matches
+     * are merged in partition order, so the matches are in the same order as when executed sequentially.
+     */
+    private List<String> executeQueries(final IndexSearcher searcher, final ImmutableMap<String, Query> queries, Set<String> candidates) throws ElasticSearchException {
+        int partitions = Math.min(parallelism, candidates.size() / minQueriesPerPartition);
+        if (partitions <= 1) {
+            return executePartition(searcher, queries, candidates);
+        }
+
+        final List<String> names = new ArrayList<String>(candidates);
+        final int partitionSize = (names.size() + partitions - 1) / partitions;
+        partitions = (names.size() + partitionSize - 1) / partitionSize;
+
+        final Queue<Integer> pending = new ConcurrentLinkedQueue<Integer>();
+        for (int partition = 0; partition < partitions; partition++) {
+            pending.add(partition);
+        }
+        final AtomicReferenceArray<List<String>> partitionMatches = new AtomicReferenceArray<List<String>>(partitions);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch latch = new CountDownLatch(partitions);
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                Integer partition;
+                while ((partition = pending.poll()) != null) {
+                    try {
+                        int from = partition * partitionSize;
+                        int to = Math.min(names.size(), from + partitionSize);
+                        partitionMatches.set(partition, executePartition(searcher, queries, names.subList(from, to)));
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }
+        };
+        Executor executor = threadPool.executor(ThreadPool.Names.PERCOLATE);
+        for (int i = 1; i < partitions; i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                // the calling thread will execute the partitions
+                break;
+            }
+        }
+        worker.run();
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PercolatorException(index, "interrupted while percolating");
+        }
+        if (failure.get() != null) {
+            throw new PercolatorException(index, "failed to percolate", failure.get());
+        }
+        List<String> matches = new ArrayList<String>();
+        for (int partition = 0; partition < partitions; partition++) {
+            matches.addAll(partitionMatches.get(partition));
+        }
+        return matches;
+    }
+
+    private List<String> executePartition(IndexSearcher searcher, ImmutableMap<String, Query> queries, Iterable<String> names) {
+        List<String> matches = new ArrayList<String>();
+        Lucene.ExistsCollector collector = new Lucene.ExistsCollector();
+        for (String name : names) {
+            Query query = queries.get(name);
+            if (query == null) {
+                continue;
+            }
+            collector.reset();
+            try {
+                searcher.search(query, collector);
+            } catch (IOException e) {
+                logger.warn("[" + name + "] failed to execute query", e);
+            }
+
+            if (collector.exists()) {
+                matches.add(name);
+            }
+        }
+        return matches;
+    }
+
+    static class MatchesCollector extends Collector {
+        private final String name;
+        private final List<List<String>> matches;
+
+        private int docBase;
+
+        MatchesCollector(String name, List<List<String>> matches) {
+            this.name = name;
+            this.matches = matches;
+        }
+
+        @Override
+        public void setScorer(Scorer scorer) throws IOException {
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            matches.get(docBase + doc).add(name);
+        }
+
+        @Override
+        public void setNextReader(IndexReader reader, int docBase) throws IOException {
+            this.docBase = docBase;
+        }
+
+        @Override
+        public boolean acceptsDocsOutOfOrder() {
+            return true;
+        }
+    }
+
     static class QueryCollector extends Collector {
         private final IndexSearcher searcher;
         private final IndexService percolatorIndex;
         private final List<String> matches;
         private final ImmutableMap<String, Query> queries;
+        private final Set<String> candidates;
         private final ESLogger logger;
 
         private final Lucene.ExistsCollector collector = new Lucene.ExistsCollector();
 
-        QueryCollector(ESLogger logger, ImmutableMap<String, Query> queries, IndexSearcher searcher, IndexService percolatorIndex, List<String> matches) {
+        QueryCollector(ESLogger logger, ImmutableMap<String, Query> queries, Set<String> candidates, IndexSearcher searcher, IndexService percolatorIndex, List<String> matches) {
             this.logger = logger;
             this.queries = queries;
+            this.candidates = candidates;
             this.searcher = searcher;
             this.percolatorIndex = percolatorIndex;
             this.matches = matches;
@@ -419,6 +681,9 @@ public class PercolatorExecutor extends AbstractIndexComponent {
                 return;
             }
             String id = Uid.idFromUid(uid);
+            if (!candidates.contains(id)) {
+                return;
+            }
             Query query = queries.get(id);
             if (query == null) {
                 // log???
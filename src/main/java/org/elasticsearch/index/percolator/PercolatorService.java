@@ -44,6 +44,7 @@ import org.elasticsearch.indices.IndicesLifecycle;
 import org.elasticsearch.indices.IndicesService;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -114,6 +115,10 @@ public class PercolatorService extends AbstractIndexComponent {
         return percolator.percolate(request);
     }
 
+    public List<PercolatorExecutor.Response> percolate(List<PercolatorExecutor.SourceRequest> requests) throws PercolatorException {
+        return percolator.percolate(requests);
+    }
+
     private void loadQueries(String indexName) {
         IndexService indexService = percolatorIndexService();
         IndexShard shard = indexService.shard(0);
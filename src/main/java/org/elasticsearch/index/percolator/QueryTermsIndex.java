@@ -0,0 +1,227 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.index.percolator;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.*;
+import org.elasticsearch.common.Nullable;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * An immutable index from terms to the registered percolator queries that require them. A query is
+ * indexed under a set of terms at least one of which a document must have in order to match it, so
+ * only the queries indexed under the terms of a document (and the queries no terms could be extracted
+ * from) need to be executed against it.
+ */
+public class QueryTermsIndex {
+
+    public static final QueryTermsIndex EMPTY = new QueryTermsIndex(ImmutableMap.<Term, ImmutableSet<String>>of(), ImmutableMap.<String, ImmutableSet<Term>>of(), ImmutableSet.<String>of());
+
+    private final Map<Term, ImmutableSet<String>> termToQueries;
+
+    private final Map<String, ImmutableSet<Term>> queryToTerms;
+
+    private final ImmutableSet<String> unindexedQueries;
+
+    private QueryTermsIndex(Map<Term, ImmutableSet<String>> termToQueries, Map<String, ImmutableSet<Term>> queryToTerms, ImmutableSet<String> unindexedQueries) {
+        this.termToQueries = termToQueries;
+        this.queryToTerms = queryToTerms;
+        this.unindexedQueries = unindexedQueries;
+    }
+
+    /**
+     * Returns a new index with the provided queries added (replacing queries registered under the same name).
+     */
+    public QueryTermsIndex add(Map<String, Query> queries) {
+        Map<Term, ImmutableSet<String>> termToQueries = new HashMap<Term, ImmutableSet<String>>(this.termToQueries);
+        Map<String, ImmutableSet<Term>> queryToTerms = new HashMap<String, ImmutableSet<Term>>(this.queryToTerms);
+        Set<String> unindexedQueries = new HashSet<String>(this.unindexedQueries);
+        for (Map.Entry<String, Query> entry : queries.entrySet()) {
+            String name = entry.getKey();
+            remove(name, termToQueries, queryToTerms, unindexedQueries);
+            Set<Term> terms = extractTerms(entry.getValue());
+            if (terms == null) {
+                unindexedQueries.add(name);
+                continue;
+            }
+            queryToTerms.put(name, ImmutableSet.copyOf(terms));
+            for (Term term : terms) {
+                ImmutableSet<String> names = termToQueries.get(term);
+                if (names == null) {
+                    termToQueries.put(term, ImmutableSet.of(name));
+                } else {
+                    termToQueries.put(term, ImmutableSet.<String>builder().addAll(names).add(name).build());
+                }
+            }
+        }
+        return new QueryTermsIndex(termToQueries, queryToTerms, ImmutableSet.copyOf(unindexedQueries));
+    }
+
+    /**
+     * Returns a new index without the query registered under the provided name.
+     */
+    public QueryTermsIndex remove(String name) {
+        if (!queryToTerms.containsKey(name) && !unindexedQueries.contains(name)) {
+            return this;
+        }
+        Map<Term, ImmutableSet<String>> termToQueries = new HashMap<Term, ImmutableSet<String>>(this.termToQueries);
+        Map<String, ImmutableSet<Term>> queryToTerms = new HashMap<String, ImmutableSet<Term>>(this.queryToTerms);
+        Set<String> unindexedQueries = new HashSet<String>(this.unindexedQueries);
+        remove(name, termToQueries, queryToTerms, unindexedQueries);
+        return new QueryTermsIndex(termToQueries, queryToTerms, ImmutableSet.copyOf(unindexedQueries));
+    }
+
+    private static void remove(String name, Map<Term, ImmutableSet<String>> termToQueries, Map<String, ImmutableSet<Term>> queryToTerms, Set<String> unindexedQueries) {
+        unindexedQueries.remove(name);
+        ImmutableSet<Term> terms = queryToTerms.remove(name);
+        if (terms == null) {
+            return;
+        }
+        for (Term term : terms) {
+            ImmutableSet<String> names = termToQueries.get(term);
+            if (names == null) {
+                continue;
+            }
+            if (names.size() == 1) {
+                termToQueries.remove(term);
+            } else {
+                ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+                for (String other : names) {
+                    if (!other.equals(name)) {
+                        builder.add(other);
+                    }
+                }
+                termToQueries.put(term, builder.build());
+            }
+        }
+    }
+
+    /**
+     * The names of the queries that might match the (single document) reader, the ones indexed under one of
+     * its terms and the ones that could not be indexed.
+     */
+    public Set<String> candidates(IndexReader reader) throws IOException {
+        Set<String> candidates = new HashSet<String>(unindexedQueries);
+        if (termToQueries.isEmpty()) {
+            return candidates;
+        }
+        TermEnum termEnum = reader.terms(new Term(""));
+        try {
+            do {
+                Term term = termEnum.term();
+                if (term == null) {
+                    break;
+                }
+                ImmutableSet<String> names = termToQueries.get(term);
+                if (names != null) {
+                    candidates.addAll(names);
+                }
+            } while (termEnum.next());
+        } finally {
+            termEnum.close();
+        }
+        return candidates;
+    }
+
+    /**
+     * Extracts a set of terms at least one of which a document must contain in order to match the query,
+     * or <tt>null</tt> if no such set can be extracted (for example, for a match all or a range query).
+     */
+    @Nullable
+    public static Set<Term> extractTerms(Query query) {
+        if (query instanceof TermQuery) {
+            return Collections.singleton(((TermQuery) query).getTerm());
+        } else if (query instanceof PhraseQuery) {
+            Term[] terms = ((PhraseQuery) query).getTerms();
+            if (terms.length == 0) {
+                return null;
+            }
+            // all terms are required, the longest is likely the rarest one
+            Term longest = terms[0];
+            for (Term term : terms) {
+                if (term.text().length() > longest.text().length()) {
+                    longest = term;
+                }
+            }
+            return Collections.singleton(longest);
+        } else if (query instanceof BooleanQuery) {
+            return extractTerms((BooleanQuery) query);
+        } else if (query instanceof DisjunctionMaxQuery) {
+            Set<Term> terms = new HashSet<Term>();
+            for (Query disjunct : ((DisjunctionMaxQuery) query)) {
+                Set<Term> disjunctTerms = extractTerms(disjunct);
+                if (disjunctTerms == null) {
+                    return null;
+                }
+                terms.addAll(disjunctTerms);
+            }
+            return terms.isEmpty() ? null : terms;
+        } else if (query instanceof FilteredQuery) {
+            return extractTerms(((FilteredQuery) query).getQuery());
+        } else if (query instanceof ConstantScoreQuery) {
+            Query innerQuery = ((ConstantScoreQuery) query).getQuery();
+            if (innerQuery == null) {
+                return null;
+            }
+            return extractTerms(innerQuery);
+        }
+        return null;
+    }
+
+    private static Set<Term> extractTerms(BooleanQuery query) {
+        Set<Term> required = null;
+        boolean hasRequired = false;
+        Set<Term> optional = new HashSet<Term>();
+        boolean optionalExtractable = true;
+        for (BooleanClause clause : query.clauses()) {
+            if (clause.isProhibited()) {
+                continue;
+            }
+            Set<Term> clauseTerms = extractTerms(clause.getQuery());
+            if (clause.isRequired()) {
+                hasRequired = true;
+                // any required clause will do, prefer the one with the fewest terms
+                if (clauseTerms != null && (required == null || clauseTerms.size() < required.size())) {
+                    required = clauseTerms;
+                }
+            } else {
+                if (clauseTerms == null) {
+                    optionalExtractable = false;
+                } else {
+                    optional.addAll(clauseTerms);
+                }
+            }
+        }
+        if (hasRequired) {
+            return required;
+        }
+        if (!optionalExtractable || optional.isEmpty()) {
+            return null;
+        }
+        return optional;
+    }
+}
@@ -175,13 +175,20 @@ public class SearchStats implements Streamable, ToXContent {
     @Nullable
     Map<String, Stats> groupStats;
 
+    private long queryCacheHitCount;
+    private long queryCacheMissCount;
+    private long queryCacheEvictions;
+
     public SearchStats() {
         totalStats = new Stats();
     }
 
-    public SearchStats(Stats totalStats, @Nullable Map<String, Stats> groupStats) {
+    public SearchStats(Stats totalStats, @Nullable Map<String, Stats> groupStats, long queryCacheHitCount, long queryCacheMissCount, long queryCacheEvictions) {
         this.totalStats = totalStats;
         this.groupStats = groupStats;
+        this.queryCacheHitCount = queryCacheHitCount;
+        this.queryCacheMissCount = queryCacheMissCount;
+        this.queryCacheEvictions = queryCacheEvictions;
     }
 
     public void add(SearchStats searchStats) {
@@ -193,6 +200,9 @@ public class SearchStats implements Streamable, ToXContent {
             return;
         }
         totalStats.add(searchStats.totalStats);
+        queryCacheHitCount += searchStats.queryCacheHitCount;
+        queryCacheMissCount += searchStats.queryCacheMissCount;
+        queryCacheEvictions += searchStats.queryCacheEvictions;
         if (includeTypes && searchStats.groupStats != null && !searchStats.groupStats.isEmpty()) {
             if (groupStats == null) {
                 groupStats = new HashMap<String, Stats>(searchStats.groupStats.size());
@@ -217,10 +227,46 @@ public class SearchStats implements Streamable, ToXContent {
         return this.groupStats;
     }
 
+    /**
+     * The number of query phases served from the shard query cache.
+     */
+    public long queryCacheHitCount() {
+        return this.queryCacheHitCount;
+    }
+
+    public long getQueryCacheHitCount() {
+        return queryCacheHitCount();
+    }
+
+    /**
+     * The number of cacheable query phases that were not found in the shard query cache, and were executed.
+     */
+    public long queryCacheMissCount() {
+        return this.queryCacheMissCount;
+    }
+
+    public long getQueryCacheMissCount() {
+        return queryCacheMissCount();
+    }
+
+    /**
+     * The number of cached query results evicted because the cache was full or the results expired.
+     */
+    public long queryCacheEvictions() {
+        return this.queryCacheEvictions;
+    }
+
+    public long getQueryCacheEvictions() {
+        return queryCacheEvictions();
+    }
+
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, ToXContent.Params params) throws IOException {
         builder.startObject(Fields.SEARCH);
         totalStats.toXContent(builder, params);
+        builder.field(Fields.QUERY_CACHE_HIT_COUNT, queryCacheHitCount);
+        builder.field(Fields.QUERY_CACHE_MISS_COUNT, queryCacheMissCount);
+        builder.field(Fields.QUERY_CACHE_EVICTIONS, queryCacheEvictions);
         if (groupStats != null && !groupStats.isEmpty()) {
             builder.startObject(Fields.GROUPS);
             for (Map.Entry<String, Stats> entry : groupStats.entrySet()) {
@@ -245,6 +291,9 @@ public class SearchStats implements Streamable, ToXContent {
         static final XContentBuilderString FETCH_TIME = new XContentBuilderString("fetch_time");
         static final XContentBuilderString FETCH_TIME_IN_MILLIS = new XContentBuilderString("fetch_time_in_millis");
         static final XContentBuilderString FETCH_CURRENT = new XContentBuilderString("fetch_current");
+        static final XContentBuilderString QUERY_CACHE_HIT_COUNT = new XContentBuilderString("query_cache_hit_count");
+        static final XContentBuilderString QUERY_CACHE_MISS_COUNT = new XContentBuilderString("query_cache_miss_count");
+        static final XContentBuilderString QUERY_CACHE_EVICTIONS = new XContentBuilderString("query_cache_evictions");
     }
 
     public static SearchStats readSearchStats(StreamInput in) throws IOException {
@@ -256,6 +305,9 @@ public class SearchStats implements Streamable, ToXContent {
     @Override
     public void readFrom(StreamInput in) throws IOException {
         totalStats = Stats.readStats(in);
+        queryCacheHitCount = in.readVLong();
+        queryCacheMissCount = in.readVLong();
+        queryCacheEvictions = in.readVLong();
         if (in.readBoolean()) {
             int size = in.readVInt();
             groupStats = new HashMap<String, Stats>(size);
@@ -268,6 +320,9 @@ public class SearchStats implements Streamable, ToXContent {
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         totalStats.writeTo(out);
+        out.writeVLong(queryCacheHitCount);
+        out.writeVLong(queryCacheMissCount);
+        out.writeVLong(queryCacheEvictions);
         if (groupStats == null || groupStats.isEmpty()) {
             out.writeBoolean(false);
         } else {
@@ -45,6 +45,10 @@ public class ShardSearchService extends AbstractIndexShardComponent {
 
     private volatile Map<String, StatsHolder> groupsStats = ImmutableMap.of();
 
+    private final CounterMetric queryCacheHitCount = new CounterMetric();
+    private final CounterMetric queryCacheMissCount = new CounterMetric();
+    private final CounterMetric queryCacheEvictions = new CounterMetric();
+
     @Inject
     public ShardSearchService(ShardId shardId, @IndexSettings Settings indexSettings, ShardSlowLogSearchService slowLogSearchService) {
         super(shardId, indexSettings);
@@ -75,7 +79,7 @@ public class ShardSearchService extends AbstractIndexShardComponent {
                 }
             }
         }
-        return new SearchStats(total, groupsSt);
+        return new SearchStats(total, groupsSt, queryCacheHitCount.count(), queryCacheMissCount.count(), queryCacheEvictions.count());
     }
 
     public void onPreQueryPhase(SearchContext searchContext) {
@@ -141,6 +145,18 @@ public class ShardSearchService extends AbstractIndexShardComponent {
         slowLogSearchService.onFetchPhase(searchContext, tookInNanos);
     }
 
+    public void onQueryCacheHit() {
+        queryCacheHitCount.inc();
+    }
+
+    public void onQueryCacheMiss() {
+        queryCacheMissCount.inc();
+    }
+
+    public void onQueryCacheEviction() {
+        queryCacheEvictions.inc();
+    }
+
     public void clear() {
         totalStats.clear();
         synchronized (this) {
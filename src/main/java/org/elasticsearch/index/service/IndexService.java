@@ -33,6 +33,7 @@ import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.percolator.PercolatorService;
 import org.elasticsearch.index.query.IndexQueryParserService;
 import org.elasticsearch.index.shard.service.IndexShard;
+import org.elasticsearch.index.settings.IndexSettingsService;
 import org.elasticsearch.index.similarity.SimilarityService;
 import org.elasticsearch.index.store.IndexStore;
 
@@ -59,6 +60,8 @@ public interface IndexService extends IndexComponent, Iterable<IndexShard> {
 
     IndexAliasesService aliasesService();
 
+    IndexSettingsService settingsService();
+
     IndexEngine engine();
 
     IndexStore store();
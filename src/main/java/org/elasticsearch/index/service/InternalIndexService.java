@@ -52,6 +52,7 @@ import org.elasticsearch.index.percolator.PercolatorService;
 import org.elasticsearch.index.query.IndexQueryParserService;
 import org.elasticsearch.index.search.stats.ShardSearchModule;
 import org.elasticsearch.index.settings.IndexSettings;
+import org.elasticsearch.index.settings.IndexSettingsService;
 import org.elasticsearch.index.shard.IndexShardCreationException;
 import org.elasticsearch.index.shard.IndexShardManagement;
 import org.elasticsearch.index.shard.IndexShardModule;
@@ -109,6 +110,8 @@ public class InternalIndexService extends AbstractIndexComponent implements Inde
 
     private final IndexAliasesService aliasesService;
 
+    private final IndexSettingsService settingsService;
+
     private final IndexCache indexCache;
 
     private final IndexEngine indexEngine;
@@ -127,7 +130,7 @@ public class InternalIndexService extends AbstractIndexComponent implements Inde
     public InternalIndexService(Injector injector, Index index, @IndexSettings Settings indexSettings, NodeEnvironment nodeEnv, ThreadPool threadPool,
                                 PercolatorService percolatorService, AnalysisService analysisService, MapperService mapperService,
                                 IndexQueryParserService queryParserService, SimilarityService similarityService, IndexAliasesService aliasesService,
-                                IndexCache indexCache, IndexEngine indexEngine, IndexGateway indexGateway, IndexStore indexStore) {
+                                IndexSettingsService settingsService, IndexCache indexCache, IndexEngine indexEngine, IndexGateway indexGateway, IndexStore indexStore) {
         super(index, indexSettings);
         this.injector = injector;
         this.nodeEnv = nodeEnv;
@@ -139,6 +142,7 @@ public class InternalIndexService extends AbstractIndexComponent implements Inde
         this.queryParserService = queryParserService;
         this.similarityService = similarityService;
         this.aliasesService = aliasesService;
+        this.settingsService = settingsService;
         this.indexCache = indexCache;
         this.indexEngine = indexEngine;
         this.indexGateway = indexGateway;
@@ -232,6 +236,11 @@ public class InternalIndexService extends AbstractIndexComponent implements Inde
         return aliasesService;
     }
 
+    @Override
+    public IndexSettingsService settingsService() {
+        return this.settingsService;
+    }
+
     @Override
     public IndexEngine engine() {
         return indexEngine;
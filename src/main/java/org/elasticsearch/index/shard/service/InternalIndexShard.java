@@ -468,7 +468,8 @@ public class InternalIndexShard extends AbstractIndexShardComponent implements I
 
     @Override
     public IndexingStats indexingStats(String... types) {
-        return indexingService.stats(types);
+        IndexingStats stats = indexingService.stats(types);
+        return new IndexingStats(stats.total(), stats.typeStats(), engine.versionMapSizeInBytes());
     }
 
     @Override
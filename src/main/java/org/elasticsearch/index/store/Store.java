@@ -24,6 +24,8 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import jsr166y.ThreadLocalRandom;
 import org.apache.lucene.store.*;
+import org.elasticsearch.common.Digest;
+import org.elasticsearch.common.Hex;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.collect.MapBuilder;
 import org.elasticsearch.common.inject.Inject;
@@ -38,6 +40,7 @@ import org.elasticsearch.index.store.support.ForceSyncDirectory;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -51,6 +54,8 @@ public class Store extends AbstractIndexShardComponent {
 
     static final String CHECKSUMS_PREFIX = "_checksums-";
 
+    static final String COMPUTED_CHECKSUM_PREFIX = "computed:";
+
     public static final boolean isChecksum(String name) {
         return name.startsWith(CHECKSUMS_PREFIX);
     }
@@ -105,6 +110,69 @@ public class Store extends AbstractIndexShardComponent {
         return md;
     }
 
+    /**
+     * Lists the files of the store just like {@link #list()}, computing the checksums of files that don't have one
+     * yet, so they can be compared with other copies of the shard. Computed checksums are marked as such (see
+     * {@link #isComputedChecksum(String)}) and never stored. Reads the files without a checksum fully, so should not
+     * be called on latency sensitive threads.
+     */
+    public ImmutableMap<String, StoreFileMetaData> listWithChecksums() throws IOException {
+        ImmutableMap<String, StoreFileMetaData> list = list();
+        ImmutableMap.Builder<String, StoreFileMetaData> builder = ImmutableMap.builder();
+        for (StoreFileMetaData md : list.values()) {
+            if (md.checksum() == null && !isChecksum(md.name()) && !"segments.gen".equals(md.name())) {
+                md = new StoreFileMetaData(md.name(), md.length(), md.lastModified(), computeChecksum(md.name()), md.directory());
+            }
+            builder.put(md.name(), md);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns <tt>true</tt> if the checksum was computed by {@link #computeChecksum(String)}. Those cover the file
+     * content, while the checksums of files written into the store cover the bytes written to the stream, which
+     * differ for files Lucene seeks back into while writing them, so the two kinds should never be compared.
+     */
+    public static boolean isComputedChecksum(String checksum) {
+        return checksum != null && checksum.startsWith(COMPUTED_CHECKSUM_PREFIX);
+    }
+
+    /**
+     * Computes a checksum of the content of the provided file by reading it fully, only comparable with other
+     * computed checksums (see {@link #isComputedChecksum(String)}). Commit points (<tt>segments_N</tt>) use an MD5
+     * digest: reusing the wrong commit point silently corrupts a copy, and Adler32 is weak on such small files.
+     * Other files use Adler32.
+     */
+    public String computeChecksum(String name) throws IOException {
+        IndexInput indexInput = directory.openInput(name);
+        try {
+            byte[] buffer = new byte[OpenBufferedIndexOutput.DEFAULT_BUFFER_SIZE];
+            long length = indexInput.length();
+            if (name.startsWith("segments")) {
+                MessageDigest digest = Digest.getMd5Digest();
+                long read = 0;
+                while (read < length) {
+                    int toRead = (int) Math.min(buffer.length, length - read);
+                    indexInput.readBytes(buffer, 0, toRead, false);
+                    digest.update(buffer, 0, toRead);
+                    read += toRead;
+                }
+                return COMPUTED_CHECKSUM_PREFIX + Hex.encodeHexString(digest.digest());
+            }
+            Checksum digest = new Adler32();
+            long read = 0;
+            while (read < length) {
+                int toRead = (int) Math.min(buffer.length, length - read);
+                indexInput.readBytes(buffer, 0, toRead, false);
+                digest.update(buffer, 0, toRead);
+                read += toRead;
+            }
+            return COMPUTED_CHECKSUM_PREFIX + Long.toString(digest.getValue(), Character.MAX_RADIX);
+        } finally {
+            indexInput.close();
+        }
+    }
+
     public void deleteContent() throws IOException {
         String[] files = directory.listAll();
         IOException lastException = null;
@@ -546,8 +614,8 @@ public class Store extends AbstractIndexShardComponent {
                     // no need to create checksum for segments.gen since its not snapshot to recovery
                     this.digest = null;
                 } else if (name.startsWith("segments")) {
-                    // don't compute checksum for segments files, so pure Lucene can open this directory
-                    // and since we, in any case, always recover the segments files
+                    // don't compute checksum for segments files, so pure Lucene can open this directory,
+                    // recovery compares them using an md5 of their content instead (see computeChecksum)
                     this.digest = null;
                 } else {
 //                    this.digest = new CRC32();
@@ -21,11 +21,13 @@ public class BufferingFsTranslogFile implements FsTranslogFile {
 
     private volatile int operationCounter;
 
-    private long lastPosition;
+    private volatile long lastPosition;
     private volatile long lastWrittenPosition;
 
     private volatile long lastSyncPosition = 0;
 
+    private final Object syncMutex = new Object();
+
     private byte[] buffer;
     private int bufferCount;
 
@@ -123,35 +125,44 @@ public class BufferingFsTranslogFile implements FsTranslogFile {
     @Override
     public void sync() {
         try {
-            // check if we really need to sync here...
-            long last = lastPosition;
-            if (last == lastSyncPosition) {
+            syncUpTo(lastPosition);
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+
+    @Override
+    public void syncUpTo(long position) throws IOException {
+        // check if we really need to sync here...
+        if (lastSyncPosition >= position) {
+            return;
+        }
+        synchronized (syncMutex) {
+            // the sync we waited on might have already covered us
+            if (lastSyncPosition >= position) {
                 return;
             }
-            lastSyncPosition = last;
+            long last;
             rwl.writeLock().lock();
             try {
+                // the buffer holds everything added while the previous sync was running, write it at once
                 flushBuffer();
+                last = lastPosition;
             } finally {
                 rwl.writeLock().unlock();
             }
             raf.channel().force(false);
-        } catch (Exception e) {
-            // ignore
+            lastSyncPosition = last;
         }
     }
 
     @Override
     public void close(boolean delete) {
         if (!delete) {
-            rwl.writeLock().lock();
             try {
-                flushBuffer();
-                sync();
+                syncUpTo(lastPosition);
             } catch (IOException e) {
                 throw new TranslogException(shardId, "failed to close", e);
-            } finally {
-                rwl.writeLock().unlock();
             }
         }
         raf.decreaseRefCount(delete);
@@ -88,7 +88,7 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
 
     private FsTranslogFile.Type type;
 
-    private boolean syncOnEachOperation = false;
+    private volatile boolean syncOnEachOperation = false;
 
     private int bufferSize;
     private int transientBufferSize;
@@ -334,7 +334,8 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
 
             Location location = current.add(out.underlyingBytes(), 0, size);
             if (syncOnEachOperation) {
-                current.sync();
+                // group commit, released once a sync (possibly done by another writer) covers the operation
+                current.syncUpTo(location.translogLocation + location.size);
             }
             FsTranslogFile trans = this.trans;
             if (trans != null) {
@@ -390,11 +391,8 @@ public class FsTranslog extends AbstractIndexShardComponent implements Translog
 
     @Override
     public void syncOnEachOperation(boolean syncOnEachOperation) {
+        // the buffered translog groups the writes and fsyncs of concurrent operations, so there is no need to
+        // fall back to the simple translog when syncing on each operation
         this.syncOnEachOperation = syncOnEachOperation;
-        if (syncOnEachOperation) {
-            type = FsTranslogFile.Type.SIMPLE;
-        } else {
-            type = FsTranslogFile.Type.BUFFERED;
-        }
     }
 }
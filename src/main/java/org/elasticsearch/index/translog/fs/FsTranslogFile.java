@@ -73,5 +73,11 @@ public interface FsTranslogFile {
 
     void sync();
 
+    /**
+     * Makes sure the operations written up to the provided position are durable. Concurrent callers are
+     * grouped, a single write and fsync covers all the operations added while the previous sync was running.
+     */
+    void syncUpTo(long position) throws IOException;
+
     boolean syncNeeded();
 }
@@ -41,6 +41,8 @@ public class SimpleFsTranslogFile implements FsTranslogFile {
 
     private volatile long lastSyncPosition = 0;
 
+    private final Object syncMutex = new Object();
+
     public SimpleFsTranslogFile(ShardId shardId, long id, RafReference raf) throws IOException {
         this.shardId = shardId;
         this.id = id;
@@ -101,17 +103,26 @@ public class SimpleFsTranslogFile implements FsTranslogFile {
     public void sync() {
         try {
             // check if we really need to sync here...
-            long last = lastWrittenPosition.get();
-            if (last == lastSyncPosition) {
+            if (lastWrittenPosition.get() == lastSyncPosition) {
                 return;
             }
-            lastSyncPosition = last;
-            raf.channel().force(false);
+            syncUpTo(lastWrittenPosition.get());
         } catch (Exception e) {
             // ignore
         }
     }
 
+    @Override
+    public void syncUpTo(long position) throws IOException {
+        // writes are positional and may complete out of order, so the written position does not tell if a
+        // specific operation is covered, always force, but only one sync at a time
+        synchronized (syncMutex) {
+            long last = lastWrittenPosition.get();
+            raf.channel().force(false);
+            lastSyncPosition = last;
+        }
+    }
+
     @Override
     public void reuse(FsTranslogFile other) {
         // nothing to do there
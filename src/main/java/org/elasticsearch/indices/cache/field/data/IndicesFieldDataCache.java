@@ -0,0 +1,219 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.indices.cache.field.data;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.cache.CacheBuilderHelper;
+import org.elasticsearch.common.collect.MapBuilder;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.cache.field.data.weighted.WeightedFieldDataCache;
+import org.elasticsearch.index.field.data.FieldData;
+import org.elasticsearch.monitor.jvm.JvmInfo;
+import org.elasticsearch.node.settings.NodeSettingsService;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The node level cache backing the {@link WeightedFieldDataCache} of all indices, bounded by the size in bytes
+ * of the field data it holds, and evicting the least recently used field data once full.
+ * <p/>
+ * Settings:
+ * <ul>
+ * <li><tt>indices.cache.field.size</tt>: the node field data budget, in bytes or as a percentage of the heap,
+ * defaults to <tt>40%</tt>.</li>
+ * <li><tt>indices.cache.field.expire</tt>: evicts field data not accessed for that long, not set by default.</li>
+ * <li><tt>indices.cache.field.concurrency_level</tt>: the number of segments the cache is split into, defaults
+ * to <tt>1</tt>. Each segment gets an even share of the size, and a single field data can't be larger than a
+ * segment, so raising it lowers the largest field data that can be loaded to <tt>size / concurrency_level</tt>.</li>
+ * </ul>
+ * Field data being loaded is reserved against the budget before it is loaded (see {@link #reserve(long)}), so
+ * concurrent loads can't together go beyond it while the cached field data is still to be evicted.
+ */
+public class IndicesFieldDataCache extends AbstractComponent implements RemovalListener<WeightedFieldDataCache.FieldDataCacheKey, FieldData> {
+
+    // the cache max weight is split evenly between its segments, an entry can't be larger than a segment
+    private final int concurrencyLevel;
+
+    // the estimated size of the field data being loaded on the node
+    private final AtomicLong reservedInBytes = new AtomicLong();
+
+    private Cache<WeightedFieldDataCache.FieldDataCacheKey, FieldData> cache;
+
+    private volatile String size;
+    private volatile long sizeInBytes;
+    private volatile TimeValue expire;
+
+    private volatile Map<String, RemovalListener<WeightedFieldDataCache.FieldDataCacheKey, FieldData>> removalListeners =
+            ImmutableMap.of();
+
+
+    static {
+        MetaData.addDynamicSettings(
+                "indices.cache.field.size",
+                "indices.cache.field.expire"
+        );
+    }
+
+    class ApplySettings implements NodeSettingsService.Listener {
+        @Override
+        public void onRefreshSettings(Settings settings) {
+            boolean replace = false;
+            String size = settings.get("indices.cache.field.size", IndicesFieldDataCache.this.size);
+            if (!size.equals(IndicesFieldDataCache.this.size)) {
+                logger.info("updating [indices.cache.field.size] from [{}] to [{}]", IndicesFieldDataCache.this.size, size);
+                IndicesFieldDataCache.this.size = size;
+                replace = true;
+            }
+            TimeValue expire = settings.getAsTime("indices.cache.field.expire", IndicesFieldDataCache.this.expire);
+            if (!Objects.equal(expire, IndicesFieldDataCache.this.expire)) {
+                logger.info("updating [indices.cache.field.expire] from [{}] to [{}]", IndicesFieldDataCache.this.expire, expire);
+                IndicesFieldDataCache.this.expire = expire;
+                replace = true;
+            }
+            if (replace) {
+                Cache<WeightedFieldDataCache.FieldDataCacheKey, FieldData> oldCache = IndicesFieldDataCache.this.cache;
+                computeSizeInBytes();
+                buildCache();
+                oldCache.invalidateAll();
+            }
+        }
+    }
+
+    @Inject
+    public IndicesFieldDataCache(Settings settings, NodeSettingsService nodeSettingsService) {
+        super(settings);
+        this.size = settings.get("indices.cache.field.size", "40%");
+        this.expire = settings.getAsTime("indices.cache.field.expire", null);
+        this.concurrencyLevel = settings.getAsInt("indices.cache.field.concurrency_level", 1);
+        computeSizeInBytes();
+        buildCache();
+        logger.debug("using [node] field data cache with size [{}], actual_size [{}], concurrency_level [{}]", size, new ByteSizeValue(sizeInBytes), concurrencyLevel);
+
+        nodeSettingsService.addListener(new ApplySettings());
+    }
+
+    private void buildCache() {
+        CacheBuilder<WeightedFieldDataCache.FieldDataCacheKey, FieldData> cacheBuilder = CacheBuilder.newBuilder()
+                .removalListener(this)
+                .maximumWeight(sizeInBytes).weigher(new WeightedFieldDataCache.FieldDataWeigher());
+
+        cacheBuilder.concurrencyLevel(concurrencyLevel);
+
+        if (expire != null) {
+            cacheBuilder.expireAfterAccess(expire.millis(), TimeUnit.MILLISECONDS);
+        }
+
+        CacheBuilderHelper.disableStats(cacheBuilder);
+
+        cache = cacheBuilder.build();
+    }
+
+    private void computeSizeInBytes() {
+        if (size.endsWith("%")) {
+            double percent = Double.parseDouble(size.substring(0, size.length() - 1));
+            sizeInBytes = (long) ((percent / 100) * JvmInfo.jvmInfo().getMem().getHeapMax().bytes());
+        } else {
+            sizeInBytes = ByteSizeValue.parseBytesSizeValue(size).bytes();
+        }
+    }
+
+    /**
+     * The node field data budget, in bytes.
+     */
+    public long sizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * The largest field data (in bytes) the cache can hold, loads of larger field data are rejected.
+     */
+    public long maxEntrySizeInBytes() {
+        return Math.min(sizeInBytes / concurrencyLevel, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The part of the budget not reserved by field data being loaded, in bytes.
+     */
+    public long remainingInBytes() {
+        return sizeInBytes - reservedInBytes.get();
+    }
+
+    /**
+     * Reserves the estimated size of field data about to be loaded, returns <tt>false</tt> (reserving nothing) if it
+     * doesn't fit in what is left of the budget. A successful reservation must be released once the field data is
+     * loaded (or failed to load).
+     */
+    public boolean reserve(long estimatedSizeInBytes) {
+        while (true) {
+            long reserved = reservedInBytes.get();
+            if (reserved + estimatedSizeInBytes > sizeInBytes) {
+                return false;
+            }
+            if (reservedInBytes.compareAndSet(reserved, reserved + estimatedSizeInBytes)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long estimatedSizeInBytes) {
+        reservedInBytes.addAndGet(-estimatedSizeInBytes);
+    }
+
+    public synchronized void addRemovalListener(String index, RemovalListener<WeightedFieldDataCache.FieldDataCacheKey, FieldData> listener) {
+        removalListeners = MapBuilder.newMapBuilder(removalListeners).put(index, listener).immutableMap();
+    }
+
+    public synchronized void removeRemovalListener(String index) {
+        removalListeners = MapBuilder.newMapBuilder(removalListeners).remove(index).immutableMap();
+    }
+
+    public void close() {
+        cache.invalidateAll();
+    }
+
+    public Cache<WeightedFieldDataCache.FieldDataCacheKey, FieldData> cache() {
+        return this.cache;
+    }
+
+    @Override
+    public void onRemoval(RemovalNotification<WeightedFieldDataCache.FieldDataCacheKey, FieldData> removalNotification) {
+        WeightedFieldDataCache.FieldDataCacheKey key = removalNotification.getKey();
+        if (key == null) {
+            return;
+        }
+        RemovalListener<WeightedFieldDataCache.FieldDataCacheKey, FieldData> listener = removalListeners.get(key.index());
+        if (listener != null) {
+            listener.onRemoval(removalNotification);
+        }
+    }
+}
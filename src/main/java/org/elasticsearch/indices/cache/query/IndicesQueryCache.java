@@ -0,0 +1,453 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices.cache.query;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.cache.CacheBuilderHelper;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.CachedStreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.search.stats.ShardSearchService;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.service.IndexShard;
+import org.elasticsearch.indices.IndicesLifecycle;
+import org.elasticsearch.monitor.jvm.JvmInfo;
+import org.elasticsearch.node.settings.NodeSettingsService;
+import org.elasticsearch.search.facet.InternalFacets;
+import org.elasticsearch.search.internal.InternalSearchRequest;
+import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.search.query.QueryPhase;
+import org.elasticsearch.search.query.QuerySearchResult;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.elasticsearch.common.lucene.Lucene.readTopDocs;
+import static org.elasticsearch.common.lucene.Lucene.writeTopDocs;
+
+/**
+ * The node level cache of query phase results (top docs and facets) of shards, for indices that enable it
+ * using <tt>index.cache.query.enable</tt>. Results are keyed by the search request and the version of the
+ * shard reader they were computed on, so a refresh that changes the shard makes them unreachable, and they
+ * are then dropped on the next search of the shard, going only over the keys of that shard. The cache is bounded
+ * by the size in bytes of the results it holds, and evicts the least recently used ones once full.
+ * <p/>
+ * The results of an index are also dropped when its mappings or aliases change, since they change how requests
+ * are parsed and filtered. A search executing while such a change is applied may still cache a result computed
+ * with the previous mappings or aliases, which can be hit until the next refresh of the shard.
+ * <p/>
+ * Requests that use the current time (<tt>now</tt>), scroll, or time out are never cached.
+ */
+public class IndicesQueryCache extends AbstractComponent implements RemovalListener<IndicesQueryCache.Key, IndicesQueryCache.Value> {
+
+    public static final String INDEX_CACHE_QUERY_ENABLE = "index.cache.query.enable";
+
+    private Cache<Key, Value> cache;
+
+    private volatile String size;
+    private volatile long sizeInBytes;
+    private volatile TimeValue expire;
+
+    // the latest reader version seen for each shard, older results of the shard can no longer be hit
+    private final ConcurrentMap<ShardId, Long> shardsReaderVersion = ConcurrentCollections.newConcurrentMap();
+
+    // the keys cached for each shard, so invalidating the results of a shard does not go over the whole cache
+    private final ConcurrentMap<ShardId, Set<Key>> shardsKeys = ConcurrentCollections.newConcurrentMap();
+
+    private final ClusterService clusterService;
+
+    private final ClearIndexOnMetaDataChange clearIndexOnMetaDataChange = new ClearIndexOnMetaDataChange();
+
+    static {
+        MetaData.addDynamicSettings(
+                "indices.cache.query.size",
+                "indices.cache.query.expire"
+        );
+        IndexMetaData.addDynamicSettings(INDEX_CACHE_QUERY_ENABLE);
+    }
+
+    class ApplySettings implements NodeSettingsService.Listener {
+        @Override
+        public void onRefreshSettings(Settings settings) {
+            boolean replace = false;
+            String size = settings.get("indices.cache.query.size", IndicesQueryCache.this.size);
+            if (!size.equals(IndicesQueryCache.this.size)) {
+                logger.info("updating [indices.cache.query.size] from [{}] to [{}]", IndicesQueryCache.this.size, size);
+                IndicesQueryCache.this.size = size;
+                replace = true;
+            }
+            TimeValue expire = settings.getAsTime("indices.cache.query.expire", IndicesQueryCache.this.expire);
+            if (!Objects.equal(expire, IndicesQueryCache.this.expire)) {
+                logger.info("updating [indices.cache.query.expire] from [{}] to [{}]", IndicesQueryCache.this.expire, expire);
+                IndicesQueryCache.this.expire = expire;
+                replace = true;
+            }
+            if (replace) {
+                Cache<Key, Value> oldCache = IndicesQueryCache.this.cache;
+                computeSizeInBytes();
+                buildCache();
+                oldCache.invalidateAll();
+            }
+        }
+    }
+
+    class ClearShardOnClose extends IndicesLifecycle.Listener {
+        @Override
+        public void beforeIndexShardClosed(ShardId shardId, @Nullable IndexShard indexShard, boolean delete) {
+            shardsReaderVersion.remove(shardId);
+            invalidate(shardId, Long.MAX_VALUE);
+            shardsKeys.remove(shardId);
+        }
+    }
+
+    class ClearIndexOnMetaDataChange implements ClusterStateListener {
+        @Override
+        public void clusterChanged(ClusterChangedEvent event) {
+            if (!event.metaDataChanged()) {
+                return;
+            }
+            for (IndexMetaData indexMetaData : event.state().metaData()) {
+                IndexMetaData previous = event.previousState().metaData().index(indexMetaData.index());
+                if (previous == null || previous == indexMetaData) {
+                    continue;
+                }
+                if (!indexMetaData.mappings().equals(previous.mappings()) || !indexMetaData.aliases().equals(previous.aliases())) {
+                    invalidate(indexMetaData.index());
+                }
+            }
+        }
+    }
+
+    @Inject
+    public IndicesQueryCache(Settings settings, NodeSettingsService nodeSettingsService, IndicesLifecycle indicesLifecycle, ClusterService clusterService) {
+        super(settings);
+        this.clusterService = clusterService;
+        this.size = settings.get("indices.cache.query.size", "1%");
+        this.expire = settings.getAsTime("indices.cache.query.expire", null);
+        computeSizeInBytes();
+        buildCache();
+        logger.debug("using [node] query cache with size [{}], actual_size [{}]", size, new ByteSizeValue(sizeInBytes));
+
+        nodeSettingsService.addListener(new ApplySettings());
+        indicesLifecycle.addListener(new ClearShardOnClose());
+        clusterService.add(clearIndexOnMetaDataChange);
+    }
+
+    private void buildCache() {
+        CacheBuilder<Key, Value> cacheBuilder = CacheBuilder.newBuilder()
+                .removalListener(this)
+                .maximumWeight(sizeInBytes).weigher(new QueryCacheWeigher());
+
+        if (expire != null) {
+            cacheBuilder.expireAfterAccess(expire.millis(), TimeUnit.MILLISECONDS);
+        }
+
+        CacheBuilderHelper.disableStats(cacheBuilder);
+
+        cache = cacheBuilder.build();
+    }
+
+    private void computeSizeInBytes() {
+        if (size.endsWith("%")) {
+            double percent = Double.parseDouble(size.substring(0, size.length() - 1));
+            sizeInBytes = (long) ((percent / 100) * JvmInfo.jvmInfo().getMem().getHeapMax().bytes());
+        } else {
+            sizeInBytes = ByteSizeValue.parseBytesSizeValue(size).bytes();
+        }
+    }
+
+    public void close() {
+        clusterService.remove(clearIndexOnMetaDataChange);
+        cache.invalidateAll();
+    }
+
+    /**
+     * Can the query phase of the request be cached. Should be called once the request source has been
+     * parsed into the context.
+     */
+    public boolean canCache(InternalSearchRequest request, SearchContext context) {
+        if (request.scroll() != null) {
+            return false;
+        }
+        if (request.searchType() != SearchType.QUERY_THEN_FETCH && request.searchType() != SearchType.COUNT) {
+            return false;
+        }
+        if (context.nowInMillisUsed()) {
+            return false;
+        }
+        return context.indexService().settingsService().getSettings().getAsBoolean(INDEX_CACHE_QUERY_ENABLE, false);
+    }
+
+    /**
+     * Loads the query phase results of the request into the context, either from the cache, or by executing
+     * the query phase and caching its results.
+     */
+    public void loadIntoContext(InternalSearchRequest request, SearchContext context, QueryPhase queryPhase) throws ElasticSearchException {
+        ShardSearchService searchService = context.indexShard().searchService();
+        ShardId shardId = context.indexShard().shardId();
+        long readerVersion = context.searcher().getIndexReader().getVersion();
+        onReaderVersion(shardId, readerVersion);
+
+        Key key = new Key(shardId, readerVersion, requestBytes(request), searchService);
+        Value value = cache.getIfPresent(key);
+        if (value != null) {
+            searchService.onQueryCacheHit();
+            value.readInto(context.queryResult());
+            context.queryResult().from(context.from());
+            context.queryResult().size(context.size());
+            return;
+        }
+
+        searchService.onQueryCacheMiss();
+        queryPhase.execute(context);
+        QuerySearchResult result = context.queryResult();
+        if (result.searchTimedOut() || context.nowInMillisUsed()) {
+            return;
+        }
+        value = Value.of(result);
+        keys(shardId).add(key);
+        cache.put(key, value);
+    }
+
+    private Set<Key> keys(ShardId shardId) {
+        Set<Key> keys = shardsKeys.get(shardId);
+        if (keys == null) {
+            Set<Key> newKeys = ConcurrentCollections.newConcurrentSet();
+            keys = shardsKeys.putIfAbsent(shardId, newKeys);
+            if (keys == null) {
+                keys = newKeys;
+            }
+        }
+        return keys;
+    }
+
+    private void onReaderVersion(ShardId shardId, long readerVersion) {
+        Long lastVersion = shardsReaderVersion.get(shardId);
+        if (lastVersion != null && lastVersion >= readerVersion) {
+            return;
+        }
+        if (lastVersion == null) {
+            lastVersion = shardsReaderVersion.putIfAbsent(shardId, readerVersion);
+            if (lastVersion == null) {
+                return;
+            }
+        }
+        // the shard was refreshed, only one search drops the results of the older readers
+        while (lastVersion < readerVersion) {
+            if (shardsReaderVersion.replace(shardId, lastVersion, readerVersion)) {
+                invalidate(shardId, readerVersion);
+                return;
+            }
+            lastVersion = shardsReaderVersion.get(shardId);
+            if (lastVersion == null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Invalidates the cached results of the shard computed on readers older than the provided version.
+     */
+    private void invalidate(ShardId shardId, long readerVersion) {
+        Set<Key> keys = shardsKeys.get(shardId);
+        if (keys == null) {
+            return;
+        }
+        for (Key key : keys) {
+            if (key.readerVersion < readerVersion) {
+                keys.remove(key);
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * Invalidates all the cached results of the shards of the index.
+     */
+    private void invalidate(String index) {
+        for (ShardId shardId : shardsKeys.keySet()) {
+            if (shardId.index().name().equals(index)) {
+                invalidate(shardId, Long.MAX_VALUE);
+            }
+        }
+    }
+
+    private static byte[] requestBytes(InternalSearchRequest request) throws ElasticSearchException {
+        CachedStreamOutput.Entry cachedEntry = CachedStreamOutput.popEntry();
+        try {
+            BytesStreamOutput out = cachedEntry.cachedBytes();
+            out.writeByte(request.searchType().id());
+            writeStringArray(out, request.types());
+            writeStringArray(out, request.filteringAliases());
+            out.writeVInt(request.sourceLength());
+            if (request.sourceLength() > 0) {
+                out.writeBytes(request.source(), request.sourceOffset(), request.sourceLength());
+            }
+            out.writeVInt(request.extraSourceLength());
+            if (request.extraSourceLength() > 0) {
+                out.writeBytes(request.extraSource(), request.extraSourceOffset(), request.extraSourceLength());
+            }
+            return out.copiedByteArray();
+        } catch (IOException e) {
+            throw new ElasticSearchException("Failed to build the query cache key", e);
+        } finally {
+            CachedStreamOutput.pushEntry(cachedEntry);
+        }
+    }
+
+    private static void writeStringArray(BytesStreamOutput out, String[] values) throws IOException {
+        if (values == null) {
+            out.writeVInt(0);
+            return;
+        }
+        out.writeVInt(values.length);
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Override
+    public void onRemoval(RemovalNotification<Key, Value> removalNotification) {
+        Key key = removalNotification.getKey();
+        if (key == null) {
+            return;
+        }
+        // a replaced key is still cached
+        if (removalNotification.getCause() != RemovalCause.REPLACED) {
+            Set<Key> keys = shardsKeys.get(key.shardId);
+            if (keys != null) {
+                keys.remove(key);
+            }
+        }
+        if (removalNotification.wasEvicted()) {
+            key.searchService.onQueryCacheEviction();
+        }
+    }
+
+    public static class Key {
+
+        final ShardId shardId;
+        final long readerVersion;
+        final byte[] request;
+        private final int hashCode;
+
+        // not part of the key, used to account evictions on the shard the result belongs to
+        final ShardSearchService searchService;
+
+        Key(ShardId shardId, long readerVersion, byte[] request, ShardSearchService searchService) {
+            this.shardId = shardId;
+            this.readerVersion = readerVersion;
+            this.request = request;
+            this.searchService = searchService;
+            int result = shardId.hashCode();
+            result = 31 * result + (int) (readerVersion ^ (readerVersion >>> 32));
+            result = 31 * result + Arrays.hashCode(request);
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            Key key = (Key) o;
+            return readerVersion == key.readerVersion && shardId.equals(key.shardId) && Arrays.equals(request, key.request);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * The serialized query phase results. Each hit reads a fresh copy, since results are reduced in place.
+     */
+    public static class Value {
+
+        final byte[] bytes;
+
+        Value(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        static Value of(QuerySearchResult result) throws ElasticSearchException {
+            CachedStreamOutput.Entry cachedEntry = CachedStreamOutput.popEntry();
+            try {
+                BytesStreamOutput out = cachedEntry.cachedBytes();
+                writeTopDocs(out, result.topDocs(), 0);
+                InternalFacets facets = (InternalFacets) result.facets();
+                if (facets == null) {
+                    out.writeBoolean(false);
+                } else {
+                    out.writeBoolean(true);
+                    facets.writeTo(out);
+                }
+                return new Value(out.copiedByteArray());
+            } catch (IOException e) {
+                throw new ElasticSearchException("Failed to cache the query phase result", e);
+            } finally {
+                CachedStreamOutput.pushEntry(cachedEntry);
+            }
+        }
+
+        void readInto(QuerySearchResult result) throws ElasticSearchException {
+            try {
+                BytesStreamInput in = new BytesStreamInput(bytes, false);
+                result.topDocs(readTopDocs(in));
+                if (in.readBoolean()) {
+                    result.facets(InternalFacets.readFacets(in));
+                }
+                result.searchTimedOut(false);
+            } catch (IOException e) {
+                throw new ElasticSearchException("Failed to read the cached query phase result", e);
+            }
+        }
+    }
+
+    static class QueryCacheWeigher implements Weigher<Key, Value> {
+        @Override
+        public int weigh(Key key, Value value) {
+            // the key and value objects, their arrays, and the hash table entry
+            return key.request.length + value.bytes.length + 128;
+        }
+    }
+}
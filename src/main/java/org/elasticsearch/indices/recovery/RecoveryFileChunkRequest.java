@@ -23,15 +23,17 @@ import org.elasticsearch.common.BytesHolder;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
-import org.elasticsearch.common.io.stream.Streamable;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.transport.FileRegionStreamable;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 
 /**
  *
  */
-class RecoveryFileChunkRequest implements Streamable {
+class RecoveryFileChunkRequest implements FileRegionStreamable {
 
     private ShardId shardId;
     private String name;
@@ -40,6 +42,11 @@ class RecoveryFileChunkRequest implements Streamable {
     private String checksum;
     private BytesHolder content;
 
+    // when sending, the content can be a region of a file instead
+    private File regionFile;
+    private long regionPosition;
+    private int regionLength;
+
     RecoveryFileChunkRequest() {
     }
 
@@ -52,6 +59,17 @@ class RecoveryFileChunkRequest implements Streamable {
         this.content = content;
     }
 
+    RecoveryFileChunkRequest(ShardId shardId, String name, long position, long length, String checksum, File regionFile, long regionPosition, int regionLength) {
+        this.shardId = shardId;
+        this.name = name;
+        this.position = position;
+        this.length = length;
+        this.checksum = checksum;
+        this.regionFile = regionFile;
+        this.regionPosition = regionPosition;
+        this.regionLength = regionLength;
+    }
+
     public ShardId shardId() {
         return shardId;
     }
@@ -77,6 +95,21 @@ class RecoveryFileChunkRequest implements Streamable {
         return content;
     }
 
+    @Override
+    public File regionFile() {
+        return regionFile;
+    }
+
+    @Override
+    public long regionPosition() {
+        return regionPosition;
+    }
+
+    @Override
+    public int regionLength() {
+        return regionLength;
+    }
+
     public RecoveryFileChunkRequest readFileChunk(StreamInput in) throws IOException {
         RecoveryFileChunkRequest request = new RecoveryFileChunkRequest();
         request.readFrom(in);
@@ -97,6 +130,38 @@ class RecoveryFileChunkRequest implements Streamable {
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
+        if (content != null) {
+            writeHeaderTo(out);
+            out.writeBytesHolder(content);
+            return;
+        }
+        // the transport does not send file regions directly, read the region and write it inline
+        writeToWithoutRegion(out);
+        RandomAccessFile file = new RandomAccessFile(regionFile, "r");
+        try {
+            byte[] buffer = new byte[Math.min(regionLength, 8192)];
+            file.seek(regionPosition);
+            int left = regionLength;
+            while (left > 0) {
+                int read = file.read(buffer, 0, Math.min(buffer.length, left));
+                if (read < 0) {
+                    throw new IOException("unexpected end of file [" + regionFile + "]");
+                }
+                out.writeBytes(buffer, 0, read);
+                left -= read;
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    @Override
+    public void writeToWithoutRegion(StreamOutput out) throws IOException {
+        writeHeaderTo(out);
+        out.writeVInt(regionLength);
+    }
+
+    private void writeHeaderTo(StreamOutput out) throws IOException {
         shardId.writeTo(out);
         out.writeUTF(name);
         out.writeVLong(position);
@@ -107,7 +172,6 @@ class RecoveryFileChunkRequest implements Streamable {
             out.writeBoolean(true);
             out.writeUTF(checksum);
         }
-        out.writeBytesHolder(content);
     }
 
     @Override
@@ -42,6 +42,7 @@ public class RecoverySettings extends AbstractComponent {
         MetaData.addDynamicSettings("indices.recovery.translog_ops");
         MetaData.addDynamicSettings("indices.recovery.translog_size");
         MetaData.addDynamicSettings("indices.recovery.compress");
+        MetaData.addDynamicSettings("indices.recovery.zero_copy");
         MetaData.addDynamicSettings("indices.recovery.concurrent_streams");
         MetaData.addDynamicSettings("indices.recovery.max_size_per_sec");
     }
@@ -49,6 +50,7 @@ public class RecoverySettings extends AbstractComponent {
     private volatile ByteSizeValue fileChunkSize;
 
     private volatile boolean compress;
+    private volatile boolean zeroCopy;
     private volatile int translogOps;
     private volatile ByteSizeValue translogSize;
 
@@ -66,6 +68,7 @@ public class RecoverySettings extends AbstractComponent {
         this.translogOps = componentSettings.getAsInt("translog_ops", settings.getAsInt("index.shard.recovery.translog_ops", 1000));
         this.translogSize = componentSettings.getAsBytesSize("translog_size", settings.getAsBytesSize("index.shard.recovery.translog_size", new ByteSizeValue(100, ByteSizeUnit.KB)));
         this.compress = componentSettings.getAsBoolean("compress", true);
+        this.zeroCopy = componentSettings.getAsBoolean("zero_copy", true);
 
         this.concurrentStreams = componentSettings.getAsInt("concurrent_streams", settings.getAsInt("index.shard.recovery.concurrent_streams", 5));
         this.concurrentStreamPool = EsExecutors.newScalingExecutorService(0, concurrentStreams, 60, TimeUnit.SECONDS, EsExecutors.daemonThreadFactory(settings, "[recovery_stream]"));
@@ -77,8 +80,8 @@ public class RecoverySettings extends AbstractComponent {
             rateLimiter = new RateLimiter(maxSizePerSec.mbFrac());
         }
 
-        logger.debug("using max_size_per_sec[{}], concurrent_streams [{}], file_chunk_size [{}], translog_size [{}], translog_ops [{}], and compress [{}]",
-                maxSizePerSec, concurrentStreams, fileChunkSize, translogSize, translogOps, compress);
+        logger.debug("using max_size_per_sec[{}], concurrent_streams [{}], file_chunk_size [{}], translog_size [{}], translog_ops [{}], compress [{}], and zero_copy [{}]",
+                maxSizePerSec, concurrentStreams, fileChunkSize, translogSize, translogOps, compress, zeroCopy);
 
         nodeSettingsService.addListener(new ApplySettings());
     }
@@ -95,6 +98,14 @@ public class RecoverySettings extends AbstractComponent {
         return compress;
     }
 
+    /**
+     * Should file chunks be sent directly from the file to the network (uncompressed), when the transport and
+     * the store support it.
+     */
+    public boolean zeroCopy() {
+        return zeroCopy;
+    }
+
     public int translogOps() {
         return translogOps;
     }
@@ -155,6 +166,12 @@ public class RecoverySettings extends AbstractComponent {
                 RecoverySettings.this.compress = compress;
             }
 
+            boolean zeroCopy = settings.getAsBoolean("indices.recovery.zero_copy", RecoverySettings.this.zeroCopy);
+            if (zeroCopy != RecoverySettings.this.zeroCopy) {
+                logger.info("updating [indices.recovery.zero_copy] from [{}] to [{}]", RecoverySettings.this.zeroCopy, zeroCopy);
+                RecoverySettings.this.zeroCopy = zeroCopy;
+            }
+
             int concurrentStreams = settings.getAsInt("indices.recovery.concurrent_streams", RecoverySettings.this.concurrentStreams);
             if (concurrentStreams != RecoverySettings.this.concurrentStreams) {
                 logger.info("updating [indices.recovery.concurrent_streams] from [{}] to [{}]", RecoverySettings.this.concurrentStreams, concurrentStreams);
@@ -21,6 +21,7 @@ package org.elasticsearch.indices.recovery;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.IndexInput;
 import org.elasticsearch.ElasticSearchException;
 import org.elasticsearch.common.BytesHolder;
@@ -35,12 +36,14 @@ import org.elasticsearch.index.shard.IllegalIndexShardStateException;
 import org.elasticsearch.index.shard.IndexShardClosedException;
 import org.elasticsearch.index.shard.IndexShardState;
 import org.elasticsearch.index.shard.service.InternalIndexShard;
+import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.store.StoreFileMetaData;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Set;
@@ -91,9 +94,14 @@ public class RecoverySource extends AbstractComponent {
                     for (String name : snapshot.getFiles()) {
                         StoreFileMetaData md = shard.store().metaData(name);
                         boolean useExisting = false;
-                        if (request.existingFiles().containsKey(name)) {
-                            // we don't compute checksum for segments, so always recover them
-                            if (!name.startsWith("segments") && md.isSame(request.existingFiles().get(name))) {
+                        StoreFileMetaData existingMd = request.existingFiles().get(name);
+                        if (existingMd != null) {
+                            if (Store.isComputedChecksum(existingMd.checksum()) && md.length() == existingMd.length()) {
+                                // the target computed the checksum of its file content (commit points, or files it has no
+                                // stored checksum for), compute ours the same way so the target can reuse its copy if it is the same
+                                md = new StoreFileMetaData(name, md.length(), md.lastModified(), shard.store().computeChecksum(name), md.directory());
+                            }
+                            if (md.isSame(existingMd)) {
                                 response.phase1ExistingFileNames.add(name);
                                 response.phase1ExistingFileSizes.add(md.length());
                                 existingTotalSize += md.length();
@@ -123,6 +131,11 @@ public class RecoverySource extends AbstractComponent {
                             response.phase1ExistingFileNames, response.phase1ExistingFileSizes, response.phase1TotalSize, response.phase1ExistingTotalSize);
                     transportService.submitRequest(request.targetNode(), RecoveryTarget.Actions.FILES_INFO, recoveryInfoFilesRequest, VoidTransportResponseHandler.INSTANCE_SAME).txGet();
 
+                    if (response.phase1FileNames.isEmpty()) {
+                        // the target already holds the same commit point, only the translog operations need to be replayed
+                        logger.trace("[{}][{}] recovery [phase1] to {}: target has an identical commit point, skipping files copy", request.shardId().index().name(), request.shardId().id(), request.targetNode());
+                    }
+
                     final CountDownLatch latch = new CountDownLatch(response.phase1FileNames.size());
                     final AtomicReference<Exception> lastException = new AtomicReference<Exception>();
                     for (final String name : response.phase1FileNames) {
@@ -132,8 +145,12 @@ public class RecoverySource extends AbstractComponent {
                                 IndexInput indexInput = null;
                                 try {
                                     final int BUFFER_SIZE = (int) recoverySettings.fileChunkSize().bytes();
-                                    byte[] buf = new byte[BUFFER_SIZE];
                                     StoreFileMetaData md = shard.store().metaData(name);
+                                    if (recoverySettings.zeroCopy() && md.directory() instanceof FSDirectory) {
+                                        sendFileRegions(name, md, new File(((FSDirectory) md.directory()).getDirectory(), name), BUFFER_SIZE);
+                                        return;
+                                    }
+                                    byte[] buf = new byte[BUFFER_SIZE];
                                     indexInput = snapshot.getDirectory().openInput(name);
                                     long len = indexInput.length();
                                     long readCount = 0;
@@ -189,6 +206,29 @@ public class RecoverySource extends AbstractComponent {
                 }
             }
 
+            /**
+             * Sends the file as regions that the transport can stream directly from the file, no compression
+             * is applied to them.
+             */
+            private void sendFileRegions(String name, StoreFileMetaData md, File file, int chunkSize) throws Exception {
+                long len = md.length();
+                long position = 0;
+                while (position < len) {
+                    if (shard.state() == IndexShardState.CLOSED) { // check if the shard got closed on us
+                        throw new IndexShardClosedException(shard.shardId());
+                    }
+                    int toSend = position + chunkSize > len ? (int) (len - position) : chunkSize;
+
+                    if (recoverySettings.rateLimiter() != null) {
+                        recoverySettings.rateLimiter().pause(toSend);
+                    }
+
+                    transportService.submitRequest(request.targetNode(), RecoveryTarget.Actions.FILE_CHUNK, new RecoveryFileChunkRequest(request.shardId(), name, position, len, md.checksum(), file, position, toSend),
+                            TransportRequestOptions.options().withCompress(false).withLowType(), VoidTransportResponseHandler.INSTANCE_SAME).txGet();
+                    position += toSend;
+                }
+            }
+
             @Override
             public void phase2(Translog.Snapshot snapshot) throws ElasticSearchException {
                 if (shard.state() == IndexShardState.CLOSED) {
@@ -175,7 +175,11 @@ public class RecoveryTarget extends AbstractComponent {
             logger.trace("[{}][{}] starting recovery from {}", request.shardId().index().name(), request.shardId().id(), request.sourceNode());
 
             StopWatch stopWatch = new StopWatch().start();
-            RecoveryResponse recoveryStatus = transportService.submitRequest(request.sourceNode(), RecoverySource.Actions.START_RECOVERY, request, new FutureTransportResponseHandler<RecoveryResponse>() {
+            // compute the missing checksums here, on the cached pool, and not while processing the cluster state, since
+            // it reads the files fully; this lets the source reuse identical files, including the commit point
+            StartRecoveryRequest checksummedRequest = new StartRecoveryRequest(request.shardId(), request.sourceNode(), request.targetNode(),
+                    request.markAsRelocated(), shard.store().listWithChecksums());
+            RecoveryResponse recoveryStatus = transportService.submitRequest(request.sourceNode(), RecoverySource.Actions.START_RECOVERY, checksummedRequest, new FutureTransportResponseHandler<RecoveryResponse>() {
                 @Override
                 public RecoveryResponse newInstance() {
                     return new RecoveryResponse();
@@ -153,6 +153,23 @@ public class RestController extends AbstractLifecycleComponent<RestController> {
         }
     }
 
+    /**
+     * Starts streaming the request content to its handler if the handler supports it, returns <tt>null</tt> if
+     * the request should be aggregated and dispatched using {@link #dispatchRequest(RestRequest, RestChannel)}.
+     */
+    @Nullable
+    public StreamingRestHandler.ContentConsumer startStreaming(RestRequest request, RestChannel channel, StreamingRestHandler.FlowControl flowControl) {
+        if (filters.length > 0) {
+            // filters expect to process the full request
+            return null;
+        }
+        RestHandler handler = getHandler(request);
+        if (!(handler instanceof StreamingRestHandler)) {
+            return null;
+        }
+        return ((StreamingRestHandler) handler).startStreaming(request, channel, flowControl);
+    }
+
     void executeHandler(RestRequest request, RestChannel channel) {
         final RestHandler handler = getHandler(request);
         if (handler != null) {
@@ -0,0 +1,68 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest;
+
+import org.elasticsearch.common.Nullable;
+
+/**
+ * A rest handler that can consume the request content incrementally, as it is received, instead of waiting
+ * for the whole content to be aggregated. Transports that don't support streaming (or requests that are not
+ * chunked) are still handled using {@link #handleRequest(RestRequest, RestChannel)}.
+ */
+public interface StreamingRestHandler extends RestHandler {
+
+    /**
+     * Starts handling a request which content will be streamed into the returned consumer. Can return
+     * <tt>null</tt> to have the request aggregated and handled by {@link #handleRequest(RestRequest, RestChannel)}.
+     */
+    @Nullable
+    ContentConsumer startStreaming(RestRequest request, RestChannel channel, FlowControl flowControl);
+
+    /**
+     * Consumes the content of a streamed request, all calls are made sequentially.
+     */
+    static interface ContentConsumer {
+
+        /**
+         * Called with the next part of the content, the data is only valid during the call.
+         */
+        void onContent(byte[] data, int offset, int length);
+
+        /**
+         * Called once all the content has been received.
+         */
+        void onEnd();
+
+        /**
+         * Called instead of {@link #onEnd()} when the channel was closed before all the content was received.
+         */
+        void onClose();
+    }
+
+    /**
+     * Allows to stop receiving content while the already received content is being processed.
+     */
+    static interface FlowControl {
+
+        void pause();
+
+        void resume();
+    }
+}
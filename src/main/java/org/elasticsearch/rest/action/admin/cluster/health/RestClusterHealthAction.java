@@ -105,6 +105,8 @@ public class RestClusterHealthAction extends BaseRestHandler {
                     builder.field(Fields.RELOCATING_SHARDS, response.relocatingShards());
                     builder.field(Fields.INITIALIZING_SHARDS, response.initializingShards());
                     builder.field(Fields.UNASSIGNED_SHARDS, response.unassignedShards());
+                    builder.field(Fields.NUMBER_OF_PENDING_TASKS, response.numberOfPendingTasks());
+                    builder.field(Fields.AVERAGE_TASK_BATCH_SIZE, response.averageTaskBatchSize());
 
                     if (!response.validationFailures().isEmpty()) {
                         builder.startArray(Fields.VALIDATION_FAILURES);
@@ -209,6 +211,8 @@ public class RestClusterHealthAction extends BaseRestHandler {
         static final XContentBuilderString RELOCATING_SHARDS = new XContentBuilderString("relocating_shards");
         static final XContentBuilderString INITIALIZING_SHARDS = new XContentBuilderString("initializing_shards");
         static final XContentBuilderString UNASSIGNED_SHARDS = new XContentBuilderString("unassigned_shards");
+        static final XContentBuilderString NUMBER_OF_PENDING_TASKS = new XContentBuilderString("number_of_pending_tasks");
+        static final XContentBuilderString AVERAGE_TASK_BATCH_SIZE = new XContentBuilderString("average_task_batch_size");
         static final XContentBuilderString VALIDATION_FAILURES = new XContentBuilderString("validation_failures");
         static final XContentBuilderString INDICES = new XContentBuilderString("indices");
         static final XContentBuilderString SHARDS = new XContentBuilderString("shards");
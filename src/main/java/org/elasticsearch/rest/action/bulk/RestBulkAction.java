@@ -19,8 +19,12 @@
 
 package org.elasticsearch.rest.action.bulk;
 
+import org.elasticsearch.ElasticSearchException;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.WriteConsistencyLevel;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
@@ -28,13 +32,21 @@ import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.support.replication.ReplicationType;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.Requests;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.settings.Settings;
-import org.elasticsearch.common.xcontent.XContentBuilder;
-import org.elasticsearch.common.xcontent.XContentBuilderString;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.xcontent.*;
 import org.elasticsearch.rest.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static org.elasticsearch.rest.RestRequest.Method.POST;
 import static org.elasticsearch.rest.RestRequest.Method.PUT;
@@ -53,11 +65,26 @@ import static org.elasticsearch.rest.action.support.RestXContentBuilder.restCont
  *
  *
  */
-public class RestBulkAction extends BaseRestHandler {
+public class RestBulkAction extends BaseRestHandler implements StreamingRestHandler {
+
+    private final boolean streaming;
+
+    private final ByteSizeValue streamingParseSize;
+
+    private final int streamingBatchActions;
+
+    private final ByteSizeValue streamingBatchSize;
+
+    private final int streamingConcurrentBatches;
 
     @Inject
     public RestBulkAction(Settings settings, Client client, RestController controller) {
         super(settings, client);
+        this.streaming = componentSettings.getAsBoolean("streaming.enabled", true);
+        this.streamingParseSize = componentSettings.getAsBytesSize("streaming.parse_size", new ByteSizeValue(64, ByteSizeUnit.KB));
+        this.streamingBatchActions = componentSettings.getAsInt("streaming.batch_actions", 1000);
+        this.streamingBatchSize = componentSettings.getAsBytesSize("streaming.batch_size", new ByteSizeValue(5, ByteSizeUnit.MB));
+        this.streamingConcurrentBatches = componentSettings.getAsInt("streaming.concurrent_batches", 2);
 
         controller.registerHandler(POST, "/_bulk", this);
         controller.registerHandler(PUT, "/_bulk", this);
@@ -69,10 +96,47 @@ public class RestBulkAction extends BaseRestHandler {
 
     @Override
     public void handleRequest(final RestRequest request, final RestChannel channel) {
-        BulkRequest bulkRequest = Requests.bulkRequest();
+        BulkRequest bulkRequest = newBulkRequest(request);
         String defaultIndex = request.param("index");
         String defaultType = request.param("type");
+        try {
+            bulkRequest.add(request.contentByteArray(), request.contentByteArrayOffset(), request.contentLength(), request.contentUnsafe(), defaultIndex, defaultType);
+        } catch (Exception e) {
+            sendBadRequest(request, channel, e);
+            return;
+        }
+
+        client.bulk(bulkRequest, new ActionListener<BulkResponse>() {
+            @Override
+            public void onResponse(BulkResponse response) {
+                try {
+                    sendResponse(request, channel, response);
+                } catch (Exception e) {
+                    onFailure(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                try {
+                    channel.sendResponse(new XContentThrowableRestResponse(request, e));
+                } catch (IOException e1) {
+                    logger.error("Failed to send failure response", e1);
+                }
+            }
+        });
+    }
 
+    @Override
+    public ContentConsumer startStreaming(RestRequest request, RestChannel channel, FlowControl flowControl) {
+        if (!streaming) {
+            return null;
+        }
+        return new StreamingBulk(request, channel, flowControl);
+    }
+
+    private BulkRequest newBulkRequest(RestRequest request) {
+        BulkRequest bulkRequest = Requests.bulkRequest();
         String replicationType = request.param("replication");
         if (replicationType != null) {
             bulkRequest.replicationType(ReplicationType.fromString(replicationType));
@@ -82,72 +146,348 @@ public class RestBulkAction extends BaseRestHandler {
             bulkRequest.consistencyLevel(WriteConsistencyLevel.fromString(consistencyLevel));
         }
         bulkRequest.refresh(request.paramAsBoolean("refresh", bulkRequest.refresh()));
+        return bulkRequest;
+    }
+
+    private void sendBadRequest(RestRequest request, RestChannel channel, Exception e) {
         try {
-            bulkRequest.add(request.contentByteArray(), request.contentByteArrayOffset(), request.contentLength(), request.contentUnsafe(), defaultIndex, defaultType);
-        } catch (Exception e) {
+            XContentBuilder builder = restContentBuilder(request);
+            channel.sendResponse(new XContentRestResponse(request, BAD_REQUEST, builder.startObject().field("error", e.getMessage()).endObject()));
+        } catch (IOException e1) {
+            logger.error("Failed to send failure response", e1);
+        }
+    }
+
+    /**
+     * Parses the bulk content as it is received, and executes it in batches once enough actions were parsed.
+     * Reading is paused while too many batches are executing, bounding the memory used by the in flight bulk.
+     * The items of all the batches are returned, in order, in a single response.
+     * <p/>
+     * Batches are executed before the whole content is received, so a failure (malformed content, or a batch that
+     * failed as a whole) can happen after some of them were executed. In this case the items of the executed batches
+     * are still returned, along with an <tt>error</tt> field and the failure status (<tt>400</tt> for malformed
+     * content). If no batch succeeded, only the error is returned, just like a non streamed bulk.
+     * <p/>
+     * With <tt>refresh</tt> set, the indices are refreshed once all the batches executed, instead of after each batch.
+     * If the channel is closed before all the content was received, no more batches are executed.
+     */
+    class StreamingBulk implements ContentConsumer {
+
+        private final RestRequest request;
+
+        private final RestChannel channel;
+
+        private final FlowControl flowControl;
+
+        private final String defaultIndex;
+
+        private final String defaultType;
+
+        private final boolean refresh;
+
+        private final long startTime = System.currentTimeMillis();
+
+        // holds the content received and not parsed yet
+        private final BytesStreamOutput buffer = new BytesStreamOutput();
+
+        // whether a separator was received since the content was last parsed, as no new action can be parsed otherwise
+        private boolean separatorReceived;
+
+        private XContent xContent;
+
+        private BulkRequest bulkRequest;
+
+        private long bulkRequestSize;
+
+        // the responses of the executed batches, by order of execution
+        private final List<BulkResponse> responses = new ArrayList<BulkResponse>();
+
+        private Throwable failure;
+
+        private Exception parseFailure;
+
+        private int inFlight;
+
+        private boolean paused;
+
+        private boolean ended;
+
+        private boolean done;
+
+        private boolean closed;
+
+        StreamingBulk(RestRequest request, RestChannel channel, FlowControl flowControl) {
+            this.request = request;
+            this.channel = channel;
+            this.flowControl = flowControl;
+            this.defaultIndex = request.param("index");
+            this.defaultType = request.param("type");
+            this.refresh = request.paramAsBoolean("refresh", false);
+        }
+
+        @Override
+        public synchronized void onContent(byte[] data, int offset, int length) {
+            if (ended) {
+                // failed to parse, ignore the rest of the content
+                return;
+            }
             try {
-                XContentBuilder builder = restContentBuilder(request);
-                channel.sendResponse(new XContentRestResponse(request, BAD_REQUEST, builder.startObject().field("error", e.getMessage()).endObject()));
-            } catch (IOException e1) {
-                logger.error("Failed to send failure response", e1);
+                buffer.writeBytes(data, offset, length);
+                // only scan the newly received bytes, the buffered ones were scanned already
+                if (!separatorReceived) {
+                    separatorReceived = xContent == null || containsSeparator(data, offset, length);
+                }
+                if (separatorReceived && buffer.size() >= streamingParseSize.bytes()) {
+                    parse(false);
+                }
+            } catch (Exception e) {
+                failParsing(e);
             }
-            return;
         }
 
-        client.bulk(bulkRequest, new ActionListener<BulkResponse>() {
-            @Override
-            public void onResponse(BulkResponse response) {
-                try {
-                    XContentBuilder builder = restContentBuilder(request);
-                    builder.startObject();
-                    builder.field(Fields.TOOK, response.tookInMillis());
-                    builder.startArray(Fields.ITEMS);
-                    for (BulkItemResponse itemResponse : response) {
-                        builder.startObject();
-                        builder.startObject(itemResponse.opType());
-                        builder.field(Fields._INDEX, itemResponse.index());
-                        builder.field(Fields._TYPE, itemResponse.type());
-                        builder.field(Fields._ID, itemResponse.id());
-                        long version = itemResponse.version();
-                        if (version != -1) {
-                            builder.field(Fields._VERSION, itemResponse.version());
-                        }
-                        if (itemResponse.failed()) {
-                            builder.field(Fields.ERROR, itemResponse.failure().message());
-                        } else {
-                            builder.field(Fields.OK, true);
-                        }
-                        if (itemResponse.response() instanceof IndexResponse) {
-                            IndexResponse indexResponse = itemResponse.response();
-                            if (indexResponse.matches() != null) {
-                                builder.startArray(Fields.MATCHES);
-                                for (String match : indexResponse.matches()) {
-                                    builder.value(match);
-                                }
-                                builder.endArray();
-                            }
-                        }
-                        builder.endObject();
-                        builder.endObject();
+        @Override
+        public synchronized void onEnd() {
+            if (ended) {
+                return;
+            }
+            try {
+                parse(true);
+            } catch (Exception e) {
+                failParsing(e);
+                return;
+            }
+            if ((bulkRequest != null && bulkRequest.numberOfActions() > 0) || responses.isEmpty()) {
+                // execute the last batch, or an empty one so it fails just like a non streamed empty bulk
+                if (bulkRequest == null) {
+                    bulkRequest = newBatchRequest();
+                }
+                execute();
+            }
+            ended = true;
+            maybeFinish();
+        }
+
+        @Override
+        public synchronized void onClose() {
+            if (done) {
+                return;
+            }
+            // no one is left to get the response, drop the content and batches not executed yet
+            closed = true;
+            ended = true;
+            done = true;
+            bulkRequest = null;
+            buffer.reset();
+            responses.clear();
+        }
+
+        private BulkRequest newBatchRequest() {
+            BulkRequest bulkRequest = newBulkRequest(request);
+            // refreshed once all the batches executed
+            bulkRequest.refresh(false);
+            return bulkRequest;
+        }
+
+        private void parse(boolean last) throws Exception {
+            if (xContent == null) {
+                XContentType type = XContentFactory.xContentType(buffer.underlyingBytes(), 0, buffer.size());
+                if (type == null) {
+                    if (!last) {
+                        return;
                     }
-                    builder.endArray();
+                    // derive it the same way a non streamed bulk does, failing if it can't
+                    xContent = XContentFactory.xContent(buffer.underlyingBytes(), 0, buffer.size());
+                } else {
+                    xContent = XContentFactory.xContent(type);
+                }
+            }
+            if (bulkRequest == null) {
+                bulkRequest = newBatchRequest();
+            }
+            // index requests keep a reference to the data, so parse a fresh copy of it
+            byte[] data = buffer.copiedByteArray();
+            int consumed = bulkRequest.add(xContent, data, 0, data.length, false, defaultIndex, defaultType);
+            bulkRequestSize += consumed;
+            buffer.reset();
+            buffer.writeBytes(data, consumed, data.length - consumed);
+            separatorReceived = false;
+            if (bulkRequest.numberOfActions() >= streamingBatchActions || bulkRequestSize >= streamingBatchSize.bytes()) {
+                execute();
+            }
+        }
 
-                    builder.endObject();
-                    channel.sendResponse(new XContentRestResponse(request, OK, builder));
-                } catch (Exception e) {
-                    onFailure(e);
+        private boolean containsSeparator(byte[] data, int offset, int length) {
+            byte separator = xContent.streamSeparator();
+            for (int i = offset; i < offset + length; i++) {
+                if (data[i] == separator) {
+                    return true;
                 }
             }
+            return false;
+        }
 
-            @Override
-            public void onFailure(Throwable e) {
+        private void execute() {
+            final int batch = responses.size();
+            responses.add(null);
+            BulkRequest bulkRequest = this.bulkRequest;
+            this.bulkRequest = null;
+            this.bulkRequestSize = 0;
+            if (++inFlight >= streamingConcurrentBatches && !paused) {
+                paused = true;
+                flowControl.pause();
+            }
+            client.bulk(bulkRequest, new ActionListener<BulkResponse>() {
+                @Override
+                public void onResponse(BulkResponse response) {
+                    onBatchDone(batch, response, null);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    onBatchDone(batch, null, e);
+                }
+            });
+        }
+
+        private synchronized void onBatchDone(int batch, BulkResponse response, Throwable e) {
+            if (closed) {
+                inFlight--;
+                return;
+            }
+            responses.set(batch, response);
+            if (e != null) {
+                failure = e;
+            }
+            if (--inFlight < streamingConcurrentBatches && paused) {
+                paused = false;
+                flowControl.resume();
+            }
+            maybeFinish();
+        }
+
+        private void maybeFinish() {
+            if (done || !ended || inFlight > 0) {
+                return;
+            }
+            done = true;
+            final List<BulkItemResponse> items = new ArrayList<BulkItemResponse>();
+            boolean executed = false;
+            for (BulkResponse response : responses) {
+                if (response != null) {
+                    executed = true;
+                    items.addAll(Arrays.asList(response.items()));
+                }
+            }
+            if (!executed && parseFailure != null) {
+                sendBadRequest(request, channel, parseFailure);
+                return;
+            }
+            if (!executed && failure != null) {
+                try {
+                    channel.sendResponse(new XContentThrowableRestResponse(request, failure));
+                } catch (IOException e1) {
+                    logger.error("Failed to send failure response", e1);
+                }
+                return;
+            }
+            if (!refresh) {
+                sendItems(items);
+                return;
+            }
+            Set<String> indices = new HashSet<String>();
+            for (BulkItemResponse item : items) {
+                indices.add(item.index());
+            }
+            client.admin().indices().refresh(new RefreshRequest(indices.toArray(new String[indices.size()])), new ActionListener<RefreshResponse>() {
+                @Override
+                public void onResponse(RefreshResponse response) {
+                    sendItems(items);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    logger.debug("failed to refresh after streamed bulk", e);
+                    sendItems(items);
+                }
+            });
+        }
+
+        private void sendItems(List<BulkItemResponse> items) {
+            try {
+                BulkResponse response = new BulkResponse(items.toArray(new BulkItemResponse[items.size()]), System.currentTimeMillis() - startTime);
+                if (parseFailure != null) {
+                    sendResponse(request, channel, response, BAD_REQUEST, parseFailure.getMessage());
+                } else if (failure != null) {
+                    RestStatus status = (failure instanceof ElasticSearchException) ? ((ElasticSearchException) failure).status() : RestStatus.INTERNAL_SERVER_ERROR;
+                    sendResponse(request, channel, response, status, ExceptionsHelper.detailedMessage(failure));
+                } else {
+                    sendResponse(request, channel, response);
+                }
+            } catch (Exception e) {
                 try {
                     channel.sendResponse(new XContentThrowableRestResponse(request, e));
                 } catch (IOException e1) {
                     logger.error("Failed to send failure response", e1);
                 }
             }
-        });
+        }
+
+        private void failParsing(Exception e) {
+            parseFailure = e;
+            ended = true;
+            if (paused) {
+                // keep reading, the rest of the content is ignored
+                paused = false;
+                flowControl.resume();
+            }
+            maybeFinish();
+        }
+    }
+
+    private void sendResponse(RestRequest request, RestChannel channel, BulkResponse response) throws IOException {
+        sendResponse(request, channel, response, OK, null);
+    }
+
+    private void sendResponse(RestRequest request, RestChannel channel, BulkResponse response, RestStatus status, @Nullable String error) throws IOException {
+        XContentBuilder builder = restContentBuilder(request);
+        builder.startObject();
+        if (error != null) {
+            builder.field(Fields.ERROR, error);
+        }
+        builder.field(Fields.TOOK, response.tookInMillis());
+        builder.startArray(Fields.ITEMS);
+        for (BulkItemResponse itemResponse : response) {
+            builder.startObject();
+            builder.startObject(itemResponse.opType());
+            builder.field(Fields._INDEX, itemResponse.index());
+            builder.field(Fields._TYPE, itemResponse.type());
+            builder.field(Fields._ID, itemResponse.id());
+            long version = itemResponse.version();
+            if (version != -1) {
+                builder.field(Fields._VERSION, itemResponse.version());
+            }
+            if (itemResponse.failed()) {
+                builder.field(Fields.ERROR, itemResponse.failure().message());
+            } else {
+                builder.field(Fields.OK, true);
+            }
+            if (itemResponse.response() instanceof IndexResponse) {
+                IndexResponse indexResponse = itemResponse.response();
+                if (indexResponse.matches() != null) {
+                    builder.startArray(Fields.MATCHES);
+                    for (String match : indexResponse.matches()) {
+                        builder.value(match);
+                    }
+                    builder.endArray();
+                }
+            }
+            builder.endObject();
+            builder.endObject();
+        }
+        builder.endArray();
+
+        builder.endObject();
+        channel.sendResponse(new XContentRestResponse(request, status, builder));
     }
 
     static final class Fields {
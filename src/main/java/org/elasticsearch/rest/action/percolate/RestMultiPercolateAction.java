@@ -0,0 +1,119 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.rest.action.percolate;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.percolate.MultiPercolateRequest;
+import org.elasticsearch.action.percolate.MultiPercolateResponse;
+import org.elasticsearch.action.percolate.PercolateResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentBuilderString;
+import org.elasticsearch.rest.*;
+import org.elasticsearch.rest.action.support.RestXContentBuilder;
+
+import java.io.IOException;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+import static org.elasticsearch.rest.RestStatus.BAD_REQUEST;
+import static org.elasticsearch.rest.RestStatus.OK;
+
+/**
+ * Percolates several docs at once, the body holds a doc per line, each in the format of a percolate request.
+ */
+public class RestMultiPercolateAction extends BaseRestHandler {
+
+    @Inject
+    public RestMultiPercolateAction(Settings settings, Client client, RestController controller) {
+        super(settings, client);
+        controller.registerHandler(GET, "/{index}/{type}/_mpercolate", this);
+        controller.registerHandler(POST, "/{index}/{type}/_mpercolate", this);
+    }
+
+    @Override
+    public void handleRequest(final RestRequest request, final RestChannel channel) {
+        MultiPercolateRequest multiPercolateRequest = new MultiPercolateRequest(request.param("index"), request.param("type"));
+        try {
+            multiPercolateRequest.addLines(request.contentByteArray(), request.contentByteArrayOffset(), request.contentLength(), request.contentUnsafe());
+        } catch (Exception e) {
+            try {
+                XContentBuilder builder = RestXContentBuilder.restContentBuilder(request);
+                channel.sendResponse(new XContentRestResponse(request, BAD_REQUEST, builder.startObject().field("error", e.getMessage()).endObject()));
+            } catch (IOException e1) {
+                logger.error("Failed to send failure response", e1);
+            }
+            return;
+        }
+
+        // we just send a response, no need to fork
+        multiPercolateRequest.listenerThreaded(false);
+        // we don't spawn, then fork if local
+        multiPercolateRequest.operationThreaded(true);
+
+        multiPercolateRequest.preferLocal(request.paramAsBoolean("prefer_local", multiPercolateRequest.preferLocalShard()));
+        client.multiPercolate(multiPercolateRequest, new ActionListener<MultiPercolateResponse>() {
+            @Override
+            public void onResponse(MultiPercolateResponse response) {
+                try {
+                    XContentBuilder builder = RestXContentBuilder.restContentBuilder(request);
+                    builder.startObject();
+
+                    builder.field(Fields.OK, true);
+                    builder.startArray(Fields.RESPONSES);
+                    for (PercolateResponse percolateResponse : response) {
+                        builder.startObject();
+                        builder.startArray(Fields.MATCHES);
+                        for (String match : percolateResponse) {
+                            builder.value(match);
+                        }
+                        builder.endArray();
+                        builder.endObject();
+                    }
+                    builder.endArray();
+
+                    builder.endObject();
+
+                    channel.sendResponse(new XContentRestResponse(request, OK, builder));
+                } catch (Exception e) {
+                    onFailure(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                try {
+                    channel.sendResponse(new XContentThrowableRestResponse(request, e));
+                } catch (IOException e1) {
+                    logger.error("Failed to send failure response", e1);
+                }
+            }
+        });
+    }
+
+    static final class Fields {
+        static final XContentBuilderString OK = new XContentBuilderString("ok");
+        static final XContentBuilderString RESPONSES = new XContentBuilderString("responses");
+        static final XContentBuilderString MATCHES = new XContentBuilderString("matches");
+    }
+}
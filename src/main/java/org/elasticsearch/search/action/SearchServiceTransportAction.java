@@ -21,12 +21,14 @@ package org.elasticsearch.search.action;
 
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.routing.operation.ResponseCollector;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.io.stream.LongStreamable;
 import org.elasticsearch.common.io.stream.VoidStreamable;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.SearchService;
 import org.elasticsearch.search.dfs.DfsSearchResult;
 import org.elasticsearch.search.fetch.FetchSearchRequest;
@@ -37,10 +39,13 @@ import org.elasticsearch.search.internal.InternalScrollSearchRequest;
 import org.elasticsearch.search.internal.InternalSearchRequest;
 import org.elasticsearch.search.query.QuerySearchRequest;
 import org.elasticsearch.search.query.QuerySearchResult;
+import org.elasticsearch.search.query.QuerySearchResultProvider;
 import org.elasticsearch.search.query.ScrollQuerySearchResult;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * An encapsulation of {@link org.elasticsearch.search.SearchService} operations exposed through
  * transport.
@@ -70,14 +75,18 @@ public class SearchServiceTransportAction extends AbstractComponent {
 
     private final SearchService searchService;
 
+    private final ResponseCollector responseCollector;
+
     private final FreeContextResponseHandler freeContextResponseHandler = new FreeContextResponseHandler(logger);
 
     @Inject
-    public SearchServiceTransportAction(Settings settings, TransportService transportService, ClusterService clusterService, SearchService searchService) {
+    public SearchServiceTransportAction(Settings settings, TransportService transportService, ClusterService clusterService, SearchService searchService,
+                                        ResponseCollector responseCollector) {
         super(settings);
         this.transportService = transportService;
         this.clusterService = clusterService;
         this.searchService = searchService;
+        this.responseCollector = responseCollector;
 
         transportService.registerHandler(SearchFreeContextTransportHandler.ACTION, new SearchFreeContextTransportHandler());
         transportService.registerHandler(SearchDfsTransportHandler.ACTION, new SearchDfsTransportHandler());
@@ -100,7 +109,8 @@ public class SearchServiceTransportAction extends AbstractComponent {
         }
     }
 
-    public void sendExecuteDfs(DiscoveryNode node, final InternalSearchRequest request, final SearchServiceListener<DfsSearchResult> listener) {
+    public void sendExecuteDfs(DiscoveryNode node, final InternalSearchRequest request, SearchServiceListener<DfsSearchResult> originalListener) {
+        final SearchServiceListener<DfsSearchResult> listener = collectResponse(node, originalListener);
         if (clusterService.state().nodes().localNodeId().equals(node.id())) {
             try {
                 DfsSearchResult result = searchService.executeDfsPhase(request);
@@ -134,7 +144,8 @@ public class SearchServiceTransportAction extends AbstractComponent {
         }
     }
 
-    public void sendExecuteQuery(DiscoveryNode node, final InternalSearchRequest request, final SearchServiceListener<QuerySearchResult> listener) {
+    public void sendExecuteQuery(DiscoveryNode node, final InternalSearchRequest request, SearchServiceListener<QuerySearchResult> originalListener) {
+        final SearchServiceListener<QuerySearchResult> listener = collectResponse(node, originalListener);
         if (clusterService.state().nodes().localNodeId().equals(node.id())) {
             try {
                 QuerySearchResult result = searchService.executeQueryPhase(request);
@@ -168,6 +179,38 @@ public class SearchServiceTransportAction extends AbstractComponent {
         }
     }
 
+    /**
+     * Wraps the listener of a request executing on a shard copy picked by the operation routing, to feed the
+     * {@link ResponseCollector} used to pick the copies of the next searches.
+     */
+    private <T extends SearchPhaseResult> SearchServiceListener<T> collectResponse(final DiscoveryNode node, final SearchServiceListener<T> listener) {
+        final long startTime = System.nanoTime();
+        final AtomicBoolean collected = new AtomicBoolean();
+        responseCollector.onRequestSent(node.id());
+        return new SearchServiceListener<T>() {
+            @Override
+            public void onResult(T result) {
+                if (collected.compareAndSet(false, true)) {
+                    int searchQueueSize = -1;
+                    if (result instanceof QuerySearchResultProvider) {
+                        searchQueueSize = ((QuerySearchResultProvider) result).queryResult().searchQueueSize();
+                    }
+                    responseCollector.onResponse(node.id(), searchQueueSize, System.nanoTime() - startTime);
+                }
+                listener.onResult(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                // a local execution calls onFailure if the listener failed to handle the result
+                if (collected.compareAndSet(false, true)) {
+                    responseCollector.onFailure(node.id());
+                }
+                listener.onFailure(t);
+            }
+        };
+    }
+
     public void sendExecuteQuery(DiscoveryNode node, final QuerySearchRequest request, final SearchServiceListener<QuerySearchResult> listener) {
         if (clusterService.state().nodes().localNodeId().equals(node.id())) {
             try {
@@ -236,7 +279,8 @@ public class SearchServiceTransportAction extends AbstractComponent {
         }
     }
 
-    public void sendExecuteFetch(DiscoveryNode node, final InternalSearchRequest request, final SearchServiceListener<QueryFetchSearchResult> listener) {
+    public void sendExecuteFetch(DiscoveryNode node, final InternalSearchRequest request, SearchServiceListener<QueryFetchSearchResult> originalListener) {
+        final SearchServiceListener<QueryFetchSearchResult> listener = collectResponse(node, originalListener);
         if (clusterService.state().nodes().localNodeId().equals(node.id())) {
             try {
                 QueryFetchSearchResult result = searchService.executeFetchPhase(request);
@@ -372,7 +416,8 @@ public class SearchServiceTransportAction extends AbstractComponent {
         }
     }
 
-    public void sendExecuteScan(DiscoveryNode node, final InternalSearchRequest request, final SearchServiceListener<QuerySearchResult> listener) {
+    public void sendExecuteScan(DiscoveryNode node, final InternalSearchRequest request, SearchServiceListener<QuerySearchResult> originalListener) {
+        final SearchServiceListener<QuerySearchResult> listener = collectResponse(node, originalListener);
         if (clusterService.state().nodes().localNodeId().equals(node.id())) {
             try {
                 QuerySearchResult result = searchService.executeScan(request);
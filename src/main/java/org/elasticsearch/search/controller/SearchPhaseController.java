@@ -25,9 +25,9 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
 import gnu.trove.impl.Constants;
 import gnu.trove.map.hash.TObjectIntHashMap;
+import jsr166y.LinkedTransferQueue;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
-import org.apache.lucene.util.PriorityQueue;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
@@ -37,6 +37,7 @@ import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.dfs.AggregatedDfs;
 import org.elasticsearch.search.dfs.DfsSearchResult;
 import org.elasticsearch.search.facet.Facet;
+import org.elasticsearch.search.facet.FacetProcessor;
 import org.elasticsearch.search.facet.FacetProcessors;
 import org.elasticsearch.search.facet.InternalFacets;
 import org.elasticsearch.search.fetch.FetchSearchResult;
@@ -51,6 +52,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -74,17 +77,35 @@ public class SearchPhaseController extends AbstractComponent {
 
     private final boolean optimizeSingleShard;
 
+    private final int batchedReduceSize;
+
     @Inject
     public SearchPhaseController(Settings settings, FacetProcessors facetProcessors) {
         super(settings);
         this.facetProcessors = facetProcessors;
         this.optimizeSingleShard = componentSettings.getAsBoolean("optimize_single_shard", true);
+        this.batchedReduceSize = componentSettings.getAsInt("batched_reduce_size", 0);
     }
 
     public boolean optimizeSingleShard() {
         return optimizeSingleShard;
     }
 
+    /**
+     * The number of query results to accumulate before partially reducing them, <tt>0</tt> to only
+     * reduce once all the shards responded.
+     */
+    public int batchedReduceSize() {
+        return batchedReduceSize;
+    }
+
+    /**
+     * Creates a reducer of the query results of a single search request, see {@link BatchedReducer}.
+     */
+    public BatchedReducer newBatchedReducer() {
+        return new BatchedReducer();
+    }
+
     public AggregatedDfs aggregateDfs(Iterable<DfsSearchResult> results) {
         TObjectIntHashMap<Term> dfMap = new TObjectIntHashMap<Term>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1);
         long aggMaxDoc = 0;
@@ -153,14 +174,36 @@ public class SearchPhaseController extends AbstractComponent {
         QuerySearchResultProvider queryResultProvider = results.get(0);
 
         int totalNumDocs = 0;
+        for (QuerySearchResultProvider resultProvider : results) {
+            totalNumDocs += resultProvider.queryResult().topDocs().scoreDocs.length;
+        }
 
         int queueSize = queryResultProvider.queryResult().from() + queryResultProvider.queryResult().size();
+        int resultDocsSize = queryResultProvider.queryResult().size();
         if (queryResultProvider.includeFetch()) {
             // if we did both query and fetch on the same go, we have fetched all the docs from each shards already, use them...
             // this is also important since we shortcut and fetch only docs from "from" and up to "size"
             queueSize *= results.size();
+            resultDocsSize *= results.size();
+        }
+        if (totalNumDocs < queueSize) {
+            queueSize = totalNumDocs;
+            resultDocsSize = totalNumDocs - queryResultProvider.queryResult().from();
         }
-        PriorityQueue queue;
+
+        if (resultDocsSize <= 0) {
+            return EMPTY;
+        }
+
+        ShardTopDocsMerger merger = createMerger(results);
+
+        // each shard returns its docs sorted, so merge them and only create the docs from "from" up to "size",
+        // the ones before "from" were already fetched (and returned) by the previous pages
+        return merger.merge(results, queueSize - resultDocsSize, resultDocsSize);
+    }
+
+    private ShardTopDocsMerger createMerger(List<? extends QuerySearchResultProvider> results) {
+        QuerySearchResultProvider queryResultProvider = results.get(0);
         if (queryResultProvider.queryResult().topDocs() instanceof TopFieldDocs) {
             // sorting, first if the type is a String, chance CUSTOM to STRING so we handle nulls properly (since our CUSTOM String sorting might return null)
             TopFieldDocs fieldDocs = (TopFieldDocs) queryResultProvider.queryResult().topDocs();
@@ -188,57 +231,91 @@ public class SearchPhaseController extends AbstractComponent {
                     fieldDocs.fields[i] = new SortField(fieldDocs.fields[i].getField(), SortField.STRING, fieldDocs.fields[i].getReverse());
                 }
             }
-            queue = new ShardFieldDocSortedHitQueue(fieldDocs.fields, queueSize);
+            return new ShardTopDocsMerger.FieldDocs(fieldDocs.fields, results.size());
+        } else {
+            return new ShardTopDocsMerger.ScoreDocs(results.size());
+        }
+    }
 
-            // we need to accumulate for all and then filter the from
+    /**
+     * Partially reduces the query results, bounding the memory they hold until all the shards responded. The top
+     * docs of each shard are trimmed to the ones that can still make it to the requested page, and the facets are
+     * partially reduced (keeping all the terms of terms facets, see {@link FacetProcessor#partialReduce(String, List)})
+     * into the first result holding facets (the others have their facets cleared). Results that include the fetch
+     * phase are left as is, since their hits match their top docs.
+     * <p/>
+     * Only the given results are reduced, so a running partial reduce only needs to pass the results still holding
+     * docs or facets from the previous reduces along with the new ones, see {@link BatchedReducer}.
+     */
+    public void partialReduce(Collection<? extends QuerySearchResultProvider> results1) {
+        if (results1.size() <= 1) {
+            return;
+        }
+        List<? extends QuerySearchResultProvider> results = QUERY_RESULT_ORDERING.sortedCopy(results1);
+        QuerySearchResultProvider queryResultProvider = results.get(0);
+        if (queryResultProvider.includeFetch()) {
+            return;
+        }
+
+        InternalFacets facets = reduceFacets(results, true);
+        if (facets != null) {
+            boolean reduced = false;
             for (QuerySearchResultProvider resultProvider : results) {
                 QuerySearchResult result = resultProvider.queryResult();
-                ScoreDoc[] scoreDocs = result.topDocs().scoreDocs;
-                totalNumDocs += scoreDocs.length;
-                for (ScoreDoc doc : scoreDocs) {
-                    ShardFieldDoc nodeFieldDoc = new ShardFieldDoc(result.shardTarget(), doc.doc, doc.score, ((FieldDoc) doc).fields);
-                    if (queue.insertWithOverflow(nodeFieldDoc) == nodeFieldDoc) {
-                        // filled the queue, break
-                        break;
-                    }
+                if (result.facets() == null) {
+                    continue;
                 }
-            }
-        } else {
-            queue = new ScoreDocQueue(queueSize); // we need to accumulate for all and then filter the from
-            for (QuerySearchResultProvider resultProvider : results) {
-                QuerySearchResult result = resultProvider.queryResult();
-                ScoreDoc[] scoreDocs = result.topDocs().scoreDocs;
-                totalNumDocs += scoreDocs.length;
-                for (ScoreDoc doc : scoreDocs) {
-                    ShardScoreDoc nodeScoreDoc = new ShardScoreDoc(result.shardTarget(), doc.doc, doc.score);
-                    if (queue.insertWithOverflow(nodeScoreDoc) == nodeScoreDoc) {
-                        // filled the queue, break
-                        break;
-                    }
+                if (!reduced) {
+                    result.facets(facets);
+                    reduced = true;
+                } else {
+                    result.facets(null);
                 }
             }
-
         }
 
-        int resultDocsSize = queryResultProvider.queryResult().size();
-        if (queryResultProvider.includeFetch()) {
-            // if we did both query and fetch on the same go, we have fetched all the docs from each shards already, use them...
-            resultDocsSize *= results.size();
+        int queueSize = queryResultProvider.queryResult().from() + queryResultProvider.queryResult().size();
+        createMerger(results).trim(results, queueSize);
+    }
+
+    /**
+     * Reduces the facets of the results, skipping results that have their facets already reduced into another
+     * result, returning <tt>null</tt> if there are no facets. A partial reduce result can be reduced again with
+     * the facets of other results.
+     */
+    @Nullable
+    private InternalFacets reduceFacets(Collection<? extends QuerySearchResultProvider> queryResults, boolean partial) {
+        QuerySearchResult querySearchResult = null;
+        for (QuerySearchResultProvider queryResultProvider : queryResults) {
+            if (queryResultProvider.queryResult().facets() != null) {
+                querySearchResult = queryResultProvider.queryResult();
+                break;
+            }
         }
-        if (totalNumDocs < queueSize) {
-            resultDocsSize = totalNumDocs - queryResultProvider.queryResult().from();
+        // we rely on the fact that the order of facets is the same on all query results
+        if (querySearchResult == null || querySearchResult.facets().facets() == null || querySearchResult.facets().facets().isEmpty()) {
+            return null;
         }
-
-        if (resultDocsSize <= 0) {
-            return EMPTY;
+        List<Facet> aggregatedFacets = Lists.newArrayList();
+        List<Facet> namedFacets = Lists.newArrayList();
+        for (Facet facet : querySearchResult.facets()) {
+            // aggregate each facet name into a single list, and aggregate it
+            namedFacets.clear();
+            for (QuerySearchResultProvider queryResultProvider : queryResults) {
+                if (queryResultProvider.queryResult().facets() == null) {
+                    continue;
+                }
+                for (Facet facet1 : queryResultProvider.queryResult().facets()) {
+                    if (facet.name().equals(facet1.name())) {
+                        namedFacets.add(facet1);
+                    }
+                }
+            }
+            FacetProcessor facetProcessor = facetProcessors.processor(facet.type());
+            Facet aggregatedFacet = partial ? facetProcessor.partialReduce(facet.name(), namedFacets) : facetProcessor.reduce(facet.name(), namedFacets);
+            aggregatedFacets.add(aggregatedFacet);
         }
-
-        // we only pop the first, this handles "from" nicely since the "from" are down the queue
-        // that we already fetched, so we are actually popping the "from" and up to "size"
-        ShardDoc[] shardDocs = new ShardDoc[resultDocsSize];
-        for (int i = resultDocsSize - 1; i >= 0; i--)      // put docs in array
-            shardDocs[i] = (ShardDoc) queue.pop();
-        return shardDocs;
+        return new InternalFacets(aggregatedFacets);
     }
 
     public Map<SearchShardTarget, ExtTIntArrayList> docIdsToLoad(ShardDoc[] shardDocs) {
@@ -277,28 +354,7 @@ public class SearchPhaseController extends AbstractComponent {
         }
 
         // merge facets
-        InternalFacets facets = null;
-        if (!queryResults.isEmpty()) {
-            // we rely on the fact that the order of facets is the same on all query results
-            if (querySearchResult.facets() != null && querySearchResult.facets().facets() != null && !querySearchResult.facets().facets().isEmpty()) {
-                List<Facet> aggregatedFacets = Lists.newArrayList();
-                List<Facet> namedFacets = Lists.newArrayList();
-                for (Facet facet : querySearchResult.facets()) {
-                    // aggregate each facet name into a single list, and aggregate it
-                    namedFacets.clear();
-                    for (QuerySearchResultProvider queryResultProvider : queryResults.values()) {
-                        for (Facet facet1 : queryResultProvider.queryResult().facets()) {
-                            if (facet.name().equals(facet1.name())) {
-                                namedFacets.add(facet1);
-                            }
-                        }
-                    }
-                    Facet aggregatedFacet = facetProcessors.processor(facet.type()).reduce(facet.name(), namedFacets);
-                    aggregatedFacets.add(aggregatedFacet);
-                }
-                facets = new InternalFacets(aggregatedFacets);
-            }
-        }
+        InternalFacets facets = reduceFacets(queryResults.values(), false);
 
         // count the total (we use the query result provider here, since we might not get any hits (we scrolled past them))
         long totalHits = 0;
@@ -353,4 +409,69 @@ public class SearchPhaseController extends AbstractComponent {
         InternalSearchHits searchHits = new InternalSearchHits(hits.toArray(new InternalSearchHit[hits.size()]), totalHits, maxScore);
         return new InternalSearchResponse(searchHits, facets, timedOut);
     }
+
+    /**
+     * Partially reduces the query results of a single search request every {@link #batchedReduceSize()} results,
+     * and serializes the partial reduces with the final sort and merge. Each partial reduce folds the new results
+     * into the ones still holding top docs or the reduced facets from the previous reduces, so the results reduced
+     * away are not looked at again. A partial reduce trims the top docs and moves the facets of the results, so the
+     * final reduce must not run while one is still in flight on another responding shard thread.
+     */
+    public class BatchedReducer {
+
+        private final AtomicInteger pendingReduceOps = new AtomicInteger();
+
+        // the results received since the last partial reduce
+        private final Queue<QuerySearchResultProvider> pending = new LinkedTransferQueue<QuerySearchResultProvider>();
+
+        // the results of the previous partial reduces still holding top docs or the reduced facets, guarded by the mutex
+        private final List<QuerySearchResultProvider> reduced = new ArrayList<QuerySearchResultProvider>();
+
+        private final Object mutex = new Object();
+
+        BatchedReducer() {
+        }
+
+        /**
+         * Partially reduces the results if a batch of results accumulated. Must be called with each result, after
+         * adding it to the results the final reduce is done on.
+         */
+        public void maybePartialReduce(QuerySearchResultProvider result) {
+            if (batchedReduceSize <= 0 || result.includeFetch()) {
+                return;
+            }
+            pending.add(result);
+            if (pendingReduceOps.incrementAndGet() % batchedReduceSize != 0) {
+                return;
+            }
+            synchronized (mutex) {
+                List<QuerySearchResultProvider> results = new ArrayList<QuerySearchResultProvider>(reduced.size() + batchedReduceSize);
+                results.addAll(reduced);
+                QuerySearchResultProvider pendingResult;
+                while ((pendingResult = pending.poll()) != null) {
+                    results.add(pendingResult);
+                }
+                partialReduce(results);
+                reduced.clear();
+                for (QuerySearchResultProvider resultProvider : results) {
+                    QuerySearchResult queryResult = resultProvider.queryResult();
+                    if (queryResult.topDocs().scoreDocs.length > 0 || queryResult.facets() != null) {
+                        reduced.add(resultProvider);
+                    }
+                }
+            }
+        }
+
+        public ShardDoc[] sortDocs(Collection<? extends QuerySearchResultProvider> results) {
+            synchronized (mutex) {
+                return SearchPhaseController.this.sortDocs(results);
+            }
+        }
+
+        public InternalSearchResponse merge(ShardDoc[] sortedDocs, Map<SearchShardTarget, ? extends QuerySearchResultProvider> queryResults, Map<SearchShardTarget, ? extends FetchSearchResultProvider> fetchResults) {
+            synchronized (mutex) {
+                return SearchPhaseController.this.merge(sortedDocs, queryResults, fetchResults);
+            }
+        }
+    }
 }
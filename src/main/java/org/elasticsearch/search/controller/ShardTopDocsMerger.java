@@ -0,0 +1,177 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.search.controller;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ShardFieldDocSortedHitQueue;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.PriorityQueue;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.query.QuerySearchResult;
+import org.elasticsearch.search.query.QuerySearchResultProvider;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A k-way merge of the (already sorted) top docs of each shard. The queue holds a cursor per shard, so
+ * merging costs <tt>log(shards)</tt> per doc consumed, and only the docs of the requested window are
+ * materialized as {@link ShardDoc}s.
+ */
+abstract class ShardTopDocsMerger extends PriorityQueue<ShardTopDocsMerger.Cursor> {
+
+    static final class Cursor {
+        final SearchShardTarget shardTarget;
+        final ScoreDoc[] scoreDocs;
+        int index;
+
+        Cursor(SearchShardTarget shardTarget, ScoreDoc[] scoreDocs) {
+            this.shardTarget = shardTarget;
+            this.scoreDocs = scoreDocs;
+        }
+
+        ScoreDoc current() {
+            return scoreDocs[index];
+        }
+    }
+
+    ShardTopDocsMerger(int numberOfShards) {
+        initialize(numberOfShards);
+    }
+
+    /**
+     * The top of the queue is the cursor whose current doc comes first.
+     */
+    @Override
+    protected final boolean lessThan(Cursor a, Cursor b) {
+        return sortsBefore(a.shardTarget, a.current(), b.shardTarget, b.current());
+    }
+
+    protected abstract boolean sortsBefore(SearchShardTarget shardA, ScoreDoc docA, SearchShardTarget shardB, ScoreDoc docB);
+
+    protected abstract ShardDoc createShardDoc(SearchShardTarget shardTarget, ScoreDoc doc);
+
+    /**
+     * Merges the top docs of the results, skipping the first <tt>from</tt> docs and returning the next
+     * <tt>size</tt> ones. The results must hold at least <tt>from + size</tt> docs overall.
+     */
+    ShardDoc[] merge(List<? extends QuerySearchResultProvider> results, int from, int size) {
+        for (QuerySearchResultProvider resultProvider : results) {
+            ScoreDoc[] scoreDocs = resultProvider.queryResult().topDocs().scoreDocs;
+            if (scoreDocs.length > 0) {
+                add(new Cursor(resultProvider.queryResult().shardTarget(), scoreDocs));
+            }
+        }
+        ShardDoc[] shardDocs = new ShardDoc[size];
+        for (int i = 0; i < from + size; i++) {
+            Cursor cursor = top();
+            if (i >= from) {
+                shardDocs[i - from] = createShardDoc(cursor.shardTarget, cursor.current());
+            }
+            if (++cursor.index == cursor.scoreDocs.length) {
+                pop();
+            } else {
+                updateTop();
+            }
+        }
+        return shardDocs;
+    }
+
+    /**
+     * Consumes the first <tt>numDocs</tt> docs of the merge, and trims the top docs of each result to the docs
+     * consumed from it, the other docs can't make it to the first <tt>numDocs</tt> anymore.
+     */
+    void trim(List<? extends QuerySearchResultProvider> results, int numDocs) {
+        Cursor[] cursors = new Cursor[results.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            QuerySearchResult result = results.get(i).queryResult();
+            cursors[i] = new Cursor(result.shardTarget(), result.topDocs().scoreDocs);
+            if (cursors[i].scoreDocs.length > 0) {
+                add(cursors[i]);
+            }
+        }
+        for (int i = 0; i < numDocs && size() > 0; i++) {
+            Cursor cursor = top();
+            if (++cursor.index == cursor.scoreDocs.length) {
+                pop();
+            } else {
+                updateTop();
+            }
+        }
+        for (int i = 0; i < cursors.length; i++) {
+            if (cursors[i].index < cursors[i].scoreDocs.length) {
+                results.get(i).queryResult().topDocs().scoreDocs = Arrays.copyOf(cursors[i].scoreDocs, cursors[i].index);
+            }
+        }
+    }
+
+    /**
+     * Same order as {@link ScoreDocQueue}.
+     */
+    static class ScoreDocs extends ShardTopDocsMerger {
+
+        ScoreDocs(int numberOfShards) {
+            super(numberOfShards);
+        }
+
+        @Override
+        protected boolean sortsBefore(SearchShardTarget shardA, ScoreDoc docA, SearchShardTarget shardB, ScoreDoc docB) {
+            if (docA.score == docB.score) {
+                int c = shardA.compareTo(shardB);
+                if (c == 0) {
+                    return docA.doc < docB.doc;
+                }
+                return c < 0;
+            }
+            return docA.score > docB.score;
+        }
+
+        @Override
+        protected ShardDoc createShardDoc(SearchShardTarget shardTarget, ScoreDoc doc) {
+            return new ShardScoreDoc(shardTarget, doc.doc, doc.score);
+        }
+    }
+
+    /**
+     * Same order as {@link ShardFieldDocSortedHitQueue}.
+     */
+    static class FieldDocs extends ShardTopDocsMerger {
+
+        // only used to compare docs, never holds any
+        private final ShardFieldDocSortedHitQueue comparator;
+
+        FieldDocs(SortField[] fields, int numberOfShards) {
+            super(numberOfShards);
+            this.comparator = new ShardFieldDocSortedHitQueue(fields, 1);
+        }
+
+        @Override
+        protected boolean sortsBefore(SearchShardTarget shardA, ScoreDoc docA, SearchShardTarget shardB, ScoreDoc docB) {
+            return comparator.lessThan(shardB, (FieldDoc) docB, shardA, (FieldDoc) docA);
+        }
+
+        @Override
+        protected ShardDoc createShardDoc(SearchShardTarget shardTarget, ScoreDoc doc) {
+            return new ShardFieldDoc(shardTarget, doc.doc, doc.score, ((FieldDoc) doc).fields);
+        }
+    }
+}
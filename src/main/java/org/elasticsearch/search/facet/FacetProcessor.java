@@ -35,4 +35,11 @@ public interface FacetProcessor {
     FacetCollector parse(String facetName, XContentParser parser, SearchContext context) throws IOException;
 
     Facet reduce(String name, List<Facet> facets);
+
+    /**
+     * Reduces a part of the shard facets into a facet that can be reduced again with the other shard facets,
+     * giving the same result as reducing all of them at once. Facets that drop entries on reduce (like the
+     * top terms) must keep them here.
+     */
+    Facet partialReduce(String name, List<Facet> facets);
 }
@@ -209,6 +209,11 @@ public class DateHistogramFacetProcessor extends AbstractComponent implements Fa
         return first.reduce(name, facets);
     }
 
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(name, facets);
+    }
+
     static interface DateFieldParser {
 
         DateTimeField parse(Chronology chronology);
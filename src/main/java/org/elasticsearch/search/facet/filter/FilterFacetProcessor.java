@@ -65,4 +65,9 @@ public class FilterFacetProcessor extends AbstractComponent implements FacetProc
         }
         return new InternalFilterFacet(name, count);
     }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(name, facets);
+    }
 }
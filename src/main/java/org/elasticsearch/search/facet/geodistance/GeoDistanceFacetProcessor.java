@@ -217,4 +217,9 @@ public class GeoDistanceFacetProcessor extends AbstractComponent implements Face
         }
         return agg;
     }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(name, facets);
+    }
 }
@@ -149,4 +149,9 @@ public class HistogramFacetProcessor extends AbstractComponent implements FacetP
         InternalHistogramFacet first = (InternalHistogramFacet) facets.get(0);
         return first.reduce(name, facets);
     }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(name, facets);
+    }
 }
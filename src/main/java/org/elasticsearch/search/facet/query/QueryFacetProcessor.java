@@ -67,4 +67,9 @@ public class QueryFacetProcessor extends AbstractComponent implements FacetProce
         }
         return new InternalQueryFacet(name, count);
     }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(name, facets);
+    }
 }
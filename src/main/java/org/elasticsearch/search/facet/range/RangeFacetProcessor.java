@@ -179,4 +179,9 @@ public class RangeFacetProcessor extends AbstractComponent implements FacetProce
         }
         return agg;
     }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(name, facets);
+    }
 }
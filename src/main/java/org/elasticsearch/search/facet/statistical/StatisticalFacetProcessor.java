@@ -128,4 +128,9 @@ public class StatisticalFacetProcessor extends AbstractComponent implements Face
 
         return new InternalStatisticalFacet(name, min, max, total, sumOfSquares, count);
     }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(name, facets);
+    }
 }
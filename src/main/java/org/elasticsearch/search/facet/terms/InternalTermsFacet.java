@@ -49,4 +49,11 @@ public abstract class InternalTermsFacet implements TermsFacet, InternalFacet {
     }
 
     public abstract Facet reduce(String name, List<Facet> facets);
+
+    /**
+     * Reduces a part of the shard facets keeping all of their terms, so the result can be reduced again with the
+     * other shard facets and end up with the same counts. Only the final {@link #reduce(String, List)} keeps the
+     * requested size.
+     */
+    public abstract Facet partialReduce(String name, List<Facet> facets);
 }
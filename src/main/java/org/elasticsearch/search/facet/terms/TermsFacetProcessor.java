@@ -211,4 +211,10 @@ public class TermsFacetProcessor extends AbstractComponent implements FacetProce
         InternalTermsFacet first = (InternalTermsFacet) facets.get(0);
         return first.reduce(name, facets);
     }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        InternalTermsFacet first = (InternalTermsFacet) facets.get(0);
+        return first.partialReduce(name, facets);
+    }
 }
@@ -211,7 +211,16 @@ public class InternalByteTermsFacet extends InternalTermsFacet {
 
     @Override
     public Facet reduce(String name, List<Facet> facets) {
-        if (facets.size() == 1) {
+        return reduce(facets, ((InternalByteTermsFacet) facets.get(0)).requiredSize);
+    }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(facets, Integer.MAX_VALUE);
+    }
+
+    private Facet reduce(List<Facet> facets, int size) {
+        if (facets.size() == 1 && ((InternalByteTermsFacet) facets.get(0)).entries.size() <= size) {
             return facets.get(0);
         }
         InternalByteTermsFacet first = (InternalByteTermsFacet) facets.get(0);
@@ -228,7 +237,7 @@ public class InternalByteTermsFacet extends InternalTermsFacet {
             }
         }
 
-        BoundedTreeSet<ByteEntry> ordered = new BoundedTreeSet<ByteEntry>(first.comparatorType.comparator(), first.requiredSize);
+        BoundedTreeSet<ByteEntry> ordered = new BoundedTreeSet<ByteEntry>(first.comparatorType.comparator(), size);
         for (TByteIntIterator it = aggregated.iterator(); it.hasNext(); ) {
             it.advance();
             ordered.add(new ByteEntry(it.key(), it.value()));
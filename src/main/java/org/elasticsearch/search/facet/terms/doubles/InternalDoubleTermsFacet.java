@@ -212,7 +212,16 @@ public class InternalDoubleTermsFacet extends InternalTermsFacet {
 
     @Override
     public Facet reduce(String name, List<Facet> facets) {
-        if (facets.size() == 1) {
+        return reduce(facets, ((InternalDoubleTermsFacet) facets.get(0)).requiredSize);
+    }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(facets, Integer.MAX_VALUE);
+    }
+
+    private Facet reduce(List<Facet> facets, int size) {
+        if (facets.size() == 1 && ((InternalDoubleTermsFacet) facets.get(0)).entries.size() <= size) {
             return facets.get(0);
         }
         InternalDoubleTermsFacet first = (InternalDoubleTermsFacet) facets.get(0);
@@ -228,7 +237,7 @@ public class InternalDoubleTermsFacet extends InternalTermsFacet {
             }
         }
 
-        BoundedTreeSet<DoubleEntry> ordered = new BoundedTreeSet<DoubleEntry>(first.comparatorType.comparator(), first.requiredSize);
+        BoundedTreeSet<DoubleEntry> ordered = new BoundedTreeSet<DoubleEntry>(first.comparatorType.comparator(), size);
         for (TDoubleIntIterator it = aggregated.iterator(); it.hasNext(); ) {
             it.advance();
             ordered.add(new DoubleEntry(it.key(), it.value()));
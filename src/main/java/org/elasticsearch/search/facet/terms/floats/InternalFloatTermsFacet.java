@@ -212,7 +212,16 @@ public class InternalFloatTermsFacet extends InternalTermsFacet {
 
     @Override
     public Facet reduce(String name, List<Facet> facets) {
-        if (facets.size() == 1) {
+        return reduce(facets, ((InternalFloatTermsFacet) facets.get(0)).requiredSize);
+    }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(facets, Integer.MAX_VALUE);
+    }
+
+    private Facet reduce(List<Facet> facets, int size) {
+        if (facets.size() == 1 && ((InternalFloatTermsFacet) facets.get(0)).entries.size() <= size) {
             return facets.get(0);
         }
         InternalFloatTermsFacet first = (InternalFloatTermsFacet) facets.get(0);
@@ -228,7 +237,7 @@ public class InternalFloatTermsFacet extends InternalTermsFacet {
             }
         }
 
-        BoundedTreeSet<FloatEntry> ordered = new BoundedTreeSet<FloatEntry>(first.comparatorType.comparator(), first.requiredSize);
+        BoundedTreeSet<FloatEntry> ordered = new BoundedTreeSet<FloatEntry>(first.comparatorType.comparator(), size);
         for (TFloatIntIterator it = aggregated.iterator(); it.hasNext(); ) {
             it.advance();
             ordered.add(new FloatEntry(it.key(), it.value()));
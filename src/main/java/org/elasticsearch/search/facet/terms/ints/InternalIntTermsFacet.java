@@ -209,7 +209,16 @@ public class InternalIntTermsFacet extends InternalTermsFacet {
 
     @Override
     public Facet reduce(String name, List<Facet> facets) {
-        if (facets.size() == 1) {
+        return reduce(facets, ((InternalIntTermsFacet) facets.get(0)).requiredSize);
+    }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(facets, Integer.MAX_VALUE);
+    }
+
+    private Facet reduce(List<Facet> facets, int size) {
+        if (facets.size() == 1 && ((InternalIntTermsFacet) facets.get(0)).entries.size() <= size) {
             return facets.get(0);
         }
         InternalIntTermsFacet first = (InternalIntTermsFacet) facets.get(0);
@@ -225,7 +234,7 @@ public class InternalIntTermsFacet extends InternalTermsFacet {
             }
         }
 
-        BoundedTreeSet<IntEntry> ordered = new BoundedTreeSet<IntEntry>(first.comparatorType.comparator(), first.requiredSize);
+        BoundedTreeSet<IntEntry> ordered = new BoundedTreeSet<IntEntry>(first.comparatorType.comparator(), size);
         for (TIntIntIterator it = aggregated.iterator(); it.hasNext(); ) {
             it.advance();
             ordered.add(new IntEntry(it.key(), it.value()));
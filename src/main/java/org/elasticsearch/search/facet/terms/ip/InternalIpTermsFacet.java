@@ -214,7 +214,16 @@ public class InternalIpTermsFacet extends InternalTermsFacet {
 
     @Override
     public Facet reduce(String name, List<Facet> facets) {
-        if (facets.size() == 1) {
+        return reduce(facets, ((InternalIpTermsFacet) facets.get(0)).requiredSize);
+    }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(facets, Integer.MAX_VALUE);
+    }
+
+    private Facet reduce(List<Facet> facets, int size) {
+        if (facets.size() == 1 && ((InternalIpTermsFacet) facets.get(0)).entries.size() <= size) {
             return facets.get(0);
         }
         InternalIpTermsFacet first = (InternalIpTermsFacet) facets.get(0);
@@ -230,7 +239,7 @@ public class InternalIpTermsFacet extends InternalTermsFacet {
             }
         }
 
-        BoundedTreeSet<LongEntry> ordered = new BoundedTreeSet<LongEntry>(first.comparatorType.comparator(), first.requiredSize);
+        BoundedTreeSet<LongEntry> ordered = new BoundedTreeSet<LongEntry>(first.comparatorType.comparator(), size);
         for (TLongIntIterator it = aggregated.iterator(); it.hasNext(); ) {
             it.advance();
             ordered.add(new LongEntry(it.key(), it.value()));
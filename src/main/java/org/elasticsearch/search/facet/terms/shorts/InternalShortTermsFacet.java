@@ -209,7 +209,16 @@ public class InternalShortTermsFacet extends InternalTermsFacet {
 
     @Override
     public Facet reduce(String name, List<Facet> facets) {
-        if (facets.size() == 1) {
+        return reduce(facets, ((InternalShortTermsFacet) facets.get(0)).requiredSize);
+    }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(facets, Integer.MAX_VALUE);
+    }
+
+    private Facet reduce(List<Facet> facets, int size) {
+        if (facets.size() == 1 && ((InternalShortTermsFacet) facets.get(0)).entries.size() <= size) {
             return facets.get(0);
         }
         InternalShortTermsFacet first = (InternalShortTermsFacet) facets.get(0);
@@ -225,7 +234,7 @@ public class InternalShortTermsFacet extends InternalTermsFacet {
             }
         }
 
-        BoundedTreeSet<ShortEntry> ordered = new BoundedTreeSet<ShortEntry>(first.comparatorType.comparator(), first.requiredSize);
+        BoundedTreeSet<ShortEntry> ordered = new BoundedTreeSet<ShortEntry>(first.comparatorType.comparator(), size);
         for (TShortIntIterator it = aggregated.iterator(); it.hasNext(); ) {
             it.advance();
             ordered.add(new ShortEntry(it.key(), it.value()));
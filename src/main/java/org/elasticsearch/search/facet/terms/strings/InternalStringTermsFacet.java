@@ -209,7 +209,16 @@ public class InternalStringTermsFacet extends InternalTermsFacet {
 
     @Override
     public Facet reduce(String name, List<Facet> facets) {
-        if (facets.size() == 1) {
+        return reduce(facets, ((InternalStringTermsFacet) facets.get(0)).requiredSize);
+    }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(facets, Integer.MAX_VALUE);
+    }
+
+    private Facet reduce(List<Facet> facets, int size) {
+        if (facets.size() == 1 && ((InternalStringTermsFacet) facets.get(0)).entries.size() <= size) {
             return facets.get(0);
         }
         InternalStringTermsFacet first = (InternalStringTermsFacet) facets.get(0);
@@ -225,7 +234,7 @@ public class InternalStringTermsFacet extends InternalTermsFacet {
             }
         }
 
-        BoundedTreeSet<StringEntry> ordered = new BoundedTreeSet<StringEntry>(first.comparatorType.comparator(), first.requiredSize);
+        BoundedTreeSet<StringEntry> ordered = new BoundedTreeSet<StringEntry>(first.comparatorType.comparator(), size);
         for (TObjectIntIterator<String> it = aggregated.iterator(); it.hasNext(); ) {
             it.advance();
             ordered.add(new StringEntry(it.key(), it.value()));
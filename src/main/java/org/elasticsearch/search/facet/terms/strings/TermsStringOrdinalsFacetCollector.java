@@ -29,6 +29,7 @@ import org.elasticsearch.index.cache.field.data.FieldDataCache;
 import org.elasticsearch.index.field.data.FieldData;
 import org.elasticsearch.index.field.data.FieldDataType;
 import org.elasticsearch.index.field.data.strings.StringFieldData;
+import org.elasticsearch.index.field.data.strings.StringTermDictionary;
 import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.search.facet.AbstractFacetCollector;
 import org.elasticsearch.search.facet.Facet;
@@ -121,7 +122,7 @@ public class TermsStringOrdinalsFacetCollector extends AbstractFacetCollector {
         if (current != null) {
             missing += current.counts[0];
             total += current.total - current.counts[0];
-            if (current.values.length > 1) {
+            if (current.values.size() > 1) {
                 aggregators.add(current);
             }
         }
@@ -140,7 +141,7 @@ public class TermsStringOrdinalsFacetCollector extends AbstractFacetCollector {
             missing += current.counts[0];
             total += current.total - current.counts[0];
             // if we have values for this one, add it
-            if (current.values.length > 1) {
+            if (current.values.size() > 1) {
                 aggregators.add(current);
             }
         }
@@ -160,7 +161,8 @@ public class TermsStringOrdinalsFacetCollector extends AbstractFacetCollector {
 
             while (queue.size() > 0) {
                 ReaderAggregator agg = queue.top();
-                String value = agg.current;
+                StringTermDictionary values = agg.values;
+                int position = agg.position;
                 int count = 0;
                 do {
                     count += agg.counts[agg.position];
@@ -171,9 +173,10 @@ public class TermsStringOrdinalsFacetCollector extends AbstractFacetCollector {
                         queue.pop();
                         agg = queue.top();
                     }
-                } while (agg != null && value.equals(agg.current));
+                } while (agg != null && values.compare(position, agg.values, agg.position) == 0);
 
                 if (count > minCount) {
+                    String value = values.get(position);
                     if (excluded != null && excluded.contains(value)) {
                         continue;
                     }
@@ -200,7 +203,8 @@ public class TermsStringOrdinalsFacetCollector extends AbstractFacetCollector {
 
         while (queue.size() > 0) {
             ReaderAggregator agg = queue.top();
-            String value = agg.current;
+            StringTermDictionary values = agg.values;
+            int position = agg.position;
             int count = 0;
             do {
                 count += agg.counts[agg.position];
@@ -211,9 +215,10 @@ public class TermsStringOrdinalsFacetCollector extends AbstractFacetCollector {
                     queue.pop();
                     agg = queue.top();
                 }
-            } while (agg != null && value.equals(agg.current));
+            } while (agg != null && values.compare(position, agg.values, agg.position) == 0);
 
             if (count > minCount) {
+                String value = values.get(position);
                 if (excluded != null && excluded.contains(value)) {
                     continue;
                 }
@@ -235,16 +240,15 @@ public class TermsStringOrdinalsFacetCollector extends AbstractFacetCollector {
 
     public static class ReaderAggregator implements FieldData.OrdinalInDocProc {
 
-        final String[] values;
+        final StringTermDictionary values;
         final int[] counts;
 
         int position = 0;
-        String current;
         int total;
 
         public ReaderAggregator(StringFieldData fieldData) {
             this.values = fieldData.values();
-            this.counts = CacheRecycler.popIntArray(fieldData.values().length);
+            this.counts = CacheRecycler.popIntArray(fieldData.values().size());
         }
 
         @Override
@@ -254,11 +258,7 @@ public class TermsStringOrdinalsFacetCollector extends AbstractFacetCollector {
         }
 
         public boolean nextPosition() {
-            if (++position >= values.length) {
-                return false;
-            }
-            current = values[position];
-            return true;
+            return ++position < values.size();
         }
     }
 
@@ -270,7 +270,7 @@ public class TermsStringOrdinalsFacetCollector extends AbstractFacetCollector {
 
         @Override
         protected boolean lessThan(ReaderAggregator a, ReaderAggregator b) {
-            return a.current.compareTo(b.current) < 0;
+            return a.values.compare(a.position, b.values, b.position) < 0;
         }
     }
 }
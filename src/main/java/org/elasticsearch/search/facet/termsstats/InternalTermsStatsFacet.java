@@ -36,4 +36,10 @@ public abstract class InternalTermsStatsFacet implements TermsStatsFacet, Intern
     }
 
     public abstract Facet reduce(String name, List<Facet> facets);
+
+    /**
+     * Reduces a part of the shard facets keeping all of their terms, see
+     * {@link org.elasticsearch.search.facet.terms.InternalTermsFacet#partialReduce(String, java.util.List)}.
+     */
+    public abstract Facet partialReduce(String name, List<Facet> facets);
 }
\ No newline at end of file
@@ -127,4 +127,10 @@ public class TermsStatsFacetProcessor extends AbstractComponent implements Facet
         InternalTermsStatsFacet first = (InternalTermsStatsFacet) facets.get(0);
         return first.reduce(name, facets);
     }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        InternalTermsStatsFacet first = (InternalTermsStatsFacet) facets.get(0);
+        return first.partialReduce(name, facets);
+    }
 }
\ No newline at end of file
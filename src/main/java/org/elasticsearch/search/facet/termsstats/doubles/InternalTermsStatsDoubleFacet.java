@@ -239,8 +239,17 @@ public class InternalTermsStatsDoubleFacet extends InternalTermsStatsFacet {
 
     @Override
     public Facet reduce(String name, List<Facet> facets) {
-        if (facets.size() == 1) {
-            if (requiredSize == 0) {
+        return reduce(name, facets, requiredSize);
+    }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(name, facets, 0);
+    }
+
+    private Facet reduce(String name, List<Facet> facets, int size) {
+        if (facets.size() == 1 && (size == 0 || ((InternalTermsStatsDoubleFacet) facets.get(0)).entries.size() <= size)) {
+            if (size == 0) {
                 // we need to sort it here!
                 InternalTermsStatsDoubleFacet tsFacet = (InternalTermsStatsDoubleFacet) facets.get(0);
                 if (!tsFacet.entries.isEmpty()) {
@@ -275,7 +284,7 @@ public class InternalTermsStatsDoubleFacet extends InternalTermsStatsFacet {
         }
 
         // sort
-        if (requiredSize == 0) { // all terms
+        if (size == 0) { // all terms
             DoubleEntry[] entries1 = map.values(new DoubleEntry[map.size()]);
             Arrays.sort(entries1, comparatorType.comparator());
             CacheRecycler.pushDoubleObjectMap(map);
@@ -284,7 +293,7 @@ public class InternalTermsStatsDoubleFacet extends InternalTermsStatsFacet {
             Object[] values = map.internalValues();
             Arrays.sort(values, (Comparator) comparatorType.comparator());
             List<DoubleEntry> ordered = new ArrayList<DoubleEntry>(map.size());
-            for (int i = 0; i < requiredSize; i++) {
+            for (int i = 0; i < size; i++) {
                 DoubleEntry value = (DoubleEntry) values[i];
                 if (value == null) {
                     break;
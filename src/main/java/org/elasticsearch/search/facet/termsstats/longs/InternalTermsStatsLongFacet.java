@@ -239,8 +239,17 @@ public class InternalTermsStatsLongFacet extends InternalTermsStatsFacet {
 
     @Override
     public Facet reduce(String name, List<Facet> facets) {
-        if (facets.size() == 1) {
-            if (requiredSize == 0) {
+        return reduce(name, facets, requiredSize);
+    }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(name, facets, 0);
+    }
+
+    private Facet reduce(String name, List<Facet> facets, int size) {
+        if (facets.size() == 1 && (size == 0 || ((InternalTermsStatsLongFacet) facets.get(0)).entries.size() <= size)) {
+            if (size == 0) {
                 // we need to sort it here!
                 InternalTermsStatsLongFacet tsFacet = (InternalTermsStatsLongFacet) facets.get(0);
                 if (!tsFacet.entries.isEmpty()) {
@@ -275,7 +284,7 @@ public class InternalTermsStatsLongFacet extends InternalTermsStatsFacet {
         }
 
         // sort
-        if (requiredSize == 0) { // all terms
+        if (size == 0) { // all terms
             LongEntry[] entries1 = map.values(new LongEntry[map.size()]);
             Arrays.sort(entries1, comparatorType.comparator());
             CacheRecycler.pushLongObjectMap(map);
@@ -284,7 +293,7 @@ public class InternalTermsStatsLongFacet extends InternalTermsStatsFacet {
             Object[] values = map.internalValues();
             Arrays.sort(values, (Comparator) comparatorType.comparator());
             List<LongEntry> ordered = new ArrayList<LongEntry>(map.size());
-            for (int i = 0; i < requiredSize; i++) {
+            for (int i = 0; i < size; i++) {
                 LongEntry value = (LongEntry) values[i];
                 if (value == null) {
                     break;
@@ -238,8 +238,17 @@ public class InternalTermsStatsStringFacet extends InternalTermsStatsFacet {
 
     @Override
     public Facet reduce(String name, List<Facet> facets) {
-        if (facets.size() == 1) {
-            if (requiredSize == 0) {
+        return reduce(name, facets, requiredSize);
+    }
+
+    @Override
+    public Facet partialReduce(String name, List<Facet> facets) {
+        return reduce(name, facets, 0);
+    }
+
+    private Facet reduce(String name, List<Facet> facets, int size) {
+        if (facets.size() == 1 && (size == 0 || ((InternalTermsStatsStringFacet) facets.get(0)).entries.size() <= size)) {
+            if (size == 0) {
                 // we need to sort it here!
                 InternalTermsStatsStringFacet tsFacet = (InternalTermsStatsStringFacet) facets.get(0);
                 if (!tsFacet.entries.isEmpty()) {
@@ -274,7 +283,7 @@ public class InternalTermsStatsStringFacet extends InternalTermsStatsFacet {
         }
 
         // sort
-        if (requiredSize == 0) { // all terms
+        if (size == 0) { // all terms
             StringEntry[] entries1 = map.values().toArray(new StringEntry[map.size()]);
             Arrays.sort(entries1, comparatorType.comparator());
             CacheRecycler.pushHashMap(map);
@@ -283,7 +292,7 @@ public class InternalTermsStatsStringFacet extends InternalTermsStatsFacet {
             Object[] values = map.internalValues();
             Arrays.sort(values, (Comparator) comparatorType.comparator());
             List<StringEntry> ordered = new ArrayList<StringEntry>(map.size());
-            for (int i = 0; i < requiredSize; i++) {
+            for (int i = 0; i < size; i++) {
                 StringEntry value = (StringEntry) values[i];
                 if (value == null) {
                     break;
@@ -159,6 +159,8 @@ public class SearchContext implements Releasable {
 
     private boolean queryRewritten;
 
+    private boolean nowInMillisUsed;
+
     private volatile long keepAlive;
 
     private volatile long lastAccessTime;
@@ -248,9 +250,18 @@ public class SearchContext implements Releasable {
     }
 
     public long nowInMillis() {
+        nowInMillisUsed = true;
         return request.nowInMillis();
     }
 
+    /**
+     * Returns <tt>true</tt> if the request relied on the current time (for example, a date math range
+     * using <tt>now</tt>), in which case its results can't be cached.
+     */
+    public boolean nowInMillisUsed() {
+        return nowInMillisUsed;
+    }
+
     public Scroll scroll() {
         return this.scroll;
     }
@@ -303,6 +314,10 @@ public class SearchContext implements Releasable {
         return this.searcher;
     }
 
+    public IndexService indexService() {
+        return this.indexService;
+    }
+
     public IndexShard indexShard() {
         return this.indexShard;
     }
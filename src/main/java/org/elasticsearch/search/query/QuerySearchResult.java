@@ -51,6 +51,8 @@ public class QuerySearchResult implements Streamable, QuerySearchResultProvider
 
     private boolean searchTimedOut;
 
+    private int searchQueueSize = -1;
+
     public QuerySearchResult() {
 
     }
@@ -91,6 +93,18 @@ public class QuerySearchResult implements Streamable, QuerySearchResultProvider
         return searchTimedOut;
     }
 
+    /**
+     * The number of searches executing or queued on the node that executed the query, when it started
+     * executing it, <tt>-1</tt> if unknown.
+     */
+    public int searchQueueSize() {
+        return searchQueueSize;
+    }
+
+    public void searchQueueSize(int searchQueueSize) {
+        this.searchQueueSize = searchQueueSize;
+    }
+
     public TopDocs topDocs() {
         return topDocs;
     }
@@ -142,6 +156,7 @@ public class QuerySearchResult implements Streamable, QuerySearchResultProvider
             facets = InternalFacets.readFacets(in);
         }
         searchTimedOut = in.readBoolean();
+        searchQueueSize = in.readInt();
     }
 
     @Override
@@ -158,5 +173,6 @@ public class QuerySearchResult implements Streamable, QuerySearchResultProvider
             facets.writeTo(out);
         }
         out.writeBoolean(searchTimedOut);
+        out.writeInt(searchQueueSize);
     }
 }
@@ -68,6 +68,7 @@ public class ThreadPool extends AbstractComponent {
         public static final String MERGE = "merge";
         public static final String REFRESH = "refresh";
         public static final String SNAPSHOT = "snapshot";
+        public static final String WARMER = "warmer";
     }
 
     private final ImmutableMap<String, ExecutorHolder> executors;
@@ -97,6 +98,7 @@ public class ThreadPool extends AbstractComponent {
         executors.put(Names.MERGE, build(Names.MERGE, "scaling", groupSettings.get(Names.MERGE), settingsBuilder().put("keep_alive", "5m").put("size", 20).build()));
         executors.put(Names.REFRESH, build(Names.REFRESH, "cached", groupSettings.get(Names.REFRESH), settingsBuilder().put("keep_alive", "1m").build()));
         executors.put(Names.SNAPSHOT, build(Names.SNAPSHOT, "scaling", groupSettings.get(Names.SNAPSHOT), settingsBuilder().put("keep_alive", "5m").put("size", 5).build()));
+        executors.put(Names.WARMER, build(Names.WARMER, "scaling", groupSettings.get(Names.WARMER), settingsBuilder().put("keep_alive", "5m").put("size", 5).build()));
         executors.put(Names.SAME, new ExecutorHolder(MoreExecutors.sameThreadExecutor(), new Info(Names.SAME, "same")));
         this.executors = ImmutableMap.copyOf(executors);
         this.scheduler = (ScheduledThreadPoolExecutor) Executors.newScheduledThreadPool(1, EsExecutors.daemonThreadFactory(settings, "[scheduler]"));
@@ -147,6 +149,18 @@ public class ThreadPool extends AbstractComponent {
         return new ThreadPoolStats(stats);
     }
 
+    /**
+     * The number of tasks either executing or queued on the executor, <tt>-1</tt> if it can't be computed.
+     */
+    public int pendingTasks(String name) {
+        ExecutorHolder holder = executors.get(name);
+        if (holder == null || !(holder.executor instanceof ThreadPoolExecutor)) {
+            return -1;
+        }
+        ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) holder.executor;
+        return threadPoolExecutor.getActiveCount() + threadPoolExecutor.getQueue().size();
+    }
+
     public Executor cached() {
         return executor(Names.CACHED);
     }
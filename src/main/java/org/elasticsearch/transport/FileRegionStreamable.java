@@ -0,0 +1,51 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.transport;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Streamable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A request that ends with a region of a file. Transports that support it send the region directly
+ * from the file to the network, others simply serialize it using {@link #writeTo(StreamOutput)}, which
+ * must write the region inline as a bytes holder (vint length followed by the bytes).
+ */
+public interface FileRegionStreamable extends Streamable {
+
+    /**
+     * The file the region is read from, <tt>null</tt> if the request is not backed by a file.
+     */
+    @Nullable
+    File regionFile();
+
+    long regionPosition();
+
+    int regionLength();
+
+    /**
+     * Writes the request up to and including the length of the region, the region bytes are expected to
+     * directly follow.
+     */
+    void writeToWithoutRegion(StreamOutput out) throws IOException;
+}
@@ -20,6 +20,7 @@
 package org.elasticsearch.transport;
 
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.component.LifecycleComponent;
 import org.elasticsearch.common.io.stream.Streamable;
 import org.elasticsearch.common.transport.BoundTransportAddress;
@@ -76,4 +77,10 @@ public interface Transport extends LifecycleComponent<Transport> {
     <T extends Streamable> void sendRequest(DiscoveryNode node, long requestId, String action, Streamable message, TransportRequestOptions options) throws IOException, TransportException;
 
     long serverOpen();
+
+    /**
+     * The compression stats of the sent messages, <tt>null</tt> if the transport does not compress messages.
+     */
+    @Nullable
+    TransportCompressionStats compressionStats();
 }
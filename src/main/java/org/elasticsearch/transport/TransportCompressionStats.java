@@ -0,0 +1,232 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.transport;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Streamable;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentBuilderString;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compression stats of the messages sent by the transport, per action.
+ */
+public class TransportCompressionStats implements Streamable, ToXContent, Iterable<TransportCompressionStats.ActionStats> {
+
+    public static class ActionStats implements Streamable {
+
+        private String action;
+        private long messages;
+        private long compressedMessages;
+        private long rawSize;
+        private long compressedSize;
+        private long compressTimeInNanos;
+
+        ActionStats() {
+
+        }
+
+        public ActionStats(String action, long messages, long compressedMessages, long rawSize, long compressedSize, long compressTimeInNanos) {
+            this.action = action;
+            this.messages = messages;
+            this.compressedMessages = compressedMessages;
+            this.rawSize = rawSize;
+            this.compressedSize = compressedSize;
+            this.compressTimeInNanos = compressTimeInNanos;
+        }
+
+        public String action() {
+            return this.action;
+        }
+
+        public String getAction() {
+            return action();
+        }
+
+        /**
+         * The number of messages sent for the action.
+         */
+        public long messages() {
+            return this.messages;
+        }
+
+        public long getMessages() {
+            return messages();
+        }
+
+        /**
+         * The number of messages that were compressed.
+         */
+        public long compressedMessages() {
+            return this.compressedMessages;
+        }
+
+        public long getCompressedMessages() {
+            return compressedMessages();
+        }
+
+        /**
+         * The size of the compressed messages, before compression.
+         */
+        public ByteSizeValue rawSize() {
+            return new ByteSizeValue(rawSize);
+        }
+
+        public ByteSizeValue getRawSize() {
+            return rawSize();
+        }
+
+        public ByteSizeValue compressedSize() {
+            return new ByteSizeValue(compressedSize);
+        }
+
+        public ByteSizeValue getCompressedSize() {
+            return compressedSize();
+        }
+
+        /**
+         * The compressed size relative to the raw size, <tt>1</tt> if nothing was compressed.
+         */
+        public double ratio() {
+            if (rawSize == 0) {
+                return 1;
+            }
+            return ((double) compressedSize) / rawSize;
+        }
+
+        public double getRatio() {
+            return ratio();
+        }
+
+        /**
+         * The time spent compressing messages after they were built, messages built compressed directly (no threshold
+         * applies to the action) are compressed while serialized and not accounted here.
+         */
+        public TimeValue compressTime() {
+            return new TimeValue(compressTimeInNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public TimeValue getCompressTime() {
+            return compressTime();
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            action = in.readUTF();
+            messages = in.readVLong();
+            compressedMessages = in.readVLong();
+            rawSize = in.readVLong();
+            compressedSize = in.readVLong();
+            compressTimeInNanos = in.readVLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeUTF(action);
+            out.writeVLong(messages);
+            out.writeVLong(compressedMessages);
+            out.writeVLong(rawSize);
+            out.writeVLong(compressedSize);
+            out.writeVLong(compressTimeInNanos);
+        }
+    }
+
+    private List<ActionStats> stats;
+
+    TransportCompressionStats() {
+
+    }
+
+    public TransportCompressionStats(List<ActionStats> stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public Iterator<ActionStats> iterator() {
+        return stats.iterator();
+    }
+
+    public static TransportCompressionStats readTransportCompressionStats(StreamInput in) throws IOException {
+        TransportCompressionStats stats = new TransportCompressionStats();
+        stats.readFrom(in);
+        return stats;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        int size = in.readVInt();
+        stats = new ArrayList<ActionStats>(size);
+        for (int i = 0; i < size; i++) {
+            ActionStats actionStats = new ActionStats();
+            actionStats.readFrom(in);
+            stats.add(actionStats);
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVInt(stats.size());
+        for (ActionStats actionStats : stats) {
+            actionStats.writeTo(out);
+        }
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.COMPRESSION);
+        for (ActionStats actionStats : stats) {
+            builder.startObject(actionStats.action(), XContentBuilder.FieldCaseConversion.NONE);
+            builder.field(Fields.MESSAGES, actionStats.messages);
+            builder.field(Fields.COMPRESSED_MESSAGES, actionStats.compressedMessages);
+            builder.field(Fields.RAW_SIZE, actionStats.rawSize().toString());
+            builder.field(Fields.RAW_SIZE_IN_BYTES, actionStats.rawSize);
+            builder.field(Fields.COMPRESSED_SIZE, actionStats.compressedSize().toString());
+            builder.field(Fields.COMPRESSED_SIZE_IN_BYTES, actionStats.compressedSize);
+            builder.field(Fields.RATIO, actionStats.ratio());
+            builder.field(Fields.COMPRESS_TIME, actionStats.compressTime().toString());
+            builder.field(Fields.COMPRESS_TIME_IN_MILLIS, actionStats.compressTime().millis());
+            builder.endObject();
+        }
+        builder.endObject();
+        return builder;
+    }
+
+    static final class Fields {
+        static final XContentBuilderString COMPRESSION = new XContentBuilderString("compression");
+        static final XContentBuilderString MESSAGES = new XContentBuilderString("messages");
+        static final XContentBuilderString COMPRESSED_MESSAGES = new XContentBuilderString("compressed_messages");
+        static final XContentBuilderString RAW_SIZE = new XContentBuilderString("raw_size");
+        static final XContentBuilderString RAW_SIZE_IN_BYTES = new XContentBuilderString("raw_size_in_bytes");
+        static final XContentBuilderString COMPRESSED_SIZE = new XContentBuilderString("compressed_size");
+        static final XContentBuilderString COMPRESSED_SIZE_IN_BYTES = new XContentBuilderString("compressed_size_in_bytes");
+        static final XContentBuilderString RATIO = new XContentBuilderString("ratio");
+        static final XContentBuilderString COMPRESS_TIME = new XContentBuilderString("compress_time");
+        static final XContentBuilderString COMPRESS_TIME_IN_MILLIS = new XContentBuilderString("compress_time_in_millis");
+    }
+}
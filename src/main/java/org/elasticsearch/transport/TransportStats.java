@@ -19,6 +19,7 @@
 
 package org.elasticsearch.transport;
 
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -36,17 +37,20 @@ public class TransportStats implements Streamable, ToXContent {
     private long rxSize;
     private long txCount;
     private long txSize;
+    @Nullable
+    private TransportCompressionStats compression;
 
     TransportStats() {
 
     }
 
-    public TransportStats(long serverOpen, long rxCount, long rxSize, long txCount, long txSize) {
+    public TransportStats(long serverOpen, long rxCount, long rxSize, long txCount, long txSize, @Nullable TransportCompressionStats compression) {
         this.serverOpen = serverOpen;
         this.rxCount = rxCount;
         this.rxSize = rxSize;
         this.txCount = txCount;
         this.txSize = txSize;
+        this.compression = compression;
     }
 
     public long serverOpen() {
@@ -89,6 +93,19 @@ public class TransportStats implements Streamable, ToXContent {
         return txSize();
     }
 
+    /**
+     * The compression stats of the sent messages, per action.
+     */
+    @Nullable
+    public TransportCompressionStats compression() {
+        return this.compression;
+    }
+
+    @Nullable
+    public TransportCompressionStats getCompression() {
+        return compression();
+    }
+
     public static TransportStats readTransportStats(StreamInput in) throws IOException {
         TransportStats stats = new TransportStats();
         stats.readFrom(in);
@@ -102,6 +119,9 @@ public class TransportStats implements Streamable, ToXContent {
         rxSize = in.readVLong();
         txCount = in.readVLong();
         txSize = in.readVLong();
+        if (in.readBoolean()) {
+            compression = TransportCompressionStats.readTransportCompressionStats(in);
+        }
     }
 
     @Override
@@ -111,6 +131,12 @@ public class TransportStats implements Streamable, ToXContent {
         out.writeVLong(rxSize);
         out.writeVLong(txCount);
         out.writeVLong(txSize);
+        if (compression == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            compression.writeTo(out);
+        }
     }
 
     @Override
@@ -123,6 +149,9 @@ public class TransportStats implements Streamable, ToXContent {
         builder.field(Fields.TX_COUNT, txCount);
         builder.field(Fields.TX_SIZE, txSize().toString());
         builder.field(Fields.TX_SIZE_IN_BYTES, txSize);
+        if (compression != null) {
+            compression.toXContent(builder, params);
+        }
         builder.endObject();
         return builder;
     }
@@ -155,6 +155,11 @@ public class LocalTransport extends AbstractLifecycleComponent<Transport> implem
         return 0;
     }
 
+    @Override
+    public TransportCompressionStats compressionStats() {
+        return null;
+    }
+
     @Override
     public <T extends Streamable> void sendRequest(final DiscoveryNode node, final long requestId, final String action, final Streamable message, TransportRequestOptions options) throws IOException, TransportException {
         CachedStreamOutput.Entry cachedEntry = CachedStreamOutput.popEntry();
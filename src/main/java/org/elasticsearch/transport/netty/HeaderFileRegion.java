@@ -0,0 +1,86 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.transport.netty;
+
+import org.jboss.netty.channel.FileRegion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link FileRegion} prefixed with a header, so a request and the region of a file it ends with are written
+ * to the channel as a single message, and no other message can be written between them.
+ */
+class HeaderFileRegion implements FileRegion {
+
+    private final byte[] header;
+    private final int headerOffset;
+    private final int headerLength;
+
+    private final FileChannel file;
+    private final long filePosition;
+    private final long fileCount;
+
+    HeaderFileRegion(byte[] header, int headerOffset, int headerLength, FileChannel file, long filePosition, long fileCount) {
+        this.header = header;
+        this.headerOffset = headerOffset;
+        this.headerLength = headerLength;
+        this.file = file;
+        this.filePosition = filePosition;
+        this.fileCount = fileCount;
+    }
+
+    @Override
+    public long getPosition() {
+        return 0;
+    }
+
+    @Override
+    public long getCount() {
+        return headerLength + fileCount;
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long position) throws IOException {
+        if (position < 0 || position > getCount()) {
+            throw new IllegalArgumentException("position out of range: " + position + " (expected: 0 - " + getCount() + ")");
+        }
+        if (position < headerLength) {
+            return target.write(ByteBuffer.wrap(header, headerOffset + (int) position, headerLength - (int) position));
+        }
+        long filePosition = position - headerLength;
+        if (filePosition == fileCount) {
+            return 0;
+        }
+        return file.transferTo(this.filePosition + filePosition, fileCount - filePosition, target);
+    }
+
+    @Override
+    public void releaseExternalResources() {
+        try {
+            file.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
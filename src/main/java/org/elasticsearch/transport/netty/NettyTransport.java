@@ -41,6 +41,7 @@ import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
+import org.elasticsearch.transport.support.TransportCompression;
 import org.elasticsearch.transport.support.TransportStreams;
 import org.jboss.netty.bootstrap.ClientBootstrap;
 import org.jboss.netty.bootstrap.ServerBootstrap;
@@ -55,6 +56,7 @@ import org.jboss.netty.logging.InternalLogger;
 import org.jboss.netty.logging.InternalLoggerFactory;
 
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
@@ -107,6 +109,8 @@ public class NettyTransport extends AbstractLifecycleComponent<Transport> implem
 
     final boolean compress;
 
+    final TransportCompression compression;
+
     final TimeValue connectTimeout;
 
     final Boolean tcpNoDelay;
@@ -162,6 +166,7 @@ public class NettyTransport extends AbstractLifecycleComponent<Transport> implem
         this.bindHost = componentSettings.get("bind_host", settings.get("transport.bind_host", settings.get("transport.host")));
         this.publishHost = componentSettings.get("publish_host", settings.get("transport.publish_host", settings.get("transport.host")));
         this.compress = settings.getAsBoolean("transport.tcp.compress", false);
+        this.compression = new TransportCompression(settings);
         this.connectTimeout = componentSettings.getAsTime("connect_timeout", settings.getAsTime("transport.tcp.connect_timeout", settings.getAsTime(TCP_CONNECT_TIMEOUT, TCP_DEFAULT_CONNECT_TIMEOUT)));
         this.tcpNoDelay = componentSettings.getAsBoolean("tcp_no_delay", settings.getAsBoolean(TCP_NO_DELAY, true));
         this.tcpKeepAlive = componentSettings.getAsBoolean("tcp_keep_alive", settings.getAsBoolean(TCP_KEEP_ALIVE, true));
@@ -436,6 +441,11 @@ public class NettyTransport extends AbstractLifecycleComponent<Transport> implem
         return new InetSocketTransportAddress((InetSocketAddress) socketAddress);
     }
 
+    @Override
+    public TransportCompressionStats compressionStats() {
+        return compression.stats();
+    }
+
     @Override
     public long serverOpen() {
         OpenChannelsHandler channels = serverOpenChannels;
@@ -450,8 +460,25 @@ public class NettyTransport extends AbstractLifecycleComponent<Transport> implem
             options.withCompress(true);
         }
 
+        if (message instanceof FileRegionStreamable && ((FileRegionStreamable) message).regionFile() != null
+                && !compression.shouldCompress(action, ((FileRegionStreamable) message).regionLength(), options.compress())) {
+            sendFileRegionRequest(targetChannel, requestId, action, (FileRegionStreamable) message);
+            return;
+        }
+
+        boolean compressBySize = compression.compressBySize(action, options.compress());
         CachedStreamOutput.Entry cachedEntry = CachedStreamOutput.popEntry();
-        TransportStreams.buildRequest(cachedEntry, requestId, action, message, options);
+        try {
+            TransportStreams.buildRequest(cachedEntry, requestId, action, message, compressBySize ? TransportRequestOptions.options() : options);
+        } catch (IOException e) {
+            CachedStreamOutput.pushEntry(cachedEntry);
+            throw e;
+        }
+        if (compressBySize) {
+            cachedEntry = compression.maybeCompress(action, cachedEntry, options.compress());
+        } else {
+            compression.onBuilt(action, cachedEntry, options.compress());
+        }
         ChannelBuffer buffer = ChannelBuffers.wrappedBuffer(cachedEntry.bytes().underlyingBytes(), 0, cachedEntry.bytes().size());
         ChannelFuture future = targetChannel.write(buffer);
         future.addListener(new CacheFutureListener(cachedEntry));
@@ -469,6 +496,34 @@ public class NettyTransport extends AbstractLifecycleComponent<Transport> implem
 //        });
     }
 
+    /**
+     * Sends the request followed by its file region, which is transferred directly from the file to the socket
+     * (using <tt>FileChannel#transferTo</tt> when possible) without copying it through the heap. The request and
+     * its region are written as a single {@link HeaderFileRegion}, so other requests can't end up between them.
+     */
+    private void sendFileRegionRequest(Channel targetChannel, long requestId, String action, FileRegionStreamable message) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(message.regionFile(), "r");
+        CachedStreamOutput.Entry cachedEntry = CachedStreamOutput.popEntry();
+        try {
+            TransportStreams.buildRequestWithoutRegion(cachedEntry, requestId, action, message);
+        } catch (IOException e) {
+            CachedStreamOutput.pushEntry(cachedEntry);
+            file.close();
+            throw e;
+        }
+        compression.onFileRegion(action);
+        final FileRegion region = new HeaderFileRegion(cachedEntry.bytes().underlyingBytes(), 0, cachedEntry.bytes().size(),
+                file.getChannel(), message.regionPosition(), message.regionLength());
+        ChannelFuture future = targetChannel.write(region);
+        future.addListener(new CacheFutureListener(cachedEntry));
+        future.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                region.releaseExternalResources();
+            }
+        });
+    }
+
     @Override
     public boolean nodeConnected(DiscoveryNode node) {
         return connectedNodes.containsKey(node);
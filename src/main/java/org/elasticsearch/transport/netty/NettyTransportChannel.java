@@ -73,8 +73,19 @@ public class NettyTransportChannel implements TransportChannel {
         if (transport.compress) {
             options.withCompress(true);
         }
+        boolean compressBySize = transport.compression.compressBySize(action, options.compress());
         CachedStreamOutput.Entry cachedEntry = CachedStreamOutput.popEntry();
-        TransportStreams.buildResponse(cachedEntry, requestId, message, options);
+        try {
+            TransportStreams.buildResponse(cachedEntry, requestId, message, compressBySize ? TransportResponseOptions.options() : options);
+        } catch (IOException e) {
+            CachedStreamOutput.pushEntry(cachedEntry);
+            throw e;
+        }
+        if (compressBySize) {
+            cachedEntry = transport.compression.maybeCompress(action, cachedEntry, options.compress());
+        } else {
+            transport.compression.onBuilt(action, cachedEntry, options.compress());
+        }
         ChannelBuffer buffer = ChannelBuffers.wrappedBuffer(cachedEntry.bytes().underlyingBytes(), 0, cachedEntry.bytes().size());
         ChannelFuture future = channel.write(buffer);
         future.addListener(new NettyTransport.CacheFutureListener(cachedEntry));
@@ -0,0 +1,165 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.transport.support;
+
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.common.collect.MapBuilder;
+import org.elasticsearch.common.io.stream.CachedStreamOutput;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.transport.TransportCompressionStats;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides, per message, if it should be compressed, and keeps compression stats per action.
+ * <p/>
+ * A message is only compressed when requested (<tt>transport.tcp.compress</tt> or the request options), so actions
+ * sending already compressed bytes or file regions keep opting out. When a threshold applies to the action,
+ * <tt>transport.tcp.compress_threshold.[action]</tt> or the default <tt>transport.tcp.compress_threshold</tt>, only
+ * requested messages at least that large are compressed.
+ * <p/>
+ * Without a threshold the decision doesn't depend on the size, and the message is built compressed directly (see
+ * {@link #compressBySize(String, boolean)}). With one, the message is built as is and then compressed into a second
+ * entry by {@link #maybeCompress(String, CachedStreamOutput.Entry, boolean)}.
+ */
+public class TransportCompression {
+
+    private final long defaultThreshold;
+
+    private final ImmutableMap<String, Long> actionThresholds;
+
+    private final ConcurrentMap<String, ActionMetrics> metrics = ConcurrentCollections.newConcurrentMap();
+
+    public TransportCompression(Settings settings) {
+        this.defaultThreshold = settings.getAsBytesSize("transport.tcp.compress_threshold", new ByteSizeValue(-1)).bytes();
+        MapBuilder<String, Long> actionThresholds = MapBuilder.newMapBuilder();
+        for (Map.Entry<String, String> entry : settings.getByPrefix("transport.tcp.compress_threshold.").getAsMap().entrySet()) {
+            actionThresholds.put(entry.getKey(), ByteSizeValue.parseBytesSizeValue(entry.getValue()).bytes());
+        }
+        this.actionThresholds = actionThresholds.immutableMap();
+    }
+
+    public long threshold(String action) {
+        Long threshold = actionThresholds.get(action);
+        return threshold == null ? defaultThreshold : threshold;
+    }
+
+    public boolean shouldCompress(String action, long size, boolean requested) {
+        if (!requested) {
+            return false;
+        }
+        long threshold = threshold(action);
+        return threshold < 0 || size >= threshold;
+    }
+
+    /**
+     * Returns <tt>true</tt> if compressing the message depends on its size, in which case it needs to be built
+     * non compressed and passed to {@link #maybeCompress(String, CachedStreamOutput.Entry, boolean)}. Otherwise it
+     * can be built compressed (if requested) directly, and recorded with {@link #onBuilt(String, CachedStreamOutput.Entry, boolean)}.
+     */
+    public boolean compressBySize(String action, boolean requested) {
+        return requested && threshold(action) >= 0;
+    }
+
+    /**
+     * Records a message built with the compression decided up front, compressed directly into the entry LZF stream.
+     */
+    public void onBuilt(String action, CachedStreamOutput.Entry entry, boolean compressed) {
+        ActionMetrics actionMetrics = metrics(action);
+        actionMetrics.messages.inc();
+        if (compressed) {
+            actionMetrics.compressedMessages.inc();
+            actionMetrics.rawSize.inc(TransportStreams.HEADER_SIZE + entry.lzfUncompressedSize());
+            actionMetrics.compressedSize.inc(entry.bytes().size());
+        }
+    }
+
+    /**
+     * Records a message sent along with a file region, which is never compressed.
+     */
+    public void onFileRegion(String action) {
+        metrics(action).messages.inc();
+    }
+
+    /**
+     * Returns the entry to send for the (non compressed) built message, compressing it into a new entry if needed.
+     * The given entry is released when a new one is returned.
+     */
+    public CachedStreamOutput.Entry maybeCompress(String action, CachedStreamOutput.Entry entry, boolean requested) throws IOException {
+        int size = entry.bytes().size();
+        ActionMetrics actionMetrics = metrics(action);
+        actionMetrics.messages.inc();
+        if (!shouldCompress(action, size, requested)) {
+            return entry;
+        }
+        long start = System.nanoTime();
+        CachedStreamOutput.Entry compressedEntry = CachedStreamOutput.popEntry();
+        try {
+            TransportStreams.compress(entry, compressedEntry);
+        } catch (IOException e) {
+            CachedStreamOutput.pushEntry(compressedEntry);
+            throw e;
+        } finally {
+            CachedStreamOutput.pushEntry(entry);
+        }
+        actionMetrics.compressTime.inc(System.nanoTime() - start);
+        actionMetrics.compressedMessages.inc();
+        actionMetrics.rawSize.inc(size);
+        actionMetrics.compressedSize.inc(compressedEntry.bytes().size());
+        return compressedEntry;
+    }
+
+    public TransportCompressionStats stats() {
+        List<TransportCompressionStats.ActionStats> stats = new ArrayList<TransportCompressionStats.ActionStats>(metrics.size());
+        for (Map.Entry<String, ActionMetrics> entry : metrics.entrySet()) {
+            ActionMetrics actionMetrics = entry.getValue();
+            stats.add(new TransportCompressionStats.ActionStats(entry.getKey(), actionMetrics.messages.count(), actionMetrics.compressedMessages.count(),
+                    actionMetrics.rawSize.count(), actionMetrics.compressedSize.count(), actionMetrics.compressTime.count()));
+        }
+        return new TransportCompressionStats(stats);
+    }
+
+    private ActionMetrics metrics(String action) {
+        ActionMetrics actionMetrics = metrics.get(action);
+        if (actionMetrics == null) {
+            actionMetrics = new ActionMetrics();
+            ActionMetrics existing = metrics.putIfAbsent(action, actionMetrics);
+            if (existing != null) {
+                actionMetrics = existing;
+            }
+        }
+        return actionMetrics;
+    }
+
+    static class ActionMetrics {
+        final CounterMetric messages = new CounterMetric();
+        final CounterMetric compressedMessages = new CounterMetric();
+        final CounterMetric rawSize = new CounterMetric();
+        final CounterMetric compressedSize = new CounterMetric();
+        final CounterMetric compressTime = new CounterMetric();
+    }
+}
@@ -21,7 +21,9 @@ package org.elasticsearch.transport.support;
 
 import org.elasticsearch.common.io.stream.CachedStreamOutput;
 import org.elasticsearch.common.io.stream.HandlesStreamOutput;
+import org.elasticsearch.common.io.stream.LZFStreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
+import org.elasticsearch.transport.FileRegionStreamable;
 import org.elasticsearch.transport.TransportRequestOptions;
 import org.elasticsearch.transport.TransportResponseOptions;
 
@@ -120,6 +122,38 @@ public class TransportStreams {
         TransportStreams.writeHeader(cachedEntry.bytes().underlyingBytes(), cachedEntry.bytes().size(), requestId, status);
     }
 
+    /**
+     * Builds a non compressed request without the trailing file region, the header accounts for the region
+     * length, so the region must be written right after the built bytes.
+     */
+    public static void buildRequestWithoutRegion(CachedStreamOutput.Entry cachedEntry, final long requestId, final String action, final FileRegionStreamable message) throws IOException {
+        byte status = 0;
+        status = TransportStreams.statusSetRequest(status);
+
+        HandlesStreamOutput stream = cachedEntry.cachedHandlesBytes();
+        cachedEntry.bytes().write(HEADER_PLACEHOLDER);
+        stream.writeUTF(action);
+        message.writeToWithoutRegion(stream);
+        stream.flush();
+        TransportStreams.writeHeader(cachedEntry.bytes().underlyingBytes(), cachedEntry.bytes().size() + message.regionLength(), requestId, status);
+    }
+
+    /**
+     * Compresses a built non compressed message into the target entry, keeping its request id and status.
+     */
+    public static void compress(CachedStreamOutput.Entry source, CachedStreamOutput.Entry target) throws IOException {
+        byte[] data = source.bytes().underlyingBytes();
+        int size = source.bytes().size();
+        LZFStreamOutput stream = target.cachedLZFBytes();
+        target.bytes().write(HEADER_PLACEHOLDER);
+        stream.writeBytes(data, HEADER_SIZE, size - HEADER_SIZE);
+        stream.flush();
+        byte[] targetData = target.bytes().underlyingBytes();
+        System.arraycopy(data, 4, targetData, 4, 8);
+        writeInt(targetData, 0, target.bytes().size() - 4);
+        targetData[12] = statusSetCompress(data[12]);
+    }
+
     public static void buildResponse(CachedStreamOutput.Entry cachedEntry, final long requestId, Streamable message, TransportResponseOptions options) throws IOException {
         byte status = 0;
         status = TransportStreams.statusSetResponse(status);
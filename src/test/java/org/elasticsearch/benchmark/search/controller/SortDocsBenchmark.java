@@ -0,0 +1,137 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.benchmark.search.controller;
+
+import jsr166y.ThreadLocalRandom;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.elasticsearch.common.StopWatch;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.controller.ScoreDocQueue;
+import org.elasticsearch.search.controller.SearchPhaseController;
+import org.elasticsearch.search.controller.ShardDoc;
+import org.elasticsearch.search.controller.ShardScoreDoc;
+import org.elasticsearch.search.query.QuerySearchResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compares sorting the shard docs by pushing all of them through a single priority queue with the k-way
+ * merge done by {@link SearchPhaseController#sortDocs(java.util.Collection)}. A plain main timed with a
+ * {@link StopWatch} after a warmup, like the other benchmarks.
+ */
+public class SortDocsBenchmark {
+
+    private static final int[] NUMBER_OF_SHARDS = new int[]{5, 20, 50, 200};
+    private static final int FROM = 1000;
+    private static final int SIZE = 10;
+    private static final int ITERATIONS = 500;
+
+    public static void main(String[] args) throws Exception {
+        SearchPhaseController controller = new SearchPhaseController(ImmutableSettings.Builder.EMPTY_SETTINGS, null);
+
+        for (int numberOfShards : NUMBER_OF_SHARDS) {
+            List<QuerySearchResult> results = createResults(numberOfShards);
+
+            ShardDoc[] expected = queueSortDocs(results);
+            ShardDoc[] actual = controller.sortDocs(results);
+            for (int i = 0; i < expected.length; i++) {
+                if (!expected[i].shardTarget().equals(actual[i].shardTarget()) || expected[i].docId() != actual[i].docId()) {
+                    throw new IllegalStateException("doc [" + i + "] differs between the priority queue and the k-way merge");
+                }
+            }
+
+            // warmup
+            for (int i = 0; i < ITERATIONS; i++) {
+                queueSortDocs(results);
+                controller.sortDocs(results);
+            }
+
+            StopWatch stopWatch = new StopWatch().start();
+            for (int i = 0; i < ITERATIONS; i++) {
+                queueSortDocs(results);
+            }
+            stopWatch.stop();
+            System.out.println("[" + numberOfShards + "] shards, priority queue: " + stopWatch.totalTime() + ", " + (stopWatch.totalTime().millisFrac() / ITERATIONS) + "ms per sort");
+
+            stopWatch = new StopWatch().start();
+            for (int i = 0; i < ITERATIONS; i++) {
+                controller.sortDocs(results);
+            }
+            stopWatch.stop();
+            System.out.println("[" + numberOfShards + "] shards, k-way merge   : " + stopWatch.totalTime() + ", " + (stopWatch.totalTime().millisFrac() / ITERATIONS) + "ms per sort");
+        }
+    }
+
+    private static List<QuerySearchResult> createResults(int numberOfShards) {
+        List<QuerySearchResult> results = new ArrayList<QuerySearchResult>(numberOfShards);
+        for (int shard = 0; shard < numberOfShards; shard++) {
+            ScoreDoc[] scoreDocs = new ScoreDoc[FROM + SIZE];
+            for (int i = 0; i < scoreDocs.length; i++) {
+                scoreDocs[i] = new ScoreDoc(i, ThreadLocalRandom.current().nextFloat());
+            }
+            // each shard returns its docs sorted by score
+            Arrays.sort(scoreDocs, new Comparator<ScoreDoc>() {
+                @Override
+                public int compare(ScoreDoc o1, ScoreDoc o2) {
+                    return Float.compare(o2.score, o1.score);
+                }
+            });
+            QuerySearchResult result = new QuerySearchResult(shard, new SearchShardTarget("node", "index", shard));
+            result.from(FROM).size(SIZE);
+            result.topDocs(new TopDocs(scoreDocs.length, scoreDocs, scoreDocs[0].score));
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * The previous implementation, a single queue sized <tt>from + size</tt> accumulating the docs of all the shards.
+     */
+    private static ShardDoc[] queueSortDocs(List<QuerySearchResult> results) {
+        int queueSize = FROM + SIZE;
+        ScoreDocQueue queue = new ScoreDocQueue(queueSize);
+        int totalNumDocs = 0;
+        for (QuerySearchResult result : results) {
+            ScoreDoc[] scoreDocs = result.topDocs().scoreDocs;
+            totalNumDocs += scoreDocs.length;
+            for (ScoreDoc doc : scoreDocs) {
+                ShardScoreDoc nodeScoreDoc = new ShardScoreDoc(result.shardTarget(), doc.doc, doc.score);
+                if (queue.insertWithOverflow(nodeScoreDoc) == nodeScoreDoc) {
+                    break;
+                }
+            }
+        }
+        int resultDocsSize = SIZE;
+        if (totalNumDocs < queueSize) {
+            resultDocsSize = totalNumDocs - FROM;
+        }
+        ShardDoc[] shardDocs = new ShardDoc[resultDocsSize];
+        for (int i = resultDocsSize - 1; i >= 0; i--) {
+            shardDocs[i] = queue.pop();
+        }
+        return shardDocs;
+    }
+}
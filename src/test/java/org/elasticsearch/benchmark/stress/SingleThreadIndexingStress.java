@@ -19,6 +19,7 @@
 
 package org.elasticsearch.benchmark.stress;
 
+import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.StopWatch;
 import org.elasticsearch.common.settings.Settings;
@@ -61,31 +62,45 @@ public class SingleThreadIndexingStress {
 
         Thread.sleep(1000);
         client1.admin().indices().create(createIndexRequest("test")).actionGet();
+        client1.admin().indices().prepareCreate("test_auto").execute().actionGet();
+        client1.admin().indices().prepareCreate("test_auto_no_optimize").setSettings(settingsBuilder().put("index.engine.robin.optimize_auto_generated_id", false)).execute().actionGet();
         Thread.sleep(5000);
 
-        StopWatch stopWatch = new StopWatch().start();
         int COUNT = 200000;
-        System.out.println("Indexing [" + COUNT + "] ...");
+        double explicitTps = index(client1, "test", COUNT, true);
+        double autoNoOptimizeTps = index(client1, "test_auto_no_optimize", COUNT, false);
+        double autoTps = index(client1, "test_auto", COUNT, false);
+        System.out.println("Explicit ids TPS " + explicitTps + ", auto generated ids TPS " + autoNoOptimizeTps + " (not optimized), " + autoTps + " (optimized)");
+
+        client.close();
+
+        for (Node node : nodes) {
+            node.close();
+        }
+    }
+
+    private static double index(Client client, String index, int count, boolean explicitIds) throws Exception {
+        StopWatch stopWatch = new StopWatch().start();
+        System.out.println("Indexing [" + count + "] into [" + index + "] ...");
         int i = 1;
-        for (; i <= COUNT; i++) {
-//            client1.admin().cluster().preparePingSingle("test", "type1", Integer.toString(i)).execute().actionGet();
-            client1.prepareIndex("test", "type1").setId(Integer.toString(i)).setSource(source(Integer.toString(i), "test" + i))
-                    .setCreate(false).execute().actionGet();
+        for (; i <= count; i++) {
+//            client.admin().cluster().preparePingSingle("test", "type1", Integer.toString(i)).execute().actionGet();
+            IndexRequestBuilder request = client.prepareIndex(index, "type1").setSource(source(Integer.toString(i), "test" + i));
+            if (explicitIds) {
+                request.setId(Integer.toString(i)).setCreate(false);
+            }
+            request.execute().actionGet();
             if ((i % 10000) == 0) {
                 System.out.println("Indexed " + i + " took " + stopWatch.stop().lastTaskTime());
                 stopWatch.start();
             }
         }
-        System.out.println("Indexing took " + stopWatch.totalTime() + ", TPS " + (((double) COUNT) / stopWatch.totalTime().secondsFrac()));
-
-        client.client().admin().indices().prepareRefresh().execute().actionGet();
-        System.out.println("Count: " + client.client().prepareCount().setQuery(matchAllQuery()).execute().actionGet().count());
-
-        client.close();
+        double tps = ((double) count) / stopWatch.totalTime().secondsFrac();
+        System.out.println("Indexing [" + index + "] took " + stopWatch.totalTime() + ", TPS " + tps);
 
-        for (Node node : nodes) {
-            node.close();
-        }
+        client.admin().indices().prepareRefresh(index).execute().actionGet();
+        System.out.println("Count: " + client.prepareCount(index).setQuery(matchAllQuery()).execute().actionGet().count());
+        return tps;
     }
 
     private static XContentBuilder source(String id, String nameValue) throws IOException {
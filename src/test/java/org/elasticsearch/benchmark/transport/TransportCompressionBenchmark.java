@@ -0,0 +1,151 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.transport;
+
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.StopWatch;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.*;
+import org.elasticsearch.transport.netty.NettyTransport;
+
+/**
+ * Compares sending a mix of small and large messages with no compression, with compression of all messages, and
+ * with compression of the messages above a size threshold.
+ */
+public class TransportCompressionBenchmark {
+
+    public static void main(String[] args) {
+        final ByteSizeValue smallPayloadSize = new ByteSizeValue(100, ByteSizeUnit.BYTES);
+        final ByteSizeValue largePayloadSize = new ByteSizeValue(512, ByteSizeUnit.KB);
+        final int NUMBER_OF_ITERATIONS = 20000;
+        // one large message for every LARGE_EVERY messages
+        final int LARGE_EVERY = 100;
+
+        final byte[] smallPayload = payload((int) smallPayloadSize.bytes());
+        final byte[] largePayload = payload((int) largePayloadSize.bytes());
+
+        Settings[] modes = new Settings[]{
+                ImmutableSettings.settingsBuilder().put("transport.tcp.compress", false).build(),
+                ImmutableSettings.settingsBuilder().put("transport.tcp.compress", true).build(),
+                ImmutableSettings.settingsBuilder().put("transport.tcp.compress", true).put("transport.tcp.compress_threshold", "64kb").build()
+        };
+        String[] names = new String[]{"none", "all", "threshold [64kb]"};
+
+        for (int mode = 0; mode < modes.length; mode++) {
+            Settings settings = modes[mode];
+
+            final ThreadPool serverThreadPool = new ThreadPool();
+            final TransportService serverTransportService = new TransportService(new NettyTransport(settings, serverThreadPool), serverThreadPool).start();
+
+            final ThreadPool clientThreadPool = new ThreadPool();
+            final TransportService clientTransportService = new TransportService(new NettyTransport(settings, clientThreadPool), clientThreadPool).start();
+
+            final DiscoveryNode node = new DiscoveryNode("server", serverTransportService.boundAddress().publishAddress());
+
+            serverTransportService.registerHandler("benchmark", new BaseTransportRequestHandler<BenchmarkMessage>() {
+                @Override
+                public BenchmarkMessage newInstance() {
+                    return new BenchmarkMessage();
+                }
+
+                @Override
+                public String executor() {
+                    return ThreadPool.Names.SAME;
+                }
+
+                @Override
+                public void messageReceived(BenchmarkMessage request, TransportChannel channel) throws Exception {
+                    channel.sendResponse(request);
+                }
+            });
+
+            clientTransportService.connectToNode(node);
+
+            // warm up
+            for (int i = 0; i < 1000; i++) {
+                send(clientTransportService, node, i, (i % LARGE_EVERY) == 0 ? largePayload : smallPayload);
+            }
+
+            StopWatch stopWatch = new StopWatch().start();
+            for (int i = 0; i < NUMBER_OF_ITERATIONS; i++) {
+                send(clientTransportService, node, i, (i % LARGE_EVERY) == 0 ? largePayload : smallPayload);
+            }
+            stopWatch.stop();
+
+            System.out.println("Compression [" + names[mode] + "]: [" + NUMBER_OF_ITERATIONS + "] iterations, payloads [" + smallPayloadSize + "] and every [" + LARGE_EVERY + "] [" + largePayloadSize + "]: took [" + stopWatch.totalTime() + "], TPS: " + NUMBER_OF_ITERATIONS / stopWatch.totalTime().secondsFrac());
+            printStats("client", clientTransportService.stats());
+            printStats("server", serverTransportService.stats());
+
+            clientTransportService.close();
+            clientThreadPool.shutdownNow();
+
+            serverTransportService.close();
+            serverThreadPool.shutdownNow();
+        }
+    }
+
+    private static void send(TransportService transportService, DiscoveryNode node, long id, byte[] payload) {
+        transportService.submitRequest(node, "benchmark", new BenchmarkMessage(id, payload), new BaseTransportResponseHandler<BenchmarkMessage>() {
+            @Override
+            public BenchmarkMessage newInstance() {
+                return new BenchmarkMessage();
+            }
+
+            @Override
+            public String executor() {
+                return ThreadPool.Names.SAME;
+            }
+
+            @Override
+            public void handleResponse(BenchmarkMessage response) {
+            }
+
+            @Override
+            public void handleException(TransportException exp) {
+                exp.printStackTrace();
+            }
+        }).txGet();
+    }
+
+    private static void printStats(String name, TransportStats stats) {
+        System.out.println("\t[" + name + "] tx [" + stats.txSize() + "]");
+        if (stats.compression() == null) {
+            return;
+        }
+        for (TransportCompressionStats.ActionStats actionStats : stats.compression()) {
+            System.out.println("\t[" + name + "][" + actionStats.action() + "] messages [" + actionStats.messages() + "], compressed [" + actionStats.compressedMessages() + "], ratio [" + actionStats.ratio() + "], compress time [" + actionStats.compressTime() + "]");
+        }
+    }
+
+    /**
+     * A somewhat compressible payload.
+     */
+    private static byte[] payload(int size) {
+        byte[] payload = new byte[size];
+        for (int i = 0; i < size; i++) {
+            payload[i] = (byte) ('a' + ((i * 31) % 7));
+        }
+        return payload;
+    }
+}
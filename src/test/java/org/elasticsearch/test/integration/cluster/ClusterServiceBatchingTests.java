@@ -0,0 +1,115 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.integration.cluster;
+
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.ClusterStateUpdateTask;
+import org.elasticsearch.cluster.ProcessedClusterStateUpdateTask;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.node.internal.InternalNode;
+import org.elasticsearch.test.integration.AbstractNodesTests;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.elasticsearch.cluster.ClusterState.newClusterStateBuilder;
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ *
+ */
+public class ClusterServiceBatchingTests extends AbstractNodesTests {
+
+    @AfterMethod
+    public void closeNodes() {
+        closeAllNodes();
+    }
+
+    @Test
+    public void testBatchedTasksArePublishedOnce() throws Exception {
+        startNode("node1");
+        assertThat(client("node1").admin().cluster().prepareHealth().setWaitForNodes("1").execute().actionGet().timedOut(), equalTo(false));
+
+        ClusterService clusterService = ((InternalNode) node("node1")).injector().getInstance(ClusterService.class);
+
+        // block the update thread, so the batched tasks will queue up behind it
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch block = new CountDownLatch(1);
+        final AtomicLong versionBeforeBatch = new AtomicLong();
+        clusterService.submitStateUpdateTask("block", new ClusterStateUpdateTask() {
+            @Override
+            public ClusterState execute(ClusterState currentState) {
+                started.countDown();
+                try {
+                    block.await();
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+                versionBeforeBatch.set(currentState.version());
+                return currentState;
+            }
+        });
+        // the block task must be running, and so out of the pending tasks, before we count them
+        assertThat(started.await(10, TimeUnit.SECONDS), equalTo(true));
+
+        int numberOfTasks = 10;
+        final CountDownLatch processed = new CountDownLatch(numberOfTasks);
+        for (int i = 0; i < numberOfTasks; i++) {
+            final String key = "test.batch." + i;
+            clusterService.submitBatchedStateUpdateTask("batched [" + i + "]", new ProcessedClusterStateUpdateTask() {
+                @Override
+                public ClusterState execute(ClusterState currentState) {
+                    MetaData metaData = MetaData.builder().metaData(currentState.metaData())
+                            .transientSettings(settingsBuilder().put(currentState.metaData().transientSettings()).put(key, true).build())
+                            .build();
+                    return newClusterStateBuilder().state(currentState).metaData(metaData).build();
+                }
+
+                @Override
+                public void clusterStateProcessed(ClusterState clusterState) {
+                    processed.countDown();
+                }
+            });
+        }
+        assertThat(clusterService.numberOfPendingTasks(), equalTo(numberOfTasks));
+        assertThat(client("node1").admin().cluster().prepareHealth().execute().actionGet().numberOfPendingTasks(), equalTo(numberOfTasks));
+
+        block.countDown();
+        assertThat(processed.await(10, TimeUnit.SECONDS), equalTo(true));
+
+        ClusterState state = clusterService.state();
+        for (int i = 0; i < numberOfTasks; i++) {
+            assertThat(state.metaData().transientSettings().getAsBoolean("test.batch." + i, false), equalTo(true));
+        }
+        // all the tasks were applied with a single cluster state update
+        assertThat(state.version(), equalTo(versionBeforeBatch.get() + 1));
+        assertThat(clusterService.numberOfPendingTasks(), equalTo(0));
+        // the other updates of the node were executed one by one, the batch brings the average above 1
+        assertThat(clusterService.averageBatchSize(), greaterThan(1d));
+        assertThat(client("node1").admin().cluster().prepareHealth().execute().actionGet().averageTaskBatchSize(), greaterThan(1d));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.integration.document;
+
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.test.integration.AbstractNodesTests;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ *
+ */
+public class ConcurrentShardBulkTests extends AbstractNodesTests {
+
+    private Client client;
+
+    @BeforeClass
+    public void startNodes() {
+        startNode("server1", settingsBuilder().put("action.bulk.shard.primary_concurrency", 4));
+        client = client("server1");
+    }
+
+    @AfterClass
+    public void closeNodes() {
+        client.close();
+        closeAllNodes();
+    }
+
+    @Test
+    public void testConcurrentBulkKeepsOrder() throws Exception {
+        client.admin().indices().prepareCreate("test").setSettings(settingsBuilder().put("index.number_of_shards", 1).put("index.number_of_replicas", 0)).execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+
+        int numberOfIds = 50;
+        int rounds = 5;
+        BulkRequestBuilder bulkRequest = client.prepareBulk();
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < numberOfIds; i++) {
+                bulkRequest.add(client.prepareIndex("test", "type1", Integer.toString(i)).setSource("field", "value" + round));
+            }
+        }
+        // deletes of docs indexed in the same bulk
+        for (int i = 0; i < 10; i++) {
+            bulkRequest.add(client.prepareDelete("test", "type1", Integer.toString(i)));
+        }
+        BulkResponse response = bulkRequest.execute().actionGet();
+        assertThat(response.hasFailures(), equalTo(false));
+        assertThat(response.items().length, equalTo(numberOfIds * rounds + 10));
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < numberOfIds; i++) {
+                int item = round * numberOfIds + i;
+                assertThat(response.items()[item].itemId(), equalTo(item));
+                assertThat(response.items()[item].id(), equalTo(Integer.toString(i)));
+                // items of the same doc were executed in order
+                assertThat(response.items()[item].version(), equalTo((long) round + 1));
+            }
+        }
+        for (int i = 0; i < 10; i++) {
+            assertThat(response.items()[numberOfIds * rounds + i].opType(), equalTo("delete"));
+            assertThat(response.items()[numberOfIds * rounds + i].version(), equalTo((long) rounds + 1));
+        }
+
+        client.admin().indices().prepareRefresh().execute().actionGet();
+        assertThat(client.prepareCount("test").setQuery(matchAllQuery()).execute().actionGet().count(), equalTo((long) numberOfIds - 10));
+        assertThat(client.prepareGet("test", "type1", "20").execute().actionGet().sourceAsMap().get("field").toString(), equalTo("value" + (rounds - 1)));
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.integration.document;
+
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.http.HttpServerTransport;
+import org.elasticsearch.node.internal.InternalNode;
+import org.elasticsearch.test.integration.AbstractNodesTests;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Sends bulk requests using chunked http requests, so they go through the streaming bulk path.
+ */
+public class StreamingBulkTests extends AbstractNodesTests {
+
+    private Client client;
+
+    private String bulkUrl;
+
+    @BeforeClass
+    public void startNodes() {
+        // parse on each received separator and execute batches of two actions
+        startNode("server1", settingsBuilder()
+                .put("rest.action.bulk.streaming.parse_size", "1b")
+                .put("rest.action.bulk.streaming.batch_actions", 2));
+        client = client("server1");
+        InetSocketAddress address = ((InetSocketTransportAddress) ((InternalNode) node("server1")).injector().getInstance(HttpServerTransport.class).boundAddress().publishAddress()).address();
+        bulkUrl = "http://" + address.getHostName() + ":" + address.getPort() + "/_bulk";
+    }
+
+    @AfterClass
+    public void closeNodes() {
+        client.close();
+        closeAllNodes();
+    }
+
+    @Test
+    public void testChunkedBulk() throws Exception {
+        client.admin().indices().prepareCreate("test1").execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForYellowStatus().execute().actionGet();
+
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            body.append("{ \"index\" : { \"_index\" : \"test1\", \"_type\" : \"type1\", \"_id\" : \"").append(i).append("\" } }\n");
+            body.append("{ \"field\" : \"value").append(i).append("\" }\n");
+        }
+
+        // small chunks, so actions are split across chunks
+        HttpURLConnection connection = sendChunked(body.toString(), 16);
+        assertThat(connection.getResponseCode(), equalTo(200));
+        Map<String, Object> response = readResponse(connection);
+        assertThat(response.containsKey("error"), equalTo(false));
+        List<Map<String, Object>> items = (List<Map<String, Object>>) response.get("items");
+        assertThat(items.size(), equalTo(10));
+        for (int i = 0; i < 10; i++) {
+            Map<String, Object> item = (Map<String, Object>) items.get(i).get("index");
+            assertThat((String) item.get("_id"), equalTo(Integer.toString(i)));
+            assertThat((Boolean) item.get("ok"), equalTo(true));
+        }
+
+        client.admin().indices().prepareRefresh("test1").execute().actionGet();
+        assertThat(client.prepareCount("test1").setQuery(matchAllQuery()).execute().actionGet().count(), equalTo(10l));
+    }
+
+    @Test
+    public void testChunkedBulkWithRefresh() throws Exception {
+        // no periodic refresh, so only the bulk refresh makes the docs visible
+        client.admin().indices().prepareCreate("test3").setSettings(settingsBuilder().put("index.refresh_interval", -1)).execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForYellowStatus().execute().actionGet();
+
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            body.append("{ \"index\" : { \"_index\" : \"test3\", \"_type\" : \"type1\", \"_id\" : \"").append(i).append("\" } }\n");
+            body.append("{ \"field\" : \"value").append(i).append("\" }\n");
+        }
+
+        HttpURLConnection connection = sendChunked("?refresh=true", body.toString(), 16);
+        assertThat(connection.getResponseCode(), equalTo(200));
+        List<Map<String, Object>> items = (List<Map<String, Object>>) readResponse(connection).get("items");
+        assertThat(items.size(), equalTo(5));
+
+        // the docs of all the batches are visible once the response is received
+        assertThat(client.prepareCount("test3").setQuery(matchAllQuery()).execute().actionGet().count(), equalTo(5l));
+    }
+
+    @Test
+    public void testChunkedBulkWithMalformedContent() throws Exception {
+        client.admin().indices().prepareCreate("test2").execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForYellowStatus().execute().actionGet();
+
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            body.append("{ \"index\" : { \"_index\" : \"test2\", \"_type\" : \"type1\", \"_id\" : \"").append(i).append("\" } }\n");
+            body.append("{ \"field\" : \"value").append(i).append("\" }\n");
+        }
+        body.append("{ \"index\" : { \"_index\" : ] }\n");
+        for (int i = 6; i < 8; i++) {
+            body.append("{ \"index\" : { \"_index\" : \"test2\", \"_type\" : \"type1\", \"_id\" : \"").append(i).append("\" } }\n");
+            body.append("{ \"field\" : \"value").append(i).append("\" }\n");
+        }
+
+        HttpURLConnection connection = sendChunked(body.toString(), 16);
+        assertThat(connection.getResponseCode(), equalTo(400));
+        Map<String, Object> response = readResponse(connection);
+        assertThat(response.get("error"), notNullValue());
+        // the three batches executed before the malformed action are reported
+        List<Map<String, Object>> items = (List<Map<String, Object>>) response.get("items");
+        assertThat(items.size(), equalTo(6));
+        for (int i = 0; i < 6; i++) {
+            Map<String, Object> item = (Map<String, Object>) items.get(i).get("index");
+            assertThat((String) item.get("_id"), equalTo(Integer.toString(i)));
+            assertThat((Boolean) item.get("ok"), equalTo(true));
+        }
+
+        client.admin().indices().prepareRefresh("test2").execute().actionGet();
+        assertThat(client.prepareCount("test2").setQuery(matchAllQuery()).execute().actionGet().count(), equalTo(6l));
+    }
+
+    private HttpURLConnection sendChunked(String body, int chunkSize) throws Exception {
+        return sendChunked("", body, chunkSize);
+    }
+
+    private HttpURLConnection sendChunked(String params, String body, int chunkSize) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(bulkUrl + params).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(chunkSize);
+        OutputStream out = connection.getOutputStream();
+        out.write(body.getBytes("UTF-8"));
+        out.close();
+        return connection;
+    }
+
+    private Map<String, Object> readResponse(HttpURLConnection connection) throws Exception {
+        InputStream in = connection.getResponseCode() >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        byte[] data = Streams.copyToByteArray(in);
+        return XContentFactory.xContent(XContentType.JSON).createParser(data).mapAndClose();
+    }
+}
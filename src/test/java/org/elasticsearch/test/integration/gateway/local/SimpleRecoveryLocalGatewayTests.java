@@ -391,7 +391,7 @@ public class SimpleRecoveryLocalGatewayTests extends AbstractNodesTests {
             for (ShardStatus shardStatus : indexShardStatus) {
                 if (!shardStatus.shardRouting().primary()) {
                     logger.info("--> shard {}, recovered {}, reuse {}", shardStatus.shardId(), shardStatus.peerRecoveryStatus().recoveredIndexSize(), shardStatus.peerRecoveryStatus().reusedIndexSize());
-                    assertThat(shardStatus.peerRecoveryStatus().recoveredIndexSize().bytes(), greaterThan(0l));
+                    // identical files, commit point included, are reused, so nothing might need to be recovered
                     assertThat(shardStatus.peerRecoveryStatus().reusedIndexSize().bytes(), greaterThan(0l));
                     assertThat(shardStatus.peerRecoveryStatus().reusedIndexSize().bytes(), greaterThan(shardStatus.peerRecoveryStatus().recoveredIndexSize().bytes()));
                 }
@@ -399,6 +399,66 @@ public class SimpleRecoveryLocalGatewayTests extends AbstractNodesTests {
         }
     }
 
+    @Test
+    public void testPeerRecoverySkipsIdenticalFiles() throws Exception {
+        buildNode("node1", settingsBuilder().put("gateway.type", "local").put("path.data", "data/data1").build());
+        buildNode("node2", settingsBuilder().put("gateway.type", "local").put("path.data", "data/data2").build());
+        cleanAndCloseNodes();
+
+        startNode("node1", settingsBuilder().put("gateway.type", "local").put("path.data", "data/data1").put("index.number_of_shards", 1).put("index.number_of_replicas", 1).build());
+
+        logger.info("--> indexing docs");
+        for (int i = 0; i < 100; i++) {
+            client("node1").prepareIndex("test", "type", Integer.toString(i)).setSource("field", "value").execute().actionGet();
+        }
+        client("node1").admin().indices().prepareFlush().execute().actionGet();
+
+        logger.info("--> start node2, the replica copies all the files of the primary");
+        startNode("node2", settingsBuilder().put("gateway.type", "local").put("path.data", "data/data2").build());
+        ClusterHealthResponse health = client("node1").admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+        assertThat(health.timedOut(), equalTo(false));
+        ShardStatus replicaStatus = replicaStatus();
+        assertThat(replicaStatus.peerRecoveryStatus().recoveredIndexSize().bytes(), greaterThan(0l));
+
+        logger.info("--> restart node2, all the files of the replica are identical to the primary ones and are reused");
+        closeNode("node2");
+        startNode("node2", settingsBuilder().put("gateway.type", "local").put("path.data", "data/data2").build());
+        health = client("node1").admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+        assertThat(health.timedOut(), equalTo(false));
+        replicaStatus = replicaStatus();
+        logger.info("--> recovered {}, reused {}", replicaStatus.peerRecoveryStatus().recoveredIndexSize(), replicaStatus.peerRecoveryStatus().reusedIndexSize());
+        assertThat(replicaStatus.peerRecoveryStatus().recoveredIndexSize().bytes(), equalTo(0l));
+        assertThat(replicaStatus.peerRecoveryStatus().reusedIndexSize().bytes(), greaterThan(0l));
+
+        logger.info("--> close node2, index and flush more docs, the changed files are sent again on restart");
+        closeNode("node2");
+        for (int i = 100; i < 200; i++) {
+            client("node1").prepareIndex("test", "type", Integer.toString(i)).setSource("field", "value").execute().actionGet();
+        }
+        client("node1").admin().indices().prepareFlush().execute().actionGet();
+        startNode("node2", settingsBuilder().put("gateway.type", "local").put("path.data", "data/data2").build());
+        health = client("node1").admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+        assertThat(health.timedOut(), equalTo(false));
+        replicaStatus = replicaStatus();
+        logger.info("--> recovered {}, reused {}", replicaStatus.peerRecoveryStatus().recoveredIndexSize(), replicaStatus.peerRecoveryStatus().reusedIndexSize());
+        assertThat(replicaStatus.peerRecoveryStatus().recoveredIndexSize().bytes(), greaterThan(0l));
+        assertThat(replicaStatus.peerRecoveryStatus().reusedIndexSize().bytes(), greaterThan(0l));
+
+        assertThat(client("node2").prepareCount("test").setQuery(matchAllQuery()).execute().actionGet().count(), equalTo(200l));
+    }
+
+    private ShardStatus replicaStatus() {
+        IndicesStatusResponse statusResponse = client("node1").admin().indices().prepareStatus("test").setRecovery(true).execute().actionGet();
+        for (IndexShardStatus indexShardStatus : statusResponse.index("test")) {
+            for (ShardStatus shardStatus : indexShardStatus) {
+                if (!shardStatus.shardRouting().primary()) {
+                    return shardStatus;
+                }
+            }
+        }
+        throw new AssertionError("no replica found");
+    }
+
     @Test
     public void testRecoveryDifferentNodeOrderStartup() throws Exception {
         // we need different data paths so we make sure we start the second node fresh
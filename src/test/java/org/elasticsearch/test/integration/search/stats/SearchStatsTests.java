@@ -21,6 +21,8 @@ package org.elasticsearch.test.integration.search.stats;
 
 import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsResponse;
 import org.elasticsearch.action.admin.indices.stats.IndicesStats;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.query.QueryBuilders;
@@ -90,4 +92,70 @@ public class SearchStatsTests extends AbstractNodesTests {
         assertThat(nodeStats.nodes()[0].indices().search().total().queryCount(), greaterThan(0l));
         assertThat(nodeStats.nodes()[0].indices().search().total().queryTimeInMillis(), greaterThan(0l));
     }
+
+    @Test
+    public void testQueryCacheStats() throws Exception {
+        client.admin().indices().prepareDelete().execute().actionGet();
+        client.admin().indices().prepareCreate("test").setSettings(settingsBuilder().put("index.cache.query.enable", true)).execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+
+        for (int i = 0; i < 100; i++) {
+            client.prepareIndex("test", "type", Integer.toString(i)).setSource("field", "value").execute().actionGet();
+        }
+        client.admin().indices().prepareRefresh().execute().actionGet();
+
+        for (int i = 0; i < 5; i++) {
+            SearchResponse searchResponse = client.prepareSearch().setSearchType(SearchType.COUNT).setQuery(QueryBuilders.termQuery("field", "value")).execute().actionGet();
+            assertThat(searchResponse.hits().totalHits(), equalTo(100l));
+        }
+
+        IndicesStats indicesStats = client.admin().indices().prepareStats().execute().actionGet();
+        // the first search misses on each of the 3 shards, the rest hit
+        assertThat(indicesStats.total().search().queryCacheMissCount(), equalTo(3l));
+        assertThat(indicesStats.total().search().queryCacheHitCount(), equalTo(12l));
+
+        for (int i = 100; i < 150; i++) {
+            client.prepareIndex("test", "type", Integer.toString(i)).setSource("field", "value").execute().actionGet();
+        }
+        client.admin().indices().prepareRefresh().execute().actionGet();
+
+        SearchResponse searchResponse = client.prepareSearch().setSearchType(SearchType.COUNT).setQuery(QueryBuilders.termQuery("field", "value")).execute().actionGet();
+        assertThat(searchResponse.hits().totalHits(), equalTo(150l));
+
+        indicesStats = client.admin().indices().prepareStats().execute().actionGet();
+        assertThat(indicesStats.total().search().queryCacheMissCount(), equalTo(6l));
+        assertThat(indicesStats.total().search().queryCacheHitCount(), equalTo(12l));
+    }
+
+    @Test
+    public void testQueryCacheDateRange() throws Exception {
+        client.admin().indices().prepareDelete().execute().actionGet();
+        client.admin().indices().prepareCreate("test").setSettings(settingsBuilder().put("index.cache.query.enable", true)).execute().actionGet();
+        client.admin().cluster().prepareHealth().setWaitForGreenStatus().execute().actionGet();
+
+        for (int i = 0; i < 100; i++) {
+            client.prepareIndex("test", "type", Integer.toString(i)).setSource("date", "2012-03-01").execute().actionGet();
+        }
+        client.admin().indices().prepareRefresh().execute().actionGet();
+
+        // a date range with absolute dates does not depend on the time of the request, so it is cached
+        for (int i = 0; i < 5; i++) {
+            SearchResponse searchResponse = client.prepareSearch().setSearchType(SearchType.COUNT).setQuery(QueryBuilders.rangeQuery("date").from("2012-01-01").to("2012-12-31")).execute().actionGet();
+            assertThat(searchResponse.hits().totalHits(), equalTo(100l));
+        }
+
+        IndicesStats indicesStats = client.admin().indices().prepareStats().execute().actionGet();
+        assertThat(indicesStats.total().search().queryCacheMissCount(), equalTo(3l));
+        assertThat(indicesStats.total().search().queryCacheHitCount(), equalTo(12l));
+
+        // one relative to now is not
+        for (int i = 0; i < 5; i++) {
+            SearchResponse searchResponse = client.prepareSearch().setSearchType(SearchType.COUNT).setQuery(QueryBuilders.rangeQuery("date").from("2012-01-01").to("now")).execute().actionGet();
+            assertThat(searchResponse.hits().totalHits(), equalTo(100l));
+        }
+
+        indicesStats = client.admin().indices().prepareStats().execute().actionGet();
+        assertThat(indicesStats.total().search().queryCacheMissCount(), equalTo(3l));
+        assertThat(indicesStats.total().search().queryCacheHitCount(), equalTo(12l));
+    }
 }
@@ -0,0 +1,60 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.action.percolate;
+
+import org.elasticsearch.action.percolate.MultiPercolateRequest;
+import org.elasticsearch.common.BytesHolder;
+import org.elasticsearch.common.io.Streams;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ */
+@Test
+public class MultiPercolateRequestTests {
+
+    @Test
+    public void simpleAddLines() throws Exception {
+        byte[] data = Streams.copyToBytesFromClasspath("/org/elasticsearch/test/unit/action/percolate/simple-mpercolate.json");
+        MultiPercolateRequest request = new MultiPercolateRequest("test", "type1").addLines(data, 0, data.length, false);
+        assertThat(request.docs().size(), equalTo(3));
+        assertThat(toString(request.docs().get(0)), equalTo("{\"doc\" : {\"field1\" : \"value1\"}}"));
+        assertThat(toString(request.docs().get(1)), equalTo("{\"doc\" : {\"field1\" : \"value2\", \"field2\" : 2}}"));
+        assertThat(toString(request.docs().get(2)), equalTo("{\"doc\" : {\"field1\" : \"value3\"}, \"query\" : {\"term\" : {\"field2\" : \"value\"}}}"));
+        assertThat(request.validate(), equalTo(null));
+    }
+
+    @Test
+    public void addLinesWithOffsetUnsafe() throws Exception {
+        byte[] lines = "xx{\"doc\" : {\"field1\" : \"value1\"}}\n{\"doc\" : {\"field1\" : \"value2\"}}yy".getBytes("UTF8");
+        MultiPercolateRequest request = new MultiPercolateRequest("test", "type1").addLines(lines, 2, lines.length - 4, true);
+        // the docs were copied, changing the original bytes does not affect them
+        lines[2] = 'z';
+        assertThat(request.docs().size(), equalTo(2));
+        assertThat(toString(request.docs().get(0)), equalTo("{\"doc\" : {\"field1\" : \"value1\"}}"));
+        assertThat(toString(request.docs().get(1)), equalTo("{\"doc\" : {\"field1\" : \"value2\"}}"));
+    }
+
+    private static String toString(BytesHolder bytes) throws Exception {
+        return new String(bytes.bytes(), bytes.offset(), bytes.length(), "UTF8");
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.cluster.routing.allocation;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterInfo;
+import org.elasticsearch.cluster.ClusterInfoService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.DiskUsage;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.routing.RoutingNodes;
+import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.allocation.AllocationService;
+import org.elasticsearch.cluster.routing.allocation.allocator.ShardsAllocators;
+import org.elasticsearch.cluster.routing.allocation.decider.AllocationDecider;
+import org.elasticsearch.cluster.routing.allocation.decider.AllocationDeciders;
+import org.elasticsearch.cluster.routing.allocation.decider.DiskThresholdAllocationDecider;
+import org.elasticsearch.cluster.routing.allocation.decider.SameShardAllocationDecider;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.node.settings.NodeSettingsService;
+import org.testng.annotations.Test;
+
+import static org.elasticsearch.cluster.ClusterState.newClusterStateBuilder;
+import static org.elasticsearch.cluster.metadata.IndexMetaData.newIndexMetaDataBuilder;
+import static org.elasticsearch.cluster.metadata.MetaData.newMetaDataBuilder;
+import static org.elasticsearch.cluster.node.DiscoveryNodes.newNodesBuilder;
+import static org.elasticsearch.cluster.routing.RoutingBuilders.indexRoutingTable;
+import static org.elasticsearch.cluster.routing.RoutingBuilders.routingTable;
+import static org.elasticsearch.cluster.routing.ShardRoutingState.*;
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.elasticsearch.test.unit.cluster.routing.allocation.RoutingAllocationTests.newNode;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ */
+@Test
+public class DiskThresholdAllocationTests {
+
+    private final ESLogger logger = Loggers.getLogger(DiskThresholdAllocationTests.class);
+
+    @Test
+    public void noAllocationAboveLowWatermark() {
+        TestClusterInfoService clusterInfoService = new TestClusterInfoService();
+        AllocationService strategy = createAllocationService(settingsBuilder().build(), clusterInfoService);
+
+        logger.info("Building initial routing table");
+
+        MetaData metaData = newMetaDataBuilder()
+                .put(newIndexMetaDataBuilder("test").settings(ImmutableSettings.settingsBuilder()
+                        .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 4)
+                        .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)))
+                .build();
+
+        RoutingTable routingTable = routingTable()
+                .add(indexRoutingTable("test").initializeEmpty(metaData.index("test")))
+                .build();
+
+        ClusterState clusterState = newClusterStateBuilder().metaData(metaData).routingTable(routingTable).build();
+
+        logger.info("node1 is above the low watermark, node2 is not");
+        clusterInfoService.clusterInfo = new ClusterInfo(
+                ImmutableMap.of("node1", new DiskUsage("node1", 100, 12), "node2", new DiskUsage("node2", 100, 50)),
+                ImmutableMap.<ShardId, Long>of());
+
+        clusterState = newClusterStateBuilder().state(clusterState).nodes(newNodesBuilder().put(newNode("node1")).put(newNode("node2"))).build();
+        routingTable = strategy.reroute(clusterState).routingTable();
+        clusterState = newClusterStateBuilder().state(clusterState).routingTable(routingTable).build();
+
+        assertThat(clusterState.readOnlyRoutingNodes().node("node1").numberOfShardsWithState(INITIALIZING), equalTo(0));
+        assertThat(clusterState.readOnlyRoutingNodes().node("node2").numberOfShardsWithState(INITIALIZING), equalTo(4));
+
+        logger.info("node2 is filling up, above the low watermark as well");
+        clusterInfoService.clusterInfo = new ClusterInfo(
+                ImmutableMap.of("node1", new DiskUsage("node1", 100, 12), "node2", new DiskUsage("node2", 100, 12)),
+                ImmutableMap.<ShardId, Long>of());
+
+        logger.info("Add a new index, none of its shards can be allocated");
+        metaData = newMetaDataBuilder().metaData(metaData)
+                .put(newIndexMetaDataBuilder("test1").settings(ImmutableSettings.settingsBuilder()
+                        .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 2)
+                        .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)))
+                .build();
+        routingTable = routingTable().routingTable(routingTable)
+                .add(indexRoutingTable("test1").initializeEmpty(metaData.index("test1")))
+                .build();
+        clusterState = newClusterStateBuilder().state(clusterState).metaData(metaData).routingTable(routingTable).build();
+        routingTable = strategy.reroute(clusterState).routingTable();
+        clusterState = newClusterStateBuilder().state(clusterState).routingTable(routingTable).build();
+
+        assertThat(clusterState.readOnlyRoutingNodes().unassigned().size(), equalTo(2));
+    }
+
+    @Test
+    public void moveShardsAboveHighWatermark() {
+        TestClusterInfoService clusterInfoService = new TestClusterInfoService();
+        AllocationService strategy = createAllocationService(settingsBuilder()
+                .put(DiskThresholdAllocationDecider.CLUSTER_ROUTING_ALLOCATION_LOW_DISK_WATERMARK, "0.7")
+                .put(DiskThresholdAllocationDecider.CLUSTER_ROUTING_ALLOCATION_HIGH_DISK_WATERMARK, "80%")
+                .build(), clusterInfoService);
+
+        logger.info("Building initial routing table");
+
+        MetaData metaData = newMetaDataBuilder()
+                .put(newIndexMetaDataBuilder("test").settings(ImmutableSettings.settingsBuilder()
+                        .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 4)
+                        .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)))
+                .build();
+
+        RoutingTable routingTable = routingTable()
+                .add(indexRoutingTable("test").initializeEmpty(metaData.index("test")))
+                .build();
+
+        ClusterState clusterState = newClusterStateBuilder().metaData(metaData).routingTable(routingTable).build();
+
+        ImmutableMap<ShardId, Long> shardSizes = ImmutableMap.of(
+                new ShardId("test", 0), 10l, new ShardId("test", 1), 10l, new ShardId("test", 2), 10l, new ShardId("test", 3), 10l);
+        clusterInfoService.clusterInfo = new ClusterInfo(
+                ImmutableMap.of("node1", new DiskUsage("node1", 100, 80), "node2", new DiskUsage("node2", 100, 80)),
+                shardSizes);
+
+        logger.info("Adding two nodes and starting the shards");
+        clusterState = newClusterStateBuilder().state(clusterState).nodes(newNodesBuilder().put(newNode("node1")).put(newNode("node2"))).build();
+        routingTable = strategy.reroute(clusterState).routingTable();
+        clusterState = newClusterStateBuilder().state(clusterState).routingTable(routingTable).build();
+        RoutingNodes routingNodes = clusterState.routingNodes();
+        routingTable = strategy.applyStartedShards(clusterState, routingNodes.shardsWithState(INITIALIZING)).routingTable();
+        clusterState = newClusterStateBuilder().state(clusterState).routingTable(routingTable).build();
+
+        assertThat(clusterState.readOnlyRoutingNodes().node("node1").numberOfShardsWithState(STARTED), equalTo(2));
+        assertThat(clusterState.readOnlyRoutingNodes().node("node2").numberOfShardsWithState(STARTED), equalTo(2));
+
+        logger.info("node1 gets above the high watermark, one shard should move off it");
+        clusterInfoService.clusterInfo = new ClusterInfo(
+                ImmutableMap.of("node1", new DiskUsage("node1", 100, 15), "node2", new DiskUsage("node2", 100, 60)),
+                shardSizes);
+        routingTable = strategy.reroute(clusterState).routingTable();
+        clusterState = newClusterStateBuilder().state(clusterState).routingTable(routingTable).build();
+
+        assertThat(clusterState.readOnlyRoutingNodes().node("node1").numberOfShardsWithState(RELOCATING), equalTo(1));
+        assertThat(clusterState.readOnlyRoutingNodes().node("node1").numberOfShardsWithState(STARTED), equalTo(1));
+        assertThat(clusterState.readOnlyRoutingNodes().node("node2").numberOfShardsWithState(INITIALIZING), equalTo(1));
+        assertThat(clusterState.readOnlyRoutingNodes().node("node2").numberOfShardsWithState(STARTED), equalTo(2));
+    }
+
+    @Test
+    public void rerouteOnlyWhenWatermarksAreCrossed() {
+        ImmutableMap<ShardId, Long> shardSizes = ImmutableMap.of();
+        DiskThresholdAllocationDecider decider = new DiskThresholdAllocationDecider(ImmutableSettings.Builder.EMPTY_SETTINGS,
+                new NodeSettingsService(ImmutableSettings.Builder.EMPTY_SETTINGS), new TestClusterInfoService());
+
+        // all nodes under the watermarks, nothing to do
+        assertThat(decider.updateWatermarks(new ClusterInfo(
+                ImmutableMap.of("node1", new DiskUsage("node1", 100, 80), "node2", new DiskUsage("node2", 100, 70)),
+                shardSizes)), equalTo(false));
+        // usage changed, but no watermark was crossed
+        assertThat(decider.updateWatermarks(new ClusterInfo(
+                ImmutableMap.of("node1", new DiskUsage("node1", 100, 60), "node2", new DiskUsage("node2", 100, 50)),
+                shardSizes)), equalTo(false));
+        // node1 gets above the low watermark
+        assertThat(decider.updateWatermarks(new ClusterInfo(
+                ImmutableMap.of("node1", new DiskUsage("node1", 100, 12), "node2", new DiskUsage("node2", 100, 50)),
+                shardSizes)), equalTo(true));
+        assertThat(decider.updateWatermarks(new ClusterInfo(
+                ImmutableMap.of("node1", new DiskUsage("node1", 100, 11), "node2", new DiskUsage("node2", 100, 50)),
+                shardSizes)), equalTo(false));
+        // and above the high one
+        assertThat(decider.updateWatermarks(new ClusterInfo(
+                ImmutableMap.of("node1", new DiskUsage("node1", 100, 5), "node2", new DiskUsage("node2", 100, 50)),
+                shardSizes)), equalTo(true));
+        // then back under both
+        assertThat(decider.updateWatermarks(new ClusterInfo(
+                ImmutableMap.of("node1", new DiskUsage("node1", 100, 50), "node2", new DiskUsage("node2", 100, 50)),
+                shardSizes)), equalTo(true));
+    }
+
+    @Test
+    public void rerouteWhenEnabled() {
+        ImmutableMap<ShardId, Long> shardSizes = ImmutableMap.of();
+        Settings settings = settingsBuilder().put(DiskThresholdAllocationDecider.CLUSTER_ROUTING_ALLOCATION_DISK_THRESHOLD_ENABLED, false).build();
+        NodeSettingsService nodeSettingsService = new NodeSettingsService(settings);
+        DiskThresholdAllocationDecider decider = new DiskThresholdAllocationDecider(settings, nodeSettingsService, new TestClusterInfoService());
+        ClusterInfo clusterInfo = new ClusterInfo(
+                ImmutableMap.of("node1", new DiskUsage("node1", 100, 5), "node2", new DiskUsage("node2", 100, 50)),
+                shardSizes);
+
+        // node1 is above the high watermark while the decider is disabled
+        assertThat(decider.updateWatermarks(clusterInfo), equalTo(false));
+        assertThat(decider.updateWatermarks(clusterInfo), equalTo(false));
+
+        ClusterState previousState = newClusterStateBuilder().metaData(newMetaDataBuilder()).build();
+        ClusterState state = newClusterStateBuilder().metaData(newMetaDataBuilder().persistentSettings(settingsBuilder()
+                .put(DiskThresholdAllocationDecider.CLUSTER_ROUTING_ALLOCATION_DISK_THRESHOLD_ENABLED, true).build())).build();
+        nodeSettingsService.clusterChanged(new ClusterChangedEvent("test", state, previousState));
+
+        // enabling it reroutes, even though no watermark was crossed since
+        assertThat(decider.updateWatermarks(clusterInfo), equalTo(true));
+        assertThat(decider.updateWatermarks(clusterInfo), equalTo(false));
+    }
+
+    private AllocationService createAllocationService(Settings settings, ClusterInfoService clusterInfoService) {
+        NodeSettingsService nodeSettingsService = new NodeSettingsService(ImmutableSettings.Builder.EMPTY_SETTINGS);
+        AllocationDeciders allocationDeciders = new AllocationDeciders(settings, ImmutableSet.<AllocationDecider>of(
+                new SameShardAllocationDecider(settings),
+                new DiskThresholdAllocationDecider(settings, nodeSettingsService, clusterInfoService)
+        ));
+        return new AllocationService(settings, allocationDeciders, new ShardsAllocators(settings));
+    }
+
+    static class TestClusterInfoService implements ClusterInfoService {
+
+        volatile ClusterInfo clusterInfo = ClusterInfo.EMPTY;
+
+        @Override
+        public ClusterInfo clusterInfo() {
+            return clusterInfo;
+        }
+
+        @Override
+        public void addListener(Listener listener) {
+        }
+
+        @Override
+        public void removeListener(Listener listener) {
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.cluster.routing.allocation;
+
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.cluster.ClusterInfo;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.DiskUsage;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.routing.MutableShardRouting;
+import org.elasticsearch.cluster.routing.RoutingNode;
+import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.allocation.AllocationService;
+import org.elasticsearch.cluster.routing.allocation.allocator.EvenShardsCountAllocator;
+import org.elasticsearch.cluster.routing.allocation.allocator.ShardsAllocator;
+import org.elasticsearch.cluster.routing.allocation.allocator.ShardsAllocators;
+import org.elasticsearch.cluster.routing.allocation.allocator.WeightedShardsAllocator;
+import org.elasticsearch.cluster.routing.allocation.decider.AllocationDeciders;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.gateway.none.NoneGatewayAllocator;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.node.settings.NodeSettingsService;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.elasticsearch.cluster.ClusterState.newClusterStateBuilder;
+import static org.elasticsearch.cluster.metadata.IndexMetaData.newIndexMetaDataBuilder;
+import static org.elasticsearch.cluster.metadata.MetaData.newMetaDataBuilder;
+import static org.elasticsearch.cluster.node.DiscoveryNodes.newNodesBuilder;
+import static org.elasticsearch.cluster.routing.RoutingBuilders.indexRoutingTable;
+import static org.elasticsearch.cluster.routing.RoutingBuilders.routingTable;
+import static org.elasticsearch.cluster.routing.ShardRoutingState.*;
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.elasticsearch.test.unit.cluster.routing.allocation.RoutingAllocationTests.newNode;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Replays the allocation of synthetic clusters, until all their shards are started and no more shards are
+ * relocated, and checks the balance of the resulting clusters.
+ */
+@Test
+public class WeightedShardsAllocatorTests {
+
+    private final ESLogger logger = Loggers.getLogger(WeightedShardsAllocatorTests.class);
+
+    private final Settings settings = settingsBuilder()
+            .put("cluster.routing.allocation.allow_rebalance", "always")
+            .put("cluster.routing.allocation.cluster_concurrent_rebalance", -1)
+            .put("cluster.routing.allocation.concurrent_recoveries", 100)
+            .put("cluster.routing.allocation.node_initial_primaries_recoveries", 100)
+            .build();
+
+    @Test
+    public void largeShardIsNotStackedWithOthers() {
+        Map<ShardId, Long> shardSizes = new HashMap<ShardId, Long>();
+        shardSizes.put(new ShardId("big", 0), 100l);
+        for (int i = 0; i < 4; i++) {
+            shardSizes.put(new ShardId("small", i), 1l);
+        }
+        DiskThresholdAllocationTests.TestClusterInfoService clusterInfoService = new DiskThresholdAllocationTests.TestClusterInfoService();
+        clusterInfoService.clusterInfo = new ClusterInfo(ImmutableMap.<String, DiskUsage>of(), ImmutableMap.copyOf(shardSizes));
+
+        MetaData metaData = newMetaDataBuilder()
+                .put(newIndexMetaDataBuilder("big").settings(ImmutableSettings.settingsBuilder()
+                        .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+                        .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)))
+                .put(newIndexMetaDataBuilder("small").settings(ImmutableSettings.settingsBuilder()
+                        .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 4)
+                        .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)))
+                .build();
+        RoutingTable routingTable = routingTable()
+                .add(indexRoutingTable("big").initializeEmpty(metaData.index("big")))
+                .add(indexRoutingTable("small").initializeEmpty(metaData.index("small")))
+                .build();
+        ClusterState clusterState = newClusterStateBuilder().metaData(metaData).routingTable(routingTable)
+                .nodes(newNodesBuilder().put(newNode("node1")).put(newNode("node2"))).build();
+
+        clusterState = allocate(createAllocationService(new WeightedShardsAllocator(settings, new NodeSettingsService(settings), clusterInfoService)), clusterState);
+
+        assertThat(clusterState.readOnlyRoutingNodes().unassigned().size(), equalTo(0));
+        for (RoutingNode node : clusterState.readOnlyRoutingNodes()) {
+            if (node.shardsWithState("big", STARTED).isEmpty()) {
+                assertThat(node.shardsWithState("small", STARTED).size(), equalTo(4));
+            } else {
+                assertThat(node.shards().size(), equalTo(1));
+            }
+        }
+    }
+
+    @Test
+    public void simulateLargeCluster() {
+        Random random = new Random(7);
+        int numberOfNodes = 200;
+        int numberOfIndices = 60;
+
+        MetaData.Builder metaDataBuilder = newMetaDataBuilder();
+        Map<ShardId, Long> shardSizes = new HashMap<ShardId, Long>();
+        for (int i = 0; i < numberOfIndices; i++) {
+            String index = "index" + i;
+            int numberOfShards = 1 + random.nextInt(10);
+            metaDataBuilder.put(newIndexMetaDataBuilder(index).settings(ImmutableSettings.settingsBuilder()
+                    .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, numberOfShards)
+                    .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, random.nextInt(3))));
+            // shard sizes from 1mb to 100gb, most of them small
+            for (int shard = 0; shard < numberOfShards; shard++) {
+                shardSizes.put(new ShardId(index, shard), (long) Math.pow(10, 6 + random.nextDouble() * 5));
+            }
+        }
+        MetaData metaData = metaDataBuilder.build();
+
+        RoutingTable.Builder routingTableBuilder = routingTable();
+        for (int i = 0; i < numberOfIndices; i++) {
+            routingTableBuilder.add(indexRoutingTable("index" + i).initializeEmpty(metaData.index("index" + i)));
+        }
+        DiscoveryNodes.Builder nodes = newNodesBuilder();
+        for (int i = 0; i < numberOfNodes; i++) {
+            nodes.put(newNode("node" + i));
+        }
+        ClusterState initialState = newClusterStateBuilder().metaData(metaData).routingTable(routingTableBuilder.build()).nodes(nodes).build();
+
+        DiskThresholdAllocationTests.TestClusterInfoService clusterInfoService = new DiskThresholdAllocationTests.TestClusterInfoService();
+        clusterInfoService.clusterInfo = new ClusterInfo(ImmutableMap.<String, DiskUsage>of(), ImmutableMap.copyOf(shardSizes));
+
+        long start = System.currentTimeMillis();
+        ClusterState weighted = allocate(createAllocationService(new WeightedShardsAllocator(settings, new NodeSettingsService(settings), clusterInfoService)), initialState);
+        logger.info("allocated with the weighted allocator in [{}ms]", System.currentTimeMillis() - start);
+        start = System.currentTimeMillis();
+        ClusterState evenCount = allocate(createAllocationService(new EvenShardsCountAllocator(settings)), initialState);
+        logger.info("allocated with the even shards count allocator in [{}ms]", System.currentTimeMillis() - start);
+
+        assertThat(weighted.readOnlyRoutingNodes().unassigned().size(), equalTo(0));
+        assertThat(evenCount.readOnlyRoutingNodes().unassigned().size(), equalTo(0));
+
+        double weightedDeviation = nodeSizesDeviation(weighted, clusterInfoService.clusterInfo);
+        double evenCountDeviation = nodeSizesDeviation(evenCount, clusterInfoService.clusterInfo);
+        logger.info("standard deviation of the node sizes, weighted [{}], even shards count [{}]", weightedDeviation, evenCountDeviation);
+        assertThat(weightedDeviation, lessThan(evenCountDeviation));
+
+        // balancing on sizes should not leave nodes with many more shards than others
+        int totalShards = 0;
+        int maxShards = 0;
+        for (RoutingNode node : weighted.readOnlyRoutingNodes()) {
+            totalShards += node.shards().size();
+            maxShards = Math.max(maxShards, node.shards().size());
+        }
+        assertThat(maxShards, lessThanOrEqualTo(2 * (totalShards / numberOfNodes + 1) + 2));
+    }
+
+    private AllocationService createAllocationService(ShardsAllocator allocator) {
+        return new AllocationService(settings,
+                new AllocationDeciders(settings, new NodeSettingsService(settings)),
+                new ShardsAllocators(settings, new NoneGatewayAllocator(), allocator));
+    }
+
+    /**
+     * Reroutes and starts the initializing shards until all the shards are started, and no shard relocates.
+     */
+    private ClusterState allocate(AllocationService strategy, ClusterState clusterState) {
+        RoutingTable routingTable = strategy.reroute(clusterState).routingTable();
+        clusterState = newClusterStateBuilder().state(clusterState).routingTable(routingTable).build();
+        for (int round = 0; round < 100; round++) {
+            if (clusterState.routingNodes().shardsWithState(INITIALIZING).isEmpty()) {
+                break;
+            }
+            routingTable = strategy.applyStartedShards(clusterState, clusterState.routingNodes().shardsWithState(INITIALIZING)).routingTable();
+            clusterState = newClusterStateBuilder().state(clusterState).routingTable(routingTable).build();
+        }
+        assertThat(clusterState.readOnlyRoutingNodes().shardsWithState(INITIALIZING).size(), equalTo(0));
+        assertThat(clusterState.readOnlyRoutingNodes().shardsWithState(RELOCATING).size(), equalTo(0));
+        return clusterState;
+    }
+
+    private double nodeSizesDeviation(ClusterState clusterState, ClusterInfo clusterInfo) {
+        int numberOfNodes = 0;
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (RoutingNode node : clusterState.readOnlyRoutingNodes()) {
+            long size = 0;
+            for (MutableShardRouting shard : node.shards()) {
+                size += clusterInfo.shardSize(shard, 0);
+            }
+            numberOfNodes++;
+            sum += size;
+            sumOfSquares += ((double) size) * size;
+        }
+        double mean = sum / numberOfNodes;
+        return Math.sqrt(sumOfSquares / numberOfNodes - mean * mean);
+    }
+}
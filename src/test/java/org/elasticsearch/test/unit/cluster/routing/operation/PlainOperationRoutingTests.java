@@ -0,0 +1,143 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.cluster.routing.operation;
+
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.routing.GroupShardsIterator;
+import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.allocation.AllocationService;
+import org.elasticsearch.cluster.routing.allocation.decider.AwarenessAllocationDecider;
+import org.elasticsearch.cluster.routing.operation.ResponseCollector;
+import org.elasticsearch.cluster.routing.operation.hash.djb.DjbHashFunction;
+import org.elasticsearch.cluster.routing.operation.plain.PlainOperationRouting;
+import org.elasticsearch.node.settings.NodeSettingsService;
+import org.testng.annotations.Test;
+
+import static org.elasticsearch.cluster.ClusterState.newClusterStateBuilder;
+import static org.elasticsearch.cluster.metadata.IndexMetaData.newIndexMetaDataBuilder;
+import static org.elasticsearch.cluster.metadata.MetaData.newMetaDataBuilder;
+import static org.elasticsearch.cluster.node.DiscoveryNodes.newNodesBuilder;
+import static org.elasticsearch.cluster.routing.RoutingBuilders.indexRoutingTable;
+import static org.elasticsearch.cluster.routing.RoutingBuilders.routingTable;
+import static org.elasticsearch.cluster.routing.ShardRoutingState.INITIALIZING;
+import static org.elasticsearch.common.settings.ImmutableSettings.Builder.EMPTY_SETTINGS;
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.elasticsearch.test.unit.cluster.routing.allocation.RoutingAllocationTests.newNode;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ *
+ */
+@Test
+public class PlainOperationRoutingTests {
+
+    @Test
+    public void testSearchShardsOrderedByRank() {
+        ClusterState clusterState = startedClusterState();
+        ResponseCollector collector = new ResponseCollector(EMPTY_SETTINGS);
+        PlainOperationRouting operationRouting = new PlainOperationRouting(EMPTY_SETTINGS, new DjbHashFunction(),
+                new AwarenessAllocationDecider(EMPTY_SETTINGS, new NodeSettingsService(EMPTY_SETTINGS)), collector);
+
+        for (int i = 0; i < 10; i++) {
+            collector.onRequestSent("node1");
+            collector.onResponse("node1", 0, 3000);
+            collector.onRequestSent("node2");
+            collector.onResponse("node2", 0, 1000);
+            collector.onRequestSent("node3");
+            collector.onResponse("node3", 0, 2000);
+        }
+        // the order does not depend on the round robin starting point
+        for (int i = 0; i < 3; i++) {
+            assertThat(searchOrder(operationRouting, clusterState), equalTo("node2,node3,node1"));
+        }
+
+        // requests piling up on the fastest node move it back
+        collector.onRequestSent("node2");
+        collector.onRequestSent("node2");
+        assertThat(searchOrder(operationRouting, clusterState), equalTo("node3,node1,node2"));
+
+        // and back once they fail
+        collector.onFailure("node2");
+        collector.onFailure("node2");
+        assertThat(searchOrder(operationRouting, clusterState), equalTo("node2,node3,node1"));
+    }
+
+    @Test
+    public void testUnknownNodeIsProbed() {
+        ClusterState clusterState = startedClusterState();
+        ResponseCollector collector = new ResponseCollector(EMPTY_SETTINGS);
+        PlainOperationRouting operationRouting = new PlainOperationRouting(EMPTY_SETTINGS, new DjbHashFunction(),
+                new AwarenessAllocationDecider(EMPTY_SETTINGS, new NodeSettingsService(EMPTY_SETTINGS)), collector);
+
+        for (int i = 0; i < 10; i++) {
+            collector.onRequestSent("node1");
+            collector.onResponse("node1", 0, 2000);
+            collector.onRequestSent("node2");
+            collector.onResponse("node2", 0, 1000);
+        }
+        // node3 ranks as the fastest node until it gets requests of its own
+        assertThat(searchOrder(operationRouting, clusterState).endsWith("node1"), equalTo(true));
+        collector.onRequestSent("node3");
+        assertThat(searchOrder(operationRouting, clusterState), equalTo("node2,node1,node3"));
+    }
+
+    private String searchOrder(PlainOperationRouting operationRouting, ClusterState clusterState) {
+        GroupShardsIterator groupIt = operationRouting.searchShards(clusterState, new String[]{"test"}, new String[]{"test"}, null, null, null);
+        assertThat(groupIt.size(), equalTo(1));
+        ShardIterator shardIt = groupIt.iterator().next();
+        StringBuilder order = new StringBuilder();
+        for (ShardRouting shard = shardIt.nextOrNull(); shard != null; shard = shardIt.nextOrNull()) {
+            if (order.length() > 0) {
+                order.append(',');
+            }
+            order.append(shard.currentNodeId());
+        }
+        return order.toString();
+    }
+
+    /**
+     * One shard with two replicas, all started, one copy per node.
+     */
+    private ClusterState startedClusterState() {
+        AllocationService strategy = new AllocationService(settingsBuilder().put("cluster.routing.allocation.concurrent_recoveries", 10).build());
+        MetaData metaData = newMetaDataBuilder()
+                .put(newIndexMetaDataBuilder("test").numberOfShards(1).numberOfReplicas(2))
+                .build();
+        RoutingTable routingTable = routingTable()
+                .add(indexRoutingTable("test").initializeEmpty(metaData.index("test")))
+                .build();
+        ClusterState clusterState = newClusterStateBuilder().metaData(metaData).routingTable(routingTable)
+                .nodes(newNodesBuilder().put(newNode("node1")).put(newNode("node2")).put(newNode("node3"))).build();
+
+        routingTable = strategy.reroute(clusterState).routingTable();
+        clusterState = newClusterStateBuilder().state(clusterState).routingTable(routingTable).build();
+        // start the primary, then the replicas
+        for (int i = 0; i < 2; i++) {
+            routingTable = strategy.applyStartedShards(clusterState, clusterState.routingNodes().shardsWithState(INITIALIZING)).routingTable();
+            clusterState = newClusterStateBuilder().state(clusterState).routingTable(routingTable).build();
+        }
+        assertThat(clusterState.routingTable().index("test").shard(0).activeShards().size(), equalTo(3));
+        return clusterState;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.test.unit.cluster.routing.operation;
+
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.routing.operation.ResponseCollector;
+import org.testng.annotations.Test;
+
+import static org.elasticsearch.cluster.ClusterState.newClusterStateBuilder;
+import static org.elasticsearch.cluster.node.DiscoveryNodes.newNodesBuilder;
+import static org.elasticsearch.common.settings.ImmutableSettings.Builder.EMPTY_SETTINGS;
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.elasticsearch.test.unit.cluster.routing.allocation.RoutingAllocationTests.newNode;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ */
+@Test
+public class ResponseCollectorTests {
+
+    @Test
+    public void testUnknownNodeRanksFirst() {
+        ResponseCollector collector = new ResponseCollector(EMPTY_SETTINGS);
+        assertThat(collector.rank("node1"), equalTo(collector.rank("node2")));
+
+        // outstanding requests count against a node even before it responds
+        collector.onRequestSent("node1");
+        assertThat(collector.rank("node1"), greaterThan(collector.rank("node2")));
+        collector.onResponse("node1", 0, 1000);
+        assertThat(collector.rank("node1"), greaterThan(0d));
+
+        // a node we know nothing about is assumed to be as fast as the fastest one, so it gets probed
+        collector.onRequestSent("node3");
+        collector.onResponse("node3", 0, 5000);
+        assertThat(collector.rank("node2"), lessThanOrEqualTo(collector.rank("node1")));
+        assertThat(collector.rank("node2"), lessThan(collector.rank("node3")));
+        collector.onRequestSent("node2");
+        collector.onRequestSent("node2");
+        assertThat(collector.rank("node2"), greaterThan(collector.rank("node1")));
+    }
+
+    @Test
+    public void testExpiredStatistics() throws Exception {
+        ResponseCollector collector = new ResponseCollector(settingsBuilder().put("cluster.routing.operation.expire", "1ms").build());
+        collector.onRequestSent("slow");
+        collector.onResponse("slow", 0, 10000);
+        collector.onRequestSent("stuck");
+        collector.onResponse("stuck", 0, 10000);
+        collector.onRequestSent("stuck");
+        Thread.sleep(10);
+
+        // expired statistics are forgotten, so the node gets probed again
+        collector.onRequestSent("fast");
+        collector.onResponse("fast", 0, 1000);
+        assertThat(collector.rank("slow"), equalTo(collector.rank("fast")));
+
+        // but not while requests to the node are still outstanding
+        assertThat(collector.rank("stuck"), greaterThan(collector.rank("slow")));
+    }
+
+    @Test
+    public void testFasterNodeRanksFirst() {
+        ResponseCollector collector = new ResponseCollector(EMPTY_SETTINGS);
+        for (int i = 0; i < 10; i++) {
+            collector.onRequestSent("fast");
+            collector.onResponse("fast", 0, 1000);
+            collector.onRequestSent("slow");
+            collector.onResponse("slow", 0, 10000);
+        }
+        assertThat(collector.rank("fast"), lessThan(collector.rank("slow")));
+    }
+
+    @Test
+    public void testLoadSpreadsRequests() {
+        ResponseCollector collector = new ResponseCollector(EMPTY_SETTINGS);
+        for (int i = 0; i < 10; i++) {
+            collector.onRequestSent("node1");
+            collector.onResponse("node1", 0, 1000);
+            collector.onRequestSent("node2");
+            collector.onResponse("node2", 0, 2000);
+        }
+        assertThat(collector.rank("node1"), lessThan(collector.rank("node2")));
+
+        // requests piling up on the faster node make the other one preferred
+        collector.onRequestSent("node1");
+        collector.onRequestSent("node1");
+        assertThat(collector.rank("node1"), greaterThan(collector.rank("node2")));
+
+        collector.onFailure("node1");
+        collector.onFailure("node1");
+        assertThat(collector.rank("node1"), lessThan(collector.rank("node2")));
+
+        // so does a deep search queue
+        collector.onRequestSent("node1");
+        collector.onResponse("node1", 20, 1000);
+        assertThat(collector.rank("node1"), greaterThan(collector.rank("node2")));
+    }
+
+    @Test
+    public void testRemovedNodeStatisticsAreDropped() {
+        ResponseCollector collector = new ResponseCollector(EMPTY_SETTINGS);
+        collector.onRequestSent("node1");
+        collector.onResponse("node1", 0, 1000);
+        collector.onRequestSent("node2");
+        collector.onResponse("node2", 0, 5000);
+        assertThat(collector.rank("node2"), greaterThan(collector.rank("node1")));
+
+        ClusterState previousState = newClusterStateBuilder().nodes(newNodesBuilder().put(newNode("node1")).put(newNode("node2"))).build();
+        ClusterState state = newClusterStateBuilder().nodes(newNodesBuilder().put(newNode("node1"))).build();
+        collector.clusterChanged(new ClusterChangedEvent("test", state, previousState));
+
+        // a node we know nothing about ranks as the fastest one
+        assertThat(collector.rank("node2"), equalTo(collector.rank("node1")));
+    }
+}
@@ -91,6 +91,54 @@ public class ClusterSerializationTests {
         assertThat(target.prettyPrint(), equalTo(source.prettyPrint()));
     }
 
+    @Test
+    public void testClusterStateDiffSerialization() throws Exception {
+        MetaData metaData = newMetaDataBuilder()
+                .put(newIndexMetaDataBuilder("test1").numberOfShards(5).numberOfReplicas(1))
+                .put(newIndexMetaDataBuilder("test2").numberOfShards(5).numberOfReplicas(1))
+                .build();
+
+        RoutingTable routingTable = routingTable()
+                .add(indexRoutingTable("test1").initializeEmpty(metaData.index("test1")))
+                .add(indexRoutingTable("test2").initializeEmpty(metaData.index("test2")))
+                .build();
+
+        DiscoveryNodes nodes = DiscoveryNodes.newNodesBuilder().put(newNode("node1")).put(newNode("node2")).put(newNode("node3")).localNodeId("node2").masterNodeId("node2").build();
+
+        ClusterState previousState = newClusterStateBuilder().nodes(nodes).metaData(metaData).routingTable(routingTable).version(1).build();
+
+        AllocationService strategy = new AllocationService();
+        previousState = newClusterStateBuilder().state(previousState).routingTable(strategy.reroute(previousState).routingTable()).build();
+
+        // the receiving node holds the previous state
+        ClusterState receivedState = ClusterState.Builder.fromBytes(ClusterState.Builder.toBytes(previousState), newNode("node1"));
+
+        metaData = newMetaDataBuilder().metaData(previousState.metaData())
+                .remove("test2")
+                .put(newIndexMetaDataBuilder("test3").numberOfShards(3).numberOfReplicas(1))
+                .build();
+        routingTable = routingTable().routingTable(previousState.routingTable())
+                .remove("test2")
+                .add(indexRoutingTable("test3").initializeEmpty(metaData.index("test3")))
+                .build();
+        ClusterState clusterState = newClusterStateBuilder().state(previousState).metaData(metaData).routingTable(routingTable).version(2).build();
+        clusterState = newClusterStateBuilder().state(clusterState).routingTable(strategy.reroute(clusterState).routingTable()).build();
+
+        BytesStreamOutput outStream = new BytesStreamOutput();
+        ClusterState.Builder.writeDiffTo(previousState, clusterState, outStream);
+        BytesStreamInput inStream = new BytesStreamInput(outStream.copiedByteArray(), false);
+        assertThat(ClusterState.Builder.readDiffFromVersion(inStream), equalTo(previousState.version()));
+        ClusterState diffedState = ClusterState.Builder.readDiffFrom(inStream, receivedState, newNode("node1"));
+
+        assertThat(diffedState.version(), equalTo(clusterState.version()));
+        assertThat(diffedState.metaData().indices().keySet(), equalTo(clusterState.metaData().indices().keySet()));
+        assertThat(diffedState.routingTable().prettyPrint(), equalTo(clusterState.routingTable().prettyPrint()));
+        assertThat(diffedState.nodes().localNodeId(), equalTo("node1"));
+        assertThat(diffedState.nodes().masterNodeId(), equalTo("node2"));
+        // unchanged index meta data is not sent again
+        assertThat(diffedState.metaData().index("test1") == receivedState.metaData().index("test1"), equalTo(true));
+    }
+
     private DiscoveryNode newNode(String nodeId) {
         return new DiscoveryNode(nodeId, DummyTransportAddress.INSTANCE);
     }
@@ -0,0 +1,115 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.index.cache.bloom;
+
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.common.bloom.BloomFilter;
+import org.elasticsearch.common.bloom.BloomFilterFactory;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.cache.bloom.SegmentBloomFilters;
+import org.elasticsearch.index.cache.bloom.simple.SimpleBloomCache;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.elasticsearch.common.lucene.DocumentBuilder.doc;
+import static org.elasticsearch.common.lucene.DocumentBuilder.field;
+import static org.elasticsearch.common.settings.ImmutableSettings.Builder.EMPTY_SETTINGS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ *
+ */
+public class SimpleBloomCacheTests {
+
+    @Test
+    public void testPersistedFilters() throws Exception {
+        Directory dir = new RAMDirectory();
+        IndexWriter indexWriter = new IndexWriter(dir, new IndexWriterConfig(Lucene.VERSION, Lucene.STANDARD_ANALYZER));
+        for (int i = 0; i < 100; i++) {
+            indexWriter.addDocument(doc().add(field("_uid", "type#" + i, Field.Store.NO, Field.Index.NOT_ANALYZED)).build());
+        }
+        indexWriter.commit();
+
+        IndexReader reader = IndexReader.open(indexWriter, true);
+        IndexReader segmentReader = reader.getSequentialSubReaders()[0];
+        SimpleBloomCache bloomCache = new SimpleBloomCache(new Index("test"), EMPTY_SETTINGS, null);
+        BloomFilter filter = bloomCache.filter(segmentReader, "_uid", false);
+        assertThat(isPresent(filter, "type#1"), equalTo(true));
+        assertThat(isPresent(filter, "type#1000"), equalTo(false));
+        assertThat(bloomFilterFiles(dir).size(), equalTo(1));
+
+        // replace the persisted filter with one that only holds a uid missing from the segment, so a filter
+        // read from the file can be told apart from one rebuilt from the segment terms
+        BloomFilter marker = BloomFilterFactory.getFilter(100, 15);
+        byte[] markerUid = "type#1000".getBytes("UTF8");
+        marker.add(markerUid, 0, markerUid.length);
+        SegmentBloomFilters.write(Lucene.getSegmentInfo((SegmentReader) segmentReader), "_uid", marker);
+
+        // a new cache uses the persisted filter, even after deletes
+        indexWriter.deleteDocuments(new Term("_uid", "type#1"));
+        IndexReader newReader = IndexReader.openIfChanged(reader, true);
+        reader.close();
+        reader = newReader;
+        SimpleBloomCache otherBloomCache = new SimpleBloomCache(new Index("test"), EMPTY_SETTINGS, null);
+        filter = otherBloomCache.filter(reader.getSequentialSubReaders()[0], "_uid", false);
+        assertThat(isPresent(filter, "type#1000"), equalTo(true));
+        assertThat(isPresent(filter, "type#2"), equalTo(false));
+
+        // filters of segments that were merged away are removed
+        for (int i = 100; i < 200; i++) {
+            indexWriter.addDocument(doc().add(field("_uid", "type#" + i, Field.Store.NO, Field.Index.NOT_ANALYZED)).build());
+        }
+        indexWriter.forceMerge(1);
+        indexWriter.commit();
+        SegmentBloomFilters.deleteUnused(dir);
+        assertThat(bloomFilterFiles(dir).size(), equalTo(0));
+
+        reader.close();
+        indexWriter.close();
+        bloomCache.close();
+        otherBloomCache.close();
+    }
+
+    private static boolean isPresent(BloomFilter filter, String uid) throws Exception {
+        byte[] bytes = uid.getBytes("UTF8");
+        return filter.isPresent(bytes, 0, bytes.length);
+    }
+
+    private static List<String> bloomFilterFiles(Directory dir) throws Exception {
+        List<String> files = new ArrayList<String>();
+        for (String file : dir.listAll()) {
+            if (SegmentBloomFilters.isBloomFilterFile(file)) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+}
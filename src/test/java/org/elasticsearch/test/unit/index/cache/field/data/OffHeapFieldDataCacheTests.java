@@ -0,0 +1,90 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.test.unit.index.cache.field.data;
+
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.ElasticSearchIllegalStateException;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.cache.field.data.offheap.OffHeapFieldDataCache;
+import org.elasticsearch.index.field.data.FieldData;
+import org.elasticsearch.index.field.data.FieldDataType;
+import org.elasticsearch.index.field.data.longs.LongFieldData;
+import org.testng.annotations.Test;
+
+import static org.elasticsearch.common.lucene.DocumentBuilder.doc;
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ *
+ */
+public class OffHeapFieldDataCacheTests {
+
+    @Test
+    public void testReleaseOnReaderFinished() throws Exception {
+        Directory dir = new RAMDirectory();
+        IndexWriter indexWriter = new IndexWriter(dir, new IndexWriterConfig(Lucene.VERSION, Lucene.STANDARD_ANALYZER));
+        for (int i = 0; i < 100; i++) {
+            indexWriter.addDocument(doc()
+                    .add(new NumericField("value").setLongValue(i))
+                    .add(new NumericField("other").setLongValue(i))
+                    .build());
+        }
+        IndexReader reader = IndexReader.open(indexWriter, true);
+
+        OffHeapFieldDataCache cache = new OffHeapFieldDataCache(new Index("test"), settingsBuilder().put("index.cache.field.max_size", 1).build());
+        FieldData value = cache.cache(FieldDataType.DefaultTypes.LONG, reader, "value");
+        FieldData other = cache.cache(FieldDataType.DefaultTypes.LONG, reader, "other");
+        assertThat(cache.evictions(), equalTo(1l));
+        assertThat(value.offHeapSizeInBytes(), greaterThan(0l));
+
+        // the evicted ordinals are kept (and accounted for) as long as a search may still read them
+        assertThat(cache.offHeapSizeInBytes(), equalTo(value.offHeapSizeInBytes() + other.offHeapSizeInBytes()));
+        assertThat(((LongFieldData) value).value(10), equalTo(10l));
+
+        // called by the reader once it is closed
+        cache.finished(reader);
+        assertThat(cache.offHeapSizeInBytes(), equalTo(0l));
+        try {
+            value.hasValue(10);
+            assert false : "expected the released field data to fail reads";
+        } catch (ElasticSearchIllegalStateException e) {
+            // all is well
+        }
+        try {
+            other.hasValue(10);
+            assert false : "expected the released field data to fail reads";
+        } catch (ElasticSearchIllegalStateException e) {
+            // all is well
+        }
+
+        cache.close();
+        indexWriter.close();
+    }
+}
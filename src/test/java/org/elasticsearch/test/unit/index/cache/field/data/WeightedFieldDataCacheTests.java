@@ -0,0 +1,142 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.test.unit.index.cache.field.data;
+
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.cache.field.data.FieldDataLoadingRejectedException;
+import org.elasticsearch.index.cache.field.data.weighted.WeightedFieldDataCache;
+import org.elasticsearch.index.field.data.FieldData;
+import org.elasticsearch.index.field.data.FieldDataType;
+import org.elasticsearch.indices.cache.field.data.IndicesFieldDataCache;
+import org.elasticsearch.node.settings.NodeSettingsService;
+import org.testng.annotations.Test;
+
+import static org.elasticsearch.common.lucene.DocumentBuilder.doc;
+import static org.elasticsearch.common.settings.ImmutableSettings.Builder.EMPTY_SETTINGS;
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ */
+public class WeightedFieldDataCacheTests {
+
+    @Test
+    public void testCacheAndClear() throws Exception {
+        IndexReader reader = buildReader();
+        WeightedFieldDataCache cache = buildCache("1mb");
+
+        FieldData fieldData = cache.cache(FieldDataType.DefaultTypes.LONG, reader, "value");
+        assertThat(cache.cache(FieldDataType.DefaultTypes.LONG, reader, "value"), sameInstance(fieldData));
+        assertThat(cache.sizeInBytes(), equalTo(fieldData.sizeInBytes()));
+        assertThat(cache.sizeInBytes("value"), equalTo(fieldData.sizeInBytes()));
+        assertThat(cache.loadedFields().containsKey("value"), equalTo(true));
+
+        cache.clear(reader);
+        assertThat(cache.sizeInBytes(), equalTo(0l));
+        assertThat(cache.cache(FieldDataType.DefaultTypes.LONG, reader, "value"), not(sameInstance(fieldData)));
+
+        cache.clear("value");
+        assertThat(cache.sizeInBytes(), equalTo(0l));
+        assertThat(cache.loadedFields().isEmpty(), equalTo(true));
+        assertThat(cache.evictions(), equalTo(0l));
+        cache.close();
+    }
+
+    @Test
+    public void testRejectFieldDataLargerThanCache() throws Exception {
+        IndexReader reader = buildReader();
+        WeightedFieldDataCache cache = buildCache("100b");
+
+        try {
+            cache.cache(FieldDataType.DefaultTypes.LONG, reader, "value");
+            assert false : "loading should have been rejected";
+        } catch (FieldDataLoadingRejectedException e) {
+            // all is well
+        }
+        assertThat(cache.rejections(), equalTo(1l));
+        assertThat(cache.sizeInBytes(), equalTo(0l));
+        cache.close();
+    }
+
+    @Test
+    public void testRejectWhenLoadsInProgressUseTheBudget() throws Exception {
+        IndexReader reader = buildReader();
+        Settings settings = settingsBuilder().put("indices.cache.field.size", "1mb").build();
+        IndicesFieldDataCache indicesFieldDataCache = new IndicesFieldDataCache(settings, new NodeSettingsService(settings));
+        WeightedFieldDataCache cache = new WeightedFieldDataCache(new Index("test"), EMPTY_SETTINGS, indicesFieldDataCache);
+
+        // another load in progress leaves less than the ordinals of the 100 docs
+        long reserved = indicesFieldDataCache.sizeInBytes() - 100;
+        assertThat(indicesFieldDataCache.reserve(reserved), equalTo(true));
+        try {
+            cache.cache(FieldDataType.DefaultTypes.LONG, reader, "value");
+            assert false : "loading should have been rejected";
+        } catch (FieldDataLoadingRejectedException e) {
+            assertThat(e.getMessage(), containsString("indices.cache.field.size"));
+        }
+        assertThat(cache.rejections(), equalTo(1l));
+        assertThat(cache.sizeInBytes(), equalTo(0l));
+
+        indicesFieldDataCache.release(reserved);
+        FieldData fieldData = cache.cache(FieldDataType.DefaultTypes.LONG, reader, "value");
+        assertThat(cache.sizeInBytes(), equalTo(fieldData.sizeInBytes()));
+        // the reservation is released once loaded
+        assertThat(indicesFieldDataCache.remainingInBytes(), equalTo(indicesFieldDataCache.sizeInBytes()));
+        cache.close();
+    }
+
+    @Test
+    public void testConcurrencyLevelLimitsEntrySize() throws Exception {
+        Settings settings = settingsBuilder().put("indices.cache.field.size", "1mb").build();
+        assertThat(new IndicesFieldDataCache(settings, new NodeSettingsService(settings)).maxEntrySizeInBytes(), equalTo(1024l * 1024));
+
+        settings = settingsBuilder().put(settings).put("indices.cache.field.concurrency_level", 4).build();
+        assertThat(new IndicesFieldDataCache(settings, new NodeSettingsService(settings)).maxEntrySizeInBytes(), equalTo(1024l * 1024 / 4));
+    }
+
+    private WeightedFieldDataCache buildCache(String size) {
+        Settings settings = settingsBuilder().put("indices.cache.field.size", size).build();
+        IndicesFieldDataCache indicesFieldDataCache = new IndicesFieldDataCache(settings, new NodeSettingsService(settings));
+        return new WeightedFieldDataCache(new Index("test"), EMPTY_SETTINGS, indicesFieldDataCache);
+    }
+
+    private IndexReader buildReader() throws Exception {
+        Directory dir = new RAMDirectory();
+        IndexWriter indexWriter = new IndexWriter(dir, new IndexWriterConfig(Lucene.VERSION, Lucene.STANDARD_ANALYZER));
+        for (int i = 0; i < 100; i++) {
+            indexWriter.addDocument(doc()
+                    .add(new NumericField("value").setLongValue(i))
+                    .build());
+        }
+        indexWriter.close();
+        return IndexReader.open(dir, true);
+    }
+}
@@ -555,6 +555,38 @@ public abstract class AbstractSimpleEngineTests {
         engine.close();
     }
 
+    @Test
+    public void testVersionMapManyDocs() {
+        assertThat(engine.versionMapSizeInBytes(), greaterThan(0l));
+        long initialSize = engine.versionMapSizeInBytes();
+        for (int i = 0; i < 1000; i++) {
+            ParsedDocument doc = new ParsedDocument(Integer.toString(i), Integer.toString(i), "test", null, -1, -1, doc().add(uidField(Integer.toString(i))).build(), Lucene.STANDARD_ANALYZER, B_1, false);
+            engine.index(new Engine.Index(null, newUid(Integer.toString(i)), doc));
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            ParsedDocument doc = new ParsedDocument(Integer.toString(i), Integer.toString(i), "test", null, -1, -1, doc().add(uidField(Integer.toString(i))).build(), Lucene.STANDARD_ANALYZER, B_1, false);
+            Engine.Index index = new Engine.Index(null, newUid(Integer.toString(i)), doc);
+            engine.index(index);
+            assertThat(index.version(), equalTo(2l));
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            Engine.Delete delete = new Engine.Delete("test", Integer.toString(i), newUid(Integer.toString(i)));
+            engine.delete(delete);
+            assertThat(delete.notFound(), equalTo(false));
+        }
+        assertThat(engine.versionMapSizeInBytes(), greaterThan(initialSize));
+
+        for (int i = 0; i < 1000; i++) {
+            Engine.GetResult getResult = engine.get(new Engine.Get(true, newUid(Integer.toString(i))).loadSource(false));
+            if (i % 3 == 0) {
+                assertThat(getResult.exists(), equalTo(false));
+            } else {
+                assertThat(getResult.exists(), equalTo(true));
+                assertThat(getResult.version(), equalTo(i % 2 == 0 ? 2l : 1l));
+            }
+        }
+    }
+
     @Test
     public void testVersioningNewCreate() {
         ParsedDocument doc = new ParsedDocument("1", "1", "test", null, -1, -1, doc().add(uidField("1")).build(), Lucene.STANDARD_ANALYZER, B_1, false);
@@ -19,18 +19,50 @@
 
 package org.elasticsearch.test.unit.index.engine.robin;
 
+import org.apache.lucene.index.IndexReader;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.analysis.AnalysisService;
+import org.elasticsearch.index.cache.bloom.SegmentBloomFilters;
 import org.elasticsearch.index.cache.bloom.none.NoneBloomCache;
+import org.elasticsearch.index.cache.bloom.simple.SimpleBloomCache;
+import org.elasticsearch.index.cache.field.data.FieldDataWarmer;
+import org.elasticsearch.index.cache.field.data.resident.ResidentFieldDataCache;
+import org.elasticsearch.index.field.data.FieldData;
+import org.elasticsearch.index.field.data.FieldDataType;
+import org.elasticsearch.index.mapper.ParsedDocument;
+import org.elasticsearch.index.mapper.internal.UidFieldMapper;
 import org.elasticsearch.test.unit.index.engine.AbstractSimpleEngineTests;
 import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.engine.Segment;
+import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.elasticsearch.index.engine.robin.RobinEngine;
 import org.elasticsearch.index.settings.IndexSettingsService;
 import org.elasticsearch.index.similarity.SimilarityService;
 import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.index.translog.fs.FsTranslog;
 import org.elasticsearch.threadpool.ThreadPool;
+import org.testng.annotations.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.elasticsearch.common.lucene.DocumentBuilder.doc;
+import static org.elasticsearch.common.lucene.DocumentBuilder.field;
+import static org.elasticsearch.common.lucene.DocumentBuilder.uidField;
 import static org.elasticsearch.common.settings.ImmutableSettings.Builder.EMPTY_SETTINGS;
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.elasticsearch.index.engine.Engine.Operation.Origin.REPLICA;
+import static org.elasticsearch.test.unit.index.engine.EngineSearcherTotalHitsMatcher.engineSearcherTotalHits;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
 
 /**
  *
@@ -41,4 +73,191 @@ public class SimpleRobinEngineTests extends AbstractSimpleEngineTests {
         return new RobinEngine(shardId, EMPTY_SETTINGS, new ThreadPool(), new IndexSettingsService(shardId.index(), EMPTY_SETTINGS), store, createSnapshotDeletionPolicy(), translog, createMergePolicy(), createMergeScheduler(),
                 new AnalysisService(shardId.index()), new SimilarityService(shardId.index()), new NoneBloomCache(shardId.index()));
     }
+
+    @Test
+    public void testFieldDataWarmedBeforeRefreshedReaderIsExposed() throws Exception {
+        ThreadPool threadPool = new ThreadPool();
+        RecordingFieldDataCache fieldDataCache = new RecordingFieldDataCache();
+        ((RobinEngine) engine).setFieldDataWarmer(new FieldDataWarmer(shardId.index(), EMPTY_SETTINGS, threadPool, fieldDataCache, null));
+
+        ParsedDocument doc = new ParsedDocument("1", "1", "test", null, -1, -1, doc().add(uidField("1")).add(field("value", "test1")).build(), Lucene.STANDARD_ANALYZER, B_1, false);
+        engine.create(new Engine.Create(null, newUid("1"), doc));
+        engine.refresh(new Engine.Refresh(true));
+
+        // no field data was loaded yet, load it as a sorting search would
+        Engine.Searcher searcher = engine.searcher();
+        assertThat(searcher.reader().getSequentialSubReaders().length, equalTo(1));
+        fieldDataCache.cache(FieldDataType.DefaultTypes.STRING, searcher.reader().getSequentialSubReaders()[0], "value");
+        searcher.release();
+        assertThat(fieldDataCache.loadedSegments.size(), equalTo(1));
+
+        doc = new ParsedDocument("2", "2", "test", null, -1, -1, doc().add(uidField("2")).add(field("value", "test2")).build(), Lucene.STANDARD_ANALYZER, B_2, false);
+        engine.create(new Engine.Create(null, newUid("2"), doc));
+        engine.refresh(new Engine.Refresh(true));
+
+        // the new segment was warmed by the refresh, before the reader was handed out
+        searcher = engine.searcher();
+        IndexReader[] segments = searcher.reader().getSequentialSubReaders();
+        assertThat(segments.length, equalTo(2));
+        for (IndexReader segment : segments) {
+            assertThat(fieldDataCache.loadedSegments.contains(segment.getCoreCacheKey()), equalTo(true));
+        }
+        searcher.release();
+        assertThat(fieldDataCache.loadedSegments.size(), equalTo(2));
+
+        ((RobinEngine) engine).setFieldDataWarmer(null);
+        fieldDataCache.close();
+        threadPool.shutdownNow();
+    }
+
+    @Test
+    public void testAutoGeneratedIdCreate() throws Exception {
+        // primary creates of docs with auto generated ids skip the version map, so realtime get only sees them once refreshed
+        ParsedDocument doc = new ParsedDocument("1", "1", "test", null, -1, -1, doc().add(uidField("1")).add(field("value", "test")).build(), Lucene.STANDARD_ANALYZER, B_1, false);
+        Engine.Create create = new Engine.Create(null, newUid("1"), doc).autoGeneratedId(true);
+        engine.create(create);
+        assertThat(create.version(), equalTo(1l));
+        Engine.GetResult getResult = engine.get(new Engine.Get(true, newUid("1")));
+        assertThat(getResult.exists(), equalTo(false));
+        getResult.release();
+        engine.refresh(new Engine.Refresh(true));
+        getResult = engine.get(new Engine.Get(true, newUid("1")));
+        assertThat(getResult.exists(), equalTo(true));
+        getResult.release();
+
+        // replicas still check versions, so the same operation is not applied twice
+        doc = new ParsedDocument("1", "1", "test", null, -1, -1, doc().add(uidField("1")).add(field("value", "test")).build(), Lucene.STANDARD_ANALYZER, B_1, false);
+        replicaEngine.create(new Engine.Create(null, newUid("1"), doc).autoGeneratedId(true).version(1).origin(REPLICA));
+        try {
+            replicaEngine.create(new Engine.Create(null, newUid("1"), doc).autoGeneratedId(true).version(1).origin(REPLICA));
+            assert false;
+        } catch (VersionConflictEngineException e) {
+            // all is well
+        }
+        replicaEngine.refresh(new Engine.Refresh(true));
+        Engine.Searcher searcher = replicaEngine.searcher();
+        assertThat(searcher, engineSearcherTotalHits(1));
+        searcher.release();
+
+        // a retried primary create might be a duplicate of a doc not refreshed yet, it replaces it instead of adding another one
+        doc = new ParsedDocument("2", "2", "test", null, -1, -1, doc().add(uidField("2")).add(field("value", "test")).build(), Lucene.STANDARD_ANALYZER, B_2, false);
+        engine.create(new Engine.Create(null, newUid("2"), doc).autoGeneratedId(true));
+        create = new Engine.Create(null, newUid("2"), doc).autoGeneratedId(true).canHaveDuplicates(true);
+        engine.create(create);
+        assertThat(create.version(), equalTo(1l));
+        engine.refresh(new Engine.Refresh(true));
+        searcher = engine.searcher();
+        assertThat(searcher, engineSearcherTotalHits(2));
+        searcher.release();
+    }
+
+    @Test
+    public void testNoOrphanBloomFiltersAfterOptimize() throws Exception {
+        ThreadPool threadPool = new ThreadPool();
+        Settings settings = settingsBuilder().put("index.engine.robin.async_load_bloom", false).build();
+        Store store = createStore();
+        store.deleteContent();
+        SimpleBloomCache bloomCache = new SimpleBloomCache(shardId.index(), EMPTY_SETTINGS, threadPool);
+        Engine engine = new RobinEngine(shardId, settings, threadPool, new IndexSettingsService(shardId.index(), settings), store, createSnapshotDeletionPolicy(),
+                new FsTranslog(shardId, EMPTY_SETTINGS, new File("work/fs-translog/bloom")), createMergePolicy(), createMergeScheduler(),
+                new AnalysisService(shardId.index()), new SimilarityService(shardId.index()), bloomCache);
+        engine.start();
+
+        // each flush commits a new segment, which bloom filter gets persisted
+        for (int i = 0; i < 3; i++) {
+            String id = Integer.toString(i);
+            ParsedDocument doc = new ParsedDocument(id, id, "test", null, -1, -1, doc().add(uidField(id)).add(field("value", "test")).build(), Lucene.STANDARD_ANALYZER, B_1, false);
+            engine.create(new Engine.Create(null, newUid(id), doc));
+            engine.flush(new Engine.Flush());
+        }
+        assertThat(engine.segments().size(), equalTo(3));
+        assertThat(bloomFilterFiles(store).size(), equalTo(3));
+
+        engine.optimize(new Engine.Optimize().maxNumSegments(1).waitForMerge(true).flush(true));
+
+        // only the filter of the merged segment remains
+        List<Segment> segments = engine.segments();
+        assertThat(segments.size(), equalTo(1));
+        Set<String> files = bloomFilterFiles(store);
+        assertThat(files.size(), equalTo(1));
+        assertThat(files.contains(SegmentBloomFilters.fileName(segments.get(0).name(), UidFieldMapper.NAME)), equalTo(true));
+
+        engine.close();
+        bloomCache.close();
+        store.close();
+        threadPool.shutdownNow();
+    }
+
+    private static Set<String> bloomFilterFiles(Store store) throws IOException {
+        Set<String> files = new HashSet<String>();
+        for (String file : store.directory().listAll()) {
+            if (SegmentBloomFilters.isBloomFilterFile(file)) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    @Test
+    public void testFieldDataWarmUpTimeoutExposesReader() throws Exception {
+        ThreadPool threadPool = new ThreadPool();
+        RecordingFieldDataCache fieldDataCache = new RecordingFieldDataCache();
+        FieldDataWarmer warmer = new FieldDataWarmer(shardId.index(), settingsBuilder().put("index.cache.field.warmer.timeout", "100ms").build(), threadPool, fieldDataCache, null);
+        ((RobinEngine) engine).setFieldDataWarmer(warmer);
+
+        ParsedDocument doc = new ParsedDocument("1", "1", "test", null, -1, -1, doc().add(uidField("1")).add(field("value", "test1")).build(), Lucene.STANDARD_ANALYZER, B_1, false);
+        engine.create(new Engine.Create(null, newUid("1"), doc));
+        engine.refresh(new Engine.Refresh(true));
+        Engine.Searcher searcher = engine.searcher();
+        fieldDataCache.cache(FieldDataType.DefaultTypes.STRING, searcher.reader().getSequentialSubReaders()[0], "value");
+        searcher.release();
+
+        // the loading of the next segment blocks, the refresh must not wait for it
+        fieldDataCache.block = new CountDownLatch(1);
+        doc = new ParsedDocument("2", "2", "test", null, -1, -1, doc().add(uidField("2")).add(field("value", "test2")).build(), Lucene.STANDARD_ANALYZER, B_2, false);
+        engine.create(new Engine.Create(null, newUid("2"), doc));
+        engine.refresh(new Engine.Refresh(true));
+        assertThat(warmer.timeouts(), equalTo(1l));
+
+        searcher = engine.searcher();
+        assertThat(searcher.reader().getSequentialSubReaders().length, equalTo(2));
+        searcher.release();
+
+        // and the loading completes in the background
+        fieldDataCache.block.countDown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (fieldDataCache.loadedSegments.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(fieldDataCache.loadedSegments.size(), equalTo(2));
+
+        ((RobinEngine) engine).setFieldDataWarmer(null);
+        fieldDataCache.close();
+        threadPool.shutdownNow();
+    }
+
+    private class RecordingFieldDataCache extends ResidentFieldDataCache {
+
+        final Set<Object> loadedSegments = ConcurrentCollections.newConcurrentSet();
+
+        volatile CountDownLatch block;
+
+        RecordingFieldDataCache() {
+            super(shardId.index(), EMPTY_SETTINGS, new IndexSettingsService(shardId.index(), EMPTY_SETTINGS));
+        }
+
+        @Override
+        protected FieldData loadFieldData(FieldDataType type, IndexReader reader, String fieldName) throws IOException {
+            CountDownLatch block = this.block;
+            if (block != null) {
+                try {
+                    block.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            loadedSegments.add(reader.getCoreCacheKey());
+            return super.loadFieldData(type, reader, fieldName);
+        }
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.index.field.data.longs;
+
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.index.field.data.longs.LongFieldData;
+import org.elasticsearch.index.field.data.longs.OffHeapSingleValueLongFieldData;
+import org.elasticsearch.index.field.data.longs.SingleValueLongFieldData;
+import org.testng.annotations.Test;
+
+import static org.elasticsearch.common.lucene.DocumentBuilder.doc;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ *
+ */
+public class OffHeapLongFieldDataTests {
+
+    @Test
+    public void offHeapLongFieldDataTests() throws Exception {
+        Directory dir = new RAMDirectory();
+        IndexWriter indexWriter = new IndexWriter(dir, new IndexWriterConfig(Lucene.VERSION, Lucene.STANDARD_ANALYZER));
+
+        indexWriter.addDocument(doc()
+                .add(new NumericField("svalue").setLongValue(4))
+                .build());
+
+        indexWriter.addDocument(doc()
+                .add(new NumericField("svalue").setLongValue(3))
+                .build());
+
+        indexWriter.addDocument(doc()
+                .add(new NumericField("other").setLongValue(7))
+                .build());
+
+        indexWriter.addDocument(doc()
+                .add(new NumericField("svalue").setLongValue(4))
+                .build());
+
+        IndexReader reader = IndexReader.open(indexWriter, true);
+
+        SingleValueLongFieldData heapFieldData = (SingleValueLongFieldData) LongFieldData.load(reader, "svalue");
+        OffHeapSingleValueLongFieldData fieldData = new OffHeapSingleValueLongFieldData(heapFieldData);
+
+        assertThat(fieldData.fieldName(), equalTo("svalue"));
+        assertThat(fieldData.multiValued(), equalTo(false));
+        assertThat(fieldData.offHeapSizeInBytes(), greaterThan(0l));
+        assertThat(heapFieldData.offHeapSizeInBytes(), equalTo(0l));
+        // only the values are left on the heap
+        assertThat(fieldData.sizeInBytes(), lessThan(heapFieldData.sizeInBytes()));
+
+        for (int docId = 0; docId < reader.maxDoc(); docId++) {
+            assertThat(fieldData.hasValue(docId), equalTo(heapFieldData.hasValue(docId)));
+            assertThat(fieldData.value(docId), equalTo(heapFieldData.value(docId)));
+            assertThat(fieldData.values(docId).length, equalTo(heapFieldData.values(docId).length));
+        }
+
+        assertThat(fieldData.value(0), equalTo(4l));
+        assertThat(fieldData.value(1), equalTo(3l));
+        assertThat(fieldData.hasValue(2), equalTo(false));
+        assertThat(fieldData.value(3), equalTo(4l));
+
+        indexWriter.close();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.index.field.data.strings;
+
+import org.apache.lucene.util.UnicodeUtil;
+import org.elasticsearch.common.Unicode;
+import org.elasticsearch.index.field.data.strings.StringTermDictionary;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ *
+ */
+public class StringTermDictionaryTests {
+
+    @Test
+    public void testDictionary() {
+        // sorted in UTF-16 order, the surrogate pair sorts before U+E000
+        String[] terms = new String[]{"aaa", "aab", "b", "\u00e9t\u00e9", "\u4e2d", "\ud83d\ude00", "\ue000"};
+        String[] sorted = Arrays.copyOf(terms, terms.length);
+        Arrays.sort(sorted);
+        assertThat(Arrays.equals(terms, sorted), equalTo(true));
+
+        StringTermDictionary.Builder builder = new StringTermDictionary.Builder();
+        for (String term : terms) {
+            builder.add(term);
+        }
+        StringTermDictionary dictionary = builder.build();
+
+        assertThat(dictionary.size(), equalTo(terms.length + 1));
+        assertThat(dictionary.get(0), nullValue());
+        for (int i = 0; i < terms.length; i++) {
+            assertThat(dictionary.get(i + 1), equalTo(terms[i]));
+        }
+        for (int i = 1; i < dictionary.size() - 1; i++) {
+            assertThat(dictionary.compare(i, dictionary, i + 1), lessThan(0));
+            assertThat(dictionary.compare(i, dictionary, i), equalTo(0));
+        }
+        assertThat(dictionary.compare(0, dictionary, 1), lessThan(0));
+
+        for (int i = 0; i < terms.length; i++) {
+            UnicodeUtil.UTF8Result utf8 = Unicode.fromStringAsUtf8(terms[i]);
+            assertThat(dictionary.binarySearch(utf8.result, 0, utf8.length), equalTo(i + 1));
+        }
+        UnicodeUtil.UTF8Result utf8 = Unicode.fromStringAsUtf8("aaab");
+        assertThat(dictionary.binarySearch(utf8.result, 0, utf8.length), equalTo(-3));
+    }
+}
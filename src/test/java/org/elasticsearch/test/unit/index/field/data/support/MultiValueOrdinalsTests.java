@@ -0,0 +1,115 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.index.field.data.support;
+
+import org.elasticsearch.index.field.data.FieldData;
+import org.elasticsearch.index.field.data.support.MultiValueOrdinals;
+import org.elasticsearch.index.field.data.support.PagedPackedInts;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ *
+ */
+public class MultiValueOrdinalsTests {
+
+    @Test
+    public void testPagedPackedInts() {
+        for (int bits = 1; bits <= 32; bits++) {
+            PagedPackedInts packed = new PagedPackedInts(bits);
+            long mask = (1L << bits) - 1;
+            int count = 10000;
+            for (int i = 0; i < count; i++) {
+                assertThat(packed.add((int) ((i * 31L) & mask)), equalTo(i));
+            }
+            assertThat(packed.size(), equalTo(count));
+            for (int i = 0; i < count; i++) {
+                assertThat(packed.get(i), equalTo((int) ((i * 31L) & mask)));
+            }
+        }
+        assertThat(PagedPackedInts.bitsRequired(0), equalTo(1));
+        assertThat(PagedPackedInts.bitsRequired(1), equalTo(1));
+        assertThat(PagedPackedInts.bitsRequired(255), equalTo(8));
+        assertThat(PagedPackedInts.bitsRequired(256), equalTo(9));
+    }
+
+    @Test
+    public void testSingleValued() {
+        MultiValueOrdinals.Builder builder = new MultiValueOrdinals.Builder(4);
+        builder.addOrdinal(0, 1);
+        builder.addOrdinal(2, 2);
+        assertThat(builder.isMultiValued(), equalTo(false));
+        int[] ordinals = builder.singleValueOrdinals();
+        assertThat(ordinals[0], equalTo(1));
+        assertThat(ordinals[1], equalTo(0));
+        assertThat(ordinals[2], equalTo(2));
+        assertThat(ordinals[3], equalTo(0));
+    }
+
+    @Test
+    public void testMultiValued() {
+        int maxDoc = 5000;
+        int numTerms = 100;
+        MultiValueOrdinals.Builder builder = new MultiValueOrdinals.Builder(maxDoc);
+        // terms are visited in order, doc i has the terms 1..(i % numTerms), doc 0 has none
+        for (int ord = 1; ord < numTerms; ord++) {
+            for (int docId = 0; docId < maxDoc; docId++) {
+                if (ord <= docId % numTerms) {
+                    builder.addOrdinal(docId, ord);
+                }
+            }
+        }
+        assertThat(builder.isMultiValued(), equalTo(true));
+        MultiValueOrdinals ordinals = builder.build();
+
+        for (int docId = 0; docId < maxDoc; docId++) {
+            int expected = docId % numTerms;
+            assertThat(ordinals.hasValue(docId), equalTo(expected > 0));
+            assertThat(ordinals.numOrdinals(docId), equalTo(expected));
+            assertThat(ordinals.firstOrdinal(docId), equalTo(expected > 0 ? 1 : 0));
+            for (int i = 0; i < expected; i++) {
+                assertThat(ordinals.ordinal(docId, i), equalTo(i + 1));
+            }
+        }
+
+        final List<Integer> collected = new ArrayList<Integer>();
+        FieldData.OrdinalInDocProc proc = new FieldData.OrdinalInDocProc() {
+            @Override
+            public void onOrdinal(int docId, int ordinal) {
+                collected.add(ordinal);
+            }
+        };
+        ordinals.forEachOrdinalInDoc(0, proc);
+        assertThat(collected.size(), equalTo(1));
+        assertThat(collected.get(0), equalTo(0));
+
+        collected.clear();
+        ordinals.forEachOrdinalInDoc(3, proc);
+        assertThat(collected.size(), equalTo(3));
+        assertThat(collected.get(0), equalTo(1));
+        assertThat(collected.get(1), equalTo(2));
+        assertThat(collected.get(2), equalTo(3));
+    }
+}
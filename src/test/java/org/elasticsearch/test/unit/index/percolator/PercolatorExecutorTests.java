@@ -41,10 +41,17 @@ import org.elasticsearch.index.settings.IndexSettingsModule;
 import org.elasticsearch.index.similarity.SimilarityModule;
 import org.elasticsearch.indices.query.IndicesQueriesModule;
 import org.elasticsearch.script.ScriptModule;
+import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.threadpool.ThreadPoolModule;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.elasticsearch.index.query.QueryBuilders.termQuery;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -62,8 +69,12 @@ public class PercolatorExecutorTests {
         Settings settings = ImmutableSettings.settingsBuilder()
                 .put("index.cache.filter.type", "none")
                 .build();
+        percolatorExecutor = buildInjector(settings).getInstance(PercolatorExecutor.class);
+    }
+
+    private Injector buildInjector(Settings settings) {
         Index index = new Index("test");
-        Injector injector = new ModulesBuilder().add(
+        return new ModulesBuilder().add(
                 new SettingsModule(settings),
                 new ThreadPoolModule(settings),
                 new ScriptModule(settings),
@@ -84,8 +95,6 @@ public class PercolatorExecutorTests {
                     }
                 }
         ).createInjector();
-
-        percolatorExecutor = injector.getInstance(PercolatorExecutor.class);
     }
 
     @Test
@@ -129,4 +138,111 @@ public class PercolatorExecutorTests {
         assertThat(percolate.matches(), hasSize(1));
         assertThat(percolate.matches(), hasItems("test1"));
     }
+
+    @Test
+    public void testMultiPercolator() throws Exception {
+        percolatorExecutor.addQuery("multi1", termQuery("field3", "value1"));
+        percolatorExecutor.addQuery("multi2", termQuery("field3", "value2"));
+
+        List<PercolatorExecutor.SourceRequest> requests = new ArrayList<PercolatorExecutor.SourceRequest>();
+        requests.add(new PercolatorExecutor.SourceRequest("type1", XContentFactory.jsonBuilder().startObject().startObject("doc")
+                .field("field3", "value1").endObject().endObject().copiedBytes()));
+        requests.add(new PercolatorExecutor.SourceRequest("type1", XContentFactory.jsonBuilder().startObject().startObject("doc")
+                .field("field3", "value2").endObject().endObject().copiedBytes()));
+        requests.add(new PercolatorExecutor.SourceRequest("type1", XContentFactory.jsonBuilder().startObject().startObject("doc")
+                .field("field3", "value3").endObject().endObject().copiedBytes()));
+        requests.add(new PercolatorExecutor.SourceRequest("type1", XContentFactory.jsonBuilder().startObject().startObject("doc")
+                .array("field3", "value1", "value2").endObject().endObject().copiedBytes()));
+
+        List<PercolatorExecutor.Response> responses = percolatorExecutor.percolate(requests);
+        assertThat(responses, hasSize(4));
+        assertThat(responses.get(0).matches(), hasSize(1));
+        assertThat(responses.get(0).matches(), hasItem("multi1"));
+        assertThat(responses.get(1).matches(), hasSize(1));
+        assertThat(responses.get(1).matches(), hasItem("multi2"));
+        assertThat(responses.get(2).matches(), hasSize(0));
+        assertThat(responses.get(3).matches(), hasSize(2));
+        assertThat(responses.get(3).matches(), hasItems("multi1", "multi2"));
+
+        percolatorExecutor.removeQuery("multi1");
+        percolatorExecutor.removeQuery("multi2");
+    }
+
+    @Test
+    public void testMultiPercolatorMergedSegments() throws Exception {
+        // flush every couple of docs, so the batch is indexed in many segments that get merged
+        Settings settings = ImmutableSettings.settingsBuilder()
+                .put("index.cache.filter.type", "none")
+                .put("index.percolator.batch_max_buffered_docs", 2)
+                .build();
+        PercolatorExecutor executor = buildInjector(settings).getInstance(PercolatorExecutor.class);
+        for (int i = 0; i < 3; i++) {
+            executor.addQuery("merged" + i, termQuery("field5", "value" + i));
+        }
+
+        List<PercolatorExecutor.SourceRequest> requests = new ArrayList<PercolatorExecutor.SourceRequest>();
+        for (int i = 0; i < 200; i++) {
+            requests.add(new PercolatorExecutor.SourceRequest("type1", XContentFactory.jsonBuilder().startObject().startObject("doc")
+                    .field("field5", "value" + (i % 3)).endObject().endObject().copiedBytes()));
+        }
+
+        List<PercolatorExecutor.Response> responses = executor.percolate(requests);
+        assertThat(responses, hasSize(200));
+        for (int i = 0; i < responses.size(); i++) {
+            assertThat(responses.get(i).matches(), hasSize(1));
+            assertThat(responses.get(i).matches(), hasItem("merged" + (i % 3)));
+        }
+    }
+
+    @Test
+    public void testParallelPercolator() throws Exception {
+        // a single percolate thread with a tiny queue, the percolation runs on that thread, so partitions
+        // can't be executed by the pool and have to be executed inline
+        Settings settings = ImmutableSettings.settingsBuilder()
+                .put("index.cache.filter.type", "none")
+                .put("index.percolator.parallelism", 4)
+                .put("index.percolator.min_queries_per_partition", 1)
+                .put("threadpool.percolate.type", "fixed")
+                .put("threadpool.percolate.size", 1)
+                .put("threadpool.percolate.queue_size", 1)
+                .build();
+        Injector injector = buildInjector(settings);
+        final PercolatorExecutor parallelExecutor = injector.getInstance(PercolatorExecutor.class);
+        ThreadPool threadPool = injector.getInstance(ThreadPool.class);
+
+        for (int i = 0; i < 20; i++) {
+            parallelExecutor.addQuery("parallel" + i, termQuery("field4", "value" + (i % 2)));
+            percolatorExecutor.addQuery("parallel" + i, termQuery("field4", "value" + (i % 2)));
+        }
+        final byte[] source = XContentFactory.jsonBuilder().startObject().startObject("doc")
+                .field("field4", "value0").endObject().endObject().copiedBytes();
+
+        final AtomicReference<PercolatorExecutor.Response> response = new AtomicReference<PercolatorExecutor.Response>();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        threadPool.executor(ThreadPool.Names.PERCOLATE).execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    response.set(parallelExecutor.percolate(new PercolatorExecutor.SourceRequest("type1", source)));
+                } catch (Throwable e) {
+                    failure.set(e);
+                } finally {
+                    latch.countDown();
+                }
+            }
+        });
+        assertThat(latch.await(10, TimeUnit.SECONDS), equalTo(true));
+        assertThat(failure.get(), nullValue());
+        assertThat(response.get().matches(), hasSize(10));
+
+        // same matches, in the same order, as when executed sequentially
+        PercolatorExecutor.Response sequential = percolatorExecutor.percolate(new PercolatorExecutor.SourceRequest("type1", source));
+        assertThat(response.get().matches(), equalTo(sequential.matches()));
+
+        for (int i = 0; i < 20; i++) {
+            percolatorExecutor.removeQuery("parallel" + i);
+        }
+        threadPool.shutdownNow();
+    }
 }
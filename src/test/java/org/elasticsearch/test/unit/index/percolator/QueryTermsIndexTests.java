@@ -0,0 +1,102 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.test.unit.index.percolator;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.memory.CustomMemoryIndex;
+import org.apache.lucene.search.*;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.index.percolator.QueryTermsIndex;
+import org.testng.annotations.Test;
+
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ */
+public class QueryTermsIndexTests {
+
+    @Test
+    public void testExtractTerms() {
+        assertThat(QueryTermsIndex.extractTerms(new TermQuery(new Term("field", "value"))), contains(new Term("field", "value")));
+        assertThat(QueryTermsIndex.extractTerms(new MatchAllDocsQuery()), nullValue());
+
+        BooleanQuery must = new BooleanQuery();
+        must.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+        must.add(new TermQuery(new Term("field", "value1")), BooleanClause.Occur.MUST);
+        must.add(new TermQuery(new Term("field", "value2")), BooleanClause.Occur.MUST_NOT);
+        assertThat(QueryTermsIndex.extractTerms(must), contains(new Term("field", "value1")));
+
+        BooleanQuery should = new BooleanQuery();
+        should.add(new TermQuery(new Term("field", "value1")), BooleanClause.Occur.SHOULD);
+        should.add(new TermQuery(new Term("field", "value2")), BooleanClause.Occur.SHOULD);
+        assertThat(QueryTermsIndex.extractTerms(should), containsInAnyOrder(new Term("field", "value1"), new Term("field", "value2")));
+
+        should.add(new MatchAllDocsQuery(), BooleanClause.Occur.SHOULD);
+        assertThat(QueryTermsIndex.extractTerms(should), nullValue());
+
+        BooleanQuery mustNot = new BooleanQuery();
+        mustNot.add(new TermQuery(new Term("field", "value1")), BooleanClause.Occur.MUST_NOT);
+        assertThat(QueryTermsIndex.extractTerms(mustNot), nullValue());
+
+        PhraseQuery phrase = new PhraseQuery();
+        phrase.add(new Term("field", "a"));
+        phrase.add(new Term("field", "longer"));
+        assertThat(QueryTermsIndex.extractTerms(phrase), contains(new Term("field", "longer")));
+    }
+
+    @Test
+    public void testCandidates() throws Exception {
+        BooleanQuery should = new BooleanQuery();
+        should.add(new TermQuery(new Term("field", "value2")), BooleanClause.Occur.SHOULD);
+        should.add(new TermQuery(new Term("field", "value3")), BooleanClause.Occur.SHOULD);
+
+        QueryTermsIndex index = QueryTermsIndex.EMPTY.add(ImmutableMap.<String, Query>of(
+                "term1", new TermQuery(new Term("field", "value1")),
+                "should", should,
+                "all", new MatchAllDocsQuery(),
+                "other", new TermQuery(new Term("other", "value1"))
+        ));
+
+        assertThat(candidates(index, "value1"), containsInAnyOrder("term1", "all"));
+        assertThat(candidates(index, "value3 value4"), containsInAnyOrder("should", "all"));
+        assertThat(candidates(index, "value5"), containsInAnyOrder("all"));
+
+        index = index.remove("all").remove("should");
+        assertThat(candidates(index, "value1 value3"), containsInAnyOrder("term1"));
+
+        // replacing a query re-indexes it under its new terms
+        index = index.add(ImmutableMap.<String, Query>of("term1", new TermQuery(new Term("field", "value5"))));
+        assertThat(candidates(index, "value1"), empty());
+        assertThat(candidates(index, "value5"), containsInAnyOrder("term1"));
+    }
+
+    private Set<String> candidates(QueryTermsIndex index, String text) throws Exception {
+        CustomMemoryIndex memoryIndex = new CustomMemoryIndex();
+        memoryIndex.addField("field", text, new WhitespaceAnalyzer(Lucene.VERSION));
+        return index.candidates(memoryIndex.createSearcher().getIndexReader());
+    }
+}
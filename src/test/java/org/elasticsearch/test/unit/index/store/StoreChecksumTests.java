@@ -0,0 +1,72 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.index.store;
+
+import org.apache.lucene.store.IndexOutput;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.store.Store;
+import org.elasticsearch.index.store.StoreFileMetaData;
+import org.elasticsearch.index.store.ram.RamDirectoryService;
+import org.testng.annotations.Test;
+
+import static org.elasticsearch.common.settings.ImmutableSettings.Builder.EMPTY_SETTINGS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ */
+public class StoreChecksumTests {
+
+    @Test
+    public void testComputedChecksumsAreMarkedAndNotStored() throws Exception {
+        ShardId shardId = new ShardId(new Index("index"), 1);
+        Store store = new Store(shardId, EMPTY_SETTINGS, null, new RamDirectoryService(shardId, EMPTY_SETTINGS));
+
+        // seeking back to patch the file, like Lucene does for .tis files, the stored checksum covers the written bytes
+        IndexOutput output = store.directory().createOutput("_1.tis");
+        output.writeLong(0);
+        output.writeLong(1);
+        output.seek(0);
+        output.writeLong(2);
+        output.close();
+
+        // commit points are written without a checksum
+        output = store.directory().createOutput("segments_1");
+        output.writeLong(1);
+        output.close();
+
+        String storedChecksum = store.metaData("_1.tis").checksum();
+        assertThat(storedChecksum, notNullValue());
+        assertThat(Store.isComputedChecksum(storedChecksum), equalTo(false));
+        assertThat(Store.isComputedChecksum(store.computeChecksum("_1.tis")), equalTo(true));
+
+        StoreFileMetaData md = store.listWithChecksums().get("segments_1");
+        assertThat(Store.isComputedChecksum(md.checksum()), equalTo(true));
+        assertThat(md.checksum(), equalTo(store.computeChecksum("segments_1")));
+        // the stored checksum is kept as is
+        assertThat(store.listWithChecksums().get("_1.tis").checksum(), equalTo(storedChecksum));
+        // and the computed one is not stored
+        assertThat(store.metaData("segments_1").checksum(), nullValue());
+
+        store.close();
+    }
+}
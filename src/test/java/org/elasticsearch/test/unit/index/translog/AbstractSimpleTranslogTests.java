@@ -32,9 +32,12 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
 
 /**
  *
@@ -73,6 +76,41 @@ public abstract class AbstractSimpleTranslogTests {
         assertThat(TranslogStreams.readSource(translog.read(loc3)).source, equalTo(new BytesHolder(new byte[]{3})));
     }
 
+    @Test
+    public void testConcurrentSyncOnEachOperation() throws Exception {
+        translog.syncOnEachOperation(true);
+        final int numberOfThreads = 4;
+        final int numberOfOperations = 100;
+        final CountDownLatch latch = new CountDownLatch(numberOfThreads);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int i = 0; i < numberOfThreads; i++) {
+            final int threadId = i;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < numberOfOperations; j++) {
+                            String id = threadId + "_" + j;
+                            Translog.Location location = translog.add(new Translog.Index("test", id, new byte[]{(byte) j}));
+                            assertThat(TranslogStreams.readSource(translog.read(location)).source, equalTo(new BytesHolder(new byte[]{(byte) j})));
+                        }
+                    } catch (Throwable t) {
+                        failure.set(t);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+        latch.await();
+        assertThat(failure.get(), nullValue());
+        assertThat(translog.syncNeeded(), equalTo(false));
+
+        Translog.Snapshot snapshot = translog.snapshot();
+        MatcherAssert.assertThat(snapshot, TranslogSizeMatcher.translogSize(numberOfThreads * numberOfOperations));
+        snapshot.release();
+    }
+
     @Test
     public void testTransientTranslog() {
         Translog.Snapshot snapshot = translog.snapshot();
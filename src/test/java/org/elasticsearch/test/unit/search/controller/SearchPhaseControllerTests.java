@@ -0,0 +1,321 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.test.unit.search.controller;
+
+import com.google.common.collect.Sets;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.controller.SearchPhaseController;
+import org.elasticsearch.search.controller.ShardDoc;
+import org.elasticsearch.search.facet.Facet;
+import org.elasticsearch.search.facet.FacetProcessor;
+import org.elasticsearch.search.facet.FacetProcessors;
+import org.elasticsearch.search.facet.InternalFacets;
+import org.elasticsearch.search.facet.statistical.InternalStatisticalFacet;
+import org.elasticsearch.search.facet.statistical.StatisticalFacet;
+import org.elasticsearch.search.facet.statistical.StatisticalFacetProcessor;
+import org.elasticsearch.search.facet.terms.TermsFacet;
+import org.elasticsearch.search.facet.terms.TermsFacetProcessor;
+import org.elasticsearch.search.facet.terms.strings.InternalStringTermsFacet;
+import org.elasticsearch.search.fetch.FetchSearchResult;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.elasticsearch.search.query.QuerySearchResult;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.elasticsearch.common.settings.ImmutableSettings.Builder.EMPTY_SETTINGS;
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ *
+ */
+@Test
+public class SearchPhaseControllerTests {
+
+    private final SearchPhaseController controller = new SearchPhaseController(EMPTY_SETTINGS, null);
+
+    @Test
+    public void testSortDocsMergesShards() {
+        // shard i has the docs with score (numberOfShards * j + i), so the global order interleaves the shards
+        List<QuerySearchResult> results = createResults(5, 10, 5, 10);
+        ShardDoc[] docs = controller.sortDocs(results);
+        assertThat(docs.length, equalTo(10));
+        for (int i = 0; i < docs.length; i++) {
+            int rank = 5 + i;
+            float expectedScore = 5 * 10 - 1 - rank;
+            assertThat(docs[i].score(), equalTo(expectedScore));
+            assertThat(docs[i].shardTarget().shardId(), equalTo((int) expectedScore % 5));
+        }
+    }
+
+    @Test
+    public void testSortDocsFewerDocsThanRequested() {
+        List<QuerySearchResult> results = createResults(3, 2, 4, 10);
+        ShardDoc[] docs = controller.sortDocs(results);
+        // 6 docs overall, skipping the first 4
+        assertThat(docs.length, equalTo(2));
+        assertThat(docs[0].score(), equalTo(1f));
+        assertThat(docs[1].score(), equalTo(0f));
+    }
+
+    @Test
+    public void testPartialReduceKeepsTopDocs() {
+        List<QuerySearchResult> results = createResults(10, 20, 5, 10);
+        ShardDoc[] expected = controller.sortDocs(results);
+
+        results = createResults(10, 20, 5, 10);
+        controller.partialReduce(results.subList(0, 4));
+        controller.partialReduce(results.subList(0, 8));
+        controller.partialReduce(results);
+
+        int retained = 0;
+        for (QuerySearchResult result : results) {
+            retained += result.topDocs().scoreDocs.length;
+            // the total hits are not affected by trimming
+            assertThat(result.topDocs().totalHits, equalTo(20));
+        }
+        assertThat(retained, equalTo(15));
+
+        ShardDoc[] docs = controller.sortDocs(results);
+        assertThat(docs.length, equalTo(expected.length));
+        for (int i = 0; i < docs.length; i++) {
+            assertThat(docs[i].shardTarget(), equalTo(expected[i].shardTarget()));
+            assertThat(docs[i].docId(), equalTo(expected[i].docId()));
+        }
+    }
+
+    @Test
+    public void testPartialReduceFacets() {
+        FacetProcessors facetProcessors = new FacetProcessors(Sets.<FacetProcessor>newHashSet(new TermsFacetProcessor(EMPTY_SETTINGS), new StatisticalFacetProcessor(EMPTY_SETTINGS)));
+        SearchPhaseController controller = new SearchPhaseController(EMPTY_SETTINGS, facetProcessors);
+
+        List<QuerySearchResult> results = createResultsWithFacets(10);
+        controller.partialReduce(results.subList(0, 3));
+        controller.partialReduce(results.subList(0, 6));
+        controller.partialReduce(results.subList(0, 9));
+        controller.partialReduce(results);
+
+        // the facets end up reduced into the first result
+        assertThat(results.get(0).facets(), notNullValue());
+        for (int i = 1; i < results.size(); i++) {
+            assertThat(results.get(i).facets(), nullValue());
+        }
+
+        // and match a single reduce of all the shard facets
+        List<QuerySearchResult> expectedResults = createResultsWithFacets(10);
+        controller.partialReduce(expectedResults);
+
+        StatisticalFacet stats = results.get(0).facets().facet("stats");
+        StatisticalFacet expectedStats = expectedResults.get(0).facets().facet("stats");
+        assertThat(stats.count(), equalTo(expectedStats.count()));
+        assertThat(stats.total(), equalTo(expectedStats.total()));
+        assertThat(stats.sumOfSquares(), equalTo(expectedStats.sumOfSquares()));
+        assertThat(stats.min(), equalTo(expectedStats.min()));
+        assertThat(stats.max(), equalTo(expectedStats.max()));
+
+        TermsFacet terms = results.get(0).facets().facet("terms");
+        TermsFacet expectedTerms = expectedResults.get(0).facets().facet("terms");
+        assertThat(terms.totalCount(), equalTo(expectedTerms.totalCount()));
+        assertThat(terms.entries().size(), equalTo(expectedTerms.entries().size()));
+        for (int i = 0; i < terms.entries().size(); i++) {
+            assertThat(terms.entries().get(i).term(), equalTo(expectedTerms.entries().get(i).term()));
+            assertThat(terms.entries().get(i).count(), equalTo(expectedTerms.entries().get(i).count()));
+        }
+    }
+
+    @Test
+    public void testFinalReduceWaitsForPartialReduce() throws Exception {
+        final CountDownLatch partialReduceStarted = new CountDownLatch(1);
+        final CountDownLatch releasePartialReduce = new CountDownLatch(1);
+        // the first statistical facet reduce is the partial one, block it until the final reduce was started
+        StatisticalFacetProcessor blockingProcessor = new StatisticalFacetProcessor(EMPTY_SETTINGS) {
+            @Override
+            public Facet reduce(String name, List<Facet> facets) {
+                if (partialReduceStarted.getCount() > 0) {
+                    partialReduceStarted.countDown();
+                    try {
+                        releasePartialReduce.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.reduce(name, facets);
+            }
+        };
+        FacetProcessors facetProcessors = new FacetProcessors(Sets.<FacetProcessor>newHashSet(new TermsFacetProcessor(EMPTY_SETTINGS), blockingProcessor));
+        SearchPhaseController controller = new SearchPhaseController(settingsBuilder().put("search.controller.batched_reduce_size", 10).build(), facetProcessors);
+        final SearchPhaseController.BatchedReducer reducer = controller.newBatchedReducer();
+
+        final Map<SearchShardTarget, QuerySearchResult> queryResults = new HashMap<SearchShardTarget, QuerySearchResult>();
+        for (QuerySearchResult result : createResultsWithFacets(10)) {
+            queryResults.put(result.shardTarget(), result);
+        }
+
+        Thread partialReduce = new Thread() {
+            @Override
+            public void run() {
+                for (QuerySearchResult result : queryResults.values()) {
+                    reducer.maybePartialReduce(result);
+                }
+            }
+        };
+        partialReduce.start();
+        partialReduceStarted.await();
+
+        final AtomicReference<InternalSearchResponse> response = new AtomicReference<InternalSearchResponse>();
+        Thread finalReduce = new Thread() {
+            @Override
+            public void run() {
+                ShardDoc[] docs = reducer.sortDocs(queryResults.values());
+                response.set(reducer.merge(docs, queryResults, new HashMap<SearchShardTarget, FetchSearchResult>()));
+            }
+        };
+        finalReduce.start();
+        finalReduce.join(200);
+        // the final reduce waits for the partial reduce in flight
+        assertThat(response.get(), nullValue());
+
+        releasePartialReduce.countDown();
+        partialReduce.join();
+        finalReduce.join();
+
+        Map<SearchShardTarget, QuerySearchResult> expectedResults = new HashMap<SearchShardTarget, QuerySearchResult>();
+        for (QuerySearchResult result : createResultsWithFacets(10)) {
+            expectedResults.put(result.shardTarget(), result);
+        }
+        InternalSearchResponse expected = controller.merge(controller.sortDocs(expectedResults.values()), expectedResults, new HashMap<SearchShardTarget, FetchSearchResult>());
+
+        assertThat(response.get().hits().totalHits(), equalTo(expected.hits().totalHits()));
+        StatisticalFacet stats = response.get().facets().facet("stats");
+        StatisticalFacet expectedStats = expected.facets().facet("stats");
+        assertThat(stats.count(), equalTo(expectedStats.count()));
+        assertThat(stats.total(), equalTo(expectedStats.total()));
+        TermsFacet terms = response.get().facets().facet("terms");
+        TermsFacet expectedTerms = expected.facets().facet("terms");
+        assertThat(terms.totalCount(), equalTo(expectedTerms.totalCount()));
+        for (int i = 0; i < terms.entries().size(); i++) {
+            assertThat(terms.entries().get(i).term(), equalTo(expectedTerms.entries().get(i).term()));
+            assertThat(terms.entries().get(i).count(), equalTo(expectedTerms.entries().get(i).count()));
+        }
+    }
+
+    @Test
+    public void testBatchedReduceOfSkewedTermsFacets() {
+        FacetProcessors facetProcessors = new FacetProcessors(Sets.<FacetProcessor>newHashSet(new TermsFacetProcessor(EMPTY_SETTINGS)));
+        SearchPhaseController controller = new SearchPhaseController(settingsBuilder().put("search.controller.batched_reduce_size", 2).build(), facetProcessors);
+
+        Map<SearchShardTarget, QuerySearchResult> expectedResults = createSkewedResults();
+        InternalSearchResponse expected = controller.merge(controller.sortDocs(expectedResults.values()), expectedResults, new HashMap<SearchShardTarget, FetchSearchResult>());
+
+        SearchPhaseController.BatchedReducer reducer = controller.newBatchedReducer();
+        Map<SearchShardTarget, QuerySearchResult> queryResults = new HashMap<SearchShardTarget, QuerySearchResult>();
+        for (QuerySearchResult result : createSkewedResults().values()) {
+            queryResults.put(result.shardTarget(), result);
+            reducer.maybePartialReduce(result);
+        }
+        InternalSearchResponse response = reducer.merge(reducer.sortDocs(queryResults.values()), queryResults, new HashMap<SearchShardTarget, FetchSearchResult>());
+
+        TermsFacet terms = response.facets().facet("terms");
+        TermsFacet expectedTerms = expected.facets().facet("terms");
+        // d only makes it to the top terms with the counts of all the shards, and the terms are truncated to the size
+        assertThat(expectedTerms.entries().get(0).term(), equalTo("d"));
+        assertThat(expectedTerms.entries().get(0).count(), equalTo(23));
+        assertThat(terms.entries().size(), equalTo(3));
+        assertThat(terms.totalCount(), equalTo(expectedTerms.totalCount()));
+        assertThat(terms.otherCount(), equalTo(expectedTerms.otherCount()));
+        for (int i = 0; i < expectedTerms.entries().size(); i++) {
+            assertThat(terms.entries().get(i).term(), equalTo(expectedTerms.entries().get(i).term()));
+            assertThat(terms.entries().get(i).count(), equalTo(expectedTerms.entries().get(i).count()));
+        }
+    }
+
+    /**
+     * Terms facets of size 3 over 4 shards, where the first shards don't agree on their third term, and the one
+     * ending up on top is only counted by the last shards. Reducing the first two shards down to 3 terms would
+     * drop some of its counts.
+     */
+    private Map<SearchShardTarget, QuerySearchResult> createSkewedResults() {
+        String[][] terms = {{"a", "b", "c"}, {"a", "b", "d"}, {"d", "e", "f"}, {"d", "e", "f"}};
+        int[][] counts = {{5, 4, 3}, {5, 4, 3}, {10, 1, 1}, {10, 1, 1}};
+        Map<SearchShardTarget, QuerySearchResult> results = new HashMap<SearchShardTarget, QuerySearchResult>();
+        for (QuerySearchResult result : createResults(terms.length, 10, 0, 10)) {
+            int shard = result.shardTarget().shardId();
+            List<InternalStringTermsFacet.StringEntry> entries = new ArrayList<InternalStringTermsFacet.StringEntry>();
+            long total = 0;
+            for (int i = 0; i < terms[shard].length; i++) {
+                entries.add(new InternalStringTermsFacet.StringEntry(terms[shard][i], counts[shard][i]));
+                total += counts[shard][i];
+            }
+            List<Facet> facets = new ArrayList<Facet>();
+            facets.add(new InternalStringTermsFacet("terms", TermsFacet.ComparatorType.COUNT, 3, entries, 0, total));
+            result.facets(new InternalFacets(facets));
+            results.put(result.shardTarget(), result);
+        }
+        return results;
+    }
+
+    /**
+     * Each shard has a statistical facet, and a terms facet over 5 terms (with a size covering all of them,
+     * so the reduced counts are exact whatever the batches are).
+     */
+    private List<QuerySearchResult> createResultsWithFacets(int numberOfShards) {
+        List<QuerySearchResult> results = createResults(numberOfShards, 10, 0, 10);
+        for (int shard = 0; shard < numberOfShards; shard++) {
+            List<InternalStringTermsFacet.StringEntry> entries = new ArrayList<InternalStringTermsFacet.StringEntry>();
+            long total = 0;
+            for (int term = 0; term < 5; term++) {
+                int count = (shard + 1) * (term + 1);
+                entries.add(new InternalStringTermsFacet.StringEntry("term" + term, count));
+                total += count;
+            }
+            List<Facet> facets = new ArrayList<Facet>();
+            facets.add(new InternalStringTermsFacet("terms", TermsFacet.ComparatorType.COUNT, 10, entries, 0, total));
+            facets.add(new InternalStatisticalFacet("stats", shard, shard * 10, shard * 5, shard * shard * 30, 10));
+            results.get(shard).facets(new InternalFacets(facets));
+        }
+        return results;
+    }
+
+    private List<QuerySearchResult> createResults(int numberOfShards, int docsPerShard, int from, int size) {
+        List<QuerySearchResult> results = new ArrayList<QuerySearchResult>();
+        for (int shard = 0; shard < numberOfShards; shard++) {
+            ScoreDoc[] scoreDocs = new ScoreDoc[docsPerShard];
+            for (int i = 0; i < docsPerShard; i++) {
+                // sorted by descending score within the shard
+                scoreDocs[i] = new ScoreDoc(i, numberOfShards * (docsPerShard - 1 - i) + shard);
+            }
+            QuerySearchResult result = new QuerySearchResult(shard, new SearchShardTarget("node", "index", shard));
+            result.from(from).size(size);
+            result.topDocs(new TopDocs(docsPerShard, scoreDocs, scoreDocs[0].score));
+            results.add(result);
+        }
+        return results;
+    }
+}
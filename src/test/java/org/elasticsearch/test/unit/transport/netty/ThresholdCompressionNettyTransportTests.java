@@ -0,0 +1,254 @@
+/*
+ * Licensed to ElasticSearch and Shay Banon under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. ElasticSearch licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.test.unit.transport.netty;
+
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Streamable;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.test.unit.transport.AbstractSimpleTransportTests;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.*;
+import org.elasticsearch.transport.netty.NettyTransport;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Runs the transport tests with all messages compressed based on their size.
+ */
+@Test
+public class ThresholdCompressionNettyTransportTests extends AbstractSimpleTransportTests {
+
+    @Override
+    protected void build() {
+        Settings settingsA = settingsBuilder().put("name", "A").put("transport.tcp.compress", true).put("transport.tcp.compress_threshold", 0).build();
+        serviceA = new TransportService(settingsA, new NettyTransport(settingsA, threadPool), threadPool).start();
+        serviceANode = new DiscoveryNode("A", serviceA.boundAddress().publishAddress());
+
+        Settings settingsB = settingsBuilder().put("name", "B").put("transport.tcp.compress", true).put("transport.tcp.compress_threshold", 0).build();
+        serviceB = new TransportService(settingsB, new NettyTransport(settingsB, threadPool), threadPool).start();
+        serviceBNode = new DiscoveryNode("B", serviceB.boundAddress().publishAddress());
+    }
+
+    @Test
+    public void testCompressionStats() {
+        super.testHelloWorld();
+
+        long messages = 0;
+        long compressedMessages = 0;
+        for (TransportService service : new TransportService[]{serviceA, serviceB}) {
+            for (TransportCompressionStats.ActionStats actionStats : service.stats().compression()) {
+                if (actionStats.action().equals("sayHello")) {
+                    messages += actionStats.messages();
+                    compressedMessages += actionStats.compressedMessages();
+                    assertThat(actionStats.compressedSize().bytes(), greaterThan(0l));
+                }
+            }
+        }
+        // the request and its response
+        assertThat(messages, greaterThan(1l));
+        assertThat(compressedMessages, equalTo(messages));
+    }
+
+    @Test
+    public void testSizeThresholdAndActionOverride() throws Exception {
+        Settings settingsC = settingsBuilder().put("name", "C")
+                .put("transport.tcp.compress", true)
+                .put("transport.tcp.compress_threshold", "1kb")
+                .put("transport.tcp.compress_threshold.echoCompressed", 0).build();
+        TransportService serviceC = new TransportService(settingsC, new NettyTransport(settingsC, threadPool), threadPool).start();
+        DiscoveryNode serviceCNode = new DiscoveryNode("C", serviceC.boundAddress().publishAddress());
+
+        Settings settingsD = settingsBuilder().put(settingsC).put("name", "D").build();
+        TransportService serviceD = new TransportService(settingsD, new NettyTransport(settingsD, threadPool), threadPool).start();
+        try {
+            serviceC.registerHandler("echo", new EchoHandler());
+            serviceC.registerHandler("echoCompressed", new EchoHandler());
+            serviceD.connectToNode(serviceCNode);
+
+            StringBuilder large = new StringBuilder();
+            for (int i = 0; i < 2048; i++) {
+                large.append('a');
+            }
+            // below the threshold, sent as is
+            assertThat(echo(serviceD, serviceCNode, "echo", "small"), equalTo("small"));
+            // above the threshold, compressed
+            assertThat(echo(serviceD, serviceCNode, "echo", large.toString()), equalTo(large.toString()));
+            // below the default threshold, but compressed since the action overrides it with a threshold of 0
+            assertThat(echo(serviceD, serviceCNode, "echoCompressed", "small"), equalTo("small"));
+
+            // each request and its response
+            TransportCompressionStats.ActionStats echoStats = actionStats("echo", serviceC, serviceD);
+            assertThat(echoStats.messages(), equalTo(4l));
+            assertThat(echoStats.compressedMessages(), equalTo(2l));
+            assertThat(echoStats.compressedSize().bytes(), lessThan(echoStats.rawSize().bytes()));
+
+            TransportCompressionStats.ActionStats echoCompressedStats = actionStats("echoCompressed", serviceC, serviceD);
+            assertThat(echoCompressedStats.messages(), equalTo(2l));
+            assertThat(echoCompressedStats.compressedMessages(), equalTo(2l));
+        } finally {
+            serviceD.close();
+            serviceC.close();
+        }
+    }
+
+    @Test
+    public void testThresholdOnlyAppliesWhenRequested() throws Exception {
+        Settings settingsC = settingsBuilder().put("name", "C").put("transport.tcp.compress_threshold", 0).build();
+        TransportService serviceC = new TransportService(settingsC, new NettyTransport(settingsC, threadPool), threadPool).start();
+        DiscoveryNode serviceCNode = new DiscoveryNode("C", serviceC.boundAddress().publishAddress());
+
+        Settings settingsD = settingsBuilder().put(settingsC).put("name", "D").build();
+        TransportService serviceD = new TransportService(settingsD, new NettyTransport(settingsD, threadPool), threadPool).start();
+        try {
+            serviceC.registerHandler("echo", new EchoHandler());
+            serviceC.registerHandler("echoCompressed", new EchoHandler());
+            serviceD.connectToNode(serviceCNode);
+
+            // opted out, not compressed even though it is above the threshold
+            assertThat(echo(serviceD, serviceCNode, "echo", "small", TransportRequestOptions.options().withCompress(false)), equalTo("small"));
+            // requested, and above the threshold
+            assertThat(echo(serviceD, serviceCNode, "echoCompressed", "small", TransportRequestOptions.options().withCompress(true)), equalTo("small"));
+
+            TransportCompressionStats.ActionStats echoStats = actionStats("echo", serviceD);
+            assertThat(echoStats.messages(), equalTo(1l));
+            assertThat(echoStats.compressedMessages(), equalTo(0l));
+
+            TransportCompressionStats.ActionStats echoCompressedStats = actionStats("echoCompressed", serviceD);
+            assertThat(echoCompressedStats.messages(), equalTo(1l));
+            assertThat(echoCompressedStats.compressedMessages(), equalTo(1l));
+        } finally {
+            serviceD.close();
+            serviceC.close();
+        }
+    }
+
+    @Test
+    public void testStatsWhenCompressedDirectly() throws Exception {
+        Settings settingsC = settingsBuilder().put("name", "C").put("transport.tcp.compress", true).build();
+        TransportService serviceC = new TransportService(settingsC, new NettyTransport(settingsC, threadPool), threadPool).start();
+        DiscoveryNode serviceCNode = new DiscoveryNode("C", serviceC.boundAddress().publishAddress());
+
+        Settings settingsD = settingsBuilder().put(settingsC).put("name", "D").build();
+        TransportService serviceD = new TransportService(settingsD, new NettyTransport(settingsD, threadPool), threadPool).start();
+        try {
+            serviceC.registerHandler("echo", new EchoHandler());
+            serviceD.connectToNode(serviceCNode);
+
+            StringBuilder large = new StringBuilder();
+            for (int i = 0; i < 2048; i++) {
+                large.append('a');
+            }
+            assertThat(echo(serviceD, serviceCNode, "echo", large.toString()), equalTo(large.toString()));
+
+            // no threshold, so the request and its response are built compressed, the raw size is still accounted
+            TransportCompressionStats.ActionStats echoStats = actionStats("echo", serviceC, serviceD);
+            assertThat(echoStats.messages(), equalTo(2l));
+            assertThat(echoStats.compressedMessages(), equalTo(2l));
+            assertThat(echoStats.rawSize().bytes(), greaterThan(4096l));
+            assertThat(echoStats.compressedSize().bytes(), lessThan(echoStats.rawSize().bytes()));
+        } finally {
+            serviceD.close();
+            serviceC.close();
+        }
+    }
+
+    private String echo(TransportService service, DiscoveryNode node, String action, String message) {
+        return echo(service, node, action, message, TransportRequestOptions.options());
+    }
+
+    private String echo(TransportService service, DiscoveryNode node, String action, String message, TransportRequestOptions options) {
+        return service.submitRequest(node, action, new EchoMessage(message), options, new FutureTransportResponseHandler<EchoMessage>() {
+            @Override
+            public EchoMessage newInstance() {
+                return new EchoMessage();
+            }
+        }).txGet().message;
+    }
+
+    /**
+     * Sums the compression stats of the action on both sides, one sends the requests, the other the responses.
+     */
+    private TransportCompressionStats.ActionStats actionStats(String action, TransportService... services) {
+        long messages = 0;
+        long compressedMessages = 0;
+        long rawSize = 0;
+        long compressedSize = 0;
+        for (TransportService service : services) {
+            for (TransportCompressionStats.ActionStats actionStats : service.stats().compression()) {
+                if (actionStats.action().equals(action)) {
+                    messages += actionStats.messages();
+                    compressedMessages += actionStats.compressedMessages();
+                    rawSize += actionStats.rawSize().bytes();
+                    compressedSize += actionStats.compressedSize().bytes();
+                }
+            }
+        }
+        return new TransportCompressionStats.ActionStats(action, messages, compressedMessages, rawSize, compressedSize, 0);
+    }
+
+    private static class EchoHandler extends BaseTransportRequestHandler<EchoMessage> {
+
+        @Override
+        public EchoMessage newInstance() {
+            return new EchoMessage();
+        }
+
+        @Override
+        public String executor() {
+            return ThreadPool.Names.SAME;
+        }
+
+        @Override
+        public void messageReceived(EchoMessage request, TransportChannel channel) throws Exception {
+            channel.sendResponse(new EchoMessage(request.message));
+        }
+    }
+
+    private static class EchoMessage implements Streamable {
+
+        private String message;
+
+        private EchoMessage(String message) {
+            this.message = message;
+        }
+
+        private EchoMessage() {
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            message = in.readUTF();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeUTF(message);
+        }
+    }
+}